@@ -12,6 +12,7 @@ plugins {
     id("org.springdoc.openapi-gradle-plugin") version "1.9.0"
     id("pmd")
     id("com.diffplug.spotless") version "7.0.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.hienao.openlist2strm"
@@ -46,6 +47,7 @@ dependencies {
     implementation("com.auth0:java-jwt:4.4.0")
     implementation("org.flywaydb:flyway-core:$flywayVersion")
     implementation("com.github.ben-manes.caffeine:caffeine:3.2.0")
+    implementation("org.apache.httpcomponents.client5:httpclient5")
     // SQLite database
     runtimeOnly("org.xerial:sqlite-jdbc:3.47.1.0")
     // MyBatis does not need additional SQLite dialect
@@ -78,6 +80,12 @@ tasks.jacocoTestReport {
     dependsOn(tasks.test) // tests are required to run before generating the report
 }
 
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+}
+
 jacoco {
     toolVersion = "0.8.12"
     reportsDirectory.set(layout.buildDirectory.dir("reports/jacoco"))
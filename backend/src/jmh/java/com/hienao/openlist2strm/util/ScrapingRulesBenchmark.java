@@ -0,0 +1,66 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 刮削正则匹配基准测试
+ *
+ * <p>对比逐条执行正则与字面量预筛选两种方式在默认规则下的耗时，运行方式：./gradlew jmh
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScrapingRulesBenchmark {
+
+  private static final List<String> FILE_NAMES =
+      List.of(
+          "Friends.S01E02.1080p.BluRay.x264",
+          "The.Office.US.2x07.720p",
+          "Breaking.Bad.Season.2.Episode.5",
+          "庆余年.第二季.第十集",
+          "流浪地球.2019.4K.HDR",
+          "Inception.2010.1080p.BluRay",
+          "[Spirited Away].2001",
+          "Some.Random.Video",
+          "家庭录像_片段",
+          "Disc 1 04");
+
+  private CompiledScrapingRules rules;
+
+  @Setup
+  public void setup() {
+    rules =
+        CompiledScrapingRules.of(
+            EnhancedRegexPatterns.getEnhancedMovieRegexps(),
+            EnhancedRegexPatterns.getEnhancedTvDirRegexps(),
+            EnhancedRegexPatterns.getEnhancedTvFileRegexps());
+  }
+
+  @Benchmark
+  public void sequential(Blackhole blackhole) {
+    for (String fileName : FILE_NAMES) {
+      blackhole.consume(rules.getTvFileRules().findSequential(fileName));
+      blackhole.consume(rules.getMovieRules().findSequential(fileName));
+    }
+  }
+
+  @Benchmark
+  public void prefiltered(Blackhole blackhole) {
+    for (String fileName : FILE_NAMES) {
+      blackhole.consume(rules.getTvFileRules().find(fileName));
+      blackhole.consume(rules.getMovieRules().find(fileName));
+    }
+  }
+}
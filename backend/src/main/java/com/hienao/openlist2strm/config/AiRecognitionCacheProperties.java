@@ -0,0 +1,29 @@
+package com.hienao.openlist2strm.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * AI文件名识别结果缓存配置
+ *
+ * <p>识别结果持久化在SQLite的 ai_recognition_cache 表中，提示词或模型变化后旧结果自动失效
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.ai-recognition-cache")
+public class AiRecognitionCacheProperties {
+
+  /** 是否启用缓存 */
+  private boolean enabled = true;
+
+  /** 识别成功结果的有效期 */
+  private Duration successTtl = Duration.ofDays(90);
+
+  /** 无法识别结论的有效期 */
+  private Duration failureTtl = Duration.ofDays(7);
+}
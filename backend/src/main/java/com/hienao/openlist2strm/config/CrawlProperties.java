@@ -0,0 +1,31 @@
+package com.hienao.openlist2strm.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 目录遍历配置
+ *
+ * <p>增量遍历模式下记录每个目录的水位（修改时间、条目数、子项摘要），父目录列表显示子目录未变化时不再进入该子目录。
+ *
+ * <p>是否进入子目录只能依据父目录列表中该子目录自身的修改时间和大小：条目数和子项摘要要列出子目录后才能得到，
+ * 只用于统计变化的目录数。因此增量遍历假设子树内的任何变化（包括深层文件的增删改）都会更新该子目录的修改时间或大小。
+ * 很多网盘和对象存储的目录修改时间不会随深层内容变化，此时跳过的子树中的变化要等到下一次强制完整遍历才能发现，
+ * 所以增量遍历默认关闭，强制完整遍历的间隔也较短。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.crawl")
+public class CrawlProperties {
+
+  /** 增量执行时是否跳过未变化的子目录 */
+  private boolean deltaEnabled = false;
+
+  /** 强制完整遍历的间隔，也是目录修改时间不随深层内容变化时发现变化的最长延迟 */
+  private Duration fullVerifyInterval = Duration.ofDays(1);
+}
@@ -0,0 +1,86 @@
+package com.hienao.openlist2strm.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * HTTP客户端连接池配置
+ *
+ * <p>每个上游服务（OpenList、TMDB、图片CDN、AI接口）使用独立的连接池和超时设置，互不抢占连接
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.http")
+public class HttpClientProperties {
+
+  /** 通用请求（版本检查、数据上报等） */
+  private Pool common = new Pool(20, 5, Duration.ofSeconds(30), Duration.ofSeconds(60), true);
+
+  /** OpenList API及文件下载，重定向由业务代码自行处理 */
+  private Pool openlist = new Pool(64, 32, Duration.ofSeconds(10), Duration.ofSeconds(60), false);
+
+  /** TMDB API，响应超时以系统配置中的 tmdb.timeout 为准 */
+  private Pool tmdb = new Pool(20, 10, Duration.ofSeconds(10), Duration.ofSeconds(30), true);
+
+  /** 海报、背景图等图片下载 */
+  private Pool image = new Pool(32, 8, Duration.ofSeconds(10), Duration.ofSeconds(60), true);
+
+  /** AI文件名识别接口 */
+  private Pool ai = new Pool(8, 4, Duration.ofSeconds(10), Duration.ofSeconds(120), true);
+
+  /** 单个文件（字幕、NFO、图片等）的最大下载大小，超过时放弃下载 */
+  private DataSize maxDownloadSize = DataSize.ofMegabytes(50);
+
+  /** 单个连接池配置 */
+  @Data
+  public static class Pool {
+
+    /** 连接池最大连接数 */
+    private int maxTotal;
+
+    /** 每个目标主机的最大连接数 */
+    private int maxPerRoute;
+
+    /** 建立连接超时时间 */
+    private Duration connectTimeout;
+
+    /** 等待响应超时时间 */
+    private Duration responseTimeout;
+
+    /** 从连接池获取连接的超时时间 */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(30);
+
+    /** 服务端未声明Keep-Alive时，空闲连接的保活时间 */
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    /** 连接最长存活时间，超过后不再复用 */
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    /** 空闲连接清理间隔 */
+    private Duration evictIdleAfter = Duration.ofMinutes(1);
+
+    /** 是否自动跟随重定向 */
+    private boolean followRedirects;
+
+    public Pool() {}
+
+    public Pool(
+        int maxTotal,
+        int maxPerRoute,
+        Duration connectTimeout,
+        Duration responseTimeout,
+        boolean followRedirects) {
+      this.maxTotal = maxTotal;
+      this.maxPerRoute = maxPerRoute;
+      this.connectTimeout = connectTimeout;
+      this.responseTimeout = responseTimeout;
+      this.followRedirects = followRedirects;
+    }
+  }
+}
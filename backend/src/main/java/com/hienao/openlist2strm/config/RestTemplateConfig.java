@@ -1,23 +1,102 @@
 package com.hienao.openlist2strm.config;
 
-import java.time.Duration;
+import com.hienao.openlist2strm.service.SystemConfigService;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultSchemePortResolver;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.routing.DefaultRoutePlanner;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.client5.http.routing.HttpRoutePlanner;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * RestTemplate配置类
  *
+ * <p>基于Apache HttpClient连接池，每个上游服务独立一个连接池，复用Keep-Alive连接以避免重复的TCP/TLS握手。
+ * 响应的gzip/deflate压缩由HttpClient自动协商和解压。
+ *
  * @author hienao
  * @since 2024-01-01
  */
+@Slf4j
 @Configuration
+@RequiredArgsConstructor
 public class RestTemplateConfig {
 
+  private static final String USER_AGENT = "OpenList-STRM/1.0";
+
+  private final HttpClientProperties httpClientProperties;
+
+  /**
+   * 通用HttpClient（版本检查、数据上报等）
+   *
+   * @return HttpClient实例
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient commonHttpClient() {
+    return buildHttpClient("common", httpClientProperties.getCommon(), null);
+  }
+
+  /**
+   * OpenList HttpClient，不自动跟随重定向
+   *
+   * @return HttpClient实例
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient openlistHttpClient() {
+    return buildHttpClient("openlist", httpClientProperties.getOpenlist(), null);
+  }
+
+  /**
+   * TMDB HttpClient，按系统配置中的代理设置选择路由
+   *
+   * @param systemConfigService 系统配置服务
+   * @return HttpClient实例
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient tmdbHttpClient(SystemConfigService systemConfigService) {
+    return buildHttpClient(
+        "tmdb", httpClientProperties.getTmdb(), tmdbRoutePlanner(systemConfigService));
+  }
+
+  /**
+   * 图片下载HttpClient
+   *
+   * @return HttpClient实例
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient imageHttpClient() {
+    return buildHttpClient("image", httpClientProperties.getImage(), null);
+  }
+
+  /**
+   * AI接口HttpClient
+   *
+   * @return HttpClient实例
+   */
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient aiHttpClient() {
+    return buildHttpClient("ai", httpClientProperties.getAi(), null);
+  }
+
   /**
    * 配置RestTemplate Bean
    *
@@ -25,17 +104,179 @@ public class RestTemplateConfig {
    */
   @Bean
   public RestTemplate restTemplate() {
-    SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+    return buildRestTemplate(new HttpComponentsClientHttpRequestFactory(commonHttpClient()));
+  }
 
-    // 设置连接超时时间（毫秒）
-    factory.setConnectTimeout((int) Duration.ofSeconds(30).toMillis());
+  /**
+   * OpenList API使用的RestTemplate
+   *
+   * @return RestTemplate实例
+   */
+  @Bean
+  public RestTemplate openlistRestTemplate() {
+    return buildRestTemplate(new HttpComponentsClientHttpRequestFactory(openlistHttpClient()));
+  }
 
-    // 设置读取超时时间（毫秒）
-    factory.setReadTimeout((int) Duration.ofSeconds(60).toMillis());
+  /**
+   * TMDB API使用的RestTemplate，响应超时按系统配置中的 tmdb.timeout 逐次生效
+   *
+   * @param tmdbHttpClient TMDB HttpClient
+   * @param systemConfigService 系统配置服务
+   * @return RestTemplate实例
+   */
+  @Bean
+  public RestTemplate tmdbRestTemplate(
+      CloseableHttpClient tmdbHttpClient, SystemConfigService systemConfigService) {
+    RequestConfig defaultConfig = buildRequestConfig(httpClientProperties.getTmdb());
+    HttpComponentsClientHttpRequestFactory factory =
+        new HttpComponentsClientHttpRequestFactory(tmdbHttpClient);
+    factory.setHttpContextFactory(
+        (method, uri) -> {
+          int timeout = systemConfigService.getSnapshot().getTmdbTimeoutSeconds();
+          HttpClientContext context = HttpClientContext.create();
+          context.setRequestConfig(
+              RequestConfig.copy(defaultConfig)
+                  .setResponseTimeout(Timeout.ofSeconds(timeout))
+                  .build());
+          return context;
+        });
+    return buildRestTemplate(factory);
+  }
 
-    // 启用重定向跟随
-    factory.setOutputStreaming(false);
+  /**
+   * 图片下载使用的RestTemplate
+   *
+   * @return RestTemplate实例
+   */
+  @Bean
+  public RestTemplate imageRestTemplate() {
+    return buildRestTemplate(new HttpComponentsClientHttpRequestFactory(imageHttpClient()));
+  }
+
+  /**
+   * AI接口使用的RestTemplate
+   *
+   * @return RestTemplate实例
+   */
+  @Bean
+  public RestTemplate aiRestTemplate() {
+    return buildRestTemplate(new HttpComponentsClientHttpRequestFactory(aiHttpClient()));
+  }
+
+  /**
+   * 构建带连接池的HttpClient
+   *
+   * @param name 连接池名称
+   * @param pool 连接池配置
+   * @param routePlanner 路由规划器，为空时直连
+   * @return HttpClient实例
+   */
+  private CloseableHttpClient buildHttpClient(
+      String name, HttpClientProperties.Pool pool, HttpRoutePlanner routePlanner) {
+    PoolingHttpClientConnectionManager connectionManager =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(pool.getMaxTotal())
+            .setMaxConnPerRoute(pool.getMaxPerRoute())
+            .setDefaultConnectionConfig(
+                ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(pool.getConnectTimeout()))
+                    .setSocketTimeout(Timeout.of(pool.getResponseTimeout()))
+                    .setTimeToLive(TimeValue.of(pool.getTimeToLive()))
+                    .setValidateAfterInactivity(TimeValue.ofSeconds(5))
+                    .build())
+            .build();
+
+    HttpClientBuilder builder =
+        HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(buildRequestConfig(pool))
+            .setUserAgent(USER_AGENT)
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.of(pool.getEvictIdleAfter()))
+            // 重试、退避和Retry-After等待统一由应用层的限流和熔断逻辑处理，
+            // 默认重试策略会重放429/503响应（包括非幂等的POST）并按Retry-After无上限等待
+            .disableAutomaticRetries();
+
+    if (!pool.isFollowRedirects()) {
+      builder.disableRedirectHandling();
+    }
+    if (routePlanner != null) {
+      builder.setRoutePlanner(routePlanner);
+    }
+
+    log.info(
+        "HTTP连接池初始化完成 - 名称: {}, 最大连接数: {}, 单主机最大连接数: {}",
+        name,
+        pool.getMaxTotal(),
+        pool.getMaxPerRoute());
+
+    return builder.build();
+  }
 
+  /**
+   * 构建默认请求配置
+   *
+   * @param pool 连接池配置
+   * @return 请求配置
+   */
+  private RequestConfig buildRequestConfig(HttpClientProperties.Pool pool) {
+    return RequestConfig.custom()
+        .setConnectionRequestTimeout(Timeout.of(pool.getConnectionRequestTimeout()))
+        .setResponseTimeout(Timeout.of(pool.getResponseTimeout()))
+        .setConnectionKeepAlive(TimeValue.of(pool.getKeepAlive()))
+        .setRedirectsEnabled(pool.isFollowRedirects())
+        .build();
+  }
+
+  /**
+   * TMDB路由规划器：每次建立路由时读取系统配置中的代理设置，修改代理后无需重启即可生效
+   *
+   * @param systemConfigService 系统配置服务
+   * @return 路由规划器
+   */
+  private HttpRoutePlanner tmdbRoutePlanner(SystemConfigService systemConfigService) {
+    return new DefaultRoutePlanner(DefaultSchemePortResolver.INSTANCE) {
+      @Override
+      protected HttpHost determineProxy(HttpHost target, HttpContext context) {
+        return resolveTmdbProxy(systemConfigService.getTmdbConfig());
+      }
+    };
+  }
+
+  /**
+   * 解析TMDB代理配置
+   *
+   * @param tmdbConfig TMDB配置
+   * @return 代理主机，未配置或配置无效时返回null
+   */
+  private HttpHost resolveTmdbProxy(Map<String, Object> tmdbConfig) {
+    String proxyHost = (String) tmdbConfig.get("proxyHost");
+    String proxyPortStr = (String) tmdbConfig.get("proxyPort");
+
+    if (proxyHost == null
+        || proxyHost.trim().isEmpty()
+        || proxyPortStr == null
+        || proxyPortStr.trim().isEmpty()) {
+      return null;
+    }
+
+    try {
+      int proxyPort = Integer.parseInt(proxyPortStr.trim());
+      log.debug("TMDB API 使用代理: {}:{}", proxyHost.trim(), proxyPort);
+      return new HttpHost(proxyHost.trim(), proxyPort);
+    } catch (NumberFormatException e) {
+      log.warn("代理端口配置无效: {}, 将不使用代理", proxyPortStr);
+      return null;
+    }
+  }
+
+  /**
+   * 构建RestTemplate并添加公共拦截器
+   *
+   * @param factory 请求工厂
+   * @return RestTemplate实例
+   */
+  private RestTemplate buildRestTemplate(HttpComponentsClientHttpRequestFactory factory) {
     RestTemplate restTemplate = new RestTemplate(factory);
 
     // 添加拦截器
@@ -55,7 +296,7 @@ public class RestTemplateConfig {
     // 添加用户代理拦截器
     interceptors.add(
         (request, body, execution) -> {
-          request.getHeaders().set("User-Agent", "OpenList-STRM/1.0");
+          request.getHeaders().set("User-Agent", USER_AGENT);
           return execution.execute(request, body);
         });
 
@@ -0,0 +1,28 @@
+package com.hienao.openlist2strm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 刮削线程池配置
+ *
+ * <p>STRM文件生成在任务线程上按磁盘速度进行，刮削提交到独立的有界队列由工作线程并行处理
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.scraping")
+public class ScrapingProperties {
+
+  /** 刮削工作线程数 */
+  private int workerThreads = 4;
+
+  /** 刮削队列容量，队列满时由任务线程自行执行刮削，从而限制遍历速度 */
+  private int queueCapacity = 1000;
+
+  /** 复制已有刮削信息（NFO和图片）时的并发下载数 */
+  private int sidecarCopyThreads = 4;
+}
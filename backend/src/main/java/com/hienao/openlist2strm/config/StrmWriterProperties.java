@@ -0,0 +1,25 @@
+package com.hienao.openlist2strm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * STRM文件写入线程池配置
+ *
+ * <p>任务线程按目录把STRM文件交给写入线程批量写出，网络挂载的输出目录上写入不再阻塞遍历
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.strm-writer")
+public class StrmWriterProperties {
+
+  /** 写入工作线程数 */
+  private int ioThreads = 4;
+
+  /** 待写入的目录批次队列容量，队列满时由任务线程自行写入，从而限制遍历速度 */
+  private int queueCapacity = 256;
+}
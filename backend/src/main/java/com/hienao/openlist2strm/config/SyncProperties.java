@@ -0,0 +1,28 @@
+package com.hienao.openlist2strm.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * STRM同步配置
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.sync")
+public class SyncProperties {
+
+  /** 全量执行方式 */
+  private FullSyncMode fullSyncMode = FullSyncMode.MARK_SWEEP;
+
+  /** 全量执行方式 */
+  public enum FullSyncMode {
+    /** 校验并补齐所有STRM文件，结束时只清理本次未确认的文件，保留仍然有效的刮削信息 */
+    MARK_SWEEP,
+    /** 先清空STRM目录，再重新生成所有文件并重新刮削 */
+    WIPE
+  }
+}
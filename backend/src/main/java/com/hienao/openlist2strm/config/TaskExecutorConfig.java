@@ -49,4 +49,55 @@ public class TaskExecutorConfig {
 
     return executor;
   }
+
+  /** 刮削线程池 线程数和队列容量可配置，队列满时由提交任务的线程执行 */
+  @Bean("scrapingExecutor")
+  public Executor scrapingExecutor(ScrapingProperties scrapingProperties) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    int workerThreads = Math.max(1, scrapingProperties.getWorkerThreads());
+    executor.setCorePoolSize(workerThreads);
+    executor.setMaxPoolSize(workerThreads);
+    executor.setQueueCapacity(Math.max(1, scrapingProperties.getQueueCapacity()));
+    executor.setThreadNamePrefix("scraping-");
+    // 拒绝策略：调用者运行，队列满时任务线程暂停遍历，形成背压。
+    // 与CallerRunsPolicy不同，线程池关闭时也不丢弃任务，保证任务能等到所有刮削结束
+    executor.setRejectedExecutionHandler((runnable, pool) -> runnable.run());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(60);
+
+    executor.initialize();
+
+    log.info(
+        "刮削线程池初始化完成 - 线程数: {}, 队列容量: {}",
+        executor.getCorePoolSize(),
+        executor.getQueueCapacity());
+
+    return executor;
+  }
+
+  /** STRM文件写入线程池 线程数和队列容量可配置，队列满时由提交任务的线程执行 */
+  @Bean("strmWriteExecutor")
+  public Executor strmWriteExecutor(StrmWriterProperties strmWriterProperties) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    int ioThreads = Math.max(1, strmWriterProperties.getIoThreads());
+    executor.setCorePoolSize(ioThreads);
+    executor.setMaxPoolSize(ioThreads);
+    executor.setQueueCapacity(Math.max(1, strmWriterProperties.getQueueCapacity()));
+    executor.setThreadNamePrefix("strm-writer-");
+    // 与刮削线程池相同，队列满或线程池关闭时由任务线程自行写入，不丢弃写入批次
+    executor.setRejectedExecutionHandler((runnable, pool) -> runnable.run());
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(60);
+
+    executor.initialize();
+
+    log.info(
+        "STRM写入线程池初始化完成 - 线程数: {}, 队列容量: {}",
+        executor.getCorePoolSize(),
+        executor.getQueueCapacity());
+
+    return executor;
+  }
 }
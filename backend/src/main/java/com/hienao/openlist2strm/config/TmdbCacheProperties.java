@@ -0,0 +1,38 @@
+package com.hienao.openlist2strm.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * TMDB响应缓存配置
+ *
+ * <p>一级缓存为进程内Caffeine缓存，二级缓存持久化在SQLite的 tmdb_cache 表中，重启后仍然有效
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.tmdb-cache")
+public class TmdbCacheProperties {
+
+  /** 是否启用缓存 */
+  private boolean enabled = true;
+
+  /** 一级缓存最大条目数 */
+  private long memoryMaxSize = 5000;
+
+  /** 一级缓存有效期，单个条目不超过其二级缓存的剩余有效期 */
+  private Duration memoryTtl = Duration.ofHours(6);
+
+  /** 搜索结果（search/movie、search/tv）的有效期 */
+  private Duration searchTtl = Duration.ofDays(7);
+
+  /** 没有结果的搜索的有效期，较短以便TMDB补充条目后能重新搜索到 */
+  private Duration emptySearchTtl = Duration.ofHours(1);
+
+  /** 电影、电视剧详情的有效期 */
+  private Duration detailTtl = Duration.ofDays(30);
+}
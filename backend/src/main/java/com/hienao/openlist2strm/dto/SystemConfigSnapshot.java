@@ -0,0 +1,123 @@
+package com.hienao.openlist2strm.dto;
+
+import com.hienao.openlist2strm.util.CompiledScrapingRules;
+import com.hienao.openlist2strm.util.MediaExtensionMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * 系统配置快照
+ *
+ * <p>systemconf.json 解析并合并默认值后的不可变视图，所有Map和List均不可修改，可在多线程间安全共享。
+ * 热点路径上常用的配置项在构建时解析为强类型字段，避免每次调用时重复类型转换。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Getter
+public final class SystemConfigSnapshot {
+
+  /** 完整配置 */
+  private final Map<String, Object> config;
+
+  /** 媒体文件后缀（小写） */
+  private final List<String> mediaExtensions;
+
+  /** 按媒体文件后缀预编译的匹配器 */
+  private final MediaExtensionMatcher mediaExtensionMatcher;
+
+  /** TMDB配置 */
+  private final Map<String, Object> tmdbConfig;
+
+  /** 刮削配置 */
+  private final Map<String, Object> scrapingConfig;
+
+  /** AI识别配置 */
+  private final Map<String, Object> aiConfig;
+
+  /** 刮削正则配置 */
+  private final Map<String, Object> scrapingRegexConfig;
+
+  /** 按优先级排序并预编译的刮削正则 */
+  private final CompiledScrapingRules compiledScrapingRules;
+
+  /** 日志配置 */
+  private final Map<String, Object> logConfig;
+
+  /** TMDB API请求超时时间（秒） */
+  private final int tmdbTimeoutSeconds;
+
+  /** 是否启用数据上报 */
+  private final boolean dataReportEnabled;
+
+  private SystemConfigSnapshot(Map<String, Object> config) {
+    this.config = config;
+    this.mediaExtensions = parseMediaExtensions(config.get("mediaExtensions"));
+    this.mediaExtensionMatcher = MediaExtensionMatcher.of(mediaExtensions);
+    this.tmdbConfig = section(config, "tmdb");
+    this.scrapingConfig = section(config, "scraping");
+    this.aiConfig = section(config, "ai");
+    this.scrapingRegexConfig = section(config, "scrapingRegex");
+    this.compiledScrapingRules = CompiledScrapingRules.of(scrapingRegexConfig);
+    this.logConfig = section(config, "log");
+
+    Object timeout = tmdbConfig.get("timeout");
+    this.tmdbTimeoutSeconds = timeout instanceof Number number ? number.intValue() : 30;
+
+    Object reportUsageData = logConfig.get("reportUsageData");
+    this.dataReportEnabled = reportUsageData == null || Boolean.TRUE.equals(reportUsageData);
+  }
+
+  /**
+   * 基于配置Map创建快照，传入的Map会被深拷贝
+   *
+   * @param config 配置Map
+   * @return 配置快照
+   */
+  @SuppressWarnings("unchecked")
+  public static SystemConfigSnapshot of(Map<String, Object> config) {
+    return new SystemConfigSnapshot((Map<String, Object>) deepUnmodifiableCopy(config));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> section(Map<String, Object> config, String key) {
+    Object value = config.get(key);
+    return value instanceof Map<?, ?> map ? (Map<String, Object>) map : Collections.emptyMap();
+  }
+
+  private static List<String> parseMediaExtensions(Object value) {
+    if (!(value instanceof List<?> list)) {
+      return Collections.emptyList();
+    }
+    List<String> extensions = new ArrayList<>(list.size());
+    for (Object extension : list) {
+      if (extension != null) {
+        extensions.add(extension.toString().toLowerCase(Locale.ROOT));
+      }
+    }
+    return Collections.unmodifiableList(extensions);
+  }
+
+  private static Object deepUnmodifiableCopy(Object value) {
+    if (value instanceof Map<?, ?> map) {
+      Map<Object, Object> copy = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        copy.put(entry.getKey(), deepUnmodifiableCopy(entry.getValue()));
+      }
+      return Collections.unmodifiableMap(copy);
+    }
+    if (value instanceof List<?> list) {
+      List<Object> copy = new ArrayList<>(list.size());
+      for (Object element : list) {
+        copy.add(deepUnmodifiableCopy(element));
+      }
+      return Collections.unmodifiableList(copy);
+    }
+    return value;
+  }
+}
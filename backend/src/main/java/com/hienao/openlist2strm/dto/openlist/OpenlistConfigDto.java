@@ -1,5 +1,7 @@
 package com.hienao.openlist2strm.dto.openlist;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
@@ -47,4 +49,10 @@ public class OpenlistConfigDto {
 
   /** 是否启用URL编码：true-启用（默认），false-禁用 */
   private Boolean enableUrlEncoding;
+
+  /** 目录遍历并发数：同时请求 api/fs/list 的数量上限，1 表示串行遍历 */
+  @Min(value = 1, message = "目录遍历并发数不能小于1") @Max(value = 32, message = "目录遍历并发数不能超过32") private Integer crawlConcurrency;
+
+  /** 目录列表分页大小：0-不分页（一次性获取），大于0时按页请求 */
+  @Min(value = 0, message = "目录列表分页大小不能小于0") @Max(value = 10000, message = "目录列表分页大小不能超过10000") private Integer listPageSize;
 }
@@ -0,0 +1,83 @@
+package com.hienao.openlist2strm.dto.tmdb;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * TMDB 电视剧季详情DTO，一次请求返回该季所有分集
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+public class TmdbTvSeasonDetail {
+
+  /** TMDB ID */
+  private Integer id;
+
+  /** 名称 */
+  private String name;
+
+  /** 概述 */
+  private String overview;
+
+  /** 海报路径 */
+  @JsonProperty("poster_path")
+  private String posterPath;
+
+  /** 季号 */
+  @JsonProperty("season_number")
+  private Integer seasonNumber;
+
+  /** 首播日期 */
+  @JsonProperty("air_date")
+  private String airDate;
+
+  /** 分集列表 */
+  private List<Episode> episodes;
+
+  /** 分集详情 */
+  @Data
+  public static class Episode {
+    private Integer id;
+    private String name;
+    private String overview;
+
+    @JsonProperty("season_number")
+    private Integer seasonNumber;
+
+    @JsonProperty("episode_number")
+    private Integer episodeNumber;
+
+    @JsonProperty("air_date")
+    private String airDate;
+
+    @JsonProperty("still_path")
+    private String stillPath;
+
+    private Integer runtime;
+
+    @JsonProperty("vote_average")
+    private Double voteAverage;
+
+    @JsonProperty("vote_count")
+    private Integer voteCount;
+  }
+
+  /**
+   * 查找分集
+   *
+   * @param episodeNumber 集号
+   * @return 分集详情，不存在时返回null
+   */
+  public Episode findEpisode(Integer episodeNumber) {
+    if (episodes == null || episodeNumber == null) {
+      return null;
+    }
+    return episodes.stream()
+        .filter(episode -> episodeNumber.equals(episode.getEpisodeNumber()))
+        .findFirst()
+        .orElse(null);
+  }
+}
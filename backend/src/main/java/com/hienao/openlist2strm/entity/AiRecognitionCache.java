@@ -0,0 +1,33 @@
+package com.hienao.openlist2strm.entity;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * AI文件名识别结果缓存实体类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class AiRecognitionCache {
+
+  /** 缓存键：提示词版本、规范化目录路径和规范化文件名 */
+  private String cacheKey;
+
+  /** AI是否识别成功 */
+  private Boolean success;
+
+  /** 识别结果JSON */
+  private String resultJson;
+
+  /** 过期时间（毫秒时间戳） */
+  private Long expiresAt;
+
+  /** 创建时间 */
+  private LocalDateTime createdAt;
+}
@@ -0,0 +1,41 @@
+package com.hienao.openlist2strm.entity;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * 目录水位实体类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class DirectoryWatermark {
+
+  /** 任务配置ID */
+  private Long taskId;
+
+  /** OpenList目录路径 */
+  private String path;
+
+  /** 父目录列表中该目录的修改时间（毫秒时间戳），未知时为0 */
+  private Long modifiedTime;
+
+  /** 父目录列表中该目录的大小 */
+  private Long fileSize;
+
+  /** 上次列出该目录时的条目数 */
+  private Integer entryCount;
+
+  /** 上次列出该目录时子项名称、大小和修改时间的摘要 */
+  private String childrenHash;
+
+  /** 记录水位时任务和OpenList配置的摘要 */
+  private String configHash;
+
+  /** 上次实际列出该目录的时间（毫秒时间戳） */
+  private Long verifiedAt;
+}
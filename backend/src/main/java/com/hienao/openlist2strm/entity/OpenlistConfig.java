@@ -45,4 +45,10 @@ public class OpenlistConfig {
 
   /** 是否启用URL编码：1-启用（默认），0-禁用 */
   private Boolean enableUrlEncoding;
+
+  /** 目录遍历并发数：同时请求 api/fs/list 的数量上限，为空时使用默认值 */
+  private Integer crawlConcurrency;
+
+  /** 目录列表分页大小：0-不分页（一次性获取），大于0时按页请求 */
+  private Integer listPageSize;
 }
@@ -0,0 +1,42 @@
+package com.hienao.openlist2strm.entity;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * STRM同步清单实体类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class StrmManifest {
+
+  /** 任务配置ID */
+  private Long taskId;
+
+  /** OpenList中的源文件完整路径 */
+  private String sourcePath;
+
+  /** 源文件大小（字节） */
+  private Long fileSize;
+
+  /** 源文件修改时间（毫秒时间戳），未知时为0 */
+  private Long modifiedTime;
+
+  /** 生成的STRM文件本地路径 */
+  private String strmPath;
+
+  /** 写入STRM文件的URL的摘要 */
+  private String urlHash;
+
+  /** 是否已确认刮削完成 */
+  private Boolean scraped;
+
+  /** 更新时间 */
+  private LocalDateTime updatedAt;
+}
@@ -0,0 +1,30 @@
+package com.hienao.openlist2strm.entity;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * TMDB响应缓存实体类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+public class TmdbCache {
+
+  /** 缓存键：接口、查询参数和语言 */
+  private String cacheKey;
+
+  /** TMDB接口返回的原始JSON */
+  private String responseBody;
+
+  /** 过期时间（毫秒时间戳） */
+  private Long expiresAt;
+
+  /** 创建时间 */
+  private LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.hienao.openlist2strm.exception;
+
+/**
+ * OpenList API调用异常，携带HTTP状态码或响应体中的业务码，用于判断是否可以重试
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class OpenlistApiException extends BusinessException {
+
+  @java.io.Serial private static final long serialVersionUID = 4715290838271538624L;
+
+  /** HTTP状态码或响应体code，未知时为0 */
+  private final int code;
+
+  public OpenlistApiException(int code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  public int getCode() {
+    return code;
+  }
+}
@@ -0,0 +1,40 @@
+package com.hienao.openlist2strm.mapper;
+
+import com.hienao.openlist2strm.entity.AiRecognitionCache;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * AI文件名识别结果缓存Mapper接口
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Mapper
+public interface AiRecognitionCacheMapper {
+
+  /**
+   * 查询未过期的缓存
+   *
+   * @param cacheKey 缓存键
+   * @param now 当前时间（毫秒时间戳）
+   * @return 缓存记录，不存在或已过期时返回null
+   */
+  AiRecognitionCache selectValid(@Param("cacheKey") String cacheKey, @Param("now") long now);
+
+  /**
+   * 插入或覆盖缓存
+   *
+   * @param cache 缓存记录
+   * @return 影响行数
+   */
+  int upsert(AiRecognitionCache cache);
+
+  /**
+   * 删除已过期的缓存
+   *
+   * @param now 当前时间（毫秒时间戳）
+   * @return 影响行数
+   */
+  int deleteExpired(@Param("now") long now);
+}
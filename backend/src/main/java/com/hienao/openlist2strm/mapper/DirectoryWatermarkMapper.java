@@ -0,0 +1,49 @@
+package com.hienao.openlist2strm.mapper;
+
+import com.hienao.openlist2strm.entity.DirectoryWatermark;
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 目录水位Mapper接口
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Mapper
+public interface DirectoryWatermarkMapper {
+
+  /**
+   * 查询任务的全部目录水位
+   *
+   * @param taskId 任务配置ID
+   * @return 目录水位列表
+   */
+  List<DirectoryWatermark> selectByTaskId(@Param("taskId") Long taskId);
+
+  /**
+   * 批量插入或覆盖目录水位
+   *
+   * @param watermarks 目录水位
+   * @return 影响行数
+   */
+  int batchUpsert(@Param("watermarks") List<DirectoryWatermark> watermarks);
+
+  /**
+   * 批量删除目录水位
+   *
+   * @param taskId 任务配置ID
+   * @param paths 目录路径
+   * @return 影响行数
+   */
+  int deleteByPaths(@Param("taskId") Long taskId, @Param("paths") List<String> paths);
+
+  /**
+   * 删除任务的全部目录水位
+   *
+   * @param taskId 任务配置ID
+   * @return 影响行数
+   */
+  int deleteByTaskId(@Param("taskId") Long taskId);
+}
@@ -0,0 +1,50 @@
+package com.hienao.openlist2strm.mapper;
+
+import com.hienao.openlist2strm.entity.StrmManifest;
+import java.util.List;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * STRM同步清单Mapper接口
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Mapper
+public interface StrmManifestMapper {
+
+  /**
+   * 查询任务的全部清单条目
+   *
+   * @param taskId 任务配置ID
+   * @return 清单条目列表
+   */
+  List<StrmManifest> selectByTaskId(@Param("taskId") Long taskId);
+
+  /**
+   * 批量插入或覆盖清单条目
+   *
+   * @param entries 清单条目
+   * @return 影响行数
+   */
+  int batchUpsert(@Param("entries") List<StrmManifest> entries);
+
+  /**
+   * 批量删除清单条目
+   *
+   * @param taskId 任务配置ID
+   * @param sourcePaths 源文件路径
+   * @return 影响行数
+   */
+  int deleteBySourcePaths(
+      @Param("taskId") Long taskId, @Param("sourcePaths") List<String> sourcePaths);
+
+  /**
+   * 删除任务的全部清单条目
+   *
+   * @param taskId 任务配置ID
+   * @return 影响行数
+   */
+  int deleteByTaskId(@Param("taskId") Long taskId);
+}
@@ -3,12 +3,29 @@ package com.hienao.openlist2strm.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import com.hienao.openlist2strm.util.AiResponseParser;
+import com.hienao.openlist2strm.util.TokenBucketRateLimiter;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
@@ -17,11 +34,16 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * AI 文件名识别服务 使用 OpenAI 格式的接口来识别和标准化影视文件名
  *
+ * <p>请求按配置的 QPM 通过令牌桶限流，到达许可时间后在虚拟线程上并发发送，调用方拿到 future 而不阻塞等待限流。
+ * 接口返回 429 时按 Retry-After 暂停发放许可并重试。同一目录的多个文件可合并为一次请求批量识别，
+ * 批量响应中缺失或无法解析的条目回退为单文件识别。识别结论持久化缓存，同一文件再次识别时不再请求 AI。
+ *
  * @author hienao
  * @since 2024-01-01
  */
@@ -31,127 +53,453 @@ import org.springframework.web.client.RestTemplate;
 public class AiFileNameRecognitionService {
 
   private final SystemConfigService systemConfigService;
-  private final RestTemplate restTemplate;
+  private final RestTemplate aiRestTemplate;
   private final ObjectMapper objectMapper;
-
-  // QPM 限制跟踪
-  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
-  private final Map<String, LocalDateTime> lastResetTimes = new ConcurrentHashMap<>();
+  private final AiRecognitionCacheService aiRecognitionCacheService;
+
+  /** 单个识别请求最多尝试次数（含首次），仅限流响应会重试 */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /** 限流响应未提供 Retry-After 时的暂停时间（毫秒） */
+  private static final long DEFAULT_RETRY_AFTER_MILLIS = 10_000;
+
+  /** Retry-After 暂停时间上限（毫秒） */
+  private static final long MAX_RETRY_AFTER_MILLIS = 120_000;
+
+  /** QPM 限流器，速率随配置更新 */
+  private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(60, 5);
+
+  /** 延迟派发未到许可时间的请求 */
+  private final ScheduledExecutorService dispatchScheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "ai-dispatch");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /** 发送 AI 请求，并发数由限流器和 AI 连接池共同约束 */
+  private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /** 批量识别时追加到系统提示词后的响应约定 */
+  private static final String BATCH_PROMPT_SUFFIX =
+      "\n\n本次请求包含多个文件，用户消息中每行一个文件，行首为从0开始的编号。请按上述规则逐个识别，"
+          + "只返回一个 JSON 对象 {\"results\": [...]}，results 数组中每个元素对应一个文件，"
+          + "包含 index 字段（文件编号）以及上述单个文件要求返回的全部字段。";
+
+  /** 默认每批文件数 */
+  private static final int DEFAULT_BATCH_SIZE = 20;
+
+  /** 单文件请求的最大输出 token 数 */
+  private static final int SINGLE_MAX_TOKENS = 300;
+
+  /** 批量请求的最大输出 token 数 */
+  private static final int BATCH_MAX_TOKENS = 4096;
+
+  /** 尚未完成的识别结果，服务关闭时统一以 null 完成，避免调用方永久等待 */
+  private final Set<CompletableFuture<AiRecognitionResult>> pendingResults =
+      ConcurrentHashMap.newKeySet();
+
+  /** AI 接口配置 */
+  private record AiEndpoint(
+      String baseUrl, String apiKey, String model, Map<String, Object> aiConfig) {}
+
+  /** 单文件识别请求 */
+  private record RecognitionRequest(
+      AiEndpoint endpoint,
+      String originalFileName,
+      String cacheKey,
+      String inputText,
+      CompletableFuture<AiRecognitionResult> result) {}
+
+  /** 批量识别请求，fileNames 与 results 一一对应 */
+  private record BatchRecognitionRequest(
+      AiEndpoint endpoint,
+      String directoryPath,
+      List<String> fileNames,
+      List<CompletableFuture<AiRecognitionResult>> results) {}
 
   /**
-   * 使用 AI 识别文件名
+   * 使用 AI 识别文件名，阻塞等待识别完成
    *
    * @param originalFileName 原始文件名
    * @param directoryPath 目录路径（可选，用于提供上下文）
    * @return 识别后的标准化文件名，如果识别失败或不可用则返回 null
    */
   public AiRecognitionResult recognizeFileName(String originalFileName, String directoryPath) {
+    return recognizeFileNameAsync(originalFileName, directoryPath).join();
+  }
+
+  /**
+   * 异步使用 AI 识别文件名，请求在获得 QPM 许可后发送
+   *
+   * @param originalFileName 原始文件名
+   * @param directoryPath 目录路径（可选，用于提供上下文）
+   * @return 识别结果的 future，识别失败或不可用时结果为 null，不会异常完成
+   */
+  public CompletableFuture<AiRecognitionResult> recognizeFileNameAsync(
+      String originalFileName, String directoryPath) {
     try {
-      Map<String, Object> aiConfig = systemConfigService.getAiConfig();
+      AiEndpoint endpoint = resolveEndpoint(originalFileName);
+      if (endpoint == null) {
+        return CompletableFuture.completedFuture(null);
+      }
 
-      // 检查是否启用 AI 识别
-      boolean enabled = (Boolean) aiConfig.getOrDefault("enabled", false);
-      if (!enabled) {
-        log.debug("AI 识别功能未启用，跳过文件名识别: {}", originalFileName);
-        return null;
+      AiRecognitionResult cached =
+          aiRecognitionCacheService.get(buildCacheKey(endpoint, originalFileName, directoryPath));
+      if (cached != null) {
+        log.info("使用缓存的 AI 识别结果: {} -> {}", originalFileName, cached);
+        return CompletableFuture.completedFuture(cached);
       }
+      return submitSingle(endpoint, originalFileName, directoryPath, track());
 
-      // 检查必要配置
-      String baseUrl = (String) aiConfig.get("baseUrl");
-      String apiKey = (String) aiConfig.get("apiKey");
-      String model = (String) aiConfig.getOrDefault("model", "gpt-3.5-turbo");
-
-      if (baseUrl == null
-          || baseUrl.trim().isEmpty()
-          || apiKey == null
-          || apiKey.trim().isEmpty()) {
-        log.warn(
-            "AI 识别配置不完整，跳过文件名识别: baseUrl={}, apiKey={}", baseUrl, apiKey != null ? "***" : null);
-        return null;
+    } catch (Exception e) {
+      log.error("AI 文件名识别失败: {}", originalFileName, e);
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+
+  /**
+   * 批量异步识别同一目录下的多个文件名，每批文件合并为一次 AI 请求，批大小取 AI 配置中的 batchSize
+   *
+   * @param fileNames 文件名列表
+   * @param directoryPath 目录路径（可选，用于提供上下文）
+   * @return 文件名到识别结果 future 的映射，AI 未启用或配置不完整时为空
+   */
+  public Map<String, CompletableFuture<AiRecognitionResult>> recognizeFileNamesAsync(
+      List<String> fileNames, String directoryPath) {
+    Map<String, CompletableFuture<AiRecognitionResult>> results = new LinkedHashMap<>();
+    if (fileNames == null || fileNames.isEmpty()) {
+      return results;
+    }
+
+    try {
+      AiEndpoint endpoint = resolveEndpoint(directoryPath);
+      if (endpoint == null) {
+        return results;
+      }
+
+      // 已缓存的文件直接返回结果，只对未命中的文件发起请求
+      List<String> distinctNames = new ArrayList<>();
+      for (String fileName : new LinkedHashSet<>(fileNames)) {
+        AiRecognitionResult cached =
+            aiRecognitionCacheService.get(buildCacheKey(endpoint, fileName, directoryPath));
+        if (cached != null) {
+          results.put(fileName, CompletableFuture.completedFuture(cached));
+        } else {
+          distinctNames.add(fileName);
+        }
+      }
+      if (distinctNames.isEmpty()) {
+        log.info("AI 识别全部命中缓存: {} 个文件，目录: {}", results.size(), directoryPath);
+        return results;
+      }
+
+      Object batchSizeValue = endpoint.aiConfig().get("batchSize");
+      int batchSize =
+          batchSizeValue instanceof Number number
+              ? Math.max(1, number.intValue())
+              : DEFAULT_BATCH_SIZE;
+
+      for (int from = 0; from < distinctNames.size(); from += batchSize) {
+        List<String> batch =
+            distinctNames.subList(from, Math.min(distinctNames.size(), from + batchSize));
+        List<CompletableFuture<AiRecognitionResult>> batchResults = new ArrayList<>(batch.size());
+        for (String fileName : batch) {
+          CompletableFuture<AiRecognitionResult> result = track();
+          results.put(fileName, result);
+          batchResults.add(result);
+        }
+
+        if (batch.size() == 1) {
+          submitSingle(endpoint, batch.get(0), directoryPath, batchResults.get(0));
+        } else {
+          BatchRecognitionRequest request =
+              new BatchRecognitionRequest(
+                  endpoint, directoryPath, List.copyOf(batch), batchResults);
+          dispatch(
+              endpoint.aiConfig(),
+              () -> executeBatch(request, 1),
+              () -> completeAll(batchResults));
+        }
       }
+      log.info(
+          "已提交 AI 批量识别: {} 个文件，{} 个命中缓存，目录: {}",
+          distinctNames.size(),
+          results.size() - distinctNames.size(),
+          directoryPath);
+
+    } catch (Exception e) {
+      log.error("AI 批量文件名识别失败: {}", directoryPath, e);
+      completeAll(new ArrayList<>(results.values()));
+    }
+    return results;
+  }
+
+  /**
+   * 读取 AI 配置，未启用或配置不完整时返回 null
+   *
+   * @param subject 识别对象，用于日志
+   * @return AI 接口配置
+   */
+  private AiEndpoint resolveEndpoint(String subject) {
+    Map<String, Object> aiConfig = systemConfigService.getAiConfig();
+
+    // 检查是否启用 AI 识别
+    boolean enabled = (Boolean) aiConfig.getOrDefault("enabled", false);
+    if (!enabled) {
+      log.debug("AI 识别功能未启用，跳过文件名识别: {}", subject);
+      return null;
+    }
+
+    // 检查必要配置
+    String baseUrl = (String) aiConfig.get("baseUrl");
+    String apiKey = (String) aiConfig.get("apiKey");
+    String model = (String) aiConfig.getOrDefault("model", "gpt-3.5-turbo");
+
+    if (baseUrl == null
+        || baseUrl.trim().isEmpty()
+        || apiKey == null
+        || apiKey.trim().isEmpty()) {
+      log.warn(
+          "AI 识别配置不完整，跳过文件名识别: baseUrl={}, apiKey={}", baseUrl, apiKey != null ? "***" : null);
+      return null;
+    }
+
+    return new AiEndpoint(baseUrl, apiKey, model, aiConfig);
+  }
 
-      // 等待 QPM 限制
-      waitForQpmLimit(aiConfig);
+  /** 构建识别结果缓存键，模型或提示词变化后旧结果不再命中 */
+  private String buildCacheKey(AiEndpoint endpoint, String fileName, String contextPath) {
+    return aiRecognitionCacheService.buildCacheKey(
+        fileName,
+        contextPath,
+        endpoint.model(),
+        Objects.toString(endpoint.aiConfig().get("prompt"), ""));
+  }
+
+  /** 创建并登记识别结果 future */
+  private CompletableFuture<AiRecognitionResult> track() {
+    CompletableFuture<AiRecognitionResult> result = new CompletableFuture<>();
+    pendingResults.add(result);
+    result.whenComplete((value, error) -> pendingResults.remove(result));
+    return result;
+  }
 
-      // 构建输入文本
-      String inputText = buildInputText(originalFileName, directoryPath);
+  private void completeAll(List<CompletableFuture<AiRecognitionResult>> results) {
+    for (CompletableFuture<AiRecognitionResult> result : results) {
+      result.complete(null);
+    }
+  }
 
-      // 调用 AI 接口
-      AiRecognitionResult result = callAiApi(baseUrl, apiKey, model, aiConfig, inputText);
+  /** 提交单文件识别，结果写入给定的 future */
+  private CompletableFuture<AiRecognitionResult> submitSingle(
+      AiEndpoint endpoint,
+      String originalFileName,
+      String directoryPath,
+      CompletableFuture<AiRecognitionResult> result) {
+    RecognitionRequest request =
+        new RecognitionRequest(
+            endpoint,
+            originalFileName,
+            buildCacheKey(endpoint, originalFileName, directoryPath),
+            buildInputText(originalFileName, directoryPath),
+            result);
+    dispatch(endpoint.aiConfig(), () -> execute(request, 1), () -> result.complete(null));
+    return result;
+  }
+
+  /**
+   * 预约 QPM 许可，到达许可时间后在虚拟线程上执行请求
+   *
+   * @param aiConfig AI 配置，用于更新 QPM 限制
+   * @param call 请求逻辑
+   * @param onRejected 服务已关闭、请求无法执行时的处理
+   */
+  private void dispatch(Map<String, Object> aiConfig, Runnable call, Runnable onRejected) {
+    Runnable guarded =
+        () -> {
+          // 预约许可后接口返回了限流，等待暂停结束再发送
+          if (rateLimiter.getPauseRemainingNanos() > 0) {
+            dispatch(aiConfig, call, onRejected);
+          } else {
+            call.run();
+          }
+        };
+    try {
+      updateRateLimit(aiConfig);
+      long delayNanos = rateLimiter.reserve();
+      if (delayNanos <= 0) {
+        requestExecutor.execute(guarded);
+      } else {
+        log.debug("AI 请求等待 QPM 许可 {} ms", TimeUnit.NANOSECONDS.toMillis(delayNanos));
+        dispatchScheduler.schedule(
+            () -> {
+              try {
+                requestExecutor.execute(guarded);
+              } catch (RejectedExecutionException e) {
+                onRejected.run();
+              }
+            },
+            delayNanos,
+            TimeUnit.NANOSECONDS);
+      }
+    } catch (RejectedExecutionException e) {
+      log.warn("AI 识别服务已关闭，跳过文件名识别");
+      onRejected.run();
+    }
+  }
+
+  /** 发送单文件识别请求，限流响应时暂停限流器并重新派发 */
+  private void execute(RecognitionRequest request, int attempt) {
+    String originalFileName = request.originalFileName();
+    try {
+      String content =
+          callAiApi(
+              request.endpoint(),
+              (String) request.endpoint().aiConfig().get("prompt"),
+              request.inputText(),
+              SINGLE_MAX_TOKENS);
+      AiRecognitionResult result =
+          content != null ? AiResponseParser.parseJsonResponse(content) : null;
+      log.debug("AI API 解析后响应: {}", result);
 
       if (result != null && result.isSuccess()) {
         log.info("AI 识别成功: {} -> {}", originalFileName, result);
-        return result;
       } else {
         log.info(
             "AI 无法识别文件名: {} -> {}", originalFileName, result != null ? result.getReason() : "未知错误");
-        return result;
       }
+      aiRecognitionCacheService.put(request.cacheKey(), result);
+      request.result().complete(result);
+
+    } catch (HttpStatusCodeException e) {
+      if (!pauseForRateLimit(e, attempt, originalFileName)) {
+        request.result().complete(null);
+        return;
+      }
+      dispatch(
+          request.endpoint().aiConfig(),
+          () -> execute(request, attempt + 1),
+          () -> request.result().complete(null));
 
     } catch (Exception e) {
       log.error("AI 文件名识别失败: {}", originalFileName, e);
-      return null;
+      request.result().complete(null);
     }
   }
 
-  /** 等待 QPM 限制，智能控制请求速度 */
-  private void waitForQpmLimit(Map<String, Object> aiConfig) {
-    int qpmLimit = (Integer) aiConfig.getOrDefault("qpmLimit", 60);
-    String key = "ai_requests";
+  /** 发送批量识别请求，缺失或无法解析的条目回退为单文件识别 */
+  private void executeBatch(BatchRecognitionRequest request, int attempt) {
+    List<String> fileNames = request.fileNames();
+    List<AiRecognitionResult> parsed;
+    try {
+      String systemPrompt =
+          Objects.toString(request.endpoint().aiConfig().get("prompt"), "") + BATCH_PROMPT_SUFFIX;
+      String content =
+          callAiApi(
+              request.endpoint(),
+              systemPrompt,
+              buildBatchInputText(fileNames, request.directoryPath()),
+              Math.min(BATCH_MAX_TOKENS, SINGLE_MAX_TOKENS * fileNames.size()));
+      parsed = AiResponseParser.parseBatchResponse(content, fileNames.size());
+
+    } catch (HttpStatusCodeException e) {
+      String subject = fileNames.size() + " 个文件的批量识别";
+      if (!pauseForRateLimit(e, attempt, subject)) {
+        completeAll(request.results());
+        return;
+      }
+      dispatch(
+          request.endpoint().aiConfig(),
+          () -> executeBatch(request, attempt + 1),
+          () -> completeAll(request.results()));
+      return;
 
-    LocalDateTime now = LocalDateTime.now();
-    LocalDateTime lastReset = lastResetTimes.get(key);
+    } catch (Exception e) {
+      log.warn("AI 批量识别失败，回退为单文件识别: {}", e.getMessage());
+      parsed = Collections.nCopies(fileNames.size(), null);
+    }
 
-    // 如果超过一分钟，重置计数器
-    if (lastReset == null || ChronoUnit.MINUTES.between(lastReset, now) >= 1) {
-      requestCounts.put(key, new AtomicInteger(0));
-      lastResetTimes.put(key, now);
-      lastReset = now;
+    int fallbackCount = 0;
+    for (int i = 0; i < fileNames.size(); i++) {
+      AiRecognitionResult result = parsed.get(i);
+      if (result != null) {
+        log.info("AI 批量识别: {} -> {}", fileNames.get(i), result);
+        aiRecognitionCacheService.put(
+            buildCacheKey(request.endpoint(), fileNames.get(i), request.directoryPath()), result);
+        request.results().get(i).complete(result);
+      } else {
+        fallbackCount++;
+        submitSingle(
+            request.endpoint(),
+            fileNames.get(i),
+            request.directoryPath(),
+            request.results().get(i));
+      }
     }
+    log.info("AI 批量识别完成: {} 个文件，{} 个回退为单文件识别", fileNames.size(), fallbackCount);
+  }
 
-    AtomicInteger count = requestCounts.get(key);
-    long secondsElapsed = ChronoUnit.SECONDS.between(lastReset, now);
-
-    // 如果达到限制，等待到下一分钟
-    if (count.get() >= qpmLimit) {
-      long secondsToWait = 60 - secondsElapsed;
-      if (secondsToWait > 0) {
-        log.info("已达到 QPM 限制 ({}/{}), 等待 {} 秒后继续刮削", count.get(), qpmLimit, secondsToWait);
-        try {
-          Thread.sleep(secondsToWait * 1000);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          log.warn("等待 QPM 限制时被中断", e);
-          return;
-        }
+  /**
+   * 限流响应时暂停限流器
+   *
+   * @param e HTTP 状态异常（429）
+   * @param attempt 已尝试次数
+   * @param subject 识别对象，用于日志
+   * @return 是否还可以重试
+   */
+  private boolean pauseForRateLimit(HttpStatusCodeException e, int attempt, String subject) {
+    long retryAfterMillis = parseRetryAfter(e);
+    rateLimiter.pause(TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+    if (attempt >= MAX_ATTEMPTS) {
+      log.warn("AI 接口限流，重试{}次后仍失败: {}", attempt, subject);
+      return false;
+    }
+    log.warn("AI 接口限流，暂停 {} ms 后第{}次重试: {}", retryAfterMillis, attempt, subject);
+    return true;
+  }
 
-        // 重置计数器
-        requestCounts.put(key, new AtomicInteger(0));
-        lastResetTimes.put(key, LocalDateTime.now());
-      }
-    } else {
-      // 智能速度控制：如果请求过快，适当延迟
-      double expectedRate = (double) qpmLimit / 60.0; // 每秒期望请求数
-      double actualRate = secondsElapsed > 0 ? (double) count.get() / secondsElapsed : 0;
-
-      if (actualRate > expectedRate * 1.2) { // 如果超过期望速度的120%
-        long delayMs = (long) (1000 / expectedRate); // 计算延迟时间
-        if (delayMs > 100) { // 最小延迟100ms
-          log.debug("请求速度过快，延迟 {} ms 以控制速度", delayMs);
-          try {
-            Thread.sleep(delayMs);
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("速度控制延迟时被中断", e);
-            return;
-          }
-        }
+  /** 按配置更新 QPM 限制，桶容量为5秒的请求量 */
+  private void updateRateLimit(Map<String, Object> aiConfig) {
+    Object qpmValue = aiConfig.get("qpmLimit");
+    int qpmLimit = qpmValue instanceof Number number ? Math.max(1, number.intValue()) : 60;
+    rateLimiter.setRate(qpmLimit, Math.max(1, qpmLimit / 12));
+  }
+
+  /**
+   * 解析 Retry-After 响应头，支持秒数和 HTTP 日期两种格式
+   *
+   * @param e HTTP 状态异常
+   * @return 暂停时间（毫秒）
+   */
+  private long parseRetryAfter(HttpStatusCodeException e) {
+    HttpHeaders headers = e.getResponseHeaders();
+    String retryAfter = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+    if (retryAfter == null || retryAfter.isBlank()) {
+      return DEFAULT_RETRY_AFTER_MILLIS;
+    }
+
+    long millis;
+    try {
+      millis = Long.parseLong(retryAfter.trim()) * 1000;
+    } catch (NumberFormatException notSeconds) {
+      try {
+        ZonedDateTime retryAt =
+            ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+        millis = Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt).toMillis();
+      } catch (DateTimeParseException notDate) {
+        return DEFAULT_RETRY_AFTER_MILLIS;
       }
     }
+    return Math.min(MAX_RETRY_AFTER_MILLIS, Math.max(0, millis));
+  }
 
-    // 增加请求计数
-    count.incrementAndGet();
-    log.debug("AI 请求计数: {}/{}, 已用时: {}s", count.get(), qpmLimit, secondsElapsed);
+  @PreDestroy
+  public void shutdown() {
+    dispatchScheduler.shutdownNow();
+    requestExecutor.shutdownNow();
+    completeAll(new ArrayList<>(pendingResults));
   }
 
   /** 构建输入文本 */
@@ -167,30 +515,54 @@ public class AiFileNameRecognitionService {
     return input.toString();
   }
 
-  /** 调用 AI API */
-  private AiRecognitionResult callAiApi(
-      String baseUrl, String apiKey, String model, Map<String, Object> aiConfig, String inputText) {
+  /** 构建批量识别的输入文本，每行一个带编号的文件名 */
+  private String buildBatchInputText(List<String> fileNames, String directoryPath) {
+    StringBuilder input = new StringBuilder();
+
+    if (directoryPath != null && !directoryPath.trim().isEmpty()) {
+      input.append("目录路径: ").append(directoryPath).append("\n");
+    }
+
+    for (int i = 0; i < fileNames.size(); i++) {
+      input.append(i).append(". 文件名: ").append(fileNames.get(i)).append("\n");
+    }
+
+    return input.toString();
+  }
+
+  /**
+   * 调用 AI API
+   *
+   * @param endpoint AI 接口配置
+   * @param systemPrompt 系统提示词
+   * @param inputText 用户消息
+   * @param maxTokens 最大输出 token 数
+   * @return 模型返回的消息内容，失败时返回 null；限流响应（429）以异常抛出
+   */
+  private String callAiApi(
+      AiEndpoint endpoint, String systemPrompt, String inputText, int maxTokens) {
     try {
       // 构建请求 URL
+      String baseUrl = endpoint.baseUrl();
       String apiUrl =
           baseUrl.endsWith("/") ? baseUrl + "chat/completions" : baseUrl + "/chat/completions";
 
       // 构建请求头
       HttpHeaders headers = new HttpHeaders();
       headers.setContentType(MediaType.APPLICATION_JSON);
-      headers.setBearerAuth(apiKey);
+      headers.setBearerAuth(endpoint.apiKey());
 
       // 构建请求体
       Map<String, Object> requestBody = new HashMap<>();
-      requestBody.put("model", model);
-      requestBody.put("max_tokens", 300); // 增加 token 数量以适应 JSON 格式
+      requestBody.put("model", endpoint.model());
+      requestBody.put("max_tokens", maxTokens); // 增加 token 数量以适应 JSON 格式
       requestBody.put("temperature", 0.1);
       requestBody.put("response_format", Map.of("type", "json_object")); // 强制 JSON 格式（如果模型支持）
 
       // 构建消息
       Map<String, Object> systemMessage = new HashMap<>();
       systemMessage.put("role", "system");
-      systemMessage.put("content", aiConfig.get("prompt"));
+      systemMessage.put("content", systemPrompt);
 
       Map<String, Object> userMessage = new HashMap<>();
       userMessage.put("role", "user");
@@ -201,7 +573,7 @@ public class AiFileNameRecognitionService {
       // 发送请求
       HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
       ResponseEntity<String> response =
-          restTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
+          aiRestTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
 
       if (!response.getStatusCode().is2xxSuccessful()) {
         log.error("AI API 请求失败，状态码: {}, 响应: {}", response.getStatusCode(), response.getBody());
@@ -220,12 +592,7 @@ public class AiFileNameRecognitionService {
           if (content != null) {
             String result = content.asText().trim();
             log.debug("AI API 原始响应: {}", result);
-
-            // 解析 JSON 响应
-            AiRecognitionResult parsedResult = parseJsonResponse(result);
-            log.debug("AI API 解析后响应: {}", parsedResult);
-
-            return parsedResult;
+            return result;
           }
         }
       }
@@ -233,175 +600,17 @@ public class AiFileNameRecognitionService {
       log.warn("AI API 响应格式异常: {}", response.getBody());
       return null;
 
-    } catch (Exception e) {
+    } catch (HttpStatusCodeException e) {
+      // 限流响应交给调用方暂停并重试
+      if (e.getStatusCode().value() == 429) {
+        throw e;
+      }
       log.error("调用 AI API 失败", e);
       return null;
-    }
-  }
-
-  /**
-   * 解析 AI 的 JSON 响应
-   *
-   * @param rawResponse AI 的原始响应
-   * @return 解析后的AiRecognitionResult对象，如果失败则返回 null
-   */
-  private AiRecognitionResult parseJsonResponse(String rawResponse) {
-    if (rawResponse == null || rawResponse.trim().isEmpty()) {
-      log.warn("AI 响应为空");
-      return null;
-    }
-
-    String response = rawResponse.trim();
-
-    try {
-      // 尝试提取 JSON 部分
-      String jsonContent = extractJsonFromResponse(response);
-      if (jsonContent == null) {
-        log.warn("无法从响应中提取 JSON，跳过处理: {}", response);
-        return null;
-      }
-
-      // 解析 JSON
-      JsonNode jsonNode = objectMapper.readTree(jsonContent);
-
-      // 检查是否成功
-      JsonNode successNode = jsonNode.get("success");
-      if (successNode == null) {
-        log.warn("JSON 响应缺少 success 字段，跳过处理: {}", jsonContent);
-        return null;
-      }
-
-      boolean success = successNode.asBoolean();
-      AiRecognitionResult result = new AiRecognitionResult().setSuccess(success);
-
-      // 提取type字段
-      JsonNode typeNode = jsonNode.get("type");
-      if (typeNode != null && !typeNode.isNull()) {
-        result.setType(typeNode.asText());
-      }
-
-      if (success) {
-        // 成功情况，检查是新格式还是旧格式
-        JsonNode titleNode = jsonNode.get("title");
-        if (titleNode != null && !titleNode.isNull() && !titleNode.asText().trim().isEmpty()) {
-          // 新格式：分离字段
-          result.setTitle(titleNode.asText().trim());
-
-          JsonNode yearNode = jsonNode.get("year");
-          if (yearNode != null && !yearNode.isNull()) {
-            result.setYear(yearNode.asText().trim());
-          }
-
-          JsonNode seasonNode = jsonNode.get("season");
-          if (seasonNode != null && !seasonNode.isNull()) {
-            result.setSeason(seasonNode.asInt());
-          }
-
-          JsonNode episodeNode = jsonNode.get("episode");
-          if (episodeNode != null && !episodeNode.isNull()) {
-            result.setEpisode(episodeNode.asInt());
-          }
-
-          log.debug("成功解析 JSON 响应（新格式）: {}", result);
-          return result;
-        } else {
-          // 旧格式：filename字段
-          JsonNode filenameNode = jsonNode.get("filename");
-          if (filenameNode != null && !filenameNode.isNull()) {
-            String filename = filenameNode.asText().trim();
-            if (!filename.isEmpty()) {
-              result.setFilename(filename);
-              log.debug("成功解析 JSON 响应（旧格式）: {}", result);
-              return result;
-            }
-          }
-          log.warn("JSON 响应标记成功但缺少有效的title或filename字段，跳过处理: {}", jsonContent);
-          return null;
-        }
-      } else {
-        // 失败情况，提取失败原因
-        JsonNode reasonNode = jsonNode.get("reason");
-        String reason = reasonNode != null ? reasonNode.asText() : "未知原因";
-        result.setReason(reason);
-        log.info("AI 无法解析文件名: {}", reason);
-        return result;
-      }
-
     } catch (Exception e) {
-      log.warn("解析 JSON 响应失败，跳过处理: {}, 错误: {}", response, e.getMessage());
-      return null;
-    }
-  }
-
-  /**
-   * 从响应中提取 JSON 内容
-   *
-   * @param response 原始响应
-   * @return JSON 字符串，如果未找到则返回 null
-   */
-  protected String extractJsonFromResponse(String response) {
-    if (response == null || response.trim().isEmpty()) {
-      return null;
-    }
-
-    String content = response.trim();
-
-    // 处理 Markdown 代码块格式 ```json ... ``` 或 ``` ... ```
-    if (content.contains("```")) {
-      // 查找第一个代码块开始
-      int codeBlockStart = content.indexOf("```");
-      if (codeBlockStart != -1) {
-        // 确定内容开始位置
-        int contentStart;
-        String afterTicks = content.substring(codeBlockStart + 3);
-
-        // 检查是否是 ```json 格式
-        if (afterTicks.startsWith("json")) {
-          // 跳过 "json" 和可能的换行符
-          contentStart = codeBlockStart + 7;
-          if (contentStart < content.length() && content.charAt(contentStart) == '\n') {
-            contentStart++;
-          } else if (contentStart < content.length() && content.charAt(contentStart) == '\r') {
-            contentStart++;
-            if (contentStart < content.length() && content.charAt(contentStart) == '\n') {
-              contentStart++;
-            }
-          }
-        } else {
-          // 普通的 ``` 格式，查找换行符
-          int newlinePos = content.indexOf('\n', codeBlockStart + 3);
-          if (newlinePos != -1) {
-            contentStart = newlinePos + 1;
-          } else {
-            contentStart = codeBlockStart + 3;
-          }
-        }
-
-        // 查找代码块结束
-        int codeBlockEnd = content.indexOf("```", contentStart);
-        if (codeBlockEnd != -1) {
-          content = content.substring(contentStart, codeBlockEnd).trim();
-        } else {
-          // 如果没有找到结束标记，取到字符串末尾
-          content = content.substring(contentStart).trim();
-        }
-
-        log.debug("从 Markdown 代码块中提取内容: {}", content);
-      }
-    }
-
-    // 查找 JSON 开始和结束位置
-    int jsonStart = content.indexOf('{');
-    int jsonEnd = content.lastIndexOf('}');
-
-    if (jsonStart == -1 || jsonEnd == -1 || jsonStart >= jsonEnd) {
+      log.error("调用 AI API 失败", e);
       return null;
     }
-
-    String jsonContent = content.substring(jsonStart, jsonEnd + 1);
-    log.debug("提取的 JSON 内容: {}", jsonContent);
-
-    return jsonContent;
   }
 
   /**
@@ -451,7 +660,7 @@ public class AiFileNameRecognitionService {
       // 发送测试请求
       HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
       ResponseEntity<String> response =
-          restTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
+          aiRestTemplate.exchange(apiUrl, HttpMethod.POST, entity, String.class);
 
       boolean success = response.getStatusCode().is2xxSuccessful();
       if (success) {
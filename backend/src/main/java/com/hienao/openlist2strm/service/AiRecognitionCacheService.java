@@ -0,0 +1,198 @@
+package com.hienao.openlist2strm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hienao.openlist2strm.config.AiRecognitionCacheProperties;
+import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
+import com.hienao.openlist2strm.entity.AiRecognitionCache;
+import com.hienao.openlist2strm.mapper.AiRecognitionCacheMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * AI文件名识别结果缓存服务
+ *
+ * <p>缓存键由提示词版本（模型和提示词的摘要）、规范化目录路径和规范化文件名组成，识别成功和"无法识别"的结论都会缓存，
+ * 后者有效期较短。读写失败只记录日志，不影响识别。命中和未命中次数通过Micrometer计数器
+ * ai.recognition.cache 暴露。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+public class AiRecognitionCacheService {
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final AiRecognitionCacheMapper aiRecognitionCacheMapper;
+  private final AiRecognitionCacheProperties properties;
+  private final ObjectMapper objectMapper;
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  public AiRecognitionCacheService(
+      AiRecognitionCacheMapper aiRecognitionCacheMapper,
+      AiRecognitionCacheProperties properties,
+      ObjectMapper objectMapper,
+      MeterRegistry meterRegistry) {
+    this.aiRecognitionCacheMapper = aiRecognitionCacheMapper;
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+    this.hitCounter =
+        Counter.builder("ai.recognition.cache")
+            .description("AI文件名识别缓存查询次数")
+            .tag("result", "hit")
+            .register(meterRegistry);
+    this.missCounter =
+        Counter.builder("ai.recognition.cache")
+            .description("AI文件名识别缓存查询次数")
+            .tag("result", "miss")
+            .register(meterRegistry);
+  }
+
+  /**
+   * 构建缓存键
+   *
+   * @param fileName 文件名
+   * @param contextPath 上下文路径，可以是目录路径或包含文件名的完整路径
+   * @param model 模型名称
+   * @param prompt 提示词
+   * @return 缓存键
+   */
+  public String buildCacheKey(String fileName, String contextPath, String model, String prompt) {
+    return promptVersion(model, prompt)
+        + "|"
+        + normalizeDirectory(fileName, contextPath)
+        + "|"
+        + normalize(fileName);
+  }
+
+  /**
+   * 查询缓存的识别结果
+   *
+   * @param cacheKey 缓存键
+   * @return 识别结果，未命中时返回null
+   */
+  public AiRecognitionResult get(String cacheKey) {
+    if (!properties.isEnabled()) {
+      return null;
+    }
+    try {
+      AiRecognitionCache cached =
+          aiRecognitionCacheMapper.selectValid(cacheKey, System.currentTimeMillis());
+      if (cached != null) {
+        AiRecognitionResult result =
+            objectMapper.readValue(cached.getResultJson(), AiRecognitionResult.class);
+        hitCounter.increment();
+        log.debug("AI识别缓存命中: {}", cacheKey);
+        return result;
+      }
+    } catch (Exception e) {
+      log.warn("读取AI识别缓存失败: {}, 错误: {}", cacheKey, e.getMessage());
+    }
+    missCounter.increment();
+    return null;
+  }
+
+  /**
+   * 缓存识别结果，null（调用失败或响应无法解析）不缓存
+   *
+   * @param cacheKey 缓存键
+   * @param result 识别结果
+   */
+  public void put(String cacheKey, AiRecognitionResult result) {
+    if (!properties.isEnabled() || result == null) {
+      return;
+    }
+    try {
+      long ttlMillis =
+          result.isSuccess()
+              ? properties.getSuccessTtl().toMillis()
+              : properties.getFailureTtl().toMillis();
+      aiRecognitionCacheMapper.upsert(
+          new AiRecognitionCache()
+              .setCacheKey(cacheKey)
+              .setSuccess(result.isSuccess())
+              .setResultJson(objectMapper.writeValueAsString(result))
+              .setExpiresAt(System.currentTimeMillis() + ttlMillis));
+    } catch (Exception e) {
+      log.warn("写入AI识别缓存失败: {}, 错误: {}", cacheKey, e.getMessage());
+    }
+  }
+
+  /**
+   * @return 缓存命中次数
+   */
+  public long getHitCount() {
+    return (long) hitCounter.count();
+  }
+
+  /**
+   * @return 缓存未命中次数
+   */
+  public long getMissCount() {
+    return (long) missCounter.count();
+  }
+
+  /** 应用启动后清理已过期的缓存 */
+  @EventListener(ApplicationReadyEvent.class)
+  public void purgeExpired() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    try {
+      int deleted = aiRecognitionCacheMapper.deleteExpired(System.currentTimeMillis());
+      if (deleted > 0) {
+        log.info("已清理 {} 条过期的AI识别缓存", deleted);
+      }
+    } catch (Exception e) {
+      log.warn("清理过期AI识别缓存失败: {}", e.getMessage());
+    }
+  }
+
+  /** 模型和提示词的摘要，任一变化后旧缓存不再命中 */
+  private String promptVersion(String model, String prompt) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest((model + "\n" + prompt).getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash, 0, 6);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256不可用", e);
+    }
+  }
+
+  /** 取上下文路径中的目录部分并规范化 */
+  private String normalizeDirectory(String fileName, String contextPath) {
+    if (contextPath == null) {
+      return "";
+    }
+    String directory = contextPath.replace('\\', '/');
+    if (fileName != null && directory.endsWith("/" + fileName)) {
+      directory = directory.substring(0, directory.length() - fileName.length() - 1);
+    }
+    while (directory.endsWith("/")) {
+      directory = directory.substring(0, directory.length() - 1);
+    }
+    return normalize(directory);
+  }
+
+  /** 全角转半角、转小写并合并空白 */
+  private String normalize(String value) {
+    if (value == null) {
+      return "";
+    }
+    String normalized = Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    return WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+  }
+}
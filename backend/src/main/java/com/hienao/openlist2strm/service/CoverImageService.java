@@ -1,16 +1,15 @@
 package com.hienao.openlist2strm.service;
 
+import com.hienao.openlist2strm.config.HttpClientProperties;
+import com.hienao.openlist2strm.util.StreamingDownloader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -25,8 +24,10 @@ import org.springframework.web.client.RestTemplate;
 @RequiredArgsConstructor
 public class CoverImageService {
 
-  private final RestTemplate restTemplate;
+  private final RestTemplate imageRestTemplate;
   private final SystemConfigService systemConfigService;
+  private final HttpClientProperties httpClientProperties;
+  private final DirectorySnapshotService directorySnapshotService;
 
   /**
    * 下载海报图片
@@ -112,20 +113,18 @@ public class CoverImageService {
   /**
    * 通用图片下载方法
    *
+   * <p>响应流式写入临时文件后原子替换。允许覆盖时总是无条件下载：远程图片大小事先未知，
+   * 按本地修改时间发起条件请求可能因本地文件较新得到304，从而保留不同的图片
+   *
    * @param imageUrl 图片URL
    * @param saveFilePath 保存文件路径
    */
   private void downloadImage(String imageUrl, String saveFilePath) throws IOException {
     Path savePath = Paths.get(saveFilePath);
 
-    // 确保目录存在
-    Path parentDir = savePath.getParent();
-    if (parentDir != null && !Files.exists(parentDir)) {
-      Files.createDirectories(parentDir);
-    }
-
     // 检查同名文件是否已存在
-    if (Files.exists(savePath)) {
+    HttpHeaders headers = new HttpHeaders();
+    if (directorySnapshotService.exists(savePath)) {
       Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
       boolean overwriteExisting = (Boolean) scrapingConfig.getOrDefault("overwriteExisting", false);
 
@@ -139,28 +138,32 @@ public class CoverImageService {
 
     try {
       // 设置请求头
-      HttpHeaders headers = new HttpHeaders();
       headers.set("User-Agent", "OpenList2Strm/1.0");
       headers.set("Accept", "image/*");
-      HttpEntity<String> entity = new HttpEntity<>(headers);
+      long maxBytes = httpClientProperties.getMaxDownloadSize().toBytes();
 
       // 下载图片
-      ResponseEntity<byte[]> response =
-          restTemplate.exchange(imageUrl, HttpMethod.GET, entity, byte[].class);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw new IOException("HTTP请求失败，状态码: " + response.getStatusCode());
+      StreamingDownloader.Result result =
+          imageRestTemplate.execute(
+              imageUrl,
+              HttpMethod.GET,
+              request -> request.getHeaders().putAll(headers),
+              response -> StreamingDownloader.writeTo(response, savePath, maxBytes));
+
+      if (result == null || result.status() == StreamingDownloader.Status.FAILED) {
+        throw new IOException(
+            "HTTP请求失败，状态码: " + (result != null ? result.statusCode() : "未知"));
       }
-
-      byte[] imageData = response.getBody();
-      if (imageData == null || imageData.length == 0) {
+      if (result.status() == StreamingDownloader.Status.EMPTY) {
         throw new IOException("下载的图片数据为空");
       }
+      if (result.status() == StreamingDownloader.Status.NOT_MODIFIED) {
+        log.debug("图片未变化，跳过下载: {} -> {}", imageUrl, saveFilePath);
+        return;
+      }
 
-      // 保存图片
-      Files.write(savePath, imageData);
-
-      log.debug("图片下载完成: {} -> {}", imageUrl, saveFilePath);
+      directorySnapshotService.recordWritten(savePath);
+      log.debug("图片下载完成: {} -> {} ({} bytes)", imageUrl, saveFilePath, result.bytes());
 
     } catch (Exception e) {
       log.error("下载图片失败: {} -> {}", imageUrl, saveFilePath, e);
@@ -222,7 +225,7 @@ public class CoverImageService {
     Path savePath = Paths.get(saveFilePath);
 
     // 如果文件不存在，需要下载
-    if (!Files.exists(savePath)) {
+    if (!directorySnapshotService.exists(savePath)) {
       return true;
     }
 
@@ -258,6 +261,35 @@ public class CoverImageService {
     }
   }
 
+  /**
+   * 下载剧集级图片，保存为目录中的 poster.jpg 和 fanart.jpg
+   *
+   * @param posterUrl 海报URL
+   * @param backdropUrl 背景图片URL
+   * @param saveDirectory 保存目录
+   */
+  public void downloadTvShowImages(String posterUrl, String backdropUrl, String saveDirectory) {
+    Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
+    boolean downloadPoster = (Boolean) scrapingConfig.getOrDefault("downloadPoster", true);
+    boolean downloadBackdrop = (Boolean) scrapingConfig.getOrDefault("downloadBackdrop", false);
+
+    if (downloadPoster && posterUrl != null && !posterUrl.trim().isEmpty()) {
+      downloadNamedImage(posterUrl, Paths.get(saveDirectory, "poster.jpg").toString(), "海报");
+    }
+    if (downloadBackdrop && backdropUrl != null && !backdropUrl.trim().isEmpty()) {
+      downloadNamedImage(backdropUrl, Paths.get(saveDirectory, "fanart.jpg").toString(), "背景图片");
+    }
+  }
+
+  private void downloadNamedImage(String imageUrl, String saveFilePath, String description) {
+    try {
+      downloadImage(imageUrl, saveFilePath);
+      log.info("{}下载成功: {}", description, saveFilePath);
+    } catch (Exception e) {
+      log.error("下载{}失败: {}", description, e.getMessage(), e);
+    }
+  }
+
   /**
    * 获取标准化的文件名
    *
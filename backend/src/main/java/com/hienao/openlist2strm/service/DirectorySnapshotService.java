@@ -0,0 +1,169 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.util.DirectorySnapshotCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.stereotype.Service;
+
+/**
+ * 本地目录快照服务
+ *
+ * <p>任务执行期间，STRM生成、刮削和图片下载中的存在性检查都通过本服务查询同一个 {@link DirectorySnapshotCache}，
+ * 每个输出目录只读取一次。任务开始时调用 {@link #beginRun}，结束时调用 {@link #endRun}；
+ * 多个任务同时执行时共用一个快照，最后一个任务结束后丢弃。没有任务执行时直接访问文件系统，避免读到过期的快照。
+ * 快照丢弃时把其readdir、stat和命中次数记录到Micrometer分布统计 directory.snapshot.operations。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Service
+public class DirectorySnapshotService {
+
+  /** 当前使用的快照，没有任务执行时为null */
+  private volatile DirectorySnapshotCache activeCache;
+
+  /** 正在执行的任务数，由本对象的锁保护 */
+  private int activeRuns;
+
+  private final DistributionSummary readdirSummary;
+  private final DistributionSummary statSummary;
+  private final DistributionSummary hitSummary;
+
+  public DirectorySnapshotService(MeterRegistry meterRegistry) {
+    this.readdirSummary = operationSummary(meterRegistry, "readdir");
+    this.statSummary = operationSummary(meterRegistry, "stat");
+    this.hitSummary = operationSummary(meterRegistry, "hit");
+  }
+
+  /**
+   * 开始一次任务执行，返回本次使用的目录快照
+   *
+   * @return 目录快照
+   */
+  public synchronized DirectorySnapshotCache beginRun() {
+    if (activeRuns++ == 0) {
+      activeCache = new DirectorySnapshotCache();
+    }
+    return activeCache;
+  }
+
+  /** 结束一次任务执行，没有其他任务执行时记录快照统计并丢弃快照 */
+  public synchronized void endRun() {
+    if (activeRuns > 0 && --activeRuns == 0) {
+      readdirSummary.record(activeCache.getReaddirCount());
+      statSummary.record(activeCache.getStatCount());
+      hitSummary.record(activeCache.getHitCount());
+      activeCache = null;
+    }
+  }
+
+  /**
+   * 检查文件或目录是否存在
+   *
+   * @param path 路径
+   * @return 是否存在
+   */
+  public boolean exists(Path path) {
+    DirectorySnapshotCache cache = currentCache();
+    return cache != null ? cache.exists(path) : Files.exists(path);
+  }
+
+  /**
+   * 检查目录是否存在
+   *
+   * @param directory 目录路径
+   * @return 目录存在时返回true
+   */
+  public boolean isDirectory(Path directory) {
+    DirectorySnapshotCache cache = currentCache();
+    return cache != null ? cache.isDirectory(directory) : Files.isDirectory(directory);
+  }
+
+  /**
+   * 列出目录中的文件名
+   *
+   * @param directory 目录路径
+   * @return 文件名集合，目录不存在或读取失败时为空集合
+   */
+  public Set<String> list(Path directory) {
+    DirectorySnapshotCache cache = currentCache();
+    if (cache != null) {
+      return cache.list(directory);
+    }
+    try (Stream<Path> entries = Files.list(directory)) {
+      return entries.map(entry -> entry.getFileName().toString()).collect(Collectors.toSet());
+    } catch (Exception e) {
+      return Set.of();
+    }
+  }
+
+  /**
+   * 检查目录中是否存在指定后缀的文件（不区分大小写）
+   *
+   * @param directory 目录路径
+   * @param suffix 后缀，如 ".nfo"
+   * @return 是否存在
+   */
+  public boolean containsSuffix(Path directory, String suffix) {
+    DirectorySnapshotCache cache = currentCache();
+    if (cache != null) {
+      return cache.containsSuffix(directory, suffix);
+    }
+    String lowerSuffix = suffix.toLowerCase(Locale.ROOT);
+    return list(directory).stream()
+        .anyMatch(name -> name.toLowerCase(Locale.ROOT).endsWith(lowerSuffix));
+  }
+
+  /**
+   * 记录写入了文件
+   *
+   * @param path 写入的文件
+   */
+  public void recordWritten(Path path) {
+    DirectorySnapshotCache cache = currentCache();
+    if (cache != null) {
+      cache.recordWritten(path);
+    }
+  }
+
+  /**
+   * 记录删除了文件
+   *
+   * @param path 删除的文件
+   */
+  public void recordDeleted(Path path) {
+    DirectorySnapshotCache cache = currentCache();
+    if (cache != null) {
+      cache.recordDeleted(path);
+    }
+  }
+
+  /**
+   * 作废目录及其所有子目录的快照
+   *
+   * @param directory 目录路径
+   */
+  public void invalidateTree(Path directory) {
+    DirectorySnapshotCache cache = currentCache();
+    if (cache != null) {
+      cache.invalidateTree(directory);
+    }
+  }
+
+  private DirectorySnapshotCache currentCache() {
+    return activeCache;
+  }
+
+  private static DistributionSummary operationSummary(MeterRegistry meterRegistry, String type) {
+    return DistributionSummary.builder("directory.snapshot.operations")
+        .description("每次目录快照生命周期内的本地文件检查次数")
+        .tag("type", type)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,150 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.config.CrawlProperties;
+import com.hienao.openlist2strm.entity.DirectoryWatermark;
+import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.entity.TaskConfig;
+import com.hienao.openlist2strm.mapper.DirectoryWatermarkMapper;
+import com.hienao.openlist2strm.util.DirectoryWatermarkIndex;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 目录水位服务
+ *
+ * <p>增量遍历模式（app.crawl.delta-enabled）下，按任务记录每个目录的水位，增量执行时跳过父目录列表显示未变化的子目录。
+ * 以下情况本次执行完整遍历：全量执行、同步清单为空、任务或OpenList配置变化、
+ * 最早的水位已超过 app.crawl.full-verify-interval（被跳过的目录水位不会刷新，因此这就是距上次完整遍历的时间）。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DirectoryWatermarkService {
+
+  /** 单条SQL写入的条目数，避免超过SQLite的参数数量上限 */
+  private static final int BATCH_SIZE = 200;
+
+  private final DirectoryWatermarkMapper directoryWatermarkMapper;
+  private final CrawlProperties crawlProperties;
+
+  /**
+   * 加载任务的目录水位并决定本次是否跳过未变化的子目录
+   *
+   * @param taskConfig 任务配置
+   * @param openlistConfig OpenList配置
+   * @param isIncrement 是否增量执行
+   * @param hasManifest 同步清单中是否有上次执行的记录
+   * @return 目录水位索引，未启用增量遍历时返回null
+   */
+  public DirectoryWatermarkIndex load(
+      TaskConfig taskConfig,
+      OpenlistConfig openlistConfig,
+      boolean isIncrement,
+      boolean hasManifest) {
+    if (!crawlProperties.isDeltaEnabled()) {
+      return null;
+    }
+
+    Long taskId = taskConfig.getId();
+    String configHash = configHash(taskConfig, openlistConfig);
+    List<DirectoryWatermark> watermarks = List.of();
+    try {
+      watermarks = directoryWatermarkMapper.selectByTaskId(taskId);
+    } catch (Exception e) {
+      log.warn("加载目录水位失败，本次完整遍历: 任务ID: {}, 错误: {}", taskId, e.getMessage());
+    }
+
+    String fullCrawlReason = null;
+    if (!isIncrement) {
+      fullCrawlReason = "全量执行";
+    } else if (!hasManifest) {
+      fullCrawlReason = "同步清单为空";
+    } else if (watermarks.isEmpty()) {
+      fullCrawlReason = "没有目录水位";
+    } else {
+      long oldestVerifiedAt = Long.MAX_VALUE;
+      for (DirectoryWatermark watermark : watermarks) {
+        if (!configHash.equals(watermark.getConfigHash())) {
+          fullCrawlReason = "任务或OpenList配置已变化";
+          break;
+        }
+        oldestVerifiedAt = Math.min(oldestVerifiedAt, watermark.getVerifiedAt());
+      }
+      long verifyBefore =
+          System.currentTimeMillis() - crawlProperties.getFullVerifyInterval().toMillis();
+      if (fullCrawlReason == null && oldestVerifiedAt < verifyBefore) {
+        fullCrawlReason = "距上次完整遍历已超过 " + crawlProperties.getFullVerifyInterval();
+      }
+    }
+
+    if (fullCrawlReason != null) {
+      log.info("本次完整遍历目录（{}）: 任务ID: {}", fullCrawlReason, taskId);
+    } else {
+      log.info("增量遍历目录，跳过未变化的子目录: 任务ID: {}, 目录水位数: {}", taskId, watermarks.size());
+    }
+    return new DirectoryWatermarkIndex(taskId, configHash, fullCrawlReason == null, watermarks);
+  }
+
+  /**
+   * 写入本次列出的目录的水位，删除失败目录及其上级目录、已不存在目录的水位
+   *
+   * @param index 目录水位索引
+   * @param failedDirectories 获取失败的目录
+   */
+  @Transactional(rollbackFor = Exception.class)
+  public void save(DirectoryWatermarkIndex index, Collection<String> failedDirectories) {
+    List<String> removed = index.getRemovedPaths(failedDirectories);
+    for (int i = 0; i < removed.size(); i += BATCH_SIZE) {
+      directoryWatermarkMapper.deleteByPaths(
+          index.getTaskId(), removed.subList(i, Math.min(i + BATCH_SIZE, removed.size())));
+    }
+
+    List<DirectoryWatermark> updated =
+        index.buildUpdatedWatermarks(failedDirectories, System.currentTimeMillis());
+    for (int i = 0; i < updated.size(); i += BATCH_SIZE) {
+      directoryWatermarkMapper.batchUpsert(
+          updated.subList(i, Math.min(i + BATCH_SIZE, updated.size())));
+    }
+
+    log.info(
+        "目录水位已保存: 任务ID: {}, 更新 {} 个, 删除 {} 个",
+        index.getTaskId(),
+        updated.size(),
+        removed.size());
+  }
+
+  /**
+   * 删除任务的全部目录水位
+   *
+   * @param taskId 任务配置ID
+   */
+  public void deleteByTaskId(Long taskId) {
+    try {
+      directoryWatermarkMapper.deleteByTaskId(taskId);
+    } catch (Exception e) {
+      log.warn("删除目录水位失败: 任务ID: {}, 错误: {}", taskId, e.getMessage());
+    }
+  }
+
+  /** 影响STRM文件路径和内容的配置摘要，任一配置变化时已跳过的目录需要重新处理 */
+  private static String configHash(TaskConfig taskConfig, OpenlistConfig openlistConfig) {
+    return DirectoryWatermarkIndex.hash(
+        String.join(
+            "\n",
+            String.valueOf(taskConfig.getPath()),
+            String.valueOf(taskConfig.getStrmPath()),
+            String.valueOf(taskConfig.getRenameRegex()),
+            String.valueOf(taskConfig.getNeedScrap()),
+            String.valueOf(openlistConfig.getId()),
+            String.valueOf(openlistConfig.getBaseUrl()),
+            String.valueOf(openlistConfig.getStrmBaseUrl()),
+            String.valueOf(openlistConfig.getEnableUrlEncoding())));
+  }
+}
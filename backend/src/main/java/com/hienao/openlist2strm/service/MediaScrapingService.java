@@ -5,18 +5,23 @@ import com.hienao.openlist2strm.dto.media.MediaInfo;
 import com.hienao.openlist2strm.dto.tmdb.TmdbMovieDetail;
 import com.hienao.openlist2strm.dto.tmdb.TmdbSearchResponse;
 import com.hienao.openlist2strm.dto.tmdb.TmdbTvDetail;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvSeasonDetail;
 import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.util.CompiledScrapingRules;
 import com.hienao.openlist2strm.util.MediaFileParser;
+import com.hienao.openlist2strm.util.OpenlistDirectoryIndex;
 import com.hienao.openlist2strm.util.TmdbIdExtractor;
-import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -37,8 +42,9 @@ public class MediaScrapingService {
   private final CoverImageService coverImageService;
   private final SystemConfigService systemConfigService;
   private final AiFileNameRecognitionService aiFileNameRecognitionService;
-  private final OpenlistApiService openlistApiService;
   private final DataReportService dataReportService;
+  private final SidecarSyncService sidecarSyncService;
+  private final DirectorySnapshotService directorySnapshotService;
 
   /**
    * 执行媒体刮削
@@ -53,12 +59,12 @@ public class MediaScrapingService {
   }
 
   /**
-   * 执行媒体刮削（优化版本，可传入目录文件列表避免重复API调用）
+   * 执行媒体刮削（优化版本，可传入目录文件索引避免重复API调用和重复扫描）
    *
    * @param fileName 文件名
    * @param strmDirectory STRM文件目录
    * @param relativePath 相对路径
-   * @param directoryFiles 目录文件列表（可选，为null时不会调用API获取）
+   * @param directoryIndex 目录文件索引（可选，为null时不复制字幕和已有刮削信息）
    * @param fullFilePath 完整的文件路径（用于上报）
    */
   public void scrapMedia(
@@ -66,7 +72,7 @@ public class MediaScrapingService {
       String fileName,
       String strmDirectory,
       String relativePath,
-      List<OpenlistApiService.OpenlistFile> directoryFiles,
+      OpenlistDirectoryIndex directoryIndex,
       String fullFilePath) {
     try {
       log.info("开始处理媒体文件: {}", fileName);
@@ -83,13 +89,12 @@ public class MediaScrapingService {
 
       // 处理字幕文件复制（在解析媒体之前执行）
       if (keepSubtitleFiles) {
-        copySubtitleFiles(openlistConfig, fileName, relativePath, saveDirectory, directoryFiles);
+        copySubtitleFiles(openlistConfig, fileName, saveDirectory, directoryIndex);
       }
 
       // 检查是否优先使用已存在的刮削信息（独立于刮削功能启用状态）
       if (useExistingScrapingInfo
-          && copyExistingScrapingInfo(
-              openlistConfig, fileName, relativePath, saveDirectory, directoryFiles)) {
+          && copyExistingScrapingInfo(openlistConfig, fileName, saveDirectory, directoryIndex)) {
         log.info("已复制现有刮削信息，跳过后续处理: {}", fileName);
         return;
       }
@@ -108,17 +113,8 @@ public class MediaScrapingService {
         return;
       }
 
-      // 获取刮削正则配置
-      Map<String, Object> regexConfig = systemConfigService.getScrapingRegexConfig();
-      @SuppressWarnings("unchecked")
-      List<String> movieRegexps =
-          (List<String>) regexConfig.getOrDefault("movieRegexps", Collections.emptyList());
-      @SuppressWarnings("unchecked")
-      List<String> tvDirRegexps =
-          (List<String>) regexConfig.getOrDefault("tvDirRegexps", Collections.emptyList());
-      @SuppressWarnings("unchecked")
-      List<String> tvFileRegexps =
-          (List<String>) regexConfig.getOrDefault("tvFileRegexps", Collections.emptyList());
+      // 获取预编译的刮削正则
+      CompiledScrapingRules scrapingRules = systemConfigService.getCompiledScrapingRules();
 
       // 提取目录路径
       String directoryPath = extractDirectoryPath(relativePath);
@@ -129,8 +125,7 @@ public class MediaScrapingService {
       Integer tmdbId = tmdbIdFromPath != null ? tmdbIdFromPath : tmdbIdFromFileName;
 
       // 解析文件名
-      MediaInfo mediaInfo =
-          MediaFileParser.parse(fileName, directoryPath, movieRegexps, tvDirRegexps, tvFileRegexps);
+      MediaInfo mediaInfo = MediaFileParser.parse(fileName, directoryPath, scrapingRules);
       log.debug("正则解析媒体信息: {}", mediaInfo);
 
       // 如果路径中有TMDB ID，直接使用TMDB ID获取信息，跳过文件名解析
@@ -168,48 +163,22 @@ public class MediaScrapingService {
               return; // 直接返回，跳过后续逻辑
             }
           } else {
-            // 直接获取电视剧详情
-            TmdbTvDetail tvDetail = tmdbApiService.getTvDetail(tmdbId);
+            // 直接获取电视剧详情，剧集级NFO和图片在首次获取时写入，分集NFO每集写入
+            TmdbTvDetail tvDetail =
+                resolveTvShowOnce(
+                    directoryIndex,
+                    "tmdb|" + tmdbId,
+                    () -> tmdbApiService.getTvDetail(tmdbId),
+                    mediaInfo,
+                    saveDirectory);
             if (tvDetail != null) {
-              log.info("直接获取电视剧详情成功: {} ({})", tvDetail.getName(), tvDetail.getId());
-              // 创建MediaInfo对象
-              mediaInfo =
-                  new MediaInfo()
-                      .setType(MediaInfo.MediaType.TV_SHOW)
-                      .setTitle(tvDetail.getName())
-                      .setYear(
-                          String.valueOf(
-                              tvDetail.getFirstAirDate() != null
-                                  ? new SimpleDateFormat("yyyy").format(tvDetail.getFirstAirDate())
-                                  : null))
-                      .setHasYear(tvDetail.getFirstAirDate() != null)
-                      .setOriginalFileName(fileName)
-                      .setConfidence(100); // 使用TMDB ID时置信度为100%
-
-              // 尝试从文件名中提取季集信息
-              String nameWithoutExt = MediaFileParser.removeFileExtension(fileName);
-              List<String> tvFileRegexpsOnly =
-                  (List<String>) regexConfig.getOrDefault("tvFileRegexps", Collections.emptyList());
-              for (String regex : tvFileRegexpsOnly) {
-                try {
-                  java.util.regex.Pattern pattern =
-                      java.util.regex.Pattern.compile(
-                          regex, java.util.regex.Pattern.CASE_INSENSITIVE);
-                  java.util.regex.Matcher matcher = pattern.matcher(nameWithoutExt);
-                  if (matcher.find()) {
-                    com.hienao.openlist2strm.util.MediaFileParser.extractNamedGroups(
-                        matcher, mediaInfo);
-                    log.debug("从文件名中提取季集信息成功: {}", mediaInfo);
-                    break;
-                  }
-                } catch (Exception e) {
-                  log.warn("无效的电视剧文件正则表达式: '{}', 错误: {}", regex, e.getMessage());
-                }
-              }
-
-              // 执行电视剧刮削
-              scrapTvShowWithDirectInfo(
-                  mediaInfo, saveDirectory, getStrmCompatibleBaseFileName(fileName), tvDetail);
+              writeEpisodeNfo(
+                  tvDetail,
+                  mediaInfo,
+                  saveDirectory,
+                  getStrmCompatibleBaseFileName(fileName),
+                  directoryIndex);
+              log.info("直接TMDB ID刮削完成: {} ({})", tvDetail.getName(), tvDetail.getId());
               return; // 直接返回，跳过后续逻辑
             }
           }
@@ -233,9 +202,14 @@ public class MediaScrapingService {
         boolean aiRecognitionEnabled = (Boolean) aiConfig.getOrDefault("enabled", false);
 
         if (aiRecognitionEnabled) {
+          // 优先使用目录级批量识别的结果
+          CompletableFuture<AiRecognitionResult> preparedRecognition =
+              directoryIndex != null ? directoryIndex.getAiRecognition(fileName) : null;
           AiRecognitionResult aiResult =
-              aiFileNameRecognitionService.recognizeFileName(
-                  fileName, fullFilePath != null ? fullFilePath : relativePath);
+              preparedRecognition != null
+                  ? preparedRecognition.join()
+                  : aiFileNameRecognitionService.recognizeFileName(
+                      fileName, fullFilePath != null ? fullFilePath : relativePath);
           if (aiResult != null && aiResult.isSuccess()) {
             if (aiResult.isNewFormat()) {
               // 新格式：直接从AI结果构建MediaInfo
@@ -244,12 +218,7 @@ public class MediaScrapingService {
             } else if (aiResult.isLegacyFormat()) {
               // 旧格式：使用filename字段重新解析
               mediaInfo =
-                  MediaFileParser.parse(
-                      aiResult.getFilename(),
-                      directoryPath,
-                      movieRegexps,
-                      tvDirRegexps,
-                      tvFileRegexps);
+                  MediaFileParser.parse(aiResult.getFilename(), directoryPath, scrapingRules);
               log.info("使用 AI 识别结果（旧格式）重新解析: {}", mediaInfo);
             }
           } else if (aiResult != null && !aiResult.isSuccess()) {
@@ -294,7 +263,7 @@ public class MediaScrapingService {
       if (mediaInfo.isMovie()) {
         scrapMovie(mediaInfo, saveDirectory, baseFileName);
       } else if (mediaInfo.isTvShow()) {
-        scrapTvShow(mediaInfo, saveDirectory, baseFileName);
+        scrapTvShow(mediaInfo, saveDirectory, baseFileName, directoryIndex);
       } else {
         log.warn("未知媒体类型，跳过刮削: {}", fileName);
 
@@ -312,38 +281,69 @@ public class MediaScrapingService {
     }
   }
 
-  /** 使用直接获取的电影信息进行刮削 */
-  private void scrapMovieWithDirectInfo(
-      MediaInfo mediaInfo, String saveDirectory, String baseFileName, TmdbMovieDetail movieDetail) {
+  /**
+   * 为同一目录中待刮削的视频文件预先批量发起AI识别
+   *
+   * <p>只对路径中没有TMDB ID、正则解析置信度低的文件发起识别，多个文件合并为少量AI请求。识别结果保存在目录索引中，
+   * 随后逐个刮削时直接取用，不再为每个文件单独请求AI。
+   *
+   * @param directoryIndex 目录文件索引
+   * @param relativePaths 文件名到相对路径的映射
+   */
+  public void prepareAiRecognition(
+      OpenlistDirectoryIndex directoryIndex, Map<String, String> relativePaths) {
     try {
-      log.info("使用直接获取的电影信息进行刮削: {} ({})", movieDetail.getTitle(), movieDetail.getId());
-
-      // 生成NFO文件
       Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
-      boolean generateNfo = (Boolean) scrapingConfig.getOrDefault("generateNfo", true);
+      Map<String, Object> aiConfig = systemConfigService.getAiConfig();
+      String tmdbApiKey = (String) systemConfigService.getTmdbConfig().getOrDefault("apiKey", "");
+      if (!(Boolean) scrapingConfig.getOrDefault("enabled", true)
+          || !(Boolean) aiConfig.getOrDefault("enabled", false)
+          || tmdbApiKey == null
+          || tmdbApiKey.trim().isEmpty()) {
+        return;
+      }
 
-      if (generateNfo) {
-        String nfoFilePath = Paths.get(saveDirectory, baseFileName + ".nfo").toString();
-        nfoGeneratorService.generateMovieNfo(movieDetail, mediaInfo, nfoFilePath);
+      // 目录中有可复制的刮削信息时不会走到AI识别
+      boolean useExistingScrapingInfo =
+          (Boolean) scrapingConfig.getOrDefault("useExistingScrapingInfo", false);
+      if (useExistingScrapingInfo
+          && (!directoryIndex.getNfoFiles().isEmpty()
+              || !directoryIndex.getImageFiles().isEmpty())) {
+        return;
       }
 
-      // 下载图片
-      String posterUrl = tmdbApiService.buildPosterUrl(movieDetail.getPosterPath());
-      String backdropUrl = tmdbApiService.buildBackdropUrl(movieDetail.getBackdropPath());
-      coverImageService.downloadImages(posterUrl, backdropUrl, saveDirectory, baseFileName);
+      CompiledScrapingRules scrapingRules = systemConfigService.getCompiledScrapingRules();
 
-      log.info("直接TMDB ID刮削完成: {}", movieDetail.getTitle());
+      List<String> lowConfidenceFiles = new ArrayList<>();
+      for (Map.Entry<String, String> entry : relativePaths.entrySet()) {
+        String fileName = entry.getKey();
+        String relativePath = entry.getValue();
+        if (TmdbIdExtractor.extractTmdbIdFromPath(relativePath) != null
+            || TmdbIdExtractor.extractTmdbIdFromFileName(fileName) != null) {
+          continue;
+        }
+        MediaInfo mediaInfo =
+            MediaFileParser.parse(fileName, extractDirectoryPath(relativePath), scrapingRules);
+        if (mediaInfo.getConfidence() < 70) {
+          lowConfidenceFiles.add(fileName);
+        }
+      }
 
+      if (lowConfidenceFiles.size() > 1) {
+        directoryIndex.putAiRecognitions(
+            aiFileNameRecognitionService.recognizeFileNamesAsync(
+                lowConfidenceFiles, directoryIndex.getPath()));
+      }
     } catch (Exception e) {
-      log.error("使用直接获取的电影信息刮削失败: {}", movieDetail.getTitle(), e);
+      log.warn("预先批量AI识别失败，将逐个识别: {}, 错误: {}", directoryIndex.getPath(), e.getMessage());
     }
   }
 
-  /** 使用直接获取的电视剧信息进行刮削 */
-  private void scrapTvShowWithDirectInfo(
-      MediaInfo mediaInfo, String saveDirectory, String baseFileName, TmdbTvDetail tvDetail) {
+  /** 使用直接获取的电影信息进行刮削 */
+  private void scrapMovieWithDirectInfo(
+      MediaInfo mediaInfo, String saveDirectory, String baseFileName, TmdbMovieDetail movieDetail) {
     try {
-      log.info("使用直接获取的电视剧信息进行刮削: {} ({})", tvDetail.getName(), tvDetail.getId());
+      log.info("使用直接获取的电影信息进行刮削: {} ({})", movieDetail.getTitle(), movieDetail.getId());
 
       // 生成NFO文件
       Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
@@ -351,18 +351,18 @@ public class MediaScrapingService {
 
       if (generateNfo) {
         String nfoFilePath = Paths.get(saveDirectory, baseFileName + ".nfo").toString();
-        nfoGeneratorService.generateTvShowNfo(tvDetail, mediaInfo, nfoFilePath);
+        nfoGeneratorService.generateMovieNfo(movieDetail, mediaInfo, nfoFilePath);
       }
 
       // 下载图片
-      String posterUrl = tmdbApiService.buildPosterUrl(tvDetail.getPosterPath());
-      String backdropUrl = tmdbApiService.buildBackdropUrl(tvDetail.getBackdropPath());
+      String posterUrl = tmdbApiService.buildPosterUrl(movieDetail.getPosterPath());
+      String backdropUrl = tmdbApiService.buildBackdropUrl(movieDetail.getBackdropPath());
       coverImageService.downloadImages(posterUrl, backdropUrl, saveDirectory, baseFileName);
 
-      log.info("直接TMDB ID刮削完成: {}", tvDetail.getName());
+      log.info("直接TMDB ID刮削完成: {}", movieDetail.getTitle());
 
     } catch (Exception e) {
-      log.error("使用直接获取的电视剧信息刮削失败: {}", tvDetail.getName(), e);
+      log.error("使用直接获取的电影信息刮削失败: {}", movieDetail.getTitle(), e);
     }
   }
 
@@ -417,57 +417,167 @@ public class MediaScrapingService {
     }
   }
 
-  /** 刮削电视剧 */
-  private void scrapTvShow(MediaInfo mediaInfo, String saveDirectory, String baseFileName) {
+  /**
+   * 刮削电视剧
+   *
+   * <p>同一目录下的分集通常属于同一剧集，剧集搜索和详情获取结果按目录缓存，每个剧集只解析一次，
+   * 每一季的分集信息也只请求一次。剧集级NFO和图片（tvshow.nfo、poster.jpg、fanart.jpg）只在首次解析成功时写入，
+   * 每个分集从共享的剧集和季详情生成自己的分集NFO。
+   */
+  private void scrapTvShow(
+      MediaInfo mediaInfo,
+      String saveDirectory,
+      String baseFileName,
+      OpenlistDirectoryIndex directoryIndex) {
     try {
-      // 搜索电视剧
-      TmdbSearchResponse searchResult =
-          tmdbApiService.searchTvShows(mediaInfo.getSearchQuery(), mediaInfo.getYear());
-
-      if (searchResult.getResults() == null || searchResult.getResults().isEmpty()) {
-        log.warn(
-            "刮削失败 - 未找到匹配的电视剧: {} (年份: {}), TMDB搜索返回空结果",
-            mediaInfo.getSearchQuery(),
-            mediaInfo.getYear());
-        return;
-      }
-
-      // 选择最佳匹配结果
-      TmdbSearchResponse.TmdbSearchResult bestMatch =
-          selectBestTvMatch(searchResult.getResults(), mediaInfo);
-
-      if (bestMatch == null) {
-        log.warn(
-            "刮削失败 - 未找到合适的电视剧匹配: {} (年份: {}), 搜索到 {} 个结果但无合适匹配",
-            mediaInfo.getSearchQuery(),
-            mediaInfo.getYear(),
-            searchResult.getResults().size());
-        return;
+      TmdbTvDetail tvDetail =
+          resolveTvShowOnce(
+              directoryIndex,
+              buildTvShowKey(mediaInfo),
+              () -> resolveTvShow(mediaInfo),
+              mediaInfo,
+              saveDirectory);
+      if (tvDetail != null) {
+        log.debug("分集复用剧集刮削信息: {} -> {}", mediaInfo.getOriginalFileName(), tvDetail.getName());
+        writeEpisodeNfo(tvDetail, mediaInfo, saveDirectory, baseFileName, directoryIndex);
       }
+    } catch (Exception e) {
+      log.error("刮削电视剧失败: {}", mediaInfo.getSearchQuery(), e);
+    }
+  }
 
-      // 获取详细信息
-      TmdbTvDetail tvDetail = tmdbApiService.getTvDetail(bestMatch.getId());
-      log.info("找到匹配电视剧: {} ({})", tvDetail.getName(), tvDetail.getId());
+  /**
+   * 解析剧集，同一目录中每个剧集只解析一次，首次解析成功时写入剧集级NFO和图片
+   *
+   * @param directoryIndex 目录文件索引，为null时每次都解析并写入
+   * @param showKey 剧集标识
+   * @param resolver 剧集解析器，未匹配时返回null
+   * @param mediaInfo 触发解析的分集信息
+   * @param saveDirectory 保存目录
+   * @return 电视剧详情，未匹配时返回null
+   */
+  private TmdbTvDetail resolveTvShowOnce(
+      OpenlistDirectoryIndex directoryIndex,
+      String showKey,
+      Supplier<TmdbTvDetail> resolver,
+      MediaInfo mediaInfo,
+      String saveDirectory) {
+    Consumer<TmdbTvDetail> writeArtifacts =
+        tvDetail -> writeTvShowArtifacts(tvDetail, mediaInfo, saveDirectory);
+    if (directoryIndex != null) {
+      return directoryIndex.resolveTvShow(showKey, resolver, writeArtifacts);
+    }
+    TmdbTvDetail tvDetail = resolver.get();
+    if (tvDetail != null) {
+      writeArtifacts.accept(tvDetail);
+    }
+    return tvDetail;
+  }
 
-      // 生成NFO文件
+  /** 写入剧集级NFO（tvshow.nfo）和图片（poster.jpg、fanart.jpg），失败只记录日志 */
+  private void writeTvShowArtifacts(
+      TmdbTvDetail tvDetail, MediaInfo mediaInfo, String saveDirectory) {
+    try {
       Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
       boolean generateNfo = (Boolean) scrapingConfig.getOrDefault("generateNfo", true);
 
       if (generateNfo) {
-        String nfoFilePath = Paths.get(saveDirectory, baseFileName + ".nfo").toString();
+        String nfoFilePath = Paths.get(saveDirectory, "tvshow.nfo").toString();
         nfoGeneratorService.generateTvShowNfo(tvDetail, mediaInfo, nfoFilePath);
       }
 
-      // 下载图片
       String posterUrl = tmdbApiService.buildPosterUrl(tvDetail.getPosterPath());
       String backdropUrl = tmdbApiService.buildBackdropUrl(tvDetail.getBackdropPath());
-      coverImageService.downloadImages(posterUrl, backdropUrl, saveDirectory, baseFileName);
+      coverImageService.downloadTvShowImages(posterUrl, backdropUrl, saveDirectory);
+    } catch (Exception e) {
+      log.error("写入剧集刮削信息失败: {} ({})", tvDetail.getName(), saveDirectory, e);
+    }
+  }
 
+  /** 从共享的剧集和季详情生成分集NFO（文件名与STRM文件一致），失败只记录日志 */
+  private void writeEpisodeNfo(
+      TmdbTvDetail tvDetail,
+      MediaInfo mediaInfo,
+      String saveDirectory,
+      String baseFileName,
+      OpenlistDirectoryIndex directoryIndex) {
+    try {
+      Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
+      boolean generateNfo = (Boolean) scrapingConfig.getOrDefault("generateNfo", true);
+      if (!generateNfo) {
+        return;
+      }
+
+      TmdbTvSeasonDetail seasonDetail = resolveTvSeason(tvDetail, mediaInfo, directoryIndex);
+      TmdbTvSeasonDetail.Episode episode =
+          seasonDetail != null ? seasonDetail.findEpisode(mediaInfo.getEpisode()) : null;
+      String nfoFilePath = Paths.get(saveDirectory, baseFileName + ".nfo").toString();
+      nfoGeneratorService.generateEpisodeNfo(tvDetail, episode, mediaInfo, nfoFilePath);
     } catch (Exception e) {
-      log.error("刮削电视剧失败: {}", mediaInfo.getSearchQuery(), e);
+      log.error("写入分集NFO失败: {} ({})", baseFileName, saveDirectory, e);
+    }
+  }
+
+  /**
+   * 获取分集所属季的详情，同一目录中每一季只请求一次；缺少季集号或请求失败时返回null，分集NFO只写入基本信息
+   */
+  private TmdbTvSeasonDetail resolveTvSeason(
+      TmdbTvDetail tvDetail, MediaInfo mediaInfo, OpenlistDirectoryIndex directoryIndex) {
+    Integer seasonNumber = mediaInfo.getSeason();
+    if (tvDetail.getId() == null || seasonNumber == null || mediaInfo.getEpisode() == null) {
+      return null;
+    }
+    Supplier<TmdbTvSeasonDetail> loader =
+        () -> tmdbApiService.getTvSeasonDetail(tvDetail.getId(), seasonNumber);
+    try {
+      return directoryIndex != null
+          ? directoryIndex.resolveTvSeason(tvDetail.getId() + "|" + seasonNumber, loader)
+          : loader.get();
+    } catch (Exception e) {
+      log.warn(
+          "获取电视剧季详情失败: {} 第{}季, 错误: {}", tvDetail.getName(), seasonNumber, e.getMessage());
+      return null;
     }
   }
 
+  /** 搜索电视剧并获取最佳匹配的详情，未找到匹配时返回null */
+  private TmdbTvDetail resolveTvShow(MediaInfo mediaInfo) {
+    // 搜索电视剧
+    TmdbSearchResponse searchResult =
+        tmdbApiService.searchTvShows(mediaInfo.getSearchQuery(), mediaInfo.getYear());
+
+    if (searchResult.getResults() == null || searchResult.getResults().isEmpty()) {
+      log.warn(
+          "刮削失败 - 未找到匹配的电视剧: {} (年份: {}), TMDB搜索返回空结果",
+          mediaInfo.getSearchQuery(),
+          mediaInfo.getYear());
+      return null;
+    }
+
+    // 选择最佳匹配结果
+    TmdbSearchResponse.TmdbSearchResult bestMatch =
+        selectBestTvMatch(searchResult.getResults(), mediaInfo);
+
+    if (bestMatch == null) {
+      log.warn(
+          "刮削失败 - 未找到合适的电视剧匹配: {} (年份: {}), 搜索到 {} 个结果但无合适匹配",
+          mediaInfo.getSearchQuery(),
+          mediaInfo.getYear(),
+          searchResult.getResults().size());
+      return null;
+    }
+
+    // 获取详细信息
+    TmdbTvDetail tvDetail = tmdbApiService.getTvDetail(bestMatch.getId());
+    log.info("找到匹配电视剧: {} ({})", tvDetail.getName(), tvDetail.getId());
+    return tvDetail;
+  }
+
+  /** 构建目录内剧集标识，搜索关键词和年份相同的分集归为同一剧集 */
+  private String buildTvShowKey(MediaInfo mediaInfo) {
+    return "search|" + mediaInfo.getSearchQuery() + "|" + mediaInfo.getYear();
+  }
+
   /** 选择最佳电影匹配结果 */
   private TmdbSearchResponse.TmdbSearchResult selectBestMovieMatch(
       List<TmdbSearchResponse.TmdbSearchResult> results, MediaInfo mediaInfo) {
@@ -596,8 +706,7 @@ public class MediaScrapingService {
       boolean downloadBackdrop = (Boolean) scrapingConfig.getOrDefault("downloadBackdrop", false);
 
       // 确保保存目录存在
-      File saveDir = new File(saveDirectory);
-      if (!saveDir.exists()) {
+      if (!directorySnapshotService.isDirectory(Paths.get(saveDirectory))) {
         log.debug("保存目录不存在，需要刮削: {}", saveDirectory);
         return false;
       }
@@ -627,25 +736,14 @@ public class MediaScrapingService {
       boolean downloadPoster,
       boolean downloadBackdrop) {
     // 检查 NFO 文件 - 如果目录中存在任何NFO文件就视为已刮削
-    if (generateNfo) {
-      File saveDir = new File(saveDirectory);
-      if (saveDir.exists() && saveDir.isDirectory()) {
-        File[] nfoFiles = saveDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".nfo"));
-        if (nfoFiles == null || nfoFiles.length == 0) {
-          log.debug("目录中没有NFO文件，需要刮削: {}", saveDirectory);
-          return false;
-        }
-        log.debug("目录中存在NFO文件，视为已刮削: {}", saveDirectory);
-      } else {
-        log.debug("保存目录不存在，需要刮削: {}", saveDirectory);
-        return false;
-      }
+    if (generateNfo && !hasNfoFile(saveDirectory)) {
+      return false;
     }
 
     // 检查海报文件
     if (downloadPoster) {
       String posterPath = saveDirectory + "/" + baseFileName + "-poster.jpg";
-      if (!new File(posterPath).exists()) {
+      if (!directorySnapshotService.exists(Paths.get(posterPath))) {
         log.debug("电影海报文件不存在，需要刮削: {}", posterPath);
         return false;
       }
@@ -654,7 +752,7 @@ public class MediaScrapingService {
     // 检查背景图文件
     if (downloadBackdrop) {
       String backdropPath = saveDirectory + "/" + baseFileName + "-fanart.jpg";
-      if (!new File(backdropPath).exists()) {
+      if (!directorySnapshotService.exists(Paths.get(backdropPath))) {
         log.debug("电影背景图文件不存在，需要刮削: {}", backdropPath);
         return false;
       }
@@ -671,27 +769,11 @@ public class MediaScrapingService {
       boolean generateNfo,
       boolean downloadPoster,
       boolean downloadBackdrop) {
-    // 检查NFO文件 - 如果目录中存在任何NFO文件就视为已刮削
+    // 检查分集NFO文件，tvshow.nfo等剧集级文件不代表该分集已刮削
     if (generateNfo) {
-      File saveDir = new File(saveDirectory);
-      if (saveDir.exists() && saveDir.isDirectory()) {
-        File[] nfoFiles = saveDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".nfo"));
-        if (nfoFiles == null || nfoFiles.length == 0) {
-          log.debug("目录中没有NFO文件，需要刮削: {}", saveDirectory);
-          return false;
-        }
-        log.debug("目录中存在NFO文件，视为已刮削: {}", saveDirectory);
-      } else {
-        log.debug("保存目录不存在，需要刮削: {}", saveDirectory);
-        return false;
-      }
-    }
-
-    // 检查剧集海报文件
-    if (downloadPoster) {
-      String episodePosterPath = saveDirectory + "/" + baseFileName + "-thumb.jpg";
-      if (!new File(episodePosterPath).exists()) {
-        log.debug("剧集海报文件不存在，需要刮削: {}", episodePosterPath);
+      String episodeNfoPath = saveDirectory + "/" + baseFileName + ".nfo";
+      if (!directorySnapshotService.exists(Paths.get(episodeNfoPath))) {
+        log.debug("分集NFO文件不存在，需要刮削: {}", episodeNfoPath);
         return false;
       }
     }
@@ -699,7 +781,7 @@ public class MediaScrapingService {
     // 检查电视剧海报和背景图（在剧集目录的父目录或当前目录）
     if (downloadPoster) {
       String tvShowPosterPath = saveDirectory + "/poster.jpg";
-      if (!new File(tvShowPosterPath).exists()) {
+      if (!directorySnapshotService.exists(Paths.get(tvShowPosterPath))) {
         log.debug("电视剧海报文件不存在，需要刮削: {}", tvShowPosterPath);
         return false;
       }
@@ -707,7 +789,7 @@ public class MediaScrapingService {
 
     if (downloadBackdrop) {
       String tvShowBackdropPath = saveDirectory + "/fanart.jpg";
-      if (!new File(tvShowBackdropPath).exists()) {
+      if (!directorySnapshotService.exists(Paths.get(tvShowBackdropPath))) {
         log.debug("电视剧背景图文件不存在，需要刮削: {}", tvShowBackdropPath);
         return false;
       }
@@ -717,6 +799,21 @@ public class MediaScrapingService {
     return true;
   }
 
+  /** 检查保存目录中是否存在NFO文件，存在任何NFO文件就视为已刮削 */
+  private boolean hasNfoFile(String saveDirectory) {
+    Path saveDir = Paths.get(saveDirectory);
+    if (!directorySnapshotService.isDirectory(saveDir)) {
+      log.debug("保存目录不存在，需要刮削: {}", saveDirectory);
+      return false;
+    }
+    if (!directorySnapshotService.containsSuffix(saveDir, ".nfo")) {
+      log.debug("目录中没有NFO文件，需要刮削: {}", saveDirectory);
+      return false;
+    }
+    log.debug("目录中存在NFO文件，视为已刮削: {}", saveDirectory);
+    return true;
+  }
+
   /**
    * 检查目录是否已完全刮削 用于批量处理时的目录级别检查
    *
@@ -725,42 +822,27 @@ public class MediaScrapingService {
    */
   public boolean isDirectoryFullyScraped(String directoryPath) {
     try {
-      File directory = new File(directoryPath);
-      if (!directory.exists() || !directory.isDirectory()) {
+      // 目录内容取自本次执行的目录快照，按文件名判断，不再逐个stat
+      Set<String> fileNames = directorySnapshotService.list(Paths.get(directoryPath));
+      if (fileNames.isEmpty()) {
         return false;
       }
 
-      // 获取刮削正则配置
-      Map<String, Object> regexConfig = systemConfigService.getScrapingRegexConfig();
-      @SuppressWarnings("unchecked")
-      List<String> movieRegexps =
-          (List<String>) regexConfig.getOrDefault("movieRegexps", Collections.emptyList());
-      @SuppressWarnings("unchecked")
-      List<String> tvDirRegexps =
-          (List<String>) regexConfig.getOrDefault("tvDirRegexps", Collections.emptyList());
-      @SuppressWarnings("unchecked")
-      List<String> tvFileRegexps =
-          (List<String>) regexConfig.getOrDefault("tvFileRegexps", Collections.emptyList());
-
-      File[] files = directory.listFiles();
-      if (files == null || files.length == 0) {
-        return false;
-      }
+      // 获取预编译的刮削正则
+      CompiledScrapingRules scrapingRules = systemConfigService.getCompiledScrapingRules();
 
       boolean hasVideoFiles = false;
       boolean allVideoFilesScraped = true;
 
-      for (File file : files) {
-        if (file.isFile() && MediaFileParser.isVideoFile(file.getName())) {
+      for (String fileName : fileNames) {
+        if (MediaFileParser.isVideoFile(fileName)) {
           hasVideoFiles = true;
 
           // 使用新的解析器
-          MediaInfo mediaInfo =
-              MediaFileParser.parse(
-                  file.getName(), directoryPath, movieRegexps, tvDirRegexps, tvFileRegexps);
+          MediaInfo mediaInfo = MediaFileParser.parse(fileName, directoryPath, scrapingRules);
 
           if (mediaInfo.getConfidence() >= 70) {
-            String baseFileName = coverImageService.getStandardizedFileName(file.getName());
+            String baseFileName = coverImageService.getStandardizedFileName(fileName);
             if (!isAlreadyScraped(directoryPath, baseFileName, mediaInfo)) {
               allVideoFilesScraped = false;
               break;
@@ -813,68 +895,26 @@ public class MediaScrapingService {
    * 复制字幕文件到STRM目录
    *
    * @param fileName 媒体文件名
-   * @param relativePath 相对路径
    * @param saveDirectory 保存目录
-   * @param directoryFiles 目录文件列表（可选，为null时不会调用API获取）
+   * @param directoryIndex 目录文件索引（可选，为null时跳过）
    */
   private void copySubtitleFiles(
       OpenlistConfig openlistConfig,
       String fileName,
-      String relativePath,
       String saveDirectory,
-      List<OpenlistApiService.OpenlistFile> directoryFiles) {
+      OpenlistDirectoryIndex directoryIndex) {
+    if (directoryIndex == null) {
+      log.debug("目录文件索引为空，跳过字幕文件复制");
+      return;
+    }
+
     try {
       String baseFileName = fileName.substring(0, fileName.lastIndexOf('.'));
-      String dirPath = relativePath.substring(0, relativePath.lastIndexOf('/') + 1);
-
-      // 支持的字幕文件后缀
-      String[] subtitleExtensions = {".srt", ".ass", ".vtt", ".ssa", ".sub", ".idx"};
-
-      // 获取目录中的所有文件（优先使用传入的文件列表）
-      List<OpenlistApiService.OpenlistFile> files;
-      if (directoryFiles != null) {
-        files = directoryFiles;
-        log.debug("使用传入的目录文件列表，避免重复API调用");
-      } else {
-        log.debug("目录文件列表为空，跳过字幕文件复制");
-        return;
-      }
-
-      // 遍历目录中的所有文件，查找匹配的字幕文件
-      for (OpenlistApiService.OpenlistFile file : files) {
-        if ("file".equals(file.getType())) {
-          String fileName_lower = file.getName().toLowerCase();
-          String baseFileName_lower = baseFileName.toLowerCase();
-
-          // 检查是否是字幕文件：文件名以媒体文件基础名开头，且后缀是字幕格式
-          boolean isSubtitleFile = false;
-          for (String ext : subtitleExtensions) {
-            if (fileName_lower.startsWith(baseFileName_lower) && fileName_lower.endsWith(ext)) {
-              isSubtitleFile = true;
-              break;
-            }
-          }
-
-          if (isSubtitleFile) {
-            String subtitleRelativePath = dirPath + file.getName();
 
-            // 获取文件内容
-            byte[] subtitleContent =
-                openlistApiService.getFileContent(openlistConfig, subtitleRelativePath);
-
-            if (subtitleContent != null && subtitleContent.length > 0) {
-              Path targetFile = Paths.get(saveDirectory, file.getName());
-
-              // 确保目标目录存在
-              Files.createDirectories(targetFile.getParent());
-
-              // 写入字幕文件
-              Files.write(targetFile, subtitleContent);
-              log.info("已复制字幕文件: {} -> {}", subtitleRelativePath, targetFile);
-            } else {
-              log.debug("字幕文件内容为空: {}", subtitleRelativePath);
-            }
-          }
+      // 查找匹配的字幕文件：文件名以媒体文件基础名开头，且后缀是字幕格式
+      for (OpenlistApiService.OpenlistFile file : directoryIndex.findSubtitles(baseFileName)) {
+        if (!sidecarSyncService.syncFile(openlistConfig, file, saveDirectory)) {
+          log.debug("字幕文件复制失败或内容为空: {}", file.getPath());
         }
       }
     } catch (Exception e) {
@@ -885,202 +925,31 @@ public class MediaScrapingService {
   /**
    * 复制已存在的刮削信息到STRM目录
    *
+   * <p>目录中的NFO和图片文件对同目录的所有视频相同，由 {@link SidecarSyncService} 按目录只同步一次
+   *
    * @param fileName 媒体文件名
-   * @param relativePath 相对路径
    * @param saveDirectory 保存目录
-   * @param directoryFiles 目录文件列表（可选，为null时不会调用API获取）
-   * @return 是否成功复制了刮削信息
+   * @param directoryIndex 目录文件索引（可选，为null时跳过）
+   * @return 保存目录中是否存在刮削信息
    */
   private boolean copyExistingScrapingInfo(
       OpenlistConfig openlistConfig,
       String fileName,
-      String relativePath,
       String saveDirectory,
-      List<OpenlistApiService.OpenlistFile> directoryFiles) {
-    try {
-      String baseFileName = fileName.substring(0, fileName.lastIndexOf('.'));
-
-      // 处理目录路径，使用完整的relativePath作为基础路径
-      String dirPath;
-      int lastSlashIndex = relativePath.lastIndexOf('/');
-      if (lastSlashIndex >= 0) {
-        // 使用完整的目录路径，包含OpenList的路径前缀
-        dirPath = relativePath.substring(0, lastSlashIndex + 1);
-      } else {
-        // 文件在根目录，使用根路径
-        dirPath = "/";
-      }
-
-      log.debug("[DEBUG] 构建文件路径 - relativePath: {}, dirPath: {}", relativePath, dirPath);
-
-      boolean foundScrapingInfo = false;
-
-      // 获取目录中的所有文件（优先使用传入的文件列表）
-      List<OpenlistApiService.OpenlistFile> files;
-      if (directoryFiles != null) {
-        files = directoryFiles;
-        log.debug("使用传入的目录文件列表，避免重复API调用");
-      } else {
-        log.debug("目录文件列表为空，跳过刮削信息复制");
-        return false;
-      }
-
-      // 查找NFO文件 - 复制目录中所有NFO文件，不做文件名限制
-      for (OpenlistApiService.OpenlistFile file : files) {
-        if ("file".equals(file.getType())) {
-          String fileName_lower = file.getName().toLowerCase();
-
-          // 检查是否是NFO文件：只要后缀是.nfo就复制
-          if (fileName_lower.endsWith(".nfo")) {
-            log.debug("准备复制NFO文件: {} (使用OpenlistFile对象)", file.getName());
-
-            // 刮削文件下载场景：不进行URL编码，避免认证问题
-            byte[] nfoContent = openlistApiService.getFileContent(openlistConfig, file, false);
-            if (nfoContent != null && nfoContent.length > 0) {
-              Path targetNfoFile = Paths.get(saveDirectory, file.getName());
-              Files.createDirectories(targetNfoFile.getParent());
-              Files.write(targetNfoFile, nfoContent);
-              log.info(
-                  "已复制NFO文件: {} -> {} (大小: {} bytes)",
-                  file.getName(),
-                  targetNfoFile,
-                  nfoContent.length);
-              foundScrapingInfo = true;
-            } else {
-              log.debug("NFO文件内容为空: {}", file.getName());
-            }
-          }
-        }
-      }
-
-      // 查找刮削图片文件 - 复制目录中所有图片文件，不做文件名限制
-      String[] imageExtensions = {".jpg", ".jpeg", ".png", ".webp", ".bmp", ".tiff"};
-
-      for (OpenlistApiService.OpenlistFile file : files) {
-        if ("file".equals(file.getType())) {
-          String fileName_lower = file.getName().toLowerCase();
-
-          // 检查是否是图片文件：只要后缀是图片格式就复制
-          boolean isImageFile = false;
-          for (String ext : imageExtensions) {
-            if (fileName_lower.endsWith(ext)) {
-              isImageFile = true;
-              break;
-            }
-          }
-
-          if (isImageFile) {
-            log.debug("准备复制图片文件: {} (使用OpenlistFile对象)", file.getName());
-
-            // 刮削文件下载场景：不进行URL编码，避免认证问题
-            byte[] imageContent = openlistApiService.getFileContent(openlistConfig, file, false);
-            if (imageContent != null && imageContent.length > 0) {
-              // 检查文件内容是否真的是图片（简单检查前几个字节）
-              String contentType = detectFileType(imageContent);
-              log.debug("图片文件内容类型检测: {} -> {}", file.getName(), contentType);
-
-              Path targetImageFile = Paths.get(saveDirectory, file.getName());
-              Files.createDirectories(targetImageFile.getParent());
-              Files.write(targetImageFile, imageContent);
-              log.info(
-                  "已复制刮削图片: {} -> {} (大小: {} bytes, 类型: {})",
-                  file.getName(),
-                  targetImageFile,
-                  imageContent.length,
-                  contentType);
-              foundScrapingInfo = true;
-            } else {
-              log.debug("刮削图片内容为空: {}", file.getName());
-            }
-          }
-        }
-      }
-
-      // 注意：上面的循环已经复制了所有NFO文件和图片文件，包括电视剧相关的文件
-      // 不需要额外的电视剧文件处理逻辑，因为已经移除了文件名限制
+      OpenlistDirectoryIndex directoryIndex) {
+    if (directoryIndex == null) {
+      log.debug("目录文件索引为空，跳过刮削信息复制");
+      return false;
+    }
 
-      return foundScrapingInfo;
+    try {
+      return sidecarSyncService.syncSidecars(openlistConfig, directoryIndex, saveDirectory);
     } catch (Exception e) {
       log.warn("复制已存在刮削信息失败: {}", fileName, e);
       return false;
     }
   }
 
-  /**
-   * 检测文件内容类型（基于文件头）
-   *
-   * @param content 文件内容字节数组
-   * @return 文件类型描述
-   */
-  private String detectFileType(byte[] content) {
-    if (content == null || content.length < 4) {
-      return "UNKNOWN";
-    }
-
-    // 检查常见的文件头
-    // JPEG: FF D8 FF
-    if (content.length >= 3
-        && (content[0] & 0xFF) == 0xFF
-        && (content[1] & 0xFF) == 0xD8
-        && (content[2] & 0xFF) == 0xFF) {
-      return "JPEG";
-    }
-
-    // PNG: 89 50 4E 47
-    if (content.length >= 4
-        && (content[0] & 0xFF) == 0x89
-        && (content[1] & 0xFF) == 0x50
-        && (content[2] & 0xFF) == 0x4E
-        && (content[3] & 0xFF) == 0x47) {
-      return "PNG";
-    }
-
-    // GIF: 47 49 46 38
-    if (content.length >= 4
-        && (content[0] & 0xFF) == 0x47
-        && (content[1] & 0xFF) == 0x49
-        && (content[2] & 0xFF) == 0x46
-        && (content[3] & 0xFF) == 0x38) {
-      return "GIF";
-    }
-
-    // WebP: 52 49 46 46 (RIFF) + WebP signature
-    if (content.length >= 12
-        && (content[0] & 0xFF) == 0x52
-        && (content[1] & 0xFF) == 0x49
-        && (content[2] & 0xFF) == 0x46
-        && (content[3] & 0xFF) == 0x46) {
-      if ((content[8] & 0xFF) == 0x57
-          && (content[9] & 0xFF) == 0x45
-          && (content[10] & 0xFF) == 0x42
-          && (content[11] & 0xFF) == 0x50) {
-        return "WEBP";
-      }
-    }
-
-    // 检查是否是XML/NFO文件（以 < 开头）
-    if ((content[0] & 0xFF) == 0x3C) {
-      return "XML/NFO";
-    }
-
-    // 检查是否是文本文件（前100个字节都是可打印字符）
-    boolean isText = true;
-    int checkLength = Math.min(content.length, 100);
-    for (int i = 0; i < checkLength; i++) {
-      int b = content[i] & 0xFF;
-      if (b < 32 && b != 9 && b != 10 && b != 13) { // 不是制表符、换行符、回车符的控制字符
-        isText = false;
-        break;
-      }
-    }
-
-    if (isText) {
-      return "TEXT";
-    }
-
-    return "BINARY";
-  }
-
   /**
    * 获取与STRM文件一致的baseFileName 只移除扩展名，不进行标准化处理，确保与STRM文件命名一致
    *
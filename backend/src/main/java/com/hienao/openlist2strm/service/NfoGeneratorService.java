@@ -3,6 +3,7 @@ package com.hienao.openlist2strm.service;
 import com.hienao.openlist2strm.dto.media.MediaInfo;
 import com.hienao.openlist2strm.dto.tmdb.TmdbMovieDetail;
 import com.hienao.openlist2strm.dto.tmdb.TmdbTvDetail;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvSeasonDetail;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,6 +28,7 @@ public class NfoGeneratorService {
 
   private final SystemConfigService systemConfigService;
   private final TmdbApiService tmdbApiService;
+  private final DirectorySnapshotService directorySnapshotService;
 
   /**
    * 为电影生成NFO文件
@@ -65,6 +67,29 @@ public class NfoGeneratorService {
     }
   }
 
+  /**
+   * 为电视剧分集生成NFO文件
+   *
+   * @param tvDetail TMDB电视剧详情
+   * @param episode TMDB分集详情，季详情获取失败或不含该集时为null，只写入剧集名称和季集号
+   * @param mediaInfo 媒体信息
+   * @param nfoFilePath NFO文件路径
+   */
+  public void generateEpisodeNfo(
+      TmdbTvDetail tvDetail,
+      TmdbTvSeasonDetail.Episode episode,
+      MediaInfo mediaInfo,
+      String nfoFilePath) {
+    try {
+      String nfoContent = buildEpisodeNfoContent(tvDetail, episode, mediaInfo);
+      writeNfoFile(nfoFilePath, nfoContent);
+      log.debug("分集NFO文件生成成功: {}", nfoFilePath);
+    } catch (Exception e) {
+      log.error("生成分集NFO文件失败: {}", e.getMessage(), e);
+      throw new RuntimeException("生成分集NFO文件失败", e);
+    }
+  }
+
   /** 构建电影NFO内容 */
   private String buildMovieNfoContent(TmdbMovieDetail movieDetail, MediaInfo mediaInfo) {
     StringBuilder nfo = new StringBuilder();
@@ -217,6 +242,55 @@ public class NfoGeneratorService {
     return nfo.toString();
   }
 
+  /** 构建分集NFO内容 */
+  private String buildEpisodeNfoContent(
+      TmdbTvDetail tvDetail, TmdbTvSeasonDetail.Episode episode, MediaInfo mediaInfo) {
+    StringBuilder nfo = new StringBuilder();
+
+    nfo.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+    nfo.append("<episodedetails>\n");
+
+    // 基本信息，缺少分集详情时以剧集名称和季集号作为标题
+    String seasonEpisode = mediaInfo.getSeasonEpisodeString();
+    String title =
+        episode != null && episode.getName() != null
+            ? episode.getName()
+            : seasonEpisode != null ? tvDetail.getName() + " " + seasonEpisode : tvDetail.getName();
+    appendElement(nfo, "title", title);
+    appendElement(nfo, "showtitle", tvDetail.getName());
+    appendElement(nfo, "season", mediaInfo.getSeason());
+    appendElement(nfo, "episode", mediaInfo.getEpisode());
+
+    if (episode != null) {
+      appendElement(nfo, "plot", episode.getOverview());
+      appendElement(nfo, "aired", episode.getAirDate());
+      appendElement(nfo, "runtime", episode.getRuntime());
+
+      // 评分信息
+      if (episode.getVoteAverage() != null) {
+        nfo.append("  <rating>\n");
+        appendElement(nfo, "value", episode.getVoteAverage(), 2);
+        appendElement(nfo, "votes", episode.getVoteCount(), 2);
+        nfo.append("  </rating>\n");
+      }
+
+      // 图片信息
+      if (episode.getStillPath() != null) {
+        appendElement(nfo, "thumb", tmdbApiService.buildBackdropUrl(episode.getStillPath()));
+      }
+
+      // 外部ID
+      appendElement(nfo, "tmdbid", episode.getId());
+    }
+
+    // 生成信息
+    appendElement(nfo, "dateadded", getCurrentDateTime());
+
+    nfo.append("</episodedetails>\n");
+
+    return nfo.toString();
+  }
+
   /** 添加XML元素 */
   private void appendElement(StringBuilder sb, String tagName, Object value) {
     appendElement(sb, tagName, value, 1);
@@ -271,12 +345,12 @@ public class NfoGeneratorService {
 
     // 确保目录存在
     Path parentDir = path.getParent();
-    if (parentDir != null && !Files.exists(parentDir)) {
+    if (parentDir != null && !directorySnapshotService.isDirectory(parentDir)) {
       Files.createDirectories(parentDir);
     }
 
     // 检查同名NFO文件是否已存在
-    if (Files.exists(path)) {
+    if (directorySnapshotService.exists(path)) {
       Map<String, Object> scrapingConfig = systemConfigService.getScrapingConfig();
       boolean overwriteExisting = (Boolean) scrapingConfig.getOrDefault("overwriteExisting", false);
 
@@ -290,5 +364,6 @@ public class NfoGeneratorService {
 
     // 写入文件
     Files.writeString(path, content);
+    directorySnapshotService.recordWritten(path);
   }
 }
@@ -1,19 +1,35 @@
 package com.hienao.openlist2strm.service;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hienao.openlist2strm.config.HttpClientProperties;
 import com.hienao.openlist2strm.entity.OpenlistConfig;
 import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.exception.OpenlistApiException;
+import com.hienao.openlist2strm.util.StreamingDownloader;
+import com.hienao.openlist2strm.util.StringInterner;
 import com.hienao.openlist2strm.util.UrlEncoder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import lombok.Data;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -28,182 +44,174 @@ import org.springframework.web.util.UriComponentsBuilder;
 @RequiredArgsConstructor
 public class OpenlistApiService {
 
-  private final RestTemplate restTemplate;
+  private final RestTemplate openlistRestTemplate;
   private final ObjectMapper objectMapper;
+  private final OpenlistRateLimitService openlistRateLimitService;
+  private final HttpClientProperties httpClientProperties;
+
+  /** 请求异常时的下载结果 */
+  private static final StreamingDownloader.Result FAILED_DOWNLOAD =
+      new StreamingDownloader.Result(StreamingDownloader.Status.FAILED, 0, 0);
+
+  /** OpenList目录节点，同一目录下的所有条目共享同一个节点 */
+  public static final class DirectoryNode {
+    private final String baseUrl;
+    private final String path;
+
+    /**
+     * @param baseUrl OpenList网址
+     * @param path 目录路径
+     */
+    public DirectoryNode(String baseUrl, String path) {
+      this.baseUrl = baseUrl;
+      this.path = path.endsWith("/") ? path : path + "/";
+    }
 
-  /** OpenList API响应数据结构 */
-  @Data
-  public static class OpenlistApiResponse {
-    @JsonProperty("code")
-    private Integer code;
-
-    @JsonProperty("message")
-    private String message;
-
-    @JsonProperty("data")
-    private OpenlistData data;
-  }
-
-  /** OpenList数据结构 */
-  @Data
-  public static class OpenlistData {
-    @JsonProperty("files")
-    private List<OpenlistFile> files;
-
-    @JsonProperty("readme")
-    private String readme;
-  }
-
-  /** OpenList文件信息 */
-  @Data
-  public static class OpenlistFile {
-    @JsonProperty("name")
-    private String name;
-
-    @JsonProperty("size")
-    private Long size;
-
-    @JsonProperty("type")
-    private String type; // "file" 或 "folder"
-
-    @JsonProperty("url")
-    private String url;
-
-    @JsonProperty("path")
-    private String path;
-
-    @JsonProperty("modified")
-    private String modified;
-
-    @JsonProperty("sign")
-    private String sign;
-  }
-
-  /** Alist API响应数据结构 */
-  @Data
-  public static class AlistApiResponse {
-    @JsonProperty("code")
-    private Integer code;
-
-    @JsonProperty("message")
-    private String message;
+    /**
+     * @return OpenList网址
+     */
+    public String getBaseUrl() {
+      return baseUrl;
+    }
 
-    @JsonProperty("data")
-    private AlistData data;
+    /**
+     * @return 以/结尾的目录路径
+     */
+    public String getPath() {
+      return path;
+    }
   }
 
-  /** Alist数据结构 */
-  @Data
-  public static class AlistData {
-    @JsonProperty("content")
-    private List<AlistFile> content;
-
-    @JsonProperty("total")
-    private Integer total;
-
-    @JsonProperty("readme")
-    private String readme;
-
-    @JsonProperty("header")
-    private String header;
-
-    @JsonProperty("write")
-    private Boolean write;
+  /**
+   * OpenList文件信息
+   *
+   * <p>紧凑表示：通过父目录节点共享路径前缀和baseUrl，文件名驻留，大小和修改时间使用基本类型，
+   * 完整路径和URL在访问时才生成，不常驻内存。
+   */
+  public static final class OpenlistFile {
+    private final DirectoryNode parent;
+    private final String name;
+    private final long size;
+    private final long modified;
+    private final String sign;
+    private final boolean folder;
+
+    /**
+     * @param parent 所在目录节点
+     * @param name 文件名
+     * @param size 文件大小（字节）
+     * @param modified 修改时间（epoch毫秒），未知时为0
+     * @param sign 签名参数，可为空
+     * @param folder 是否为目录
+     */
+    public OpenlistFile(
+        DirectoryNode parent, String name, long size, long modified, String sign, boolean folder) {
+      this.parent = parent;
+      this.name = name;
+      this.size = size;
+      this.modified = modified;
+      this.sign = sign;
+      this.folder = folder;
+    }
 
-    @JsonProperty("provider")
-    private String provider;
-  }
+    public DirectoryNode getParent() {
+      return parent;
+    }
 
-  /** Alist文件信息 */
-  @Data
-  public static class AlistFile {
-    @JsonProperty("name")
-    private String name;
+    public String getName() {
+      return name;
+    }
 
-    @JsonProperty("size")
-    private Long size;
+    public long getSize() {
+      return size;
+    }
 
-    @JsonProperty("is_dir")
-    private Boolean isDir;
+    /**
+     * @return 修改时间（epoch毫秒），未知时为0
+     */
+    public long getModified() {
+      return modified;
+    }
 
-    @JsonProperty("modified")
-    private String modified;
+    public String getSign() {
+      return sign;
+    }
 
-    @JsonProperty("created")
-    private String created;
+    public boolean isFolder() {
+      return folder;
+    }
 
-    @JsonProperty("sign")
-    private String sign;
+    public boolean isFile() {
+      return !folder;
+    }
 
-    @JsonProperty("thumb")
-    private String thumb;
+    /**
+     * @return "file" 或 "folder"
+     */
+    public String getType() {
+      return folder ? "folder" : "file";
+    }
 
-    @JsonProperty("type")
-    private Integer type;
+    /**
+     * @return 文件完整路径
+     */
+    public String getPath() {
+      return parent.getPath() + name;
+    }
 
-    @JsonProperty("hashinfo")
-    private String hashinfo;
+    /**
+     * @return 文件下载URL（不含sign参数）
+     */
+    public String getUrl() {
+      return buildFileUrl(parent.getBaseUrl(), getPath());
+    }
 
-    @JsonProperty("hash_info")
-    private Object hashInfo;
+    @Override
+    public String toString() {
+      return "OpenlistFile(path=" + getPath() + ", type=" + getType() + ", size=" + size + ")";
+    }
   }
 
   /**
-   * 递归获取目录下的所有文件和目录
+   * 获取指定目录的内容
    *
    * @param config OpenList配置
    * @param path 目录路径
-   * @return 所有文件和目录列表
+   * @return 目录内容列表
    */
-  public List<OpenlistFile> getAllFilesRecursively(OpenlistConfig config, String path) {
-    List<OpenlistFile> allFiles = new ArrayList<>();
-    getAllFilesRecursively(config, path, allFiles);
-    return allFiles;
+  public List<OpenlistFile> getDirectoryContents(OpenlistConfig config, String path) {
+    List<OpenlistFile> files = new ArrayList<>();
+    listDirectory(config, path, files::add);
+    return files;
   }
 
   /**
-   * 递归获取目录下的所有文件和目录（内部方法）
+   * 流式获取指定目录的内容，每解析出一个条目立即交给consumer处理
+   *
+   * <p>配置了分页大小时按 page/per_page 逐页请求，否则沿用 per_page=0 一次性获取。
+   * 每页响应均使用Jackson流式解析，不缓存完整响应体。
    *
    * @param config OpenList配置
    * @param path 目录路径
-   * @param allFiles 累积的文件列表
+   * @param consumer 条目处理回调，在当前线程上按响应顺序调用
    */
-  private void getAllFilesRecursively(
-      OpenlistConfig config, String path, List<OpenlistFile> allFiles) {
-    try {
-      log.info("正在获取目录: {}", path);
-
-      // 调用OpenList API获取当前目录内容
-      List<OpenlistFile> files = getDirectoryContents(config, path);
-
-      for (OpenlistFile file : files) {
-        // 添加到结果列表
-        allFiles.add(file);
-
-        // 如果是目录，递归获取子目录内容
-        if ("folder".equals(file.getType())) {
-          String subPath = file.getPath();
-          if (subPath == null || subPath.isEmpty()) {
-            subPath = path + "/" + file.getName();
-          }
-          getAllFilesRecursively(config, subPath, allFiles);
-        }
-      }
-
-    } catch (Exception e) {
-      log.error("获取目录内容失败: {}, 错误: {}", path, e.getMessage(), e);
-      throw new BusinessException("获取目录内容失败: " + path + ", 错误: " + e.getMessage(), e);
-    }
+  public void listDirectory(OpenlistConfig config, String path, Consumer<OpenlistFile> consumer) {
+    listDirectory(config, path, null, consumer);
   }
 
   /**
-   * 获取指定目录的内容
+   * 流式获取指定目录的内容，文件名经驻留池合并
    *
    * @param config OpenList配置
    * @param path 目录路径
-   * @return 目录内容列表
+   * @param nameInterner 文件名驻留池，由调用方按遍历范围创建；为null时不合并
+   * @param consumer 条目处理回调，在当前线程上按响应顺序调用
    */
-  public List<OpenlistFile> getDirectoryContents(OpenlistConfig config, String path) {
+  public void listDirectory(
+      OpenlistConfig config,
+      String path,
+      StringInterner nameInterner,
+      Consumer<OpenlistFile> consumer) {
     try {
       // 构建请求URL - 使用OpenList配置中的baseUrl作为API服务器地址
       String apiUrl = config.getBaseUrl();
@@ -212,88 +220,285 @@ public class OpenlistApiService {
       }
       apiUrl += "api/fs/list";
 
-      UriComponentsBuilder builder =
-          UriComponentsBuilder.fromHttpUrl(apiUrl).queryParam("path", path);
-
-      String requestUrl = builder.toUriString();
+      String requestUrl =
+          UriComponentsBuilder.fromHttpUrl(apiUrl).queryParam("path", path).toUriString();
       log.debug("请求URL: {}", requestUrl);
 
-      // 设置请求头
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      headers.set("User-Agent", "OpenList-STRM/1.0");
-      headers.set("Authorization", config.getToken());
-
-      // 构建请求体
-      String requestBody =
-          String.format(
-              "{\"path\":\"%s\",\"password\":\"\",\"page\":1,\"per_page\":0,\"refresh\":false}",
-              path);
-
-      HttpEntity<String> entity = new HttpEntity<>(requestBody, headers);
-
-      // 发送请求 - 使用POST方法
-      ResponseEntity<String> response =
-          restTemplate.exchange(requestUrl, HttpMethod.POST, entity, String.class);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw new BusinessException("OpenList API请求失败，状态码: " + response.getStatusCode());
+      int pageSize = resolveListPageSize(config);
+      int page = 1;
+      long received = 0;
+
+      while (true) {
+        // 重试时跳过本页已交付的条目，避免下游重复处理
+        int currentPage = page;
+        AtomicInteger delivered = new AtomicInteger();
+        ListPage listPage =
+            openlistRateLimitService.execute(
+                config,
+                "获取目录 " + path + " 第" + currentPage + "页",
+                () ->
+                    requestListPage(
+                        config,
+                        requestUrl,
+                        path,
+                        currentPage,
+                        pageSize,
+                        nameInterner,
+                        consumer,
+                        delivered));
+        received += listPage.count;
+
+        // 未分页、最后一页不足一页、或已达到total时结束
+        if (pageSize == 0
+            || listPage.count < pageSize
+            || (listPage.total >= 0 && received >= listPage.total)) {
+          break;
+        }
+        page++;
       }
 
-      String responseBody = response.getBody();
-      if (responseBody == null || responseBody.isEmpty()) {
-        throw new BusinessException("OpenList API返回空响应");
+      if (received == 0) {
+        log.debug("目录为空或无文件: {}", path);
       }
+      log.info("获取到 {} 个文件/目录: {}", received, path);
 
-      log.debug("API响应: {}", responseBody);
-
-      // 解析响应
-      AlistApiResponse apiResponse = objectMapper.readValue(responseBody, AlistApiResponse.class);
+    } catch (Exception e) {
+      log.error("调用OpenList API失败: {}, 错误: {}", path, e.getMessage(), e);
+      throw new BusinessException("调用OpenList API失败: " + e.getMessage(), e);
+    }
+  }
 
-      if (apiResponse.getCode() == null || !apiResponse.getCode().equals(200)) {
-        throw new BusinessException("OpenList API返回错误: " + apiResponse.getMessage());
-      }
+  /**
+   * 请求并流式解析一页目录内容
+   *
+   * @param config OpenList配置
+   * @param requestUrl 请求URL
+   * @param path 目录路径
+   * @param page 页码，从1开始
+   * @param pageSize 每页数量，0表示不分页
+   * @param nameInterner 文件名驻留池，可为null
+   * @param consumer 条目处理回调
+   * @param delivered 本页已交付给consumer的条目数，重试时跳过这些条目
+   * @return 本页解析结果
+   */
+  private ListPage requestListPage(
+      OpenlistConfig config,
+      String requestUrl,
+      String path,
+      int page,
+      int pageSize,
+      StringInterner nameInterner,
+      Consumer<OpenlistFile> consumer,
+      AtomicInteger delivered) {
+    Map<String, Object> requestBody = new LinkedHashMap<>();
+    requestBody.put("path", path);
+    requestBody.put("password", "");
+    requestBody.put("page", page);
+    requestBody.put("per_page", pageSize);
+    requestBody.put("refresh", false);
+
+    return openlistRestTemplate.execute(
+        requestUrl,
+        HttpMethod.POST,
+        request -> {
+          request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+          request.getHeaders().set("User-Agent", "OpenList-STRM/1.0");
+          request.getHeaders().set("Authorization", config.getToken());
+          request.getBody().write(objectMapper.writeValueAsBytes(requestBody));
+        },
+        response -> {
+          if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new OpenlistApiException(
+                response.getStatusCode().value(),
+                "OpenList API请求失败，状态码: " + response.getStatusCode());
+          }
+          try (JsonParser parser = objectMapper.getFactory().createParser(response.getBody())) {
+            return readListPage(parser, config, path, nameInterner, consumer, delivered);
+          }
+        });
+  }
 
-      if (apiResponse.getData() == null || apiResponse.getData().getContent() == null) {
-        log.warn("目录为空或无文件: {}", path);
-        return new ArrayList<>();
-      }
+  /**
+   * 解析 api/fs/list 响应：{"code":200,"message":"","data":{"content":[...],"total":n}}
+   *
+   * <p>code出现在data之前且为200时条目边解析边交付；data先于code出现时条目暂存，确认code为200后再交付，
+   * 错误响应中的条目不会交给consumer。
+   *
+   * @param parser JSON解析器
+   * @param config OpenList配置
+   * @param path 目录路径
+   * @param nameInterner 文件名驻留池，可为null
+   * @param consumer 条目处理回调
+   * @param delivered 本页已交付给consumer的条目数
+   * @return 本页解析结果
+   * @throws IOException 读取响应失败
+   */
+  private ListPage readListPage(
+      JsonParser parser,
+      OpenlistConfig config,
+      String path,
+      StringInterner nameInterner,
+      Consumer<OpenlistFile> consumer,
+      AtomicInteger delivered)
+      throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new BusinessException("OpenList API返回空响应");
+    }
 
-      // 转换Alist格式到OpenlistFile格式
-      List<OpenlistFile> files = new ArrayList<>();
-      for (AlistFile alistFile : apiResponse.getData().getContent()) {
-        OpenlistFile file = new OpenlistFile();
-        file.setName(alistFile.getName());
-        file.setSize(alistFile.getSize());
-        file.setType(alistFile.getIsDir() ? "folder" : "file");
-        file.setModified(alistFile.getModified());
-        file.setSign(alistFile.getSign());
-
-        // 构建文件路径
-        String filePath = path;
-        if (!filePath.endsWith("/")) {
-          filePath += "/";
+    ListPage listPage = new ListPage();
+    Integer code = null;
+    String message = null;
+    // data先于code出现时暂存的条目
+    List<OpenlistFile> pending = null;
+    Consumer<OpenlistFile> deliver =
+        file -> {
+          // 重试时跳过本页已交付的条目
+          if (listPage.count++ >= delivered.get()) {
+            consumer.accept(file);
+            delivered.incrementAndGet();
+          }
+        };
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      switch (field) {
+        case "code" -> code = token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+        case "message" -> message = parser.getValueAsString();
+        case "data" -> {
+          // 错误响应不解析data
+          if (token != JsonToken.START_OBJECT || (code != null && code != 200)) {
+            parser.skipChildren();
+          } else if (code != null) {
+            readListData(parser, config, path, nameInterner, deliver, listPage);
+          } else {
+            pending = new ArrayList<>();
+            readListData(parser, config, path, nameInterner, pending::add, listPage);
+          }
         }
-        filePath += alistFile.getName();
-        file.setPath(filePath);
+        default -> parser.skipChildren();
+      }
+    }
 
-        // 构建文件URL - 使用URI类进行智能URL编码
-        String fileUrl = buildFileUrl(config.getBaseUrl(), filePath);
-        file.setUrl(fileUrl);
+    if (code == null || code != 200) {
+      throw new OpenlistApiException(code != null ? code : 0, "OpenList API返回错误: " + message);
+    }
+    if (pending != null) {
+      pending.forEach(deliver);
+    }
+    return listPage;
+  }
 
-        files.add(file);
+  /**
+   * 解析响应中的data对象，content中的条目逐个交给sink
+   *
+   * @param parser JSON解析器，当前位于data对象开始处
+   * @param config OpenList配置
+   * @param path 目录路径
+   * @param nameInterner 文件名驻留池，可为null
+   * @param sink 条目接收方
+   * @param listPage 本页解析结果
+   * @throws IOException 读取响应失败
+   */
+  private void readListData(
+      JsonParser parser,
+      OpenlistConfig config,
+      String path,
+      StringInterner nameInterner,
+      Consumer<OpenlistFile> sink,
+      ListPage listPage)
+      throws IOException {
+    DirectoryNode parent = new DirectoryNode(config.getBaseUrl(), path);
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+      if ("content".equals(field) && token == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          sink.accept(readListEntry(parser, parent, nameInterner));
+        }
+      } else if ("total".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+        listPage.total = parser.getLongValue();
+      } else {
+        parser.skipChildren();
       }
+    }
+  }
 
-      log.info("获取到 {} 个文件/目录: {}", files.size(), path);
+  /**
+   * 解析content中的单个条目
+   *
+   * @param parser JSON解析器，当前位于条目对象开始处
+   * @param parent 所在目录节点
+   * @param nameInterner 文件名驻留池，可为null
+   * @return 文件信息
+   * @throws IOException 读取响应失败
+   */
+  private OpenlistFile readListEntry(
+      JsonParser parser, DirectoryNode parent, StringInterner nameInterner) throws IOException {
+    String name = null;
+    long size = 0;
+    long modified = 0;
+    String sign = null;
+    boolean isDir = false;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      parser.nextToken();
+      switch (field) {
+        case "name" -> {
+          String value = parser.getValueAsString();
+          name = nameInterner != null ? nameInterner.intern(value) : value;
+        }
+        case "size" -> size = parser.getValueAsLong();
+        case "is_dir" -> isDir = parser.getValueAsBoolean();
+        case "modified" -> modified = parseModified(parser.getValueAsString());
+        case "sign" -> {
+          String value = parser.getValueAsString();
+          sign = value == null || value.isEmpty() ? null : value;
+        }
+        default -> parser.skipChildren();
+      }
+    }
 
-      return files;
+    return new OpenlistFile(parent, name, size, modified, sign, isDir);
+  }
 
-    } catch (Exception e) {
-      log.error("调用OpenList API失败: {}, 错误: {}", path, e.getMessage(), e);
-      throw new BusinessException("调用OpenList API失败: " + e.getMessage(), e);
+  /**
+   * 解析RFC3339格式的修改时间
+   *
+   * @param modified 修改时间字符串，如 2024-01-01T12:00:00.123+08:00
+   * @return epoch毫秒，无法解析时为0
+   */
+  private long parseModified(String modified) {
+    if (modified == null || modified.isEmpty()) {
+      return 0;
+    }
+    try {
+      return OffsetDateTime.parse(modified).toInstant().toEpochMilli();
+    } catch (DateTimeParseException e) {
+      log.debug("无法解析修改时间: {}", modified);
+      return 0;
     }
   }
 
+  /**
+   * 读取配置中的目录分页大小，0表示不分页
+   *
+   * @param config OpenList配置
+   * @return 分页大小
+   */
+  private int resolveListPageSize(OpenlistConfig config) {
+    Integer pageSize = config.getListPageSize();
+    return pageSize == null || pageSize < 0 ? 0 : pageSize;
+  }
+
+  /** 单页目录内容的解析结果 */
+  private static class ListPage {
+    private int count;
+    private long total = -1;
+  }
+
   /**
    * 检查文件是否存在
    *
@@ -312,7 +517,7 @@ public class OpenlistApiService {
 
       // 检查文件是否存在
       return files.stream()
-          .anyMatch(file -> "file".equals(file.getType()) && fileName.equals(file.getName()));
+          .anyMatch(file -> file.isFile() && fileName.equals(file.getName()));
 
     } catch (Exception e) {
       log.debug("检查文件存在性失败: {}, 错误: {}", filePath, e.getMessage());
@@ -341,163 +546,15 @@ public class OpenlistApiService {
    * @return 文件内容字节数组
    */
   public byte[] getFileContent(OpenlistConfig config, OpenlistFile file, boolean enableUrlEncoding) {
+    String fileUrl = buildDownloadUrl(file, enableUrlEncoding);
+    log.debug("下载文件请求 - 文件名: {}, 完整URL: {}", file.getName(), fileUrl);
     try {
-      // 使用OpenlistFile中的url字段，已包含sign参数
-      String fileUrl = file.getUrl();
-      if (file.getSign() != null && !file.getSign().isEmpty()) {
-        // 构建完整URL
-        String completeUrl = file.getUrl() + "?sign=" + file.getSign();
-        if (enableUrlEncoding) {
-          // 使用统一的智能编码，避免双重编码（适用于STRM文件写入场景）
-          fileUrl = UrlEncoder.encodeUrlSmart(completeUrl);
-        } else {
-          // 不进行URL编码（适用于刮削文件下载场景，避免认证问题）
-          fileUrl = completeUrl;
-        }
-      } else {
-        if (enableUrlEncoding) {
-          // 使用统一编码标准确保中文路径正确处理
-          fileUrl = UrlEncoder.encodeUrlSmart(fileUrl);
-        } else {
-          // 不进行编码，直接使用原始URL
-          fileUrl = file.getUrl();
-        }
-      }
-
-      log.debug("下载文件请求 - 文件名: {}, 完整URL: {}", file.getName(), fileUrl);
-
-      // 设置请求头
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "OpenList-STRM/1.0");
-      if (config.getToken() != null && !config.getToken().isEmpty()) {
-        headers.set("Authorization", config.getToken());
-        log.debug(
-            "[DEBUG] 使用认证Token: {}...",
-            config.getToken().substring(0, Math.min(10, config.getToken().length())));
-      }
-
-      HttpEntity<String> entity = new HttpEntity<>(headers);
-
-      // 发送GET请求获取文件内容
-      ResponseEntity<byte[]> response =
-          restTemplate.exchange(fileUrl, HttpMethod.GET, entity, byte[].class);
-
-      log.debug(
-          "文件下载响应 - 状态码: {}, Content-Type: {}, Headers: {}",
-          response.getStatusCode(),
-          response.getHeaders().getContentType(),
-          response.getHeaders());
-
-      // 特殊处理302状态码
-      if (response.getStatusCode().value() == 302) {
-        log.info(
-            "文件下载收到302重定向: {}, URL: {}, Location: {}",
-            file.getName(),
-            fileUrl,
-            response.getHeaders().getLocation());
-
-        // 尝试跟随重定向
-        try {
-          if (response.getHeaders().getLocation() != null) {
-            String redirectUrl = response.getHeaders().getLocation().toString();
-            log.info("跟随302重定向到: {}", redirectUrl);
-
-            // 检查重定向URL是否是外部CDN/存储服务
-            boolean isExternalRedirect = redirectUrl.contains("ctyunxs.cn") ||
-                                       redirectUrl.contains("amazonaws.com") ||
-                                       redirectUrl.contains("aliyuncs.com") ||
-                                       !redirectUrl.contains(config.getBaseUrl());
-
-          // 重新构建请求头
-            HttpHeaders redirectHeaders = new HttpHeaders();
-            redirectHeaders.set("User-Agent", "OpenList-STRM/1.0");
-
-            // 只有重定向到同一域名时才发送认证头
-            if (!isExternalRedirect && config.getToken() != null && !config.getToken().isEmpty()) {
-              redirectHeaders.set("Authorization", config.getToken());
-              log.debug("重定向到同一域名，携带认证头");
-            } else {
-              log.debug("重定向到外部CDN/存储服务，不携带认证头");
-            }
-
-            HttpEntity<String> redirectEntity = new HttpEntity<>(redirectHeaders);
-
-          // 发送重定向请求 - 对于外部CDN，直接使用URI避免RestTemplate自动编码
-            ResponseEntity<byte[]> redirectResponse;
-            if (isExternalRedirect) {
-              // 对于外部CDN，使用URI直接请求，避免RestTemplate自动编码导致签名失效
-              try {
-                java.net.URI uri = java.net.URI.create(redirectUrl);
-                redirectResponse = restTemplate.exchange(uri, HttpMethod.GET, redirectEntity, byte[].class);
-                log.debug("使用URI直接请求外部CDN，避免自动编码: {}", uri);
-              } catch (Exception e) {
-                log.error("外部CDN重定向URL构建URI失败，标记下载失败: {}", redirectUrl, e);
-                return null;
-              }
-            } else {
-              redirectResponse = restTemplate.exchange(redirectUrl, HttpMethod.GET, redirectEntity, byte[].class);
-            }
-
-            log.debug(
-                "重定向下载响应 - 状态码: {}, Content-Type: {}",
-                redirectResponse.getStatusCode(),
-                redirectResponse.getHeaders().getContentType());
-
-            if (redirectResponse.getStatusCode().is2xxSuccessful()) {
-              byte[] content = redirectResponse.getBody();
-              if (content != null && content.length > 0) {
-                log.info("重定向下载成功: {}, 大小: {} bytes", file.getName(), content.length);
-                return content;
-              } else {
-                log.warn("重定向下载内容为空: {}", file.getName());
-                return null;
-              }
-            } else {
-              log.warn("重定向下载失败: {}, 状态码: {}", file.getName(), redirectResponse.getStatusCode());
-              return null;
-            }
-          } else {
-            log.warn("收到302重定向但没有Location头: {}", file.getName());
-            return null;
-          }
-        } catch (Exception redirectException) {
-          log.error(
-              "处理302重定向失败: {}, 错误: {}",
-              file.getName(),
-              redirectException.getMessage(),
-              redirectException);
-          return null;
-        }
-      }
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        log.warn("文件下载失败: {}, 状态码: {}, URL: {}", file.getName(), response.getStatusCode(), fileUrl);
-        return null;
-      }
-
-      byte[] content = response.getBody();
-      if (content == null || content.length == 0) {
-        log.warn("文件内容为空: {}, URL: {}", file.getName(), fileUrl);
-        return null;
-      }
-
-      // 检测文件内容类型（前几个字节）
-      String contentPreview = "";
-      if (content.length > 0) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < Math.min(20, content.length); i++) {
-          sb.append(String.format("%02X ", content[i] & 0xFF));
-        }
-        contentPreview = sb.toString().trim();
-      }
-
-      log.debug(
-          "文件下载成功 - 文件名: {}, 大小: {} bytes, 前20字节: {}",
+      return download(
+          config,
+          fileUrl,
           file.getName(),
-          content.length,
-          contentPreview);
-      return content;
-
+          new HttpHeaders(),
+          bytesExtractor(file.getName(), fileUrl));
     } catch (Exception e) {
       log.error("下载文件异常: {}, 错误: {}", file.getName(), e.getMessage(), e);
       return null;
@@ -515,144 +572,187 @@ public class OpenlistApiService {
     try {
       // 构建文件下载URL - 使用URI类进行智能URL编码
       String fileUrl = buildFileUrl(config.getBaseUrl(), filePath);
-
       log.debug("下载文件请求 - 文件路径: {}, 完整URL: {}", filePath, fileUrl);
+      return download(
+          config, fileUrl, filePath, new HttpHeaders(), bytesExtractor(filePath, fileUrl));
+    } catch (Exception e) {
+      log.error("下载文件异常: {}, 错误: {}", filePath, e.getMessage(), e);
+      return null;
+    }
+  }
 
-      // 设置请求头
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "OpenList-STRM/1.0");
-      if (config.getToken() != null && !config.getToken().isEmpty()) {
-        headers.set("Authorization", config.getToken());
+  /**
+   * 下载文件到本地（刮削文件下载场景，不进行URL编码）
+   *
+   * <p>响应流式写入临时文件后原子替换目标文件；目标文件已存在且大小与源文件一致时发起条件请求，内容未变化时不传输；
+   * 超过 app.http.max-download-size 的文件视为下载失败。
+   *
+   * @param config OpenList配置
+   * @param file OpenlistFile对象
+   * @param target 目标文件
+   * @return 下载结果
+   */
+  public StreamingDownloader.Result downloadToFile(
+      OpenlistConfig config, OpenlistFile file, Path target) {
+    String fileUrl = buildDownloadUrl(file, false);
+    log.debug("下载文件请求 - 文件名: {}, 完整URL: {}, 目标: {}", file.getName(), fileUrl, target);
+    try {
+      HttpHeaders conditionalHeaders = new HttpHeaders();
+      StreamingDownloader.applyConditionalHeaders(conditionalHeaders, target, file.getSize());
+      long maxBytes = httpClientProperties.getMaxDownloadSize().toBytes();
+      StreamingDownloader.Result result =
+          download(
+              config,
+              fileUrl,
+              file.getName(),
+              conditionalHeaders,
+              response -> StreamingDownloader.writeTo(response, target, maxBytes));
+      if (result == null) {
+        return FAILED_DOWNLOAD;
+      }
+      if (result.status() == StreamingDownloader.Status.FAILED) {
+        log.warn("文件下载失败: {}, 状态码: {}, URL: {}", file.getName(), result.statusCode(), fileUrl);
+      } else {
         log.debug(
-            "[DEBUG] 使用认证Token: {}...",
-            config.getToken().substring(0, Math.min(10, config.getToken().length())));
+            "文件下载完成 - 文件名: {}, 结果: {}, 大小: {} bytes",
+            file.getName(),
+            result.status(),
+            result.bytes());
       }
+      return result;
+    } catch (Exception e) {
+      log.error("下载文件异常: {}, 错误: {}", file.getName(), e.getMessage(), e);
+      return FAILED_DOWNLOAD;
+    }
+  }
 
-      HttpEntity<String> entity = new HttpEntity<>(headers);
+  /**
+   * 发起下载请求并处理302重定向
+   *
+   * <p>OpenList的下载地址通常重定向到存储服务，只有重定向到同一域名时才携带认证头；
+   * 外部CDN使用URI直接请求，避免RestTemplate自动编码导致签名失效。
+   *
+   * @param config OpenList配置
+   * @param fileUrl 下载地址
+   * @param displayName 用于日志的文件名或路径
+   * @param extraHeaders 附加请求头（如条件请求头）
+   * @param extractor 最终响应的处理器
+   * @return 处理器的结果，重定向缺少Location时为null
+   */
+  private <T> T download(
+      OpenlistConfig config,
+      String fileUrl,
+      String displayName,
+      HttpHeaders extraHeaders,
+      ResponseExtractor<T> extractor) {
+    HttpHeaders headers = buildDownloadHeaders(config, true, extraHeaders);
+    DownloadHop<T> hop =
+        openlistRestTemplate.execute(
+            fileUrl,
+            HttpMethod.GET,
+            request -> request.getHeaders().putAll(headers),
+            response ->
+                response.getStatusCode().value() == 302
+                    ? new DownloadHop<>(true, response.getHeaders().getLocation(), null)
+                    : new DownloadHop<>(false, null, extractor.extractData(response)));
+    if (hop == null) {
+      return null;
+    }
+    if (!hop.redirected()) {
+      return hop.result();
+    }
 
-      // 发送GET请求获取文件内容
-      ResponseEntity<byte[]> response =
-          restTemplate.exchange(fileUrl, HttpMethod.GET, entity, byte[].class);
+    log.info("文件下载收到302重定向: {}, URL: {}, Location: {}", displayName, fileUrl, hop.location());
+    if (hop.location() == null) {
+      log.warn("收到302重定向但没有Location头: {}", displayName);
+      return null;
+    }
 
-      log.debug(
-          "文件下载响应 - 状态码: {}, Content-Type: {}, Headers: {}",
-          response.getStatusCode(),
-          response.getHeaders().getContentType(),
-          response.getHeaders());
+    String redirectUrl = hop.location().toString();
+    // 检查重定向URL是否是外部CDN/存储服务
+    boolean isExternalRedirect =
+        redirectUrl.contains("ctyunxs.cn")
+            || redirectUrl.contains("amazonaws.com")
+            || redirectUrl.contains("aliyuncs.com")
+            || !redirectUrl.contains(config.getBaseUrl());
+    log.debug("跟随302重定向到: {}, 外部存储: {}", redirectUrl, isExternalRedirect);
+
+    HttpHeaders redirectHeaders = buildDownloadHeaders(config, !isExternalRedirect, extraHeaders);
+    RequestCallback redirectCallback = request -> request.getHeaders().putAll(redirectHeaders);
+    return isExternalRedirect
+        ? openlistRestTemplate.execute(hop.location(), HttpMethod.GET, redirectCallback, extractor)
+        : openlistRestTemplate.execute(redirectUrl, HttpMethod.GET, redirectCallback, extractor);
+  }
 
-      // 特殊处理302状态码
-      if (response.getStatusCode().value() == 302) {
-        log.info(
-            "文件下载收到302重定向: {}, URL: {}, Location: {}",
-            filePath,
-            fileUrl,
-            response.getHeaders().getLocation());
-
-        // 尝试跟随重定向
-        try {
-          if (response.getHeaders().getLocation() != null) {
-            String redirectUrl = response.getHeaders().getLocation().toString();
-            log.info("跟随302重定向到: {}", redirectUrl);
-
-            // 检查重定向URL是否是外部CDN/存储服务
-            boolean isExternalRedirect = redirectUrl.contains("ctyunxs.cn") ||
-                                       redirectUrl.contains("amazonaws.com") ||
-                                       redirectUrl.contains("aliyuncs.com") ||
-                                       !redirectUrl.contains(config.getBaseUrl());
-
-          // 重新构建请求头
-            HttpHeaders redirectHeaders = new HttpHeaders();
-            redirectHeaders.set("User-Agent", "OpenList-STRM/1.0");
-
-            // 只有重定向到同一域名时才发送认证头
-            if (!isExternalRedirect && config.getToken() != null && !config.getToken().isEmpty()) {
-              redirectHeaders.set("Authorization", config.getToken());
-              log.debug("重定向到同一域名，携带认证头");
-            } else {
-              log.debug("重定向到外部CDN/存储服务，不携带认证头");
-            }
-
-            HttpEntity<String> redirectEntity = new HttpEntity<>(redirectHeaders);
-
-          // 发送重定向请求 - 对于外部CDN，直接使用URI避免RestTemplate自动编码
-            ResponseEntity<byte[]> redirectResponse;
-            if (isExternalRedirect) {
-              // 对于外部CDN，使用URI直接请求，避免RestTemplate自动编码导致签名失效
-              try {
-                java.net.URI uri = java.net.URI.create(redirectUrl);
-                redirectResponse = restTemplate.exchange(uri, HttpMethod.GET, redirectEntity, byte[].class);
-                log.debug("使用URI直接请求外部CDN，避免自动编码: {}", uri);
-              } catch (Exception e) {
-                log.error("外部CDN重定向URL构建URI失败，标记下载失败: {}", redirectUrl, e);
-                return null;
-              }
-            } else {
-              redirectResponse = restTemplate.exchange(redirectUrl, HttpMethod.GET, redirectEntity, byte[].class);
-            }
-
-            log.debug(
-                "重定向下载响应 - 状态码: {}, Content-Type: {}",
-                redirectResponse.getStatusCode(),
-                redirectResponse.getHeaders().getContentType());
-
-            if (redirectResponse.getStatusCode().is2xxSuccessful()) {
-              byte[] content = redirectResponse.getBody();
-              if (content != null && content.length > 0) {
-                log.info("重定向下载成功: {}, 大小: {} bytes", filePath, content.length);
-                return content;
-              } else {
-                log.warn("重定向下载内容为空: {}", filePath);
-                return null;
-              }
-            } else {
-              log.warn("重定向下载失败: {}, 状态码: {}", filePath, redirectResponse.getStatusCode());
-              return null;
-            }
-          } else {
-            log.warn("收到302重定向但没有Location头: {}", filePath);
-            return null;
-          }
-        } catch (Exception redirectException) {
-          log.error(
-              "处理302重定向失败: {}, 错误: {}",
-              filePath,
-              redirectException.getMessage(),
-              redirectException);
-          return null;
-        }
-      }
+  /**
+   * 构建下载请求头
+   *
+   * @param config OpenList配置
+   * @param withToken 是否携带认证头
+   * @param extraHeaders 附加请求头
+   * @return 请求头
+   */
+  private HttpHeaders buildDownloadHeaders(
+      OpenlistConfig config, boolean withToken, HttpHeaders extraHeaders) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set("User-Agent", "OpenList-STRM/1.0");
+    if (withToken && config.getToken() != null && !config.getToken().isEmpty()) {
+      headers.set("Authorization", config.getToken());
+    }
+    headers.putAll(extraHeaders);
+    return headers;
+  }
 
+  /**
+   * 读取完整响应体的处理器，响应体超过大小限制时抛出异常
+   *
+   * @param displayName 用于日志的文件名或路径
+   * @param fileUrl 下载地址
+   * @return 响应处理器
+   */
+  private ResponseExtractor<byte[]> bytesExtractor(String displayName, String fileUrl) {
+    long maxBytes = httpClientProperties.getMaxDownloadSize().toBytes();
+    return response -> {
       if (!response.getStatusCode().is2xxSuccessful()) {
-        log.warn("文件下载失败: {}, 状态码: {}, URL: {}", filePath, response.getStatusCode(), fileUrl);
+        log.warn("文件下载失败: {}, 状态码: {}, URL: {}", displayName, response.getStatusCode(), fileUrl);
         return null;
       }
-
-      byte[] content = response.getBody();
-      if (content == null || content.length == 0) {
-        log.warn("文件内容为空: {}, URL: {}", filePath, fileUrl);
-        return null;
+      byte[] content;
+      try (InputStream body = response.getBody()) {
+        content = body.readNBytes((int) Math.min(maxBytes + 1, Integer.MAX_VALUE - 8));
       }
-
-      // 检测文件内容类型（前几个字节）
-      String contentPreview = "";
-      if (content.length > 0) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < Math.min(20, content.length); i++) {
-          sb.append(String.format("%02X ", content[i] & 0xFF));
-        }
-        contentPreview = sb.toString().trim();
+      if (content.length > maxBytes) {
+        throw new IOException("文件大小超过限制 " + maxBytes);
       }
-
-      log.debug(
-          "文件下载成功 - 路径: {}, 大小: {} bytes, 前20字节: {}", filePath, content.length, contentPreview);
+      if (content.length == 0) {
+        log.warn("文件内容为空: {}, URL: {}", displayName, fileUrl);
+        return null;
+      }
+      log.debug("文件下载成功 - 文件名: {}, 大小: {} bytes", displayName, content.length);
       return content;
+    };
+  }
 
-    } catch (Exception e) {
-      log.error("下载文件异常: {}, 错误: {}", filePath, e.getMessage(), e);
-      return null;
+  /**
+   * 构建OpenlistFile的下载地址
+   *
+   * @param file OpenlistFile对象
+   * @param enableUrlEncoding 是否启用URL编码（false适用于刮削文件下载场景，避免认证问题）
+   * @return 下载地址
+   */
+  private static String buildDownloadUrl(OpenlistFile file, boolean enableUrlEncoding) {
+    // 使用OpenlistFile中的url字段，需要时追加sign参数
+    String fileUrl = file.getUrl();
+    if (file.getSign() != null && !file.getSign().isEmpty()) {
+      fileUrl = fileUrl + "?sign=" + file.getSign();
     }
+    // 使用统一的智能编码，避免双重编码（适用于STRM文件写入场景）
+    return enableUrlEncoding ? UrlEncoder.encodeUrlSmart(fileUrl) : fileUrl;
   }
 
+  /** 一次下载请求的响应：重定向地址或最终结果 */
+  private record DownloadHop<T>(boolean redirected, URI location, T result) {}
+
   /**
    * 构建文件URL，使用UriComponentsBuilder进行正确的URL编码
    *
@@ -662,7 +762,7 @@ public class OpenlistApiService {
    * @param filePath 文件路径
    * @return 完整的文件URL
    */
-  private String buildFileUrl(String baseUrl, String filePath) {
+  private static String buildFileUrl(String baseUrl, String filePath) {
     // 确保baseUrl以/结尾
     if (!baseUrl.endsWith("/")) {
       baseUrl += "/";
@@ -0,0 +1,288 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.util.StringInterner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * OpenList目录并发遍历服务
+ *
+ * <p>以有界并发的方式请求 api/fs/list，子目录一经发现立即提交遍历，不必等待兄弟目录处理完毕。
+ * 已获取的目录列表按完成顺序交给调用线程上的 {@link DirectoryListener} 串行处理，
+ * 因此下游的STRM生成与刮削逻辑无需考虑线程安全。可传入子目录过滤条件，在父目录列表中判定为无需进入的子目录及其子树不再请求。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OpenlistCrawlerService {
+
+  /** 默认目录遍历并发数 */
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  /** 目录遍历并发数上限 */
+  public static final int MAX_CONCURRENCY = 32;
+
+  /** 每个并发槽位允许积压的已完成目录数量，超过后遍历线程等待下游消费 */
+  private static final int PENDING_LISTINGS_PER_WORKER = 4;
+
+  /** 单次遍历的文件名驻留池容量，遍历结束后随之释放 */
+  private static final int NAME_POOL_SIZE = 65536;
+
+  private final OpenlistApiService openlistApiService;
+  private final OpenlistRateLimitService openlistRateLimitService;
+
+  /** 目录处理回调，在调用 {@link #crawl} 的线程上依次执行 */
+  @FunctionalInterface
+  public interface DirectoryListener {
+
+    /**
+     * 处理一个已获取到内容的目录
+     *
+     * @param path 目录路径
+     * @param files 目录下的文件和子目录
+     */
+    void onDirectory(String path, List<OpenlistApiService.OpenlistFile> files);
+
+    /**
+     * 目录获取失败时回调，默认仅记录日志
+     *
+     * @param path 目录路径
+     * @param e 异常信息
+     */
+    default void onError(String path, Exception e) {
+      log.error("获取目录内容失败: {}, 错误: {}", path, e.getMessage());
+    }
+  }
+
+  /** 遍历结果统计 */
+  @Getter
+  public static class CrawlResult {
+    private int directoryCount;
+    private long fileCount;
+    private final List<String> failedDirectories = new ArrayList<>();
+
+    public List<String> getFailedDirectories() {
+      return Collections.unmodifiableList(failedDirectories);
+    }
+  }
+
+  /** 单个目录的获取结果 */
+  private record Listing(
+      String path, List<OpenlistApiService.OpenlistFile> files, Exception error) {}
+
+  /**
+   * 并发遍历目录树
+   *
+   * @param config OpenList配置
+   * @param rootPath 起始目录
+   * @param listener 目录处理回调
+   * @return 遍历结果统计
+   */
+  public CrawlResult crawl(OpenlistConfig config, String rootPath, DirectoryListener listener) {
+    return crawl(config, rootPath, folder -> true, listener);
+  }
+
+  /**
+   * 并发遍历目录树，跳过不满足过滤条件的子目录
+   *
+   * @param config OpenList配置
+   * @param rootPath 起始目录
+   * @param descendFilter 子目录过滤条件，在遍历线程上调用，返回false时不进入该子目录
+   * @param listener 目录处理回调
+   * @return 遍历结果统计
+   */
+  public CrawlResult crawl(
+      OpenlistConfig config,
+      String rootPath,
+      Predicate<OpenlistApiService.OpenlistFile> descendFilter,
+      DirectoryListener listener) {
+    int concurrency = resolveConcurrency(config);
+    log.info("开始遍历目录: {}, 并发数: {}", rootPath, concurrency);
+
+    BlockingQueue<Listing> completed =
+        new LinkedBlockingQueue<>(concurrency * PENDING_LISTINGS_PER_WORKER);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            concurrency, Thread.ofVirtual().name("openlist-crawler-", 0).factory());
+    CrawlResult result = new CrawlResult();
+    long startTime = System.currentTimeMillis();
+
+    try {
+      // 已提交但尚未被调用线程消费的目录数量，子目录在解析过程中即被提交，计数先于父目录结果入队
+      AtomicInteger pending = new AtomicInteger(1);
+      // 已提交过的目录，补偿重试重新列出父目录时不会重复提交子目录
+      Set<String> submitted = ConcurrentHashMap.newKeySet();
+      submitted.add(rootPath);
+      // 合并本次遍历中大量重复的文件名（如 poster.jpg、tvshow.nfo）
+      StringInterner names = new StringInterner(NAME_POOL_SIZE);
+      submit(executor, config, rootPath, descendFilter, names, pending, submitted, completed);
+
+      boolean retried = false;
+      while (true) {
+        drain(completed, pending, listener, result);
+
+        if (result.failedDirectories.isEmpty() || retried) {
+          break;
+        }
+
+        // 补偿重试：等待熔断恢复后重新获取失败的目录
+        retried = true;
+        List<String> retryDirectories = new ArrayList<>(result.failedDirectories);
+        result.failedDirectories.clear();
+        log.warn("{} 个目录获取失败，进行补偿重试", retryDirectories.size());
+        openlistRateLimitService.awaitAvailable(config);
+        for (String path : retryDirectories) {
+          pending.incrementAndGet();
+          submit(executor, config, path, descendFilter, names, pending, submitted, completed);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BusinessException("目录遍历被中断: " + rootPath, e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    log.info(
+        "目录遍历完成: {}, 目录数: {}, 文件/目录数: {}, 失败目录数: {}, 耗时: {}ms",
+        rootPath,
+        result.directoryCount,
+        result.fileCount,
+        result.failedDirectories.size(),
+        System.currentTimeMillis() - startTime);
+    return result;
+  }
+
+  /**
+   * 在调用线程上依次处理完成队列中的目录，直到所有已提交目录都处理完毕
+   *
+   * @param completed 完成队列
+   * @param pending 未完成目录计数
+   * @param listener 目录处理回调
+   * @param result 遍历结果统计
+   * @throws InterruptedException 等待被中断
+   */
+  private void drain(
+      BlockingQueue<Listing> completed,
+      AtomicInteger pending,
+      DirectoryListener listener,
+      CrawlResult result)
+      throws InterruptedException {
+    while (pending.get() > 0) {
+      Listing listing = completed.take();
+      try {
+        if (listing.error() != null) {
+          result.failedDirectories.add(listing.path());
+          listener.onError(listing.path(), listing.error());
+          continue;
+        }
+
+        result.directoryCount++;
+        result.fileCount += listing.files().size();
+        listener.onDirectory(listing.path(), listing.files());
+      } finally {
+        pending.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * 提交单个目录的获取任务，子目录在流式解析时立即提交，结果（含异常）统一放入完成队列
+   *
+   * @param executor 遍历线程池
+   * @param config OpenList配置
+   * @param path 目录路径
+   * @param descendFilter 子目录过滤条件
+   * @param names 本次遍历的文件名驻留池
+   * @param pending 未完成目录计数
+   * @param submitted 已提交过的目录
+   * @param completed 完成队列
+   */
+  private void submit(
+      ExecutorService executor,
+      OpenlistConfig config,
+      String path,
+      Predicate<OpenlistApiService.OpenlistFile> descendFilter,
+      StringInterner names,
+      AtomicInteger pending,
+      Set<String> submitted,
+      BlockingQueue<Listing> completed) {
+    try {
+      executor.execute(
+          () -> {
+            List<OpenlistApiService.OpenlistFile> files = new ArrayList<>();
+            Listing listing;
+            try {
+              openlistApiService.listDirectory(
+                  config,
+                  path,
+                  names,
+                  file -> {
+                    files.add(file);
+                    if (file.isFolder()) {
+                      String childPath = file.getPath();
+                      if (!submitted.contains(childPath)
+                          && descendFilter.test(file)
+                          && submitted.add(childPath)) {
+                        pending.incrementAndGet();
+                        submit(
+                            executor,
+                            config,
+                            childPath,
+                            descendFilter,
+                            names,
+                            pending,
+                            submitted,
+                            completed);
+                      }
+                    }
+                  });
+              listing = new Listing(path, files, null);
+            } catch (Exception e) {
+              listing = new Listing(path, List.of(), e);
+            }
+            try {
+              completed.put(listing);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      pending.decrementAndGet();
+      throw new BusinessException("目录遍历任务提交失败: " + path, e);
+    }
+  }
+
+  /**
+   * 读取配置中的并发数，限制在 1 到 {@link #MAX_CONCURRENCY} 之间
+   *
+   * @param config OpenList配置
+   * @return 并发数
+   */
+  static int resolveConcurrency(OpenlistConfig config) {
+    Integer configured = config.getCrawlConcurrency();
+    if (configured == null) {
+      return DEFAULT_CONCURRENCY;
+    }
+    return Math.max(1, Math.min(MAX_CONCURRENCY, configured));
+  }
+}
@@ -0,0 +1,236 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.exception.OpenlistApiException;
+import com.hienao.openlist2strm.util.AdaptiveConcurrencyLimiter;
+import com.hienao.openlist2strm.util.CircuitBreaker;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * OpenList请求限流服务
+ *
+ * <p>每个OpenList配置独立一组AIMD并发限制器和熔断器：限流、5xx及网络异常时减半并发并按抖动指数退避重试，
+ * 连续失败时熔断，避免在网盘后端限流期间继续施压导致目录被跳过。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+public class OpenlistRateLimitService {
+
+  /** 单个请求最多尝试次数（含首次） */
+  private static final int MAX_ATTEMPTS = 5;
+
+  /** 退避基准时间（毫秒） */
+  private static final long BASE_BACKOFF_MILLIS = 500;
+
+  /** 退避上限（毫秒） */
+  private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+  /** 连续失败多少次后熔断 */
+  private static final int CIRCUIT_FAILURE_THRESHOLD = 10;
+
+  /** 熔断冷却时间（毫秒） */
+  private static final long CIRCUIT_OPEN_MILLIS = 30_000;
+
+  private final Map<Long, Guard> guards = new ConcurrentHashMap<>();
+
+  /** 单个OpenList配置的限流状态 */
+  private record Guard(AdaptiveConcurrencyLimiter limiter, CircuitBreaker circuitBreaker) {}
+
+  /** 失败分类结果 */
+  private record Failure(boolean retryable, long retryAfterMillis) {}
+
+  /**
+   * 在限流保护下执行OpenList请求，可重试的失败按抖动指数退避重试
+   *
+   * @param config OpenList配置
+   * @param operation 操作描述，用于日志
+   * @param request 请求逻辑
+   * @param <T> 返回值类型
+   * @return 请求结果
+   */
+  public <T> T execute(OpenlistConfig config, String operation, Supplier<T> request) {
+    Guard guard = getGuard(config);
+
+    for (int attempt = 1; ; attempt++) {
+      acquire(guard.limiter(), operation);
+
+      if (!guard.circuitBreaker().tryAcquire()) {
+        guard.limiter().onIgnore();
+        throw new OpenlistApiException(
+            503,
+            "OpenList服务连续失败已熔断，"
+                + guard.circuitBreaker().getRemainingOpenMillis()
+                + "ms后重试: "
+                + operation);
+      }
+
+      try {
+        T result = request.get();
+        guard.limiter().onSuccess();
+        guard.circuitBreaker().onSuccess();
+        return result;
+      } catch (RuntimeException e) {
+        Failure failure = classify(e);
+        if (!failure.retryable()) {
+          // 后端正常响应了错误（如目录不存在），不影响限流和熔断状态
+          guard.limiter().onIgnore();
+          guard.circuitBreaker().onIgnore();
+          throw e;
+        }
+
+        guard.limiter().onThrottle(failure.retryAfterMillis());
+        guard.circuitBreaker().onFailure();
+
+        if (attempt >= MAX_ATTEMPTS
+            || guard.circuitBreaker().getState() == CircuitBreaker.State.OPEN) {
+          log.warn("OpenList请求重试{}次后仍失败: {}, 错误: {}", attempt, operation, e.getMessage());
+          throw e;
+        }
+
+        long backoff = computeBackoff(attempt, failure.retryAfterMillis());
+        log.warn(
+            "OpenList请求失败，{}ms后第{}次重试: {}, 当前并发上限: {}, 错误: {}",
+            backoff,
+            attempt,
+            operation,
+            guard.limiter().getLimit(),
+            e.getMessage());
+        sleep(backoff, operation);
+      }
+    }
+  }
+
+  /**
+   * 等待熔断器冷却结束，用于对失败目录进行最后一轮补偿
+   *
+   * @param config OpenList配置
+   */
+  public void awaitAvailable(OpenlistConfig config) {
+    long remaining = getGuard(config).circuitBreaker().getRemainingOpenMillis();
+    if (remaining > 0) {
+      log.info("OpenList服务熔断中，等待 {}ms 后继续", remaining);
+      sleep(remaining, "等待熔断恢复");
+    }
+  }
+
+  /**
+   * 获取配置对应的限流状态，并发上限随配置中的目录遍历并发数更新
+   *
+   * @param config OpenList配置
+   * @return 限流状态
+   */
+  private Guard getGuard(OpenlistConfig config) {
+    int maxConcurrency = OpenlistCrawlerService.resolveConcurrency(config);
+    Long key = config.getId() != null ? config.getId() : 0L;
+    Guard guard =
+        guards.computeIfAbsent(
+            key,
+            id ->
+                new Guard(
+                    new AdaptiveConcurrencyLimiter(1, maxConcurrency),
+                    new CircuitBreaker(CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS)));
+    guard.limiter().setMaxLimit(maxConcurrency);
+    return guard;
+  }
+
+  /**
+   * 判断失败是否可重试：限流(429)、服务端错误(5xx)、网络异常可重试；目录不存在、认证失败等直接返回
+   *
+   * @param e 异常
+   * @return 失败分类
+   */
+  private Failure classify(RuntimeException e) {
+    if (e instanceof HttpStatusCodeException statusException) {
+      int status = statusException.getStatusCode().value();
+      boolean retryable = status == 429 || status >= 500;
+      return new Failure(retryable, retryable ? parseRetryAfter(statusException) : 0);
+    }
+    if (e instanceof ResourceAccessException) {
+      return new Failure(true, 0);
+    }
+    if (e instanceof OpenlistApiException apiException) {
+      int code = apiException.getCode();
+      boolean retryable =
+          (code == 429 || code >= 500) && !isNotFoundMessage(apiException.getMessage());
+      return new Failure(retryable, 0);
+    }
+    return new Failure(false, 0);
+  }
+
+  /**
+   * OpenList对不存在的对象同样返回code=500，这类错误重试没有意义
+   *
+   * @param message 错误信息
+   * @return 是否为对象不存在
+   */
+  private boolean isNotFoundMessage(String message) {
+    if (message == null) {
+      return false;
+    }
+    String lower = message.toLowerCase(Locale.ROOT);
+    return lower.contains("not found") || lower.contains("not exist") || message.contains("不存在");
+  }
+
+  /**
+   * 解析Retry-After响应头（秒）
+   *
+   * @param e HTTP状态异常
+   * @return 等待时间（毫秒），未提供时为0
+   */
+  private long parseRetryAfter(HttpStatusCodeException e) {
+    HttpHeaders headers = e.getResponseHeaders();
+    String retryAfter = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+    if (retryAfter == null) {
+      return 0;
+    }
+    try {
+      return Math.min(MAX_BACKOFF_MILLIS, Long.parseLong(retryAfter.trim()) * 1000);
+    } catch (NumberFormatException ignored) {
+      return 0;
+    }
+  }
+
+  /**
+   * 计算退避时间：full jitter指数退避，且不少于服务端要求的等待时间
+   *
+   * @param attempt 已尝试次数
+   * @param retryAfterMillis 服务端要求的等待时间
+   * @return 退避时间（毫秒）
+   */
+  private long computeBackoff(int attempt, long retryAfterMillis) {
+    long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+    long jittered = ThreadLocalRandom.current().nextLong(BASE_BACKOFF_MILLIS / 2, ceiling + 1);
+    return Math.max(jittered, retryAfterMillis);
+  }
+
+  private void acquire(AdaptiveConcurrencyLimiter limiter, String operation) {
+    try {
+      limiter.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BusinessException("等待OpenList请求许可被中断: " + operation, e);
+    }
+  }
+
+  private void sleep(long millis, String operation) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BusinessException("OpenList请求重试等待被中断: " + operation, e);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.config.ScrapingProperties;
+import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.service.OpenlistApiService.OpenlistFile;
+import com.hienao.openlist2strm.util.OpenlistDirectoryIndex;
+import com.hienao.openlist2strm.util.StreamingDownloader;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 已有刮削信息同步服务
+ *
+ * <p>把OpenList目录中的NFO和图片文件复制到STRM保存目录。同一次任务中每个目录只同步一次，同目录的其他视频直接复用结果，
+ * 有文件复制失败时不复用，下一个视频重新同步（已复制的文件因未变化而跳过）；
+ * 本地文件大小和修改时间与源文件一致时跳过下载，否则发起条件请求并流式写入；目录内的文件并行下载，
+ * 并发数由 app.scraping.sidecar-copy-threads 控制。字幕文件同样通过 {@link #syncFile} 复制。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+public class SidecarSyncService {
+
+  private final OpenlistApiService openlistApiService;
+  private final DirectorySnapshotService directorySnapshotService;
+
+  /** 限制同时进行的下载数 */
+  private final Semaphore downloadPermits;
+
+  private final ExecutorService copyExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+  public SidecarSyncService(
+      OpenlistApiService openlistApiService,
+      DirectorySnapshotService directorySnapshotService,
+      ScrapingProperties scrapingProperties) {
+    this.openlistApiService = openlistApiService;
+    this.directorySnapshotService = directorySnapshotService;
+    this.downloadPermits = new Semaphore(Math.max(1, scrapingProperties.getSidecarCopyThreads()));
+  }
+
+  /**
+   * 同步目录中的NFO和图片文件到保存目录
+   *
+   * @param openlistConfig OpenList配置
+   * @param directoryIndex 目录文件索引
+   * @param saveDirectory STRM保存目录
+   * @return 保存目录中是否存在刮削信息（本次复制或已是最新）
+   * @throws BusinessException 有文件复制失败
+   */
+  public boolean syncSidecars(
+      OpenlistConfig openlistConfig, OpenlistDirectoryIndex directoryIndex, String saveDirectory) {
+    return directoryIndex.syncSidecarsOnce(
+        saveDirectory, () -> syncDirectory(openlistConfig, directoryIndex, saveDirectory));
+  }
+
+  private boolean syncDirectory(
+      OpenlistConfig openlistConfig, OpenlistDirectoryIndex directoryIndex, String saveDirectory) {
+    List<OpenlistFile> sidecars = new ArrayList<>(directoryIndex.getNfoFiles());
+    sidecars.addAll(directoryIndex.getImageFiles());
+    if (sidecars.isEmpty()) {
+      return false;
+    }
+
+    List<CompletableFuture<StreamingDownloader.Status>> copies = new ArrayList<>(sidecars.size());
+    for (OpenlistFile file : sidecars) {
+      copies.add(
+          CompletableFuture.supplyAsync(
+              () -> copyFile(openlistConfig, file, saveDirectory), copyExecutor));
+    }
+
+    boolean foundScrapingInfo = false;
+    int failedCount = 0;
+    for (CompletableFuture<StreamingDownloader.Status> copy : copies) {
+      StreamingDownloader.Status status = copy.join();
+      if (status == StreamingDownloader.Status.FAILED) {
+        failedCount++;
+      } else if (status != StreamingDownloader.Status.EMPTY) {
+        foundScrapingInfo = true;
+      }
+    }
+    if (failedCount > 0) {
+      throw new BusinessException(
+          "目录刮削信息同步失败: " + directoryIndex.getPath() + " (" + failedCount + "个文件)");
+    }
+    log.debug("目录刮削信息同步完成: {} ({}个文件)", directoryIndex.getPath(), sidecars.size());
+    return foundScrapingInfo;
+  }
+
+  /**
+   * 复制单个OpenList文件到保存目录，本地文件已是最新时跳过
+   *
+   * @param openlistConfig OpenList配置
+   * @param file OpenList文件
+   * @param saveDirectory 保存目录
+   * @return 保存目录中是否存在该文件的最新内容
+   */
+  public boolean syncFile(OpenlistConfig openlistConfig, OpenlistFile file, String saveDirectory) {
+    StreamingDownloader.Status status = copyFile(openlistConfig, file, saveDirectory);
+    return status == StreamingDownloader.Status.DOWNLOADED
+        || status == StreamingDownloader.Status.NOT_MODIFIED;
+  }
+
+  /** 复制单个文件，返回复制结果，出错时返回 {@link StreamingDownloader.Status#FAILED} */
+  private StreamingDownloader.Status copyFile(
+      OpenlistConfig openlistConfig, OpenlistFile file, String saveDirectory) {
+    Path targetFile = Paths.get(saveDirectory, file.getName());
+    try {
+      if (isUpToDate(targetFile, file)) {
+        log.debug("文件未变化，跳过复制: {}", targetFile);
+        return StreamingDownloader.Status.NOT_MODIFIED;
+      }
+
+      StreamingDownloader.Result result;
+      downloadPermits.acquire();
+      try {
+        result = openlistApiService.downloadToFile(openlistConfig, file, targetFile);
+      } finally {
+        downloadPermits.release();
+      }
+
+      switch (result.status()) {
+        case DOWNLOADED -> {
+          directorySnapshotService.recordWritten(targetFile);
+          if (file.getModified() > 0) {
+            Files.setLastModifiedTime(targetFile, FileTime.fromMillis(file.getModified()));
+          }
+          log.info("已复制文件: {} -> {} (大小: {} bytes)", file.getName(), targetFile, result.bytes());
+        }
+        case NOT_MODIFIED -> log.debug("服务端确认文件未变化: {}", targetFile);
+        case EMPTY -> log.debug("文件内容为空: {}", file.getName());
+        default -> log.debug("文件复制失败: {}", file.getName());
+      }
+      return result.status();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return StreamingDownloader.Status.FAILED;
+    } catch (Exception e) {
+      log.warn("复制文件失败: {}", file.getName(), e);
+      return StreamingDownloader.Status.FAILED;
+    }
+  }
+
+  /** 本地文件大小和修改时间（精确到秒，兼容只保存秒级时间的文件系统）都与源文件一致时无需复制，源文件修改时间未知时总是复制 */
+  private boolean isUpToDate(Path targetFile, OpenlistFile file) throws IOException {
+    if (file.getModified() <= 0 || !directorySnapshotService.exists(targetFile)) {
+      return false;
+    }
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(targetFile, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+    return attributes.isRegularFile()
+        && attributes.size() == file.getSize()
+        && attributes.lastModifiedTime().to(TimeUnit.SECONDS)
+            == TimeUnit.MILLISECONDS.toSeconds(file.getModified());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    copyExecutor.shutdownNow();
+  }
+}
@@ -1,19 +1,30 @@
 package com.hienao.openlist2strm.service;
 
 import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.entity.StrmManifest;
 import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.util.DirectorySnapshotCache;
+import com.hienao.openlist2strm.util.MediaExtensionMatcher;
+import com.hienao.openlist2strm.util.StreamingDownloader;
+import com.hienao.openlist2strm.util.StrmCleanupIndex;
+import com.hienao.openlist2strm.util.StrmWriter;
 import com.hienao.openlist2strm.util.UrlEncoder;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -33,7 +44,8 @@ public class StrmFileService {
   private static final String ERROR_SUFFIX = ", 错误: ";
 
   private final SystemConfigService systemConfigService;
-  private final OpenlistApiService openlistApiService;
+  private final Executor strmWriteExecutor;
+  private final DirectorySnapshotService directorySnapshotService;
 
   /**
    * 生成STRM文件
@@ -55,28 +67,16 @@ public class StrmFileService {
       String renameRegex,
       OpenlistConfig openlistConfig) {
     try {
-      // 处理文件名重命名
-      String finalFileName = processFileName(fileName, renameRegex);
-
-      // 构建STRM文件路径
-      Path strmFilePath = buildStrmFilePath(strmBasePath, relativePath, finalFileName);
+      // 处理文件名重命名，构建STRM文件路径
+      Path strmFilePath = resolveStrmFilePath(strmBasePath, relativePath, fileName, renameRegex);
 
       // 检查文件是否已存在（增量任务场景）
-      if (Files.exists(strmFilePath) && !forceRegenerate) {
-        log.info("STRM文件已存在，跳过生成: {}", strmFilePath);
+      if (!forceRegenerate && directorySnapshotService.exists(strmFilePath)) {
+        log.debug("STRM文件已存在，跳过生成: {}", strmFilePath);
         return;
       }
 
-      // 确保目录存在
-      createDirectoriesIfNotExists(strmFilePath.getParent());
-
-      // 处理baseUrl替换
-      String processedUrl = processUrlWithBaseUrlReplacement(fileUrl, openlistConfig);
-
-      // 写入STRM文件内容
-      writeStrmFile(strmFilePath, processedUrl, openlistConfig);
-
-      log.info("生成STRM文件成功: {}", strmFilePath);
+      writeStrmFile(strmFilePath, buildStrmContent(fileUrl, openlistConfig));
 
     } catch (Exception e) {
       log.error("生成STRM文件失败: {}" + ERROR_SUFFIX + "{}", fileName, e.getMessage(), e);
@@ -84,6 +84,74 @@ public class StrmFileService {
     }
   }
 
+  /**
+   * 计算视频文件对应的STRM文件路径
+   *
+   * @param strmBasePath STRM文件基础路径
+   * @param relativePath 相对路径（相对于任务配置的path）
+   * @param fileName 视频文件名
+   * @param renameRegex 重命名正则表达式（可选）
+   * @return STRM文件路径
+   */
+  public Path resolveStrmFilePath(
+      String strmBasePath, String relativePath, String fileName, String renameRegex) {
+    return buildStrmFilePath(strmBasePath, relativePath, processFileName(fileName, renameRegex));
+  }
+
+  /**
+   * 构建STRM文件内容：处理baseUrl替换，并按配置进行URL编码
+   *
+   * @param fileUrl 文件URL
+   * @param openlistConfig OpenList配置
+   * @return STRM文件内容
+   */
+  public String buildStrmContent(String fileUrl, OpenlistConfig openlistConfig) {
+    // 处理baseUrl替换
+    String processedUrl = processUrlWithBaseUrlReplacement(fileUrl, openlistConfig);
+
+    // 根据配置决定是否进行URL编码
+    if (shouldEncodeUrl(openlistConfig)) {
+      String encodedUrl = encodeUrlForStrm(processedUrl);
+      log.debug("URL编码处理: 原始={}, 编码后={}", processedUrl, encodedUrl);
+      return encodedUrl;
+    }
+    log.debug("URL编码已禁用，使用原始URL: {}", processedUrl);
+    return processedUrl;
+  }
+
+  /**
+   * 同步写入单个STRM文件，目录不存在时自动创建，内容一致时跳过
+   *
+   * @param strmFilePath STRM文件路径
+   * @param content STRM文件内容
+   */
+  public void writeStrmFile(Path strmFilePath, String content) {
+    // 确保目录存在
+    createDirectoriesIfNotExists(strmFilePath.getParent());
+
+    try {
+      // STRM文件内容就是文件的URL
+      if (StrmWriter.writeIfChanged(strmFilePath, content.getBytes(StandardCharsets.UTF_8))) {
+        directorySnapshotService.recordWritten(strmFilePath);
+        log.debug("生成STRM文件成功: {}", strmFilePath);
+      }
+    } catch (IOException e) {
+      throw new BusinessException("写入STRM文件失败: " + strmFilePath + ERROR_SUFFIX + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * 创建单次任务执行使用的STRM文件写入器，按目录批量写入到STRM写入线程池
+   *
+   * @param snapshot 本次执行的目录快照
+   * @param failureListener 写入失败监听器，在写入线程上以条目标识调用
+   * @return STRM文件写入器
+   */
+  public StrmWriter newStrmWriter(
+      DirectorySnapshotCache snapshot, Consumer<String> failureListener) {
+    return new StrmWriter(strmWriteExecutor, snapshot, failureListener);
+  }
+
   /**
    * 处理文件名（重命名和添加.strm扩展名）
    *
@@ -173,36 +241,6 @@ public class StrmFileService {
     }
   }
 
-  /**
-   * 写入STRM文件内容
-   *
-   * @param strmFilePath STRM文件路径
-   * @param fileUrl 文件URL
-   * @param openlistConfig OpenList配置（用于URL编码配置）
-   */
-  private void writeStrmFile(Path strmFilePath, String fileUrl, OpenlistConfig openlistConfig) {
-    try {
-      // 根据配置决定是否进行URL编码
-      String finalUrl = fileUrl;
-      if (shouldEncodeUrl(openlistConfig)) {
-        finalUrl = encodeUrlForStrm(fileUrl);
-        log.info("URL编码处理: 原始={}, 编码后={}", fileUrl, finalUrl);
-      } else {
-        log.info("URL编码已禁用，使用原始URL: {}", fileUrl);
-      }
-
-      // STRM文件内容就是文件的URL
-      Files.writeString(
-          strmFilePath,
-          finalUrl,
-          StandardOpenOption.CREATE,
-          StandardOpenOption.TRUNCATE_EXISTING);
-      log.debug("写入STRM文件: {} -> {}", strmFilePath, finalUrl);
-    } catch (IOException e) {
-      throw new BusinessException("写入STRM文件失败: " + strmFilePath + ERROR_SUFFIX + e.getMessage(), e);
-    }
-  }
-
   /**
    * 判断是否应该对URL进行编码
    *
@@ -290,25 +328,15 @@ public class StrmFileService {
     }
 
     try {
-      // 从系统配置获取媒体文件后缀
-      Map<String, Object> systemConfig = systemConfigService.getSystemConfig();
-      @SuppressWarnings("unchecked")
-      List<String> mediaExtensions = (List<String>) systemConfig.get("mediaExtensions");
+      // 使用系统配置快照中按媒体文件后缀预编译的匹配器
+      MediaExtensionMatcher matcher = systemConfigService.getSnapshot().getMediaExtensionMatcher();
 
-      if (mediaExtensions == null || mediaExtensions.isEmpty()) {
+      if (matcher.isEmpty()) {
         log.warn("系统配置中未找到媒体文件后缀配置，使用默认配置");
         return isVideoFileWithDefaultExtensions(fileName);
       }
 
-      String lowerCaseFileName = fileName.toLowerCase(Locale.ROOT);
-
-      for (String extension : mediaExtensions) {
-        if (extension != null && lowerCaseFileName.endsWith(extension.toLowerCase(Locale.ROOT))) {
-          return true;
-        }
-      }
-
-      return false;
+      return matcher.matches(fileName);
 
     } catch (Exception e) {
       log.error("检查文件后缀时发生错误，使用默认配置: {}", e.getMessage());
@@ -323,16 +351,7 @@ public class StrmFileService {
    * @return 是否为视频文件
    */
   private boolean isVideoFileWithDefaultExtensions(String fileName) {
-    String lowerCaseFileName = fileName.toLowerCase(Locale.ROOT);
-    String[] defaultVideoExtensions = {".mp4", ".avi", ".mkv", ".rmvb"};
-
-    for (String extension : defaultVideoExtensions) {
-      if (lowerCaseFileName.endsWith(extension)) {
-        return true;
-      }
-    }
-
-    return false;
+    return MediaExtensionMatcher.DEFAULT_VIDEO.matches(fileName);
   }
 
   /**
@@ -377,6 +396,7 @@ public class StrmFileService {
                 }
               });
 
+      directorySnapshotService.invalidateTree(strmPath);
       log.info("STRM目录清理完成: {}", strmPath);
 
     } catch (Exception e) {
@@ -385,37 +405,66 @@ public class StrmFileService {
     }
   }
 
+  /**
+   * 记录一个已成功列出的OpenList目录，计算其中视频文件对应的STRM文件路径，供孤立文件清理使用
+   *
+   * @param index 清理索引
+   * @param directoryPath OpenList目录路径
+   * @param files 目录下的文件和子目录
+   */
+  public void recordListedDirectory(
+      StrmCleanupIndex index, String directoryPath, List<OpenlistApiService.OpenlistFile> files) {
+    index.addListedDirectory(resolveStrmDirectory(index, directoryPath));
+
+    String renameRegex = index.getRenameRegex();
+    for (OpenlistApiService.OpenlistFile file : files) {
+      if (!file.isFile() || !isVideoFile(file.getName())) {
+        continue;
+      }
+
+      String relativePath = calculateRelativePath(index.getTaskPath(), file.getPath());
+      index.addExpectedStrmFile(
+          buildStrmFilePath(
+              index.getStrmBasePath(), relativePath, processFileName(file.getName(), renameRegex)));
+
+      // 配置重命名规则之前生成的STRM文件同样保留
+      if (StringUtils.hasText(renameRegex)) {
+        index.addExpectedStrmFile(
+            buildStrmFilePath(
+                index.getStrmBasePath(), relativePath, processFileName(file.getName(), null)));
+      }
+    }
+  }
+
+  /**
+   * 记录一个获取失败的OpenList目录，其对应的STRM目录及子目录在清理时整体保留
+   *
+   * @param index 清理索引
+   * @param directoryPath OpenList目录路径
+   */
+  public void recordFailedDirectory(StrmCleanupIndex index, String directoryPath) {
+    index.addProtectedDirectory(resolveStrmDirectory(index, directoryPath));
+  }
+
   /**
    * 清理孤立的STRM文件（源文件已不存在的STRM文件） 用于增量执行时清理已删除源文件对应的STRM文件 同时删除对应的刮削文件（NFO文件、海报、背景图等）
    *
-   * <p>使用深度优先遍历算法，对STRM目录进行智能清理： 1. 对当前任务的STRM目录做深度优先遍历 2. 对每个文件夹X，获取OpenList中对应路径的文件树Y 3.
-   * 如果Y不存在，直接删除X 4. 检查X中的所有STRM文件对应的源文件在OpenList中是否存在 5. 删除不存在的STRM文件及其关联的NFO/图片文件 6.
-   * 如果目录X内无STRM文件后，删除X并继续向上检查父目录
+   * <p>基于本次遍历OpenList时构建的清理索引，只遍历一次本地STRM目录：
+   * 1. OpenList中已不存在的目录，删除对应的整个STRM目录 2. 索引中不存在的STRM文件，删除该文件及其关联的NFO/图片文件
+   * 3. 删除文件后变为空的目录一并删除 4. OpenList获取失败的目录状态未知，其下内容全部保留
+   * 5. 删除写入中断后残留的隐藏临时文件（.tmp）
    *
-   * @param strmBasePath STRM基础路径
-   * @param existingFiles 当前存在的源文件列表（保留参数但不再使用）
-   * @param taskPath 任务路径
-   * @param renameRegex 重命名正则表达式
-   * @param openlistConfig OpenList配置（必需参数，用于实时验证文件存在性）
+   * @param index 本次遍历构建的清理索引
    * @return 清理的文件数量
    */
-  public int cleanOrphanedStrmFiles(
-      String strmBasePath,
-      List<OpenlistApiService.OpenlistFile> existingFiles,
-      String taskPath,
-      String renameRegex,
-      OpenlistConfig openlistConfig) {
-    if (!StringUtils.hasText(strmBasePath)) {
+  public int cleanOrphanedStrmFiles(StrmCleanupIndex index) {
+    if (!StringUtils.hasText(index.getStrmBasePath())) {
       log.warn("STRM基础路径为空，跳过孤立文件清理");
       return 0;
     }
 
-    if (openlistConfig == null) {
-      throw new BusinessException("OpenList配置不能为空，无法执行孤立文件清理");
-    }
-
     try {
-      Path strmPath = Paths.get(strmBasePath);
+      Path strmPath = Paths.get(index.getStrmBasePath());
 
       // 检查目录是否存在
       if (!Files.exists(strmPath) || !Files.isDirectory(strmPath)) {
@@ -423,25 +472,246 @@ public class StrmFileService {
         return 0;
       }
 
-      log.info("开始使用深度优先遍历清理孤立STRM文件: {}", strmBasePath);
+      if (index.isProtectedDirectory(strmPath)) {
+        log.warn("任务根目录获取失败，跳过孤立文件清理: {}", index.getTaskPath());
+        return 0;
+      }
 
-      // 计算任务路径在OpenList中的相对路径（作为根路径）
-      String openlistRootPath = taskPath;
+      log.info(
+          "开始清理孤立STRM文件: {}, 源文件对应的STRM文件数: {}",
+          strmPath,
+          index.getExpectedStrmFileCount());
+
+      List<Path> orphanedDirectories = new ArrayList<>();
+      List<Path> orphanedStrmFiles = new ArrayList<>();
+      List<Path> staleTempFiles = new ArrayList<>();
+      long now = System.currentTimeMillis();
+      Files.walkFileTree(
+          strmPath,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              if (dir.equals(strmPath)) {
+                return FileVisitResult.CONTINUE;
+              }
+              if (index.isProtectedDirectory(dir)) {
+                log.info("OpenList目录获取失败，保留对应STRM目录: {}", dir);
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              if (!index.isListedDirectory(dir)) {
+                orphanedDirectories.add(dir);
+                return FileVisitResult.SKIP_SUBTREE;
+              }
+              return FileVisitResult.CONTINUE;
+            }
 
-      // 使用深度优先遍历清理STRM目录
-      int cleanedCount =
-          validateAndCleanDirectory(
-              strmPath, openlistConfig, taskPath, openlistRootPath, renameRegex);
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              String fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+              if (fileName.endsWith(".strm") && !index.isExpectedStrmFile(file)) {
+                orphanedStrmFiles.add(file);
+              } else if (StreamingDownloader.isStaleTempFile(file, attrs, now)) {
+                staleTempFiles.add(file);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              log.warn("访问文件失败: {}" + ERROR_SUFFIX + "{}", file, e.getMessage());
+              return FileVisitResult.CONTINUE;
+            }
+          });
+
+      int cleanedCount = 0;
+
+      // OpenList中已不存在的目录，删除整个STRM目录
+      for (Path directory : orphanedDirectories) {
+        log.info("OpenList中不存在对应目录，删除STRM目录: {}", directory);
+        deleteDirectoryRecursively(directory);
+        cleanedCount++;
+      }
+
+      // 删除孤立的STRM文件及其刮削文件
+      for (Path strmFile : orphanedStrmFiles) {
+        try {
+          Files.delete(strmFile);
+          log.info("删除孤立的STRM文件: {} (OpenList中不存在对应文件)", strmFile);
+          cleanedCount++;
 
-      log.info("深度优先遍历清理完成，共清理 {} 个孤立文件/目录", cleanedCount);
+          cleanOrphanedScrapingFiles(strmFile);
+          deleteEmptyParentDirectories(strmFile.getParent(), strmPath);
+        } catch (IOException e) {
+          log.warn("删除孤立STRM文件失败: {}, 详细错误: {}", strmFile, e.getMessage(), e);
+        }
+      }
+
+      // 写入中断后残留的临时文件
+      for (Path tempFile : staleTempFiles) {
+        try {
+          if (Files.deleteIfExists(tempFile)) {
+            log.info("删除残留的临时文件: {}", tempFile);
+          }
+        } catch (IOException e) {
+          log.warn("删除残留临时文件失败: {}" + ERROR_SUFFIX + "{}", tempFile, e.getMessage());
+        }
+      }
+
+      directorySnapshotService.invalidateTree(strmPath);
+      log.info("孤立文件清理完成，共清理 {} 个孤立文件/目录", cleanedCount);
       return cleanedCount;
 
     } catch (Exception e) {
-      log.error("清理孤立STRM文件失败: {}, 错误: {}", strmBasePath, e.getMessage(), e);
+      log.error("清理孤立STRM文件失败: {}, 错误: {}", index.getStrmBasePath(), e.getMessage(), e);
       return 0;
     }
   }
 
+  /**
+   * 按同步清单清理孤立的STRM文件，不再遍历本地STRM目录
+   *
+   * <p>孤立条目是上次执行记录而本次遍历未遇到的源文件，或STRM路径已变化的源文件上次的STRM文件：
+   * 1. 所在目录在OpenList中已不存在时，删除对应的整个STRM目录 2. 否则删除该STRM文件及其关联的NFO/图片文件，
+   * 并删除因此变为空的目录 3. 位于获取失败目录下的条目状态未知，予以保留 4. 不在当前STRM根目录下的条目（任务路径已修改）只从清单中移除
+   *
+   * @param index 本次遍历构建的清理索引
+   * @param orphanedEntries 同步清单中的孤立条目
+   * @return 已清理、可从清单中删除的条目
+   */
+  public List<StrmManifest> cleanOrphanedStrmFiles(
+      StrmCleanupIndex index, Collection<StrmManifest> orphanedEntries) {
+    List<StrmManifest> removedEntries = new ArrayList<>();
+    if (!StringUtils.hasText(index.getStrmBasePath()) || orphanedEntries.isEmpty()) {
+      return removedEntries;
+    }
+
+    Path strmPath = Paths.get(index.getStrmBasePath());
+    if (index.isProtectedDirectory(strmPath)) {
+      log.warn("任务根目录获取失败，跳过孤立文件清理: {}", index.getTaskPath());
+      return removedEntries;
+    }
+
+    log.info("开始按同步清单清理孤立STRM文件: {}, 孤立条目数: {}", strmPath, orphanedEntries.size());
+    Set<Path> deletedDirectories = new HashSet<>();
+    for (StrmManifest entry : orphanedEntries) {
+      Path strmFile = Paths.get(entry.getStrmPath());
+      if (!strmFile.startsWith(strmPath) || strmFile.equals(strmPath)) {
+        removedEntries.add(entry);
+        continue;
+      }
+      if (isUnderProtectedDirectory(index, strmFile.getParent(), strmPath)) {
+        log.info("OpenList目录获取失败，保留对应STRM文件: {}", strmFile);
+        continue;
+      }
+
+      Path orphanedDirectory = findOrphanedDirectory(index, strmFile.getParent(), strmPath);
+      if (orphanedDirectory != null) {
+        if (deletedDirectories.add(orphanedDirectory)) {
+          log.info("OpenList中不存在对应目录，删除STRM目录: {}", orphanedDirectory);
+          deleteDirectoryRecursively(orphanedDirectory);
+        }
+        removedEntries.add(entry);
+        continue;
+      }
+
+      try {
+        if (Files.deleteIfExists(strmFile)) {
+          log.info("删除孤立的STRM文件: {} (OpenList中不存在对应文件)", strmFile);
+          cleanOrphanedScrapingFiles(strmFile);
+          deleteEmptyParentDirectories(strmFile.getParent(), strmPath);
+        }
+        removedEntries.add(entry);
+      } catch (IOException e) {
+        log.warn("删除孤立STRM文件失败: {}, 详细错误: {}", strmFile, e.getMessage(), e);
+      }
+    }
+
+    directorySnapshotService.invalidateTree(strmPath);
+    log.info("孤立文件清理完成，共清理 {} 个孤立条目", removedEntries.size());
+    return removedEntries;
+  }
+
+  /** 检查STRM目录或其上级目录（不含STRM根目录）是否对应获取失败的OpenList目录 */
+  private boolean isUnderProtectedDirectory(StrmCleanupIndex index, Path directory, Path root) {
+    for (Path current = directory;
+        current != null && current.startsWith(root) && !current.equals(root);
+        current = current.getParent()) {
+      if (index.isProtectedDirectory(current)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** 自上而下查找第一个本次未列出的STRM目录，即OpenList中已不存在的最上层目录 */
+  private Path findOrphanedDirectory(StrmCleanupIndex index, Path directory, Path root) {
+    Path relative = root.relativize(directory);
+    Path current = root;
+    for (Path name : relative) {
+      if (name.toString().isEmpty()) {
+        break;
+      }
+      current = current.resolve(name);
+      if (!index.isListedDirectory(current)) {
+        return current;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 计算OpenList目录对应的STRM目录
+   *
+   * @param index 清理索引
+   * @param directoryPath OpenList目录路径
+   * @return STRM目录路径
+   */
+  private Path resolveStrmDirectory(StrmCleanupIndex index, String directoryPath) {
+    Path strmDirectory = Paths.get(index.getStrmBasePath());
+    String normalizedTaskPath =
+        index.getTaskPath() != null ? index.getTaskPath().replaceAll("/+$", "") : "";
+
+    if (directoryPath != null && directoryPath.startsWith(normalizedTaskPath)) {
+      String relativePath =
+          directoryPath
+              .substring(normalizedTaskPath.length())
+              .replaceAll("^/+", "")
+              .replaceAll("/+$", "");
+      if (StringUtils.hasText(relativePath)) {
+        strmDirectory = strmDirectory.resolve(relativePath);
+      }
+    }
+    return strmDirectory;
+  }
+
+  /**
+   * 自下而上删除空目录，直到遇到非空目录或STRM根目录
+   *
+   * @param directory 起始目录
+   * @param rootPath STRM根目录
+   */
+  private void deleteEmptyParentDirectories(Path directory, Path rootPath) {
+    Path current = directory;
+    while (current != null && !current.equals(rootPath) && current.startsWith(rootPath)) {
+      if (!Files.isDirectory(current)) {
+        // 已在清理刮削文件时被删除
+        current = current.getParent();
+        continue;
+      }
+      if (!isDirectoryEmpty(current)) {
+        return;
+      }
+      try {
+        Files.delete(current);
+        log.info("删除空目录: {}", current);
+      } catch (IOException e) {
+        log.warn("删除空目录失败: {}, 错误: {}", current, e.getMessage());
+        return;
+      }
+      current = current.getParent();
+    }
+  }
+
   /**
    * 清理孤立STRM文件对应的刮削文件
    *
@@ -642,250 +912,6 @@ public class StrmFileService {
     }
   }
 
-  /**
-   * 获取OpenList指定路径的文件树
-   *
-   * @param config OpenList配置
-   * @param openlistPath OpenList中的路径
-   * @return 文件树列表，如果路径不存在或访问失败返回空列表
-   */
-  private List<OpenlistApiService.OpenlistFile> getOpenListFileTree(
-      OpenlistConfig config, String openlistPath) {
-    try {
-      log.debug("获取OpenList文件树: {}", openlistPath);
-      return openlistApiService.getDirectoryContents(config, openlistPath);
-    } catch (Exception e) {
-      log.warn("获取OpenList文件树失败: {}, 错误: {}", openlistPath, e.getMessage());
-      return new ArrayList<>();
-    }
-  }
-
-  /**
-   * 判断目录是否应该删除（内部无STRM文件和子目录）
-   *
-   * @param directoryPath 目录路径
-   * @return 是否应该删除
-   */
-  private boolean shouldDeleteDirectory(Path directoryPath) {
-    try {
-      if (!Files.exists(directoryPath) || !Files.isDirectory(directoryPath)) {
-        return false;
-      }
-
-      // 检查目录中是否还有STRM文件或子目录
-      boolean hasStrmFiles =
-          Files.list(directoryPath)
-              .anyMatch(path -> path.toString().toLowerCase().endsWith(".strm"));
-
-      boolean hasSubDirectories = Files.list(directoryPath).anyMatch(Files::isDirectory);
-
-      if (hasStrmFiles) {
-        log.debug("目录 {} 包含STRM文件，不应删除", directoryPath);
-        return false;
-      }
-
-      if (hasSubDirectories) {
-        log.debug("目录 {} 包含子目录，不应删除", directoryPath);
-        return false;
-      }
-
-      log.debug("目录 {} 无STRM文件和子目录，可以删除", directoryPath);
-      return true;
-
-    } catch (IOException e) {
-      log.warn("检查目录是否应该删除失败: {}, 错误: {}", directoryPath, e.getMessage());
-      return false;
-    }
-  }
-
-  /**
-   * 清理STRM文件并检查目录是否需要删除
-   *
-   * @param directoryPath 要清理的目录路径
-   * @param openlistConfig OpenList配置
-   * @param taskPath 任务路径
-   * @param openlistRelativePath OpenList中的相对路径
-   * @param renameRegex 重命名正则表达式
-   * @param rootTaskPath 任务根路径（用于根目录保护）
-   * @return 清理的文件数量
-   */
-  private int cleanStrmFilesAndCheckDirectory(
-      Path directoryPath,
-      OpenlistConfig openlistConfig,
-      String taskPath,
-      String openlistRelativePath,
-      String renameRegex,
-      String rootTaskPath) {
-
-    AtomicInteger cleanedCount = new AtomicInteger(0);
-
-    try {
-      if (!Files.exists(directoryPath) || !Files.isDirectory(directoryPath)) {
-        return 0;
-      }
-
-      log.debug("清理STRM文件并检查目录: {} (OpenList路径: {})", directoryPath, openlistRelativePath);
-
-      // 获取OpenList中对应路径的文件树
-      List<OpenlistApiService.OpenlistFile> openlistFiles =
-          getOpenListFileTree(openlistConfig, openlistRelativePath);
-
-      // 如果OpenList中不存在该路径，考虑删除整个目录
-      if (openlistFiles.isEmpty()) {
-        // 检查是否为任务根目录
-        Path rootStrmPath = Paths.get(rootTaskPath);
-        if (directoryPath.equals(rootStrmPath)) {
-          log.info("OpenList中不存在路径: {}, 但这是任务根目录，不删除: {}", openlistRelativePath, directoryPath);
-        } else {
-          log.info("OpenList中不存在路径: {}, 删除对应STRM目录: {}", openlistRelativePath, directoryPath);
-          deleteDirectoryRecursively(directoryPath);
-          return cleanedCount.get();
-        }
-      }
-
-      // 清理目录中的孤立STRM文件
-      Files.list(directoryPath)
-          .filter(Files::isRegularFile)
-          .filter(path -> path.toString().toLowerCase().endsWith(".strm"))
-          .forEach(
-              strmFile -> {
-                String strmFileName = strmFile.getFileName().toString();
-                String baseFileName = strmFileName.substring(0, strmFileName.lastIndexOf(".strm"));
-
-                // 检查OpenList中是否存在对应的源文件
-                boolean existsInOpenList =
-                    checkFileExistsInOpenList(baseFileName, openlistFiles, renameRegex);
-
-                if (!existsInOpenList) {
-                  try {
-                    // 删除孤立的STRM文件
-                    Files.delete(strmFile);
-                    log.info("删除孤立的STRM文件: {} (OpenList中不存在对应文件)", strmFile);
-                    cleanedCount.incrementAndGet();
-
-                    // 删除对应的刮削文件
-                    cleanOrphanedScrapingFiles(strmFile);
-
-                  } catch (IOException e) {
-                    log.warn("删除孤立STRM文件失败: {}, 详细错误: {}", strmFile, e.getMessage(), e);
-                  }
-                }
-              });
-
-      // 检查目录是否需要删除（内部无STRM文件）
-      boolean shouldDelete = shouldDeleteDirectory(directoryPath);
-
-      // 检查是否为任务根目录，根目录永远不删除
-      Path rootStrmPath = Paths.get(rootTaskPath);
-      boolean isRootDirectory = directoryPath.equals(rootStrmPath);
-
-      if (isRootDirectory) {
-        log.debug("这是任务根目录，不删除: {}", directoryPath);
-      } else if (shouldDelete) {
-        try {
-          // 再次确认目录内容
-          List<Path> remainingFiles =
-              Files.list(directoryPath).collect(java.util.stream.Collectors.toList());
-
-          if (remainingFiles.isEmpty()) {
-            // 删除空目录
-            Files.delete(directoryPath);
-            log.info("删除空目录: {}", directoryPath);
-          } else {
-            log.warn("目录不为空，跳过删除: {} (包含文件: {})", directoryPath, remainingFiles);
-          }
-        } catch (IOException e) {
-          log.warn("删除空目录失败: {}, 详细错误: {}", directoryPath, e.getMessage(), e);
-        }
-      } else {
-        log.debug("目录不需要删除: {} (包含内容)", directoryPath);
-      }
-
-    } catch (Exception e) {
-      log.error("清理STRM文件和检查目录失败: {}, 详细错误: {}", directoryPath, e.getMessage(), e);
-    }
-
-    return cleanedCount.get();
-  }
-
-  /**
-   * 检查文件在OpenList中是否存在（考虑重命名规则和扩展名匹配）
-   *
-   * @param strmBaseName STRM文件的基础名（不含.strm后缀）
-   * @param openlistFiles OpenList文件列表
-   * @param renameRegex 重命名正则表达式
-   * @return 文件是否存在
-   */
-  private boolean checkFileExistsInOpenList(
-      String strmBaseName,
-      List<OpenlistApiService.OpenlistFile> openlistFiles,
-      String renameRegex) {
-
-    // 尝试多种匹配方式
-    return openlistFiles.stream()
-        .filter(file -> "file".equals(file.getType()) && isVideoFile(file.getName()))
-        .anyMatch(
-            file -> {
-              String openlistFileName = file.getName();
-              String openlistBaseName = getBaseName(openlistFileName);
-
-              // 1. 直接匹配基础名
-              if (strmBaseName.equals(openlistBaseName)) {
-                return true;
-              }
-
-              // 2. 如果有重命名规则，尝试反向匹配
-              if (StringUtils.hasText(renameRegex) && renameRegex.contains("|")) {
-                try {
-                  String[] parts = renameRegex.split("\\|", 2);
-                  String pattern = parts[0];
-                  String replacement = parts[1];
-
-                  // 尝试将STRM基础名反向还原
-                  String restoredName = strmBaseName.replaceAll(replacement, pattern);
-
-                  // 检查还原后的名称是否匹配
-                  if (restoredName.equals(openlistBaseName)) {
-                    log.debug("反向还原匹配成功: {} -> {}", strmBaseName, restoredName);
-                    return true;
-                  }
-
-                  // 也尝试将OpenList文件名应用重命名规则后匹配
-                  String renamedOpenListFile = openlistBaseName.replaceAll(pattern, replacement);
-                  if (strmBaseName.equals(renamedOpenListFile)) {
-                    log.debug("重命名规则匹配成功: {} -> {}", openlistBaseName, renamedOpenListFile);
-                    return true;
-                  }
-
-                } catch (Exception e) {
-                  log.debug("重命名规则匹配失败: {}", e.getMessage());
-                }
-              }
-
-              // 注意：移除了模糊匹配逻辑，清理任务只使用精确匹配
-              // 模糊匹配可能导致误判，使应该被删除的孤立文件保留下来
-
-              return false;
-            });
-  }
-
-  /**
-   * 获取文件的基础名（不含扩展名）
-   *
-   * @param fileName 文件名
-   * @return 基础名
-   */
-  private String getBaseName(String fileName) {
-    if (!StringUtils.hasText(fileName)) {
-      return "";
-    }
-    int lastDotIndex = fileName.lastIndexOf('.');
-    if (lastDotIndex > 0) {
-      return fileName.substring(0, lastDotIndex);
-    }
-    return fileName;
-  }
-
   /**
    * 递归删除目录及其所有内容
    *
@@ -916,69 +942,6 @@ public class StrmFileService {
     }
   }
 
-  /**
-   * 验证并清理单个目录（深度优先遍历的核心方法）
-   *
-   * @param strmDirectoryPath STRM目录路径
-   * @param openlistConfig OpenList配置
-   * @param taskPath 任务路径
-   * @param openlistRelativePath OpenList中的相对路径
-   * @param renameRegex 重命名正则表达式
-   * @return 清理的文件数量
-   */
-  private int validateAndCleanDirectory(
-      Path strmDirectoryPath,
-      OpenlistConfig openlistConfig,
-      String taskPath,
-      String openlistRelativePath,
-      String renameRegex) {
-
-    AtomicInteger totalCleanedCount = new AtomicInteger(0);
-
-    try {
-      if (!Files.exists(strmDirectoryPath) || !Files.isDirectory(strmDirectoryPath)) {
-        return 0;
-      }
-
-      log.debug("验证并清理目录: {} -> OpenList路径: {}", strmDirectoryPath, openlistRelativePath);
-
-      // 获取当前STRM目录下的所有子目录
-      List<Path> subDirectories =
-          Files.list(strmDirectoryPath)
-              .filter(Files::isDirectory)
-              .sorted()
-              .collect(java.util.stream.Collectors.toList());
-
-      // 深度优先：先处理所有子目录
-      for (Path subDir : subDirectories) {
-        String subDirName = subDir.getFileName().toString();
-        String openlistSubPath =
-            openlistRelativePath.isEmpty() ? subDirName : openlistRelativePath + "/" + subDirName;
-
-        int cleanedCount =
-            validateAndCleanDirectory(
-                subDir, openlistConfig, taskPath, openlistSubPath, renameRegex);
-        totalCleanedCount.addAndGet(cleanedCount);
-      }
-
-      // 处理当前目录的STRM文件
-      int currentDirCleanedCount =
-          cleanStrmFilesAndCheckDirectory(
-              strmDirectoryPath,
-              openlistConfig,
-              taskPath,
-              openlistRelativePath,
-              renameRegex,
-              taskPath);
-      totalCleanedCount.addAndGet(currentDirCleanedCount);
-
-    } catch (Exception e) {
-      log.error("验证并清理目录失败: {}, 错误: {}", strmDirectoryPath, e.getMessage(), e);
-    }
-
-    return totalCleanedCount.get();
-  }
-
   /**
    * 处理URL的baseUrl替换
    *
@@ -988,7 +951,7 @@ public class StrmFileService {
    */
   private String processUrlWithBaseUrlReplacement(
       String originalUrl, OpenlistConfig openlistConfig) {
-    log.info("开始处理URL替换，原始URL: {}", originalUrl);
+    log.debug("开始处理URL替换，原始URL: {}", originalUrl);
 
     if (originalUrl == null || openlistConfig == null) {
       log.warn(
@@ -999,7 +962,7 @@ public class StrmFileService {
     }
 
     // 打印配置详情
-    log.info(
+    log.debug(
         "OpenList配置详情 - ID: {}, strmBaseUrl: '{}'",
         openlistConfig.getId(),
         openlistConfig.getStrmBaseUrl());
@@ -1007,7 +970,7 @@ public class StrmFileService {
     // 如果没有配置strmBaseUrl，直接返回原始URL
     if (openlistConfig.getStrmBaseUrl() == null
         || openlistConfig.getStrmBaseUrl().trim().isEmpty()) {
-      log.info("未配置strmBaseUrl或为空，直接使用原始URL: {}", originalUrl);
+      log.debug("未配置strmBaseUrl或为空，直接使用原始URL: {}", originalUrl);
       return originalUrl;
     }
 
@@ -1043,7 +1006,7 @@ public class StrmFileService {
         newUrl += "#" + ref;
       }
 
-      log.info("URL替换: {} -> {}", originalUrl, newUrl);
+      log.debug("URL替换: {} -> {}", originalUrl, newUrl);
       return newUrl;
 
     } catch (Exception e) {
@@ -0,0 +1,99 @@
+package com.hienao.openlist2strm.service;
+
+import com.hienao.openlist2strm.entity.StrmManifest;
+import com.hienao.openlist2strm.mapper.StrmManifestMapper;
+import com.hienao.openlist2strm.util.StrmManifestIndex;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * STRM同步清单服务
+ *
+ * <p>按任务记录源文件与生成的STRM文件的对应关系。增量执行时据此跳过未变化的文件、只在URL变化时重写STRM文件，
+ * 并通过集合差找出孤立的STRM文件。清单读取失败时按无清单处理，任务退化为逐个检查本地文件。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StrmManifestService {
+
+  /** 单条SQL写入的条目数，避免超过SQLite的参数数量上限 */
+  private static final int BATCH_SIZE = 200;
+
+  private final StrmManifestMapper strmManifestMapper;
+
+  /**
+   * 加载任务上次执行记录的清单
+   *
+   * @param taskId 任务配置ID
+   * @return 清单索引
+   */
+  public StrmManifestIndex load(Long taskId) {
+    try {
+      List<StrmManifest> entries = strmManifestMapper.selectByTaskId(taskId);
+      log.info("加载STRM同步清单: 任务ID: {}, 条目数: {}", taskId, entries.size());
+      return new StrmManifestIndex(taskId, entries);
+    } catch (Exception e) {
+      log.warn("加载STRM同步清单失败，按无清单处理: 任务ID: {}, 错误: {}", taskId, e.getMessage());
+      return new StrmManifestIndex(taskId, List.of());
+    }
+  }
+
+  /**
+   * 清空任务的清单并返回空索引，用于全量执行
+   *
+   * @param taskId 任务配置ID
+   * @return 空的清单索引
+   */
+  public StrmManifestIndex reset(Long taskId) {
+    deleteByTaskId(taskId);
+    return new StrmManifestIndex(taskId, List.of());
+  }
+
+  /**
+   * 写回本次执行新增或变化的条目，并删除已清理的条目
+   *
+   * @param index 清单索引
+   * @param removedSourcePaths 已清理的源文件路径
+   */
+  @Transactional(rollbackFor = Exception.class)
+  public void save(StrmManifestIndex index, Collection<String> removedSourcePaths) {
+    List<StrmManifest> dirtyEntries = index.getDirtyEntries();
+    for (int i = 0; i < dirtyEntries.size(); i += BATCH_SIZE) {
+      strmManifestMapper.batchUpsert(
+          dirtyEntries.subList(i, Math.min(i + BATCH_SIZE, dirtyEntries.size())));
+    }
+
+    List<String> removed = List.copyOf(removedSourcePaths);
+    for (int i = 0; i < removed.size(); i += BATCH_SIZE) {
+      strmManifestMapper.deleteBySourcePaths(
+          index.getTaskId(), removed.subList(i, Math.min(i + BATCH_SIZE, removed.size())));
+    }
+
+    log.info(
+        "STRM同步清单已保存: 任务ID: {}, 更新 {} 条, 删除 {} 条",
+        index.getTaskId(),
+        dirtyEntries.size(),
+        removed.size());
+  }
+
+  /**
+   * 删除任务的全部清单条目
+   *
+   * @param taskId 任务配置ID
+   */
+  public void deleteByTaskId(Long taskId) {
+    try {
+      strmManifestMapper.deleteByTaskId(taskId);
+    } catch (Exception e) {
+      log.warn("删除STRM同步清单失败: 任务ID: {}, 错误: {}", taskId, e.getMessage());
+    }
+  }
+}
@@ -2,14 +2,25 @@ package com.hienao.openlist2strm.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hienao.openlist2strm.config.PathConfiguration;
+import com.hienao.openlist2strm.dto.SystemConfigSnapshot;
+import com.hienao.openlist2strm.util.CompiledScrapingRules;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -17,6 +28,10 @@ import org.springframework.stereotype.Service;
 /**
  * 系统配置服务
  *
+ * <p>配置以不可变快照的形式缓存在内存中，读取时只访问一次原子引用。配置文件被外部修改（WatchService监听）
+ * 或通过 {@link #saveSystemConfig} 保存后快照失效，下次读取时重新加载。每次失效都会递增代数，
+ * 加载期间发生过失效时丢弃加载结果；配置文件不存在、为空或读取失败时返回默认配置但不缓存。
+ *
  * @author hienao
  * @since 2024-01-01
  */
@@ -30,6 +45,12 @@ public class SystemConfigService {
 
   private static final String CONFIG_FILE = "systemconf.json";
 
+  /** 当前配置状态，快照为null时表示需要重新加载 */
+  private final AtomicReference<ConfigState> state =
+      new AtomicReference<>(new ConfigState(0, null));
+
+  private WatchService watchService;
+
   /** 获取配置目录路径 */
   private String getConfigDirectoryPath() {
     return pathConfiguration.getConfig();
@@ -40,12 +61,117 @@ public class SystemConfigService {
     return getConfigDirectoryPath() + "/" + CONFIG_FILE;
   }
 
+  /** 启动配置文件监听，文件变化时使缓存的配置快照失效 */
+  @PostConstruct
+  public void startConfigWatcher() {
+    try {
+      createConfigDirectoryIfNotExists();
+      Path configDir = Paths.get(getConfigDirectoryPath());
+      watchService = FileSystems.getDefault().newWatchService();
+      configDir.register(
+          watchService,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.ENTRY_DELETE);
+
+      Thread watcher = new Thread(this::watchConfigFile, "system-config-watcher");
+      watcher.setDaemon(true);
+      watcher.start();
+      log.info("开始监听系统配置文件: {}", getConfigFilePath());
+    } catch (Exception e) {
+      log.warn("系统配置文件监听启动失败，外部修改配置文件后需重启生效: {}", e.getMessage());
+    }
+  }
+
+  /** 停止配置文件监听 */
+  @PreDestroy
+  public void stopConfigWatcher() {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        log.debug("关闭系统配置文件监听失败: {}", e.getMessage());
+      }
+    }
+  }
+
+  /** 监听配置目录，systemconf.json 发生变化时使快照失效 */
+  private void watchConfigFile() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          Object context = event.context();
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW
+              || (context instanceof Path changed && CONFIG_FILE.equals(changed.toString()))) {
+            invalidateSnapshot();
+            log.debug("系统配置文件发生变化，配置缓存已失效");
+          }
+        }
+        if (!key.reset()) {
+          log.warn("系统配置目录已不可访问，停止监听: {}", getConfigDirectoryPath());
+          invalidateSnapshot();
+          return;
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      log.debug("系统配置文件监听已关闭");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 获取系统配置快照，仅在快照失效后读取配置文件
+   *
+   * @return 不可变的系统配置快照
+   */
+  public SystemConfigSnapshot getSnapshot() {
+    SystemConfigSnapshot current = state.get().snapshot();
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      ConfigState observed = state.get();
+      if (observed.snapshot() != null) {
+        return observed.snapshot();
+      }
+      LoadedConfig loaded = loadSystemConfig();
+      SystemConfigSnapshot result = SystemConfigSnapshot.of(loaded.config());
+      // 加载期间配置被修改时状态已被替换，compareAndSet失败，丢弃本次结果
+      if (loaded.cacheable()
+          && !state.compareAndSet(observed, new ConfigState(observed.generation(), result))) {
+        log.debug("加载系统配置期间配置文件发生变化，丢弃本次加载结果");
+      }
+      return result;
+    }
+  }
+
+  /** 使配置快照失效，递增代数使正在进行的加载结果作废 */
+  private void invalidateSnapshot() {
+    state.updateAndGet(current -> new ConfigState(current.generation() + 1, null));
+  }
+
+  /** 替换为新的配置快照，同样递增代数 */
+  private void replaceSnapshot(SystemConfigSnapshot snapshot) {
+    state.updateAndGet(current -> new ConfigState(current.generation() + 1, snapshot));
+  }
+
   /**
    * 获取系统配置
    *
-   * @return 系统配置Map
+   * @return 系统配置Map（只读）
    */
   public Map<String, Object> getSystemConfig() {
+    return getSnapshot().getConfig();
+  }
+
+  /**
+   * 从配置文件读取系统配置并合并默认值，缺少字段时回写配置文件
+   *
+   * @return 系统配置，使用默认配置代替时标记为不可缓存
+   */
+  private LoadedConfig loadSystemConfig() {
     try {
       // 确保配置目录存在
       createConfigDirectoryIfNotExists();
@@ -53,18 +179,21 @@ public class SystemConfigService {
       File configFile = new File(getConfigFilePath());
       Map<String, Object> result;
       boolean needSave = false;
+      boolean cacheable = true;
 
       if (!configFile.exists()) {
         // 如果配置文件不存在，创建默认配置
         log.info("系统配置文件不存在，创建默认配置: {}", getConfigFilePath());
         result = getDefaultConfig();
         needSave = true;
+        cacheable = false;
       } else {
         // 读取配置文件
         String content = Files.readString(Paths.get(getConfigFilePath()));
         if (content.trim().isEmpty()) {
           result = getDefaultConfig();
           needSave = true;
+          cacheable = false;
         } else {
           @SuppressWarnings("unchecked")
           Map<String, Object> config = objectMapper.readValue(content, Map.class);
@@ -115,10 +244,10 @@ public class SystemConfigService {
         saveSystemConfigInternal(result);
       }
 
-      return result;
+      return new LoadedConfig(result, cacheable);
     } catch (Exception e) {
       log.error("读取系统配置失败", e);
-      return getDefaultConfig();
+      return new LoadedConfig(getDefaultConfig(), false);
     }
   }
 
@@ -133,13 +262,14 @@ public class SystemConfigService {
       createConfigDirectoryIfNotExists();
 
       // 读取现有配置
-      Map<String, Object> existingConfig = getSystemConfig();
+      Map<String, Object> existingConfig = new HashMap<>(getSystemConfig());
 
       // 更新配置
       existingConfig.putAll(config);
 
-      // 写入配置文件
+      // 写入配置文件并刷新快照
       saveSystemConfigInternal(existingConfig);
+      replaceSnapshot(SystemConfigSnapshot.of(existingConfig));
 
       log.info("系统配置已保存到: {}", getConfigFilePath());
     } catch (Exception e) {
@@ -241,10 +371,8 @@ public class SystemConfigService {
    *
    * @return TMDB配置Map
    */
-  @SuppressWarnings("unchecked")
   public Map<String, Object> getTmdbConfig() {
-    Map<String, Object> systemConfig = getSystemConfig();
-    return (Map<String, Object>) systemConfig.getOrDefault("tmdb", new HashMap<>());
+    return getSnapshot().getTmdbConfig();
   }
 
   /**
@@ -252,10 +380,8 @@ public class SystemConfigService {
    *
    * @return 刮削配置Map
    */
-  @SuppressWarnings("unchecked")
   public Map<String, Object> getScrapingConfig() {
-    Map<String, Object> systemConfig = getSystemConfig();
-    return (Map<String, Object>) systemConfig.getOrDefault("scraping", new HashMap<>());
+    return getSnapshot().getScrapingConfig();
   }
 
   /**
@@ -263,10 +389,8 @@ public class SystemConfigService {
    *
    * @return AI配置Map
    */
-  @SuppressWarnings("unchecked")
   public Map<String, Object> getAiConfig() {
-    Map<String, Object> systemConfig = getSystemConfig();
-    return (Map<String, Object>) systemConfig.getOrDefault("ai", new HashMap<>());
+    return getSnapshot().getAiConfig();
   }
 
   /**
@@ -274,10 +398,17 @@ public class SystemConfigService {
    *
    * @return 刮削正则配置Map
    */
-  @SuppressWarnings("unchecked")
   public Map<String, Object> getScrapingRegexConfig() {
-    Map<String, Object> systemConfig = getSystemConfig();
-    return (Map<String, Object>) systemConfig.getOrDefault("scrapingRegex", new HashMap<>());
+    return getSnapshot().getScrapingRegexConfig();
+  }
+
+  /**
+   * 获取预编译的刮削正则规则集，随配置变化重新构建
+   *
+   * @return 刮削正则规则集
+   */
+  public CompiledScrapingRules getCompiledScrapingRules() {
+    return getSnapshot().getCompiledScrapingRules();
   }
 
   /**
@@ -285,10 +416,8 @@ public class SystemConfigService {
    *
    * @return 日志配置Map
    */
-  @SuppressWarnings("unchecked")
   public Map<String, Object> getLogConfig() {
-    Map<String, Object> systemConfig = getSystemConfig();
-    return (Map<String, Object>) systemConfig.getOrDefault("log", new HashMap<>());
+    return getSnapshot().getLogConfig();
   }
 
   /**
@@ -298,9 +427,7 @@ public class SystemConfigService {
    */
   public boolean isDataReportEnabled() {
     try {
-      Map<String, Object> logConfig = getLogConfig();
-      Object reportUsageData = logConfig.get("reportUsageData");
-      return reportUsageData == null || Boolean.TRUE.equals(reportUsageData);
+      return getSnapshot().isDataReportEnabled();
     } catch (Exception e) {
       log.warn("获取数据上报配置失败，默认禁用上报: {}", e.getMessage());
       return false;
@@ -404,4 +531,20 @@ public class SystemConfigService {
       throw new RuntimeException("创建配置目录失败", e);
     }
   }
+
+  /**
+   * 配置状态
+   *
+   * @param generation 失效代数，每次失效或替换快照时递增
+   * @param snapshot 配置快照，为null时表示需要重新加载
+   */
+  private record ConfigState(long generation, SystemConfigSnapshot snapshot) {}
+
+  /**
+   * 配置文件加载结果
+   *
+   * @param config 系统配置Map
+   * @param cacheable 是否读取自配置文件，使用默认配置代替时为false
+   */
+  private record LoadedConfig(Map<String, Object> config, boolean cacheable) {}
 }
@@ -28,6 +28,8 @@ public class TaskConfigService {
 
   private final TaskConfigMapper taskConfigMapper;
   private final QuartzSchedulerService quartzSchedulerService;
+  private final StrmManifestService strmManifestService;
+  private final DirectoryWatermarkService directoryWatermarkService;
   private final PathConfiguration pathConfiguration;
 
   /**
@@ -235,6 +237,10 @@ public class TaskConfigService {
       // 注意：这里不抛出异常，避免影响任务配置的删除
     }
 
+    // 删除任务的STRM同步清单和目录水位
+    strmManifestService.deleteByTaskId(id);
+    directoryWatermarkService.deleteByTaskId(id);
+
     log.info("删除任务配置成功，ID: {}, 任务名称: {}", id, existingConfig.getTaskName());
   }
 
@@ -18,12 +18,25 @@
 
 package com.hienao.openlist2strm.service;
 
+import com.hienao.openlist2strm.config.SyncProperties;
+import com.hienao.openlist2strm.config.SyncProperties.FullSyncMode;
 import com.hienao.openlist2strm.entity.OpenlistConfig;
+import com.hienao.openlist2strm.entity.StrmManifest;
 import com.hienao.openlist2strm.entity.TaskConfig;
 import com.hienao.openlist2strm.exception.BusinessException;
+import com.hienao.openlist2strm.util.DirectorySnapshotCache;
+import com.hienao.openlist2strm.util.DirectoryWatermarkIndex;
+import com.hienao.openlist2strm.util.OpenlistDirectoryIndex;
+import com.hienao.openlist2strm.util.StrmCleanupIndex;
+import com.hienao.openlist2strm.util.StrmManifestIndex;
+import com.hienao.openlist2strm.util.StrmWriter;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import lombok.RequiredArgsConstructor;
@@ -44,10 +57,15 @@ public class TaskExecutionService {
 
   private final TaskConfigService taskConfigService;
   private final OpenlistConfigService openlistConfigService;
-  private final OpenlistApiService openlistApiService;
+  private final OpenlistCrawlerService openlistCrawlerService;
   private final StrmFileService strmFileService;
+  private final StrmManifestService strmManifestService;
+  private final DirectoryWatermarkService directoryWatermarkService;
+  private final DirectorySnapshotService directorySnapshotService;
   private final MediaScrapingService mediaScrapingService;
+  private final SyncProperties syncProperties;
   private final Executor taskSubmitExecutor;
+  private final Executor scrapingExecutor;
 
   /**
    * 提交任务到线程池执行
@@ -180,8 +198,13 @@ public class TaskExecutionService {
   }
 
   /**
-   * 执行具体的任务逻辑 1. 根据任务配置获取OpenList配置 2. 如果是全量执行，先清空STRM目录 3. 通过OpenList API递归获取所有文件 4. 对视频文件生成STRM文件
-   * 5. 保持目录结构一致 6. 如果是增量执行，清理孤立的STRM文件
+   * 执行具体的任务逻辑 1. 根据任务配置获取OpenList配置 2. 全量执行且配置为清空方式时，先清空STRM目录和同步清单，否则加载同步清单
+   * 3. 并发遍历OpenList目录（启用增量遍历时跳过未变化的子目录），每个目录获取完成后立即把其中视频文件的STRM文件按目录提交到写入线程池
+   * （增量执行时只提交URL有变化的文件，写入时跳过内容一致的文件），需要刮削的文件提交到刮削线程池，处理完即释放该目录的文件列表
+   * 4. 保持目录结构一致 5. 等待本次任务提交的写入和刮削全部完成 6. 未清空STRM目录时，清理本次未确认的STRM文件 7. 写回同步清单和目录水位
+   *
+   * <p>全量执行默认采用标记-清除方式：本次写入或确认的STRM文件即为标记，结束时只清除未标记的文件及其刮削信息，
+   * 仍然有效的NFO和图片保留，不再重新刮削，媒体服务器也不会在执行过程中看到媒体库被清空
    *
    * @param taskConfig 任务配置
    * @param isIncrement 是否增量执行
@@ -189,141 +212,156 @@ public class TaskExecutionService {
   private void executeTaskLogic(TaskConfig taskConfig, boolean isIncrement) {
     log.info("开始执行任务逻辑: {}, 增量模式: {}", taskConfig.getTaskName(), isIncrement);
 
+    // 本次执行期间的本地存在性检查共用一个目录快照，每个输出目录只读取一次
+    DirectorySnapshotCache snapshot = directorySnapshotService.beginRun();
     try {
       // 1. 获取OpenList配置
       OpenlistConfig openlistConfig = getOpenlistConfig(taskConfig);
 
-      // 2. 如果是全量执行，先清空STRM目录
-      if (!isIncrement) {
+      // 2. 全量执行且配置为清空方式时，先清空STRM目录
+      boolean wipe = !isIncrement && syncProperties.getFullSyncMode() == FullSyncMode.WIPE;
+      if (wipe) {
         log.info("全量执行模式，开始清理STRM目录: {}", taskConfig.getStrmPath());
         strmFileService.clearStrmDirectory(taskConfig.getStrmPath());
+      } else if (!isIncrement) {
+        log.info("全量执行模式，校验STRM目录并在结束时清理失效文件: {}", taskConfig.getStrmPath());
       }
+      StrmManifestIndex manifest =
+          wipe
+              ? strmManifestService.reset(taskConfig.getId())
+              : strmManifestService.load(taskConfig.getId());
+      DirectoryWatermarkIndex watermarks =
+          directoryWatermarkService.load(
+              taskConfig, openlistConfig, isIncrement, manifest.hasPreviousEntries());
+
+      // 3. 流式处理：遍历 -> 过滤 -> 生成STRM -> 刮削，每个目录只处理一次
+      TaskRunContext context =
+          new TaskRunContext(
+              taskConfig,
+              openlistConfig,
+              manifest,
+              snapshot,
+              strmFileService.newStrmWriter(snapshot, manifest::invalidateStrm),
+              watermarks,
+              isIncrement,
+              wipe,
+              Boolean.TRUE.equals(taskConfig.getNeedScrap()));
 
-      // 3. 使用内存优化的文件处理方式
-      log.info("开始处理文件，使用内存优化策略");
-
-      // 如果启用了刮削功能，先进行目录级别的优化检查
-      boolean needScrap = Boolean.TRUE.equals(taskConfig.getNeedScrap());
-
-      // 使用分批处理减少内存占用
-      List<OpenlistApiService.OpenlistFile> allFiles =
-          processFilesWithMemoryOptimization(openlistConfig, taskConfig, isIncrement, needScrap);
-
-      log.info("处理完成，共处理 {} 个文件/目录", allFiles.size());
-
-      // 4. 过滤并处理视频文件
-      int processedCount = 0;
-      int scrapSkippedCount = 0;
-
-      for (OpenlistApiService.OpenlistFile file : allFiles) {
-        if ("file".equals(file.getType()) && strmFileService.isVideoFile(file.getName())) {
-          try {
-            // 计算相对路径
-            String relativePath =
-                strmFileService.calculateRelativePath(taskConfig.getPath(), file.getPath());
-
-            // 构建包含sign参数的文件URL
-            String fileUrlWithSign = buildFileUrlWithSign(file.getUrl(), file.getSign());
-
-            // 生成STRM文件（增量模式下强制重新生成）
-            strmFileService.generateStrmFile(
-                taskConfig.getStrmPath(),
-                relativePath,
-                file.getName(),
-                fileUrlWithSign,
-                isIncrement, // 增量模式下强制重新生成
-                taskConfig.getRenameRegex(),
-                openlistConfig);
-
-            // 如果启用了刮削功能，执行媒体刮削
-            if (needScrap) {
-              try {
-                // 构建完整的保存目录路径
-                String saveDirectory =
-                    buildScrapSaveDirectory(taskConfig.getStrmPath(), relativePath);
-
-                // 检查是否需要刮削（在增量模式下检查NFO文件是否已存在）
-                boolean needScrapFile =
-                    needScrapFile(
-                        file.getName(),
-                        taskConfig.getRenameRegex(),
-                        taskConfig.getStrmPath(),
-                        relativePath,
-                        isIncrement);
-
-                if (needScrapFile) {
-                  // 检查目录是否已完全刮削（仅在增量模式下进行目录级别检查）
-                  if (isIncrement && mediaScrapingService.isDirectoryFullyScraped(saveDirectory)) {
-                    log.debug("目录已完全刮削，跳过: {}", saveDirectory);
-                    scrapSkippedCount++;
-                  } else {
-                    // 过滤出当前视频文件所在目录的文件
-                    String currentDirectory =
-                        file.getPath().substring(0, file.getPath().lastIndexOf('/') + 1);
-                    List<OpenlistApiService.OpenlistFile> currentDirFiles =
-                        allFiles.stream()
-                            .filter(
-                                f ->
-                                    f.getPath().startsWith(currentDirectory)
-                                        && f.getPath()
-                                                .substring(currentDirectory.length())
-                                                .indexOf('/')
-                                            == -1)
-                            .collect(java.util.stream.Collectors.toList());
-
-                    mediaScrapingService.scrapMedia(
-                        openlistConfig,
-                        file.getName(),
-                        taskConfig.getStrmPath(),
-                        relativePath,
-                        currentDirFiles,
-                        file.getPath());
-                  }
-                } else {
-                  log.debug("NFO文件已存在，跳过刮削: {}", file.getName());
-                  scrapSkippedCount++;
-                }
-              } catch (Exception scrapException) {
-                log.error(
-                    "刮削文件失败: {}, 错误: {}",
-                    file.getName(),
-                    scrapException.getMessage(),
-                    scrapException);
-                // 刮削失败不影响STRM文件生成，继续处理
-              }
-            }
-
-            processedCount++;
+      OpenlistCrawlerService.CrawlResult crawlResult =
+          openlistCrawlerService.crawl(
+              openlistConfig,
+              taskConfig.getPath(),
+              watermarks != null ? watermarks::shouldDescend : folder -> true,
+              (path, files) -> processDirectory(context, path, files));
+      context.strmWriter.await();
 
-          } catch (Exception e) {
-            log.error("处理文件失败: {}, 错误: {}", file.getName(), e.getMessage(), e);
-            // 继续处理其他文件，不中断整个任务
-          }
+      log.info(
+          "文件处理完成 - 遍历了 {} 个目录，{} 个目录获取失败",
+          crawlResult.getDirectoryCount(),
+          crawlResult.getFailedDirectories().size());
+      Set<String> skippedDirectories =
+          watermarks != null ? watermarks.getSkippedDirectories() : Set.of();
+      if (!skippedDirectories.isEmpty()) {
+        log.info(
+            "增量遍历跳过了 {} 个未变化的子目录，列出的目录中有 {} 个发生变化",
+            skippedDirectories.size(),
+            watermarks.getChangedDirectoryCount());
+        manifest.retainDirectories(skippedDirectories);
+      }
+      int strmUnchangedCount = context.strmSkippedCount + context.strmWriter.getUnchangedCount();
+      log.info(
+          "STRM文件写入完成 - 写入 {} 个，跳过 {} 个内容未变化的文件，写入失败 {} 个",
+          context.strmWriter.getWrittenCount(),
+          strmUnchangedCount,
+          context.strmWriter.getFailedCount());
+      if (context.needScrap) {
+        if (context.scrapSkippedCount > 0) {
+          log.info("跳过了 {} 个已刮削的文件", context.scrapSkippedCount);
         }
+        log.info("等待刮削完成，剩余 {} 个文件", context.getPendingScrapCount());
+        context.awaitScraps();
+        log.info("刮削完成，共提交 {} 个文件", context.scrapSubmittedCount);
       }
 
-      if (needScrap && scrapSkippedCount > 0) {
-        log.info("跳过了 {} 个已刮削目录中的文件", scrapSkippedCount);
+      // 4. 未清空STRM目录时，根据本次遍历结果清理孤立的STRM文件（源文件已不存在的STRM文件）
+      List<String> removedSourcePaths = new ArrayList<>();
+      if (context.cleanupIndex != null) {
+        log.info("开始清理孤立的STRM文件");
+        for (String failedDirectory : crawlResult.getFailedDirectories()) {
+          strmFileService.recordFailedDirectory(context.cleanupIndex, failedDirectory);
+        }
+        // 跳过的子目录未列出，与获取失败的目录一样整体保留
+        for (String skippedDirectory : skippedDirectories) {
+          strmFileService.recordFailedDirectory(context.cleanupIndex, skippedDirectory);
+        }
+        if (isIncrement && manifest.hasPreviousEntries()) {
+          // 增量执行且有同步清单时，孤立文件即上次记录而本次未遇到的源文件，以及STRM路径已变化的旧文件
+          List<StrmManifest> removed =
+              strmFileService.cleanOrphanedStrmFiles(
+                  context.cleanupIndex, manifest.getOrphanedEntries());
+          collectRemovedSourcePaths(manifest, removed, removedSourcePaths);
+          log.info("清理了 {} 个孤立的STRM文件", removed.size());
+        } else {
+          // 全量执行时遍历本地STRM目录，清除所有未标记的文件，包括不在同步清单中的文件
+          int cleanedCount = strmFileService.cleanOrphanedStrmFiles(context.cleanupIndex);
+          log.info("清理了 {} 个孤立的STRM文件", cleanedCount);
+          collectRemovedSourcePaths(
+              manifest,
+              strmFileService.cleanOrphanedStrmFiles(
+                  context.cleanupIndex, manifest.getOrphanedEntries()),
+              removedSourcePaths);
+        }
       }
 
-      // 5. 如果是增量执行，清理孤立的STRM文件（源文件已不存在的STRM文件）
-      if (isIncrement) {
-        log.info("增量执行模式，开始清理孤立的STRM文件");
-        int cleanedCount =
-            strmFileService.cleanOrphanedStrmFiles(
-                taskConfig.getStrmPath(),
-                allFiles,
-                taskConfig.getPath(),
-                taskConfig.getRenameRegex(),
-                openlistConfig);
-        log.info("清理了 {} 个孤立的STRM文件", cleanedCount);
+      // 5. 写回同步清单和目录水位，失败时下次执行按变化的文件处理
+      try {
+        strmManifestService.save(manifest, removedSourcePaths);
+      } catch (Exception e) {
+        log.warn("保存STRM同步清单失败: {}, 错误: {}", taskConfig.getTaskName(), e.getMessage());
+      }
+      if (watermarks != null) {
+        try {
+          directoryWatermarkService.save(watermarks, crawlResult.getFailedDirectories());
+        } catch (Exception e) {
+          log.warn("保存目录水位失败: {}, 错误: {}", taskConfig.getTaskName(), e.getMessage());
+        }
       }
 
-      log.info("任务执行完成: {}, 处理了 {} 个视频文件", taskConfig.getTaskName(), processedCount);
-
+      log.info(
+          "本地文件检查统计 - 读取目录 {} 次，单独stat {} 次，命中目录快照 {} 次",
+          snapshot.getReaddirCount(),
+          snapshot.getStatCount(),
+          snapshot.getHitCount());
+      log.info(
+          "任务执行完成: {}, 处理了 {} 个视频文件，失败 {} 个",
+          taskConfig.getTaskName(),
+          context.processedCount,
+          context.failedCount + context.strmWriter.getFailedCount());
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BusinessException("等待STRM写入或刮削完成时任务被中断: " + taskConfig.getTaskName(), e);
     } catch (Exception e) {
       log.error("任务执行失败: {}, 错误: {}", taskConfig.getTaskName(), e.getMessage(), e);
       throw new BusinessException("任务执行失败: " + e.getMessage(), e);
+    } finally {
+      directorySnapshotService.endRun();
+    }
+  }
+
+  /**
+   * 收集需要从同步清单删除的源文件路径。STRM路径已变化的条目只清理了旧文件，源文件本次仍有条目，不能删除
+   *
+   * @param manifest 同步清单索引
+   * @param removed 已清理的孤立条目
+   * @param removedSourcePaths 需要删除的源文件路径
+   */
+  private static void collectRemovedSourcePaths(
+      StrmManifestIndex manifest, List<StrmManifest> removed, List<String> removedSourcePaths) {
+    for (StrmManifest entry : removed) {
+      if (!manifest.isCurrent(entry.getSourcePath())) {
+        removedSourcePaths.add(entry.getSourcePath());
+      }
     }
   }
 
@@ -434,7 +472,7 @@ public class TaskExecutionService {
         newUrl += "#" + ref;
       }
 
-      log.info("URL替换: {} -> {}", originalUrl, newUrl);
+      log.debug("URL替换: {} -> {}", originalUrl, newUrl);
       return newUrl;
 
     } catch (Exception e) {
@@ -471,248 +509,283 @@ public class TaskExecutionService {
     return strmDirectory + "/" + directoryPath;
   }
 
-  /** 内存优化的文件处理方法 分批处理文件，避免一次性加载所有文件到内存 */
-  private List<OpenlistApiService.OpenlistFile> processFilesWithMemoryOptimization(
-      OpenlistConfig openlistConfig,
-      TaskConfig taskConfig,
-      boolean isIncrement,
-      boolean needScrap) {
-
-    List<OpenlistApiService.OpenlistFile> allFiles = new ArrayList<>();
-    int processedCount = 0;
-    int scrapSkippedCount = 0;
-
-    try {
-      // 分批处理目录，每次只处理一个目录的文件
-      processDirectoryBatch(
-          openlistConfig,
-          taskConfig.getPath(),
-          taskConfig,
-          isIncrement,
-          needScrap,
-          allFiles,
-          processedCount,
-          scrapSkippedCount);
-
-      log.info("文件处理完成 - 处理了 {} 个视频文件", processedCount);
-      if (needScrap && scrapSkippedCount > 0) {
-        log.info("跳过了 {} 个已刮削目录中的文件", scrapSkippedCount);
-      }
-
-    } catch (Exception e) {
-      log.error("内存优化文件处理失败: {}", e.getMessage(), e);
-      // 降级到原始方法
-      log.info("降级使用原始文件处理方法");
-      allFiles = openlistApiService.getAllFilesRecursively(openlistConfig, taskConfig.getPath());
+  /**
+   * 处理单个目录中的视频文件，目录列表在处理完成后即可被回收
+   *
+   * @param context 任务运行上下文
+   * @param path 目录路径
+   * @param files 目录下的文件和子目录
+   */
+  private void processDirectory(
+      TaskRunContext context, String path, List<OpenlistApiService.OpenlistFile> files) {
+    if (context.cleanupIndex != null) {
+      strmFileService.recordListedDirectory(context.cleanupIndex, path, files);
+    }
+    if (context.watermarks != null) {
+      context.watermarks.recordListing(path, files);
     }
 
-    return allFiles;
-  }
-
-  /** 分批处理目录 */
-  private void processDirectoryBatch(
-      OpenlistConfig openlistConfig,
-      String path,
-      TaskConfig taskConfig,
-      boolean isIncrement,
-      boolean needScrap,
-      List<OpenlistApiService.OpenlistFile> allFiles,
-      int processedCount,
-      int scrapSkippedCount) {
+    // 目录级别的刮削检查每个目录只做一次，需要写入的STRM文件和需要刮削的文件收集后统一提交
+    Boolean directoryFullyScraped = null;
+    List<StrmWriter.Write> strmWrites = new ArrayList<>();
+    List<ScrapTarget> scrapTargets = new ArrayList<>();
 
-    try {
-      List<OpenlistApiService.OpenlistFile> files =
-          openlistApiService.getDirectoryContents(openlistConfig, path);
+    for (OpenlistApiService.OpenlistFile file : files) {
+      if (!file.isFile() || !strmFileService.isVideoFile(file.getName())) {
+        continue;
+      }
 
-      for (OpenlistApiService.OpenlistFile file : files) {
-        allFiles.add(file);
+      try {
+        String relativePath =
+            strmFileService.calculateRelativePath(context.taskConfig.getPath(), file.getPath());
+
+        // 构建包含sign参数的文件URL
+        String fileUrlWithSign = buildFileUrlWithSign(file.getUrl(), file.getSign());
+        Path strmFilePath =
+            strmFileService.resolveStrmFilePath(
+                context.taskConfig.getStrmPath(),
+                relativePath,
+                file.getName(),
+                context.taskConfig.getRenameRegex());
+        String strmContent =
+            strmFileService.buildStrmContent(fileUrlWithSign, context.openlistConfig);
+        String urlHash = StrmManifestIndex.hashUrl(strmContent);
+
+        // 生成STRM文件：增量执行时同步清单中路径和URL都未变化且本地文件仍存在则跳过，否则交给写入器（本地文件内容一致时不写入）
+        if (context.isIncrement
+            && context.manifest.isStrmUpToDate(
+                file.getPath(), strmFilePath, urlHash, context.snapshot)) {
+          log.debug("STRM文件未变化，跳过生成: {}", strmFilePath);
+          context.strmSkippedCount++;
+        } else {
+          strmWrites.add(new StrmWriter.Write(file.getPath(), strmFilePath, strmContent));
+        }
+        context.manifest.record(
+            file.getPath(), file.getSize(), file.getModified(), strmFilePath.toString(), urlHash);
 
-        if ("file".equals(file.getType()) && strmFileService.isVideoFile(file.getName())) {
-          // 立即处理视频文件，不累积在内存中
-          processVideoFile(
-              openlistConfig,
-              file,
-              taskConfig,
-              isIncrement,
-              needScrap,
-              files,
-              processedCount,
-              scrapSkippedCount);
-        } else if ("folder".equals(file.getType())) {
-          // 递归处理子目录
-          String subPath = file.getPath();
-          if (subPath == null || subPath.isEmpty()) {
-            subPath = path + "/" + file.getName();
+        if (context.needScrap) {
+          if (context.isIncrement && context.manifest.isScraped(file.getPath())) {
+            log.debug("同步清单记录已刮削，跳过: {}", file.getPath());
+            context.scrapSkippedCount++;
+          } else {
+            if (directoryFullyScraped == null) {
+              directoryFullyScraped =
+                  !context.wipe
+                      && mediaScrapingService.isDirectoryFullyScraped(
+                          buildScrapSaveDirectory(context.taskConfig.getStrmPath(), relativePath));
+            }
+            if (needScrapVideoFile(context, file, strmFilePath, directoryFullyScraped)) {
+              scrapTargets.add(new ScrapTarget(file, relativePath, strmFilePath));
+            }
           }
-          processDirectoryBatch(
-              openlistConfig,
-              subPath,
-              taskConfig,
-              isIncrement,
-              needScrap,
-              allFiles,
-              processedCount,
-              scrapSkippedCount);
         }
-      }
 
-      // 处理完一个目录后，建议GC回收
-      if (files.size() > 100) {
-        System.gc();
+        context.processedCount++;
+
+      } catch (Exception e) {
+        context.manifest.retain(file.getPath());
+        context.failedCount++;
+        log.error("处理文件失败: {}, 错误: {}", file.getName(), e.getMessage(), e);
       }
+    }
 
-    } catch (Exception e) {
-      log.error("处理目录失败: {}, 错误: {}", path, e.getMessage(), e);
+    context.strmWriter.submit(strmWrites);
+    if (scrapTargets.isEmpty()) {
+      return;
+    }
+
+    // 目录内的文件一起预先批量AI识别，再逐个提交刮削
+    OpenlistDirectoryIndex directoryIndex = OpenlistDirectoryIndex.build(path, files);
+    Map<String, String> relativePaths = new LinkedHashMap<>();
+    for (ScrapTarget target : scrapTargets) {
+      relativePaths.put(target.file().getName(), target.relativePath());
+    }
+    mediaScrapingService.prepareAiRecognition(directoryIndex, relativePaths);
+    for (ScrapTarget target : scrapTargets) {
+      submitScrap(context, target, directoryIndex);
     }
   }
 
-  /** 处理单个视频文件 */
-  private void processVideoFile(
-      OpenlistConfig openlistConfig,
+  /**
+   * 检查视频文件是否需要刮削，跳过检查只涉及本地文件，在任务线程上执行
+   *
+   * @param context 任务运行上下文
+   * @param file 视频文件
+   * @param strmFilePath STRM文件路径
+   * @param directoryFullyScraped 所在目录是否已完全刮削
+   * @return 是否需要刮削
+   */
+  private boolean needScrapVideoFile(
+      TaskRunContext context,
       OpenlistApiService.OpenlistFile file,
-      TaskConfig taskConfig,
-      boolean isIncrement,
-      boolean needScrap,
-      List<OpenlistApiService.OpenlistFile> directoryFiles,
-      int processedCount,
-      int scrapSkippedCount) {
+      Path strmFilePath,
+      boolean directoryFullyScraped) {
+    if (directoryFullyScraped) {
+      log.debug("目录已完全刮削，跳过: {}", file.getPath());
+      context.manifest.markScraped(file.getPath());
+      context.scrapSkippedCount++;
+      return false;
+    }
 
-    try {
-      // 计算相对路径
-      String relativePath =
-          strmFileService.calculateRelativePath(taskConfig.getPath(), file.getPath());
-
-      // 构建包含sign参数的文件URL
-      String fileUrlWithSign = buildFileUrlWithSign(file.getUrl(), file.getSign());
-
-      // 生成STRM文件（增量模式下强制重新生成）
-      strmFileService.generateStrmFile(
-          taskConfig.getStrmPath(),
-          relativePath,
-          file.getName(),
-          fileUrlWithSign,
-          isIncrement, // 增量模式下强制重新生成
-          taskConfig.getRenameRegex(),
-          openlistConfig);
-
-      // 如果启用了刮削功能，执行媒体刮削
-      if (needScrap) {
-        try {
-          String saveDirectory = buildScrapSaveDirectory(taskConfig.getStrmPath(), relativePath);
-
-          // 检查是否需要刮削（在增量模式下检查NFO文件是否已存在）
-          boolean needScrapFile =
-              needScrapFile(
-                  file.getName(),
-                  taskConfig.getRenameRegex(),
-                  taskConfig.getStrmPath(),
-                  relativePath,
-                  isIncrement);
-
-          if (needScrapFile) {
-            if (isIncrement && mediaScrapingService.isDirectoryFullyScraped(saveDirectory)) {
-              log.debug("目录已完全刮削，跳过: {}", saveDirectory);
-              scrapSkippedCount++;
-            } else {
-              mediaScrapingService.scrapMedia(
-                  openlistConfig,
-                  file.getName(),
-                  taskConfig.getStrmPath(),
-                  relativePath,
-                  directoryFiles,
-                  file.getPath());
+    // 检查是否需要刮削（在增量模式下检查NFO文件是否已存在）
+    if (!needScrapFile(strmFilePath, !context.wipe)) {
+      log.debug("NFO文件已存在，跳过刮削: {}", file.getName());
+      context.manifest.markScraped(file.getPath());
+      context.scrapSkippedCount++;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 提交视频文件到刮削线程池异步执行，刮削失败不影响STRM文件生成
+   *
+   * <p>刮削队列已满时由任务线程直接刮削，遍历随之放缓
+   *
+   * @param context 任务运行上下文
+   * @param target 待刮削的视频文件
+   * @param directoryIndex 视频所在目录的文件索引
+   */
+  private void submitScrap(
+      TaskRunContext context, ScrapTarget target, OpenlistDirectoryIndex directoryIndex) {
+    OpenlistApiService.OpenlistFile file = target.file();
+    context.scrapSubmitted();
+    scrapingExecutor.execute(
+        () -> {
+          try {
+            mediaScrapingService.scrapMedia(
+                context.openlistConfig,
+                file.getName(),
+                context.taskConfig.getStrmPath(),
+                target.relativePath(),
+                directoryIndex,
+                file.getPath());
+            // 刮削生成了NFO文件才记为已刮削，刮削失败的文件下次执行时重试
+            if (directorySnapshotService.exists(nfoPathOf(target.strmFilePath()))) {
+              context.manifest.markScraped(file.getPath());
             }
-          } else {
-            log.debug("NFO文件已存在，跳过刮削: {}", file.getName());
-            scrapSkippedCount++;
+          } catch (Exception scrapException) {
+            log.error(
+                "刮削文件失败: {}, 错误: {}",
+                file.getName(),
+                scrapException.getMessage(),
+                scrapException);
+          } finally {
+            context.scrapFinished();
           }
-        } catch (Exception scrapException) {
-          log.error(
-              "刮削文件失败: {}, 错误: {}", file.getName(), scrapException.getMessage(), scrapException);
-        }
-      }
-
-      processedCount++;
-
-    } catch (Exception e) {
-      log.error("处理文件失败: {}, 错误: {}", file.getName(), e.getMessage(), e);
-    }
+        });
   }
 
   /**
-   * 判断是否需要刮削文件 在增量模式下，检查NFO文件是否存在，如果NFO文件已存在则跳过刮削
+   * 判断是否需要刮削文件 未清空STRM目录时，检查NFO文件是否存在，如果NFO文件已存在则跳过刮削
    *
-   * @param fileName 原始文件名
-   * @param renameRegex 重命名正则表达式
-   * @param strmPath STRM文件路径
-   * @param relativePath 相对路径
-   * @param isIncrement 是否增量模式
+   * @param strmFilePath STRM文件路径
+   * @param keepScraped 是否保留已有的刮削结果（STRM目录未被清空）
    * @return 是否需要刮削
    */
-  private boolean needScrapFile(
-      String fileName,
-      String renameRegex,
-      String strmPath,
-      String relativePath,
-      boolean isIncrement) {
-    // 非增量模式下总是需要刮削
-    if (!isIncrement) {
+  private boolean needScrapFile(Path strmFilePath, boolean keepScraped) {
+    // 清空STRM目录后总是需要刮削
+    if (!keepScraped) {
       return true;
     }
 
     try {
-      // 增量模式下，检查NFO文件是否已存在
-      String finalFileName = processFileNameForScraping(fileName, renameRegex);
-      java.nio.file.Path strmFilePath =
-          strmFileService.buildStrmFilePath(strmPath, relativePath, finalFileName);
-
-      // 构建对应的NFO文件路径
-      java.nio.file.Path nfoFilePath =
-          strmFilePath.resolveSibling(
-              strmFilePath.getFileName().toString().replace(".strm", ".nfo"));
-
       // 如果NFO文件存在，则跳过刮削
-      return !java.nio.file.Files.exists(nfoFilePath);
+      return !directorySnapshotService.exists(nfoPathOf(strmFilePath));
     } catch (Exception e) {
       log.warn("检查NFO文件是否存在时发生错误: {}, 默认进行刮削", e.getMessage());
       return true;
     }
   }
 
-  /**
-   * 处理文件名（重命名和添加.strm扩展名） 这个方法复制自StrmFileService，用于判断STRM文件是否存在
-   *
-   * @param originalFileName 原始文件名
-   * @param renameRegex 重命名正则表达式
-   * @return 处理后的文件名
-   */
-  private String processFileNameForScraping(String originalFileName, String renameRegex) {
-    String processedName = originalFileName;
+  /** STRM文件对应的NFO文件路径（电影NFO或分集NFO，与STRM文件同名） */
+  private static Path nfoPathOf(Path strmFilePath) {
+    return strmFilePath.resolveSibling(
+        strmFilePath.getFileName().toString().replace(".strm", ".nfo"));
+  }
 
-    // 应用重命名规则
-    if (renameRegex != null && !renameRegex.trim().isEmpty()) {
-      try {
-        // 简单的正则替换，可以根据需要扩展
-        // 格式: "原始模式|替换内容"
-        if (renameRegex.contains("|")) {
-          String[] parts = renameRegex.split("\\|", 2);
-          String pattern = parts[0];
-          String replacement = parts[1];
-          processedName = processedName.replaceAll(pattern, replacement);
-          log.debug("文件重命名: {} -> {}", originalFileName, processedName);
-        }
-      } catch (Exception e) {
-        log.warn("重命名规则应用失败: {}, 使用原始文件名", renameRegex, e);
+  /** 待刮削的视频文件 */
+  private record ScrapTarget(
+      OpenlistApiService.OpenlistFile file, String relativePath, Path strmFilePath) {}
+
+  /** 单次任务执行的上下文，保存任务配置与统计数据。统计数据仅在遍历的调用线程上访问，待完成刮削数由刮削线程共同更新 */
+  private static final class TaskRunContext {
+    private final TaskConfig taskConfig;
+    private final OpenlistConfig openlistConfig;
+    private final StrmManifestIndex manifest;
+
+    /** 本次执行的本地目录快照 */
+    private final DirectorySnapshotCache snapshot;
+
+    private final DirectoryWatermarkIndex watermarks;
+    private final boolean isIncrement;
+
+    /** 全量执行前是否已清空STRM目录 */
+    private final boolean wipe;
+
+    private final boolean needScrap;
+    private final StrmCleanupIndex cleanupIndex;
+
+    /** STRM文件写入器，写入失败的文件在同步清单中作废，下次执行重新写入 */
+    private final StrmWriter strmWriter;
+
+    private int processedCount;
+    private int failedCount;
+    private int strmSkippedCount;
+    private int scrapSkippedCount;
+    private int scrapSubmittedCount;
+
+    /** 已提交但尚未完成的刮削数，由本对象的锁保护 */
+    private int pendingScrapCount;
+
+    private TaskRunContext(
+        TaskConfig taskConfig,
+        OpenlistConfig openlistConfig,
+        StrmManifestIndex manifest,
+        DirectorySnapshotCache snapshot,
+        StrmWriter strmWriter,
+        DirectoryWatermarkIndex watermarks,
+        boolean isIncrement,
+        boolean wipe,
+        boolean needScrap) {
+      this.taskConfig = taskConfig;
+      this.openlistConfig = openlistConfig;
+      this.manifest = manifest;
+      this.snapshot = snapshot;
+      this.strmWriter = strmWriter;
+      this.watermarks = watermarks;
+      this.isIncrement = isIncrement;
+      this.wipe = wipe;
+      this.needScrap = needScrap;
+      this.cleanupIndex =
+          !wipe
+              ? new StrmCleanupIndex(
+                  taskConfig.getStrmPath(), taskConfig.getPath(), taskConfig.getRenameRegex())
+              : null;
+    }
+
+    private void scrapSubmitted() {
+      scrapSubmittedCount++;
+      synchronized (this) {
+        pendingScrapCount++;
       }
     }
 
-    // 移除原始扩展名并添加.strm扩展名
-    int lastDotIndex = processedName.lastIndexOf('.');
-    if (lastDotIndex > 0) {
-      processedName = processedName.substring(0, lastDotIndex);
+    private synchronized void scrapFinished() {
+      if (--pendingScrapCount == 0) {
+        notifyAll();
+      }
     }
-    processedName += ".strm";
 
-    return processedName;
+    private synchronized int getPendingScrapCount() {
+      return pendingScrapCount;
+    }
+
+    /** 等待本次任务提交的刮削全部完成 */
+    private synchronized void awaitScraps() throws InterruptedException {
+      while (pendingScrapCount > 0) {
+        wait();
+      }
+    }
   }
 }
@@ -4,9 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hienao.openlist2strm.dto.tmdb.TmdbMovieDetail;
 import com.hienao.openlist2strm.dto.tmdb.TmdbSearchResponse;
 import com.hienao.openlist2strm.dto.tmdb.TmdbTvDetail;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvSeasonDetail;
 import com.hienao.openlist2strm.exception.BusinessException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,7 +13,6 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -32,38 +30,8 @@ public class TmdbApiService {
 
   private final ObjectMapper objectMapper;
   private final SystemConfigService systemConfigService;
-
-  /** 创建配置了代理的RestTemplate */
-  private RestTemplate createRestTemplate() {
-    Map<String, Object> tmdbConfig = systemConfigService.getTmdbConfig();
-    String proxyHost = (String) tmdbConfig.get("proxyHost");
-    String proxyPortStr = (String) tmdbConfig.get("proxyPort");
-
-    SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-
-    // 配置代理
-    if (proxyHost != null
-        && !proxyHost.trim().isEmpty()
-        && proxyPortStr != null
-        && !proxyPortStr.trim().isEmpty()) {
-      try {
-        int proxyPort = Integer.parseInt(proxyPortStr.trim());
-        Proxy proxy =
-            new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost.trim(), proxyPort));
-        factory.setProxy(proxy);
-        log.info("TMDB API 使用代理: {}:{}", proxyHost.trim(), proxyPort);
-      } catch (NumberFormatException e) {
-        log.warn("代理端口配置无效: {}, 将不使用代理", proxyPortStr);
-      }
-    }
-
-    // 设置超时时间
-    Integer timeout = (Integer) tmdbConfig.getOrDefault("timeout", 30);
-    factory.setConnectTimeout(timeout * 1000);
-    factory.setReadTimeout(timeout * 1000);
-
-    return new RestTemplate(factory);
-  }
+  private final TmdbCacheService tmdbCacheService;
+  private final RestTemplate tmdbRestTemplate;
 
   /** 记录请求详细信息 */
   private void logRequestDetails(String method, String url, Map<String, String> params) {
@@ -120,53 +88,31 @@ public class TmdbApiService {
       throw new BusinessException("TMDB API Key 未配置");
     }
 
-    RestTemplate restTemplate = createRestTemplate();
-    String responseBody = null;
-    String url = null;
-
     try {
       String baseUrl = (String) tmdbConfig.getOrDefault("baseUrl", "https://api.themoviedb.org/3");
       String language = (String) tmdbConfig.getOrDefault("language", "zh-CN");
-
-      UriComponentsBuilder builder =
-          UriComponentsBuilder.fromHttpUrl(baseUrl + "/search/movie")
-              .queryParam("api_key", apiKey)
-              .queryParam("language", language)
-              .queryParam("query", query);
-
-      if (year != null && !year.trim().isEmpty()) {
-        builder.queryParam("year", year);
-      }
-
-      url = builder.toUriString();
-
-      // 记录请求参数
-      Map<String, String> requestParams = new java.util.HashMap<>();
-      requestParams.put("query", query);
-      requestParams.put("language", language);
-      if (year != null && !year.trim().isEmpty()) {
-        requestParams.put("year", year);
-      }
-      logRequestDetails("GET", url, requestParams);
-
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "OpenList2Strm/1.0");
-      HttpEntity<String> entity = new HttpEntity<>(headers);
-
-      ResponseEntity<String> response =
-          restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-      responseBody = response.getBody();
-
-      // 记录响应详情
-      logResponseDetails("GET", response.getStatusCode().value(), responseBody);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw new BusinessException("TMDB API 请求失败，状态码: " + response.getStatusCode());
-      }
-
-      if (responseBody == null || responseBody.isEmpty()) {
-        throw new BusinessException("TMDB API 返回空响应");
-      }
+      boolean hasYear = year != null && !year.trim().isEmpty();
+
+      String responseBody =
+          tmdbCacheService.getSearchResult(
+              buildCacheKey("search/movie", language, query, hasYear ? year.trim() : ""),
+              () -> {
+                UriComponentsBuilder builder =
+                    UriComponentsBuilder.fromHttpUrl(baseUrl + "/search/movie")
+                        .queryParam("api_key", apiKey)
+                        .queryParam("language", language)
+                        .queryParam("query", query);
+
+                // 记录请求参数
+                Map<String, String> requestParams = new java.util.HashMap<>();
+                requestParams.put("query", query);
+                requestParams.put("language", language);
+                if (hasYear) {
+                  builder.queryParam("year", year);
+                  requestParams.put("year", year);
+                }
+                return executeGet(builder.toUriString(), requestParams);
+              });
 
       TmdbSearchResponse searchResponse =
           objectMapper.readValue(responseBody, TmdbSearchResponse.class);
@@ -182,7 +128,6 @@ public class TmdbApiService {
       return searchResponse;
 
     } catch (Exception e) {
-      logErrorDetails("GET", url, e, responseBody);
       throw new BusinessException("搜索电影失败: " + e.getMessage());
     }
   }
@@ -202,53 +147,31 @@ public class TmdbApiService {
       throw new BusinessException("TMDB API Key 未配置");
     }
 
-    RestTemplate restTemplate = createRestTemplate();
-    String responseBody = null;
-    String url = null;
-
     try {
       String baseUrl = (String) tmdbConfig.getOrDefault("baseUrl", "https://api.themoviedb.org/3");
       String language = (String) tmdbConfig.getOrDefault("language", "zh-CN");
-
-      UriComponentsBuilder builder =
-          UriComponentsBuilder.fromHttpUrl(baseUrl + "/search/tv")
-              .queryParam("api_key", apiKey)
-              .queryParam("language", language)
-              .queryParam("query", query);
-
-      if (year != null && !year.trim().isEmpty()) {
-        builder.queryParam("first_air_date_year", year);
-      }
-
-      url = builder.toUriString();
-
-      // 记录请求参数
-      Map<String, String> requestParams = new java.util.HashMap<>();
-      requestParams.put("query", query);
-      requestParams.put("language", language);
-      if (year != null && !year.trim().isEmpty()) {
-        requestParams.put("first_air_date_year", year);
-      }
-      logRequestDetails("GET", url, requestParams);
-
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "OpenList2Strm/1.0");
-      HttpEntity<String> entity = new HttpEntity<>(headers);
-
-      ResponseEntity<String> response =
-          restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-      responseBody = response.getBody();
-
-      // 记录响应详情
-      logResponseDetails("GET", response.getStatusCode().value(), responseBody);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw new BusinessException("TMDB API 请求失败，状态码: " + response.getStatusCode());
-      }
-
-      if (responseBody == null || responseBody.isEmpty()) {
-        throw new BusinessException("TMDB API 返回空响应");
-      }
+      boolean hasYear = year != null && !year.trim().isEmpty();
+
+      String responseBody =
+          tmdbCacheService.getSearchResult(
+              buildCacheKey("search/tv", language, query, hasYear ? year.trim() : ""),
+              () -> {
+                UriComponentsBuilder builder =
+                    UriComponentsBuilder.fromHttpUrl(baseUrl + "/search/tv")
+                        .queryParam("api_key", apiKey)
+                        .queryParam("language", language)
+                        .queryParam("query", query);
+
+                // 记录请求参数
+                Map<String, String> requestParams = new java.util.HashMap<>();
+                requestParams.put("query", query);
+                requestParams.put("language", language);
+                if (hasYear) {
+                  builder.queryParam("first_air_date_year", year);
+                  requestParams.put("first_air_date_year", year);
+                }
+                return executeGet(builder.toUriString(), requestParams);
+              });
 
       TmdbSearchResponse searchResponse =
           objectMapper.readValue(responseBody, TmdbSearchResponse.class);
@@ -264,7 +187,6 @@ public class TmdbApiService {
       return searchResponse;
 
     } catch (Exception e) {
-      logErrorDetails("GET", url, e, responseBody);
       throw new BusinessException("搜索电视剧失败: " + e.getMessage());
     }
   }
@@ -283,44 +205,26 @@ public class TmdbApiService {
       throw new BusinessException("TMDB API Key 未配置");
     }
 
-    RestTemplate restTemplate = createRestTemplate();
-    String responseBody = null;
-    String url = null;
-
     try {
       String baseUrl = (String) tmdbConfig.getOrDefault("baseUrl", "https://api.themoviedb.org/3");
       String language = (String) tmdbConfig.getOrDefault("language", "zh-CN");
 
-      url =
-          UriComponentsBuilder.fromHttpUrl(baseUrl + "/movie/" + movieId)
-              .queryParam("api_key", apiKey)
-              .queryParam("language", language)
-              .toUriString();
-
-      // 记录请求参数
-      Map<String, String> requestParams = new java.util.HashMap<>();
-      requestParams.put("movieId", String.valueOf(movieId));
-      requestParams.put("language", language);
-      logRequestDetails("GET", url, requestParams);
-
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "OpenList2Strm/1.0");
-      HttpEntity<String> entity = new HttpEntity<>(headers);
-
-      ResponseEntity<String> response =
-          restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-      responseBody = response.getBody();
-
-      // 记录响应详情
-      logResponseDetails("GET", response.getStatusCode().value(), responseBody);
-
-      if (!response.getStatusCode().is2xxSuccessful()) {
-        throw new BusinessException("TMDB API 请求失败，状态码: " + response.getStatusCode());
-      }
-
-      if (responseBody == null || responseBody.isEmpty()) {
-        throw new BusinessException("TMDB API 返回空响应");
-      }
+      String responseBody =
+          tmdbCacheService.getDetail(
+              buildCacheKey("movie/" + movieId, language),
+              () -> {
+                String url =
+                    UriComponentsBuilder.fromHttpUrl(baseUrl + "/movie/" + movieId)
+                        .queryParam("api_key", apiKey)
+                        .queryParam("language", language)
+                        .toUriString();
+
+                // 记录请求参数
+                Map<String, String> requestParams = new java.util.HashMap<>();
+                requestParams.put("movieId", String.valueOf(movieId));
+                requestParams.put("language", language);
+                return executeGet(url, requestParams);
+              });
 
       TmdbMovieDetail movieDetail = objectMapper.readValue(responseBody, TmdbMovieDetail.class);
       log.info("获取电影详情成功: {} ({})", movieDetail.getTitle(), movieDetail.getId());
@@ -328,7 +232,6 @@ public class TmdbApiService {
       return movieDetail;
 
     } catch (Exception e) {
-      logErrorDetails("GET", url, e, responseBody);
       throw new BusinessException("获取电影详情失败: " + e.getMessage());
     }
   }
@@ -347,24 +250,100 @@ public class TmdbApiService {
       throw new BusinessException("TMDB API Key 未配置");
     }
 
-    RestTemplate restTemplate = createRestTemplate();
-    String responseBody = null;
-    String url = null;
+    try {
+      String baseUrl = (String) tmdbConfig.getOrDefault("baseUrl", "https://api.themoviedb.org/3");
+      String language = (String) tmdbConfig.getOrDefault("language", "zh-CN");
+
+      String responseBody =
+          tmdbCacheService.getDetail(
+              buildCacheKey("tv/" + tvId, language),
+              () -> {
+                String url =
+                    UriComponentsBuilder.fromHttpUrl(baseUrl + "/tv/" + tvId)
+                        .queryParam("api_key", apiKey)
+                        .queryParam("language", language)
+                        .toUriString();
+
+                // 记录请求参数
+                Map<String, String> requestParams = new java.util.HashMap<>();
+                requestParams.put("tvId", String.valueOf(tvId));
+                requestParams.put("language", language);
+                return executeGet(url, requestParams);
+              });
+
+      TmdbTvDetail tvDetail = objectMapper.readValue(responseBody, TmdbTvDetail.class);
+      log.info("获取电视剧详情成功: {} ({})", tvDetail.getName(), tvDetail.getId());
+
+      return tvDetail;
+
+    } catch (Exception e) {
+      throw new BusinessException("获取电视剧详情失败: " + e.getMessage());
+    }
+  }
+
+  /**
+   * 获取电视剧季详情，一次请求返回该季所有分集
+   *
+   * @param tvId 电视剧ID
+   * @param seasonNumber 季号
+   * @return 季详情
+   */
+  public TmdbTvSeasonDetail getTvSeasonDetail(Integer tvId, Integer seasonNumber) {
+    Map<String, Object> tmdbConfig = systemConfigService.getTmdbConfig();
+    String apiKey = (String) tmdbConfig.get("apiKey");
+
+    if (apiKey == null || apiKey.trim().isEmpty()) {
+      throw new BusinessException("TMDB API Key 未配置");
+    }
 
     try {
       String baseUrl = (String) tmdbConfig.getOrDefault("baseUrl", "https://api.themoviedb.org/3");
       String language = (String) tmdbConfig.getOrDefault("language", "zh-CN");
+      String endpoint = "tv/" + tvId + "/season/" + seasonNumber;
+
+      String responseBody =
+          tmdbCacheService.getDetail(
+              buildCacheKey(endpoint, language),
+              () -> {
+                String url =
+                    UriComponentsBuilder.fromHttpUrl(baseUrl + "/" + endpoint)
+                        .queryParam("api_key", apiKey)
+                        .queryParam("language", language)
+                        .toUriString();
+
+                // 记录请求参数
+                Map<String, String> requestParams = new java.util.HashMap<>();
+                requestParams.put("tvId", String.valueOf(tvId));
+                requestParams.put("seasonNumber", String.valueOf(seasonNumber));
+                requestParams.put("language", language);
+                return executeGet(url, requestParams);
+              });
+
+      TmdbTvSeasonDetail seasonDetail =
+          objectMapper.readValue(responseBody, TmdbTvSeasonDetail.class);
+      log.info(
+          "获取电视剧季详情成功: {} 第{}季，共 {} 集",
+          tvId,
+          seasonNumber,
+          seasonDetail.getEpisodes() != null ? seasonDetail.getEpisodes().size() : 0);
+
+      return seasonDetail;
 
-      url =
-          UriComponentsBuilder.fromHttpUrl(baseUrl + "/tv/" + tvId)
-              .queryParam("api_key", apiKey)
-              .queryParam("language", language)
-              .toUriString();
+    } catch (Exception e) {
+      throw new BusinessException("获取电视剧季详情失败: " + e.getMessage());
+    }
+  }
 
-      // 记录请求参数
-      Map<String, String> requestParams = new java.util.HashMap<>();
-      requestParams.put("tvId", String.valueOf(tvId));
-      requestParams.put("language", language);
+  /**
+   * 发送GET请求并返回响应体，失败时记录请求和响应详情
+   *
+   * @param url 请求URL
+   * @param requestParams 用于日志的请求参数
+   * @return 响应体
+   */
+  private String executeGet(String url, Map<String, String> requestParams) {
+    String responseBody = null;
+    try {
       logRequestDetails("GET", url, requestParams);
 
       HttpHeaders headers = new HttpHeaders();
@@ -372,7 +351,7 @@ public class TmdbApiService {
       HttpEntity<String> entity = new HttpEntity<>(headers);
 
       ResponseEntity<String> response =
-          restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+          tmdbRestTemplate.exchange(url, HttpMethod.GET, entity, String.class);
       responseBody = response.getBody();
 
       // 记录响应详情
@@ -386,15 +365,28 @@ public class TmdbApiService {
         throw new BusinessException("TMDB API 返回空响应");
       }
 
-      TmdbTvDetail tvDetail = objectMapper.readValue(responseBody, TmdbTvDetail.class);
-      log.info("获取电视剧详情成功: {} ({})", tvDetail.getName(), tvDetail.getId());
-
-      return tvDetail;
+      return responseBody;
 
-    } catch (Exception e) {
+    } catch (RuntimeException e) {
       logErrorDetails("GET", url, e, responseBody);
-      throw new BusinessException("获取电视剧详情失败: " + e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * 构建缓存键：接口路径、语言和查询参数
+   *
+   * @param endpoint 接口路径
+   * @param language 语言
+   * @param params 查询参数
+   * @return 缓存键
+   */
+  private String buildCacheKey(String endpoint, String language, String... params) {
+    StringBuilder key = new StringBuilder(endpoint).append('|').append(language);
+    for (String param : params) {
+      key.append('|').append(param != null ? param.trim() : "");
     }
+    return key.toString();
   }
 
   /**
@@ -457,7 +449,6 @@ public class TmdbApiService {
     }
 
     try {
-      RestTemplate restTemplate = createRestTemplate();
       String baseUrl = "https://api.themoviedb.org/3";
       String url =
           UriComponentsBuilder.fromHttpUrl(baseUrl + "/configuration")
@@ -469,7 +460,7 @@ public class TmdbApiService {
       HttpEntity<String> entity = new HttpEntity<>(headers);
 
       ResponseEntity<String> response =
-          restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
+          tmdbRestTemplate.exchange(url, HttpMethod.GET, entity, String.class);
 
       return response.getStatusCode().is2xxSuccessful();
 
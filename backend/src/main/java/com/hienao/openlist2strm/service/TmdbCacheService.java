@@ -0,0 +1,202 @@
+package com.hienao.openlist2strm.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.hienao.openlist2strm.config.TmdbCacheProperties;
+import com.hienao.openlist2strm.entity.TmdbCache;
+import com.hienao.openlist2strm.mapper.TmdbCacheMapper;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * TMDB响应两级缓存服务
+ *
+ * <p>一级缓存为Caffeine内存缓存，保存加载中的future：同一个键的并发请求只有第一个请求在自己的线程上加载，
+ * 其余请求等待同一个future，加载过程不持有缓存内部的锁，加载失败时future自动移除。二级缓存为SQLite中的
+ * tmdb_cache 表，保存接口返回的原始JSON。一级缓存的有效期不超过该条目在二级缓存中的剩余有效期；
+ * 没有结果的搜索使用较短的有效期，以便TMDB补充条目后能重新搜索到。二级缓存读写失败只记录日志，不影响刮削。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+@Service
+public class TmdbCacheService {
+
+  private final TmdbCacheMapper tmdbCacheMapper;
+  private final TmdbCacheProperties properties;
+  private final ObjectMapper objectMapper;
+  private final AsyncCache<String, CachedResponse> memoryCache;
+
+  /**
+   * 一级缓存条目
+   *
+   * @param responseBody 原始JSON
+   * @param expiresAt 二级缓存中的过期时间（毫秒时间戳）
+   */
+  private record CachedResponse(String responseBody, long expiresAt) {}
+
+  public TmdbCacheService(
+      TmdbCacheMapper tmdbCacheMapper, TmdbCacheProperties properties, ObjectMapper objectMapper) {
+    this.tmdbCacheMapper = tmdbCacheMapper;
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+    this.memoryCache =
+        Caffeine.newBuilder()
+            .maximumSize(properties.getMemoryMaxSize())
+            .expireAfter(new MemoryExpiry(properties.getMemoryTtl()))
+            .buildAsync();
+  }
+
+  /**
+   * 获取搜索结果，缓存未命中时调用loader请求TMDB
+   *
+   * @param cacheKey 缓存键
+   * @param loader 请求TMDB并返回原始JSON
+   * @return 原始JSON
+   */
+  public String getSearchResult(String cacheKey, Supplier<String> loader) {
+    return get(cacheKey, true, loader);
+  }
+
+  /**
+   * 获取详情，缓存未命中时调用loader请求TMDB
+   *
+   * @param cacheKey 缓存键
+   * @param loader 请求TMDB并返回原始JSON
+   * @return 原始JSON
+   */
+  public String getDetail(String cacheKey, Supplier<String> loader) {
+    return get(cacheKey, false, loader);
+  }
+
+  /** 应用启动后清理已过期的二级缓存 */
+  @EventListener(ApplicationReadyEvent.class)
+  public void purgeExpired() {
+    if (!properties.isEnabled()) {
+      return;
+    }
+    try {
+      int deleted = tmdbCacheMapper.deleteExpired(System.currentTimeMillis());
+      if (deleted > 0) {
+        log.info("已清理 {} 条过期的TMDB缓存", deleted);
+      }
+    } catch (Exception e) {
+      log.warn("清理过期TMDB缓存失败: {}", e.getMessage());
+    }
+  }
+
+  private String get(String cacheKey, boolean search, Supplier<String> loader) {
+    if (!properties.isEnabled()) {
+      return loader.get();
+    }
+
+    CompletableFuture<CachedResponse> loading = new CompletableFuture<>();
+    CompletableFuture<CachedResponse> existing =
+        memoryCache.asMap().putIfAbsent(cacheKey, loading);
+    if (existing != null) {
+      try {
+        return existing.join().responseBody();
+      } catch (CompletionException e) {
+        // 其他请求加载失败，抛出其原始异常，与自己加载失败时一致
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+
+    // 在当前线程上加载，失败时future异常完成，Caffeine会将其从缓存中移除
+    try {
+      CachedResponse response = loadFromDatabaseOrRemote(cacheKey, search, loader);
+      loading.complete(response);
+      return response.responseBody();
+    } catch (RuntimeException e) {
+      loading.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private CachedResponse loadFromDatabaseOrRemote(
+      String cacheKey, boolean search, Supplier<String> loader) {
+    long now = System.currentTimeMillis();
+    try {
+      TmdbCache cached = tmdbCacheMapper.selectValid(cacheKey, now);
+      if (cached != null) {
+        log.debug("TMDB缓存命中: {}", cacheKey);
+        return new CachedResponse(cached.getResponseBody(), cached.getExpiresAt());
+      }
+    } catch (Exception e) {
+      log.warn("读取TMDB缓存失败: {}, 错误: {}", cacheKey, e.getMessage());
+    }
+
+    String responseBody = loader.get();
+    Duration ttl = resolveTtl(search, responseBody);
+    long expiresAt = now + ttl.toMillis();
+
+    try {
+      tmdbCacheMapper.upsert(
+          new TmdbCache()
+              .setCacheKey(cacheKey)
+              .setResponseBody(responseBody)
+              .setExpiresAt(expiresAt));
+    } catch (Exception e) {
+      log.warn("写入TMDB缓存失败: {}, 错误: {}", cacheKey, e.getMessage());
+    }
+    return new CachedResponse(responseBody, expiresAt);
+  }
+
+  /** 没有结果的搜索使用较短的有效期 */
+  private Duration resolveTtl(boolean search, String responseBody) {
+    if (!search) {
+      return properties.getDetailTtl();
+    }
+    return isEmptySearchResult(responseBody)
+        ? properties.getEmptySearchTtl()
+        : properties.getSearchTtl();
+  }
+
+  private boolean isEmptySearchResult(String responseBody) {
+    try {
+      JsonNode results = objectMapper.readTree(responseBody).get("results");
+      return results == null || !results.isArray() || results.isEmpty();
+    } catch (Exception e) {
+      return true;
+    }
+  }
+
+  /** 一级缓存有效期：不超过配置的内存有效期，也不超过二级缓存中的剩余有效期 */
+  private static final class MemoryExpiry implements Expiry<String, CachedResponse> {
+
+    private final long memoryTtlNanos;
+
+    private MemoryExpiry(Duration memoryTtl) {
+      this.memoryTtlNanos = memoryTtl.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+      long remainingMillis = Math.max(0, value.expiresAt() - System.currentTimeMillis());
+      return Math.min(memoryTtlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis));
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        String key, CachedResponse value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        String key, CachedResponse value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD自适应并发限制器
+ *
+ * <p>每次请求成功后并发上限加性增长（约每轮增加1），遇到限流或过载时乘性减半，并可按服务端要求暂停一段时间。
+ * 这样请求速率会稳定在后端能够承受的最大值附近。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  /** 两次减半之间的最小间隔，避免同一波失败把上限连续压到最低 */
+  private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private final int minLimit;
+
+  private int maxLimit;
+  private double limit;
+  private int inFlight;
+  private long lastDecreaseNanos;
+  private long pausedUntilNanos;
+
+  /**
+   * @param minLimit 并发下限
+   * @param maxLimit 并发上限，初始并发即为该值
+   */
+  public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit) {
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = this.maxLimit;
+    long now = System.nanoTime();
+    this.lastDecreaseNanos = now - DECREASE_COOLDOWN_NANOS;
+    this.pausedUntilNanos = now;
+  }
+
+  /**
+   * 获取一个并发许可，超过当前上限或处于暂停期时阻塞等待
+   *
+   * @throws InterruptedException 等待被中断
+   */
+  public void acquire() throws InterruptedException {
+    lock.lock();
+    try {
+      while (true) {
+        long pauseNanos = pausedUntilNanos - System.nanoTime();
+        if (pauseNanos > 0) {
+          available.awaitNanos(pauseNanos);
+        } else if (inFlight < (int) limit) {
+          inFlight++;
+          return;
+        } else {
+          available.await();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** 请求成功：释放许可并加性增长上限 */
+  public void onSuccess() {
+    lock.lock();
+    try {
+      inFlight--;
+      limit = Math.min(maxLimit, limit + 1.0 / limit);
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 请求被限流或后端过载：释放许可并乘性减小上限
+   *
+   * @param pauseMillis 所有请求需要暂停的时间（如Retry-After），0表示不暂停
+   */
+  public void onThrottle(long pauseMillis) {
+    lock.lock();
+    try {
+      inFlight--;
+      long now = System.nanoTime();
+      if (now - lastDecreaseNanos >= DECREASE_COOLDOWN_NANOS) {
+        limit = Math.max(minLimit, limit / 2);
+        lastDecreaseNanos = now;
+      }
+      if (pauseMillis > 0) {
+        long pauseUntil = now + TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+        if (pauseUntil - pausedUntilNanos > 0) {
+          pausedUntilNanos = pauseUntil;
+        }
+      }
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** 请求结束但与负载无关（如参数错误）：仅释放许可 */
+  public void onIgnore() {
+    lock.lock();
+    try {
+      inFlight--;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 调整并发上限，当前上限超出时立即收缩
+   *
+   * @param maxLimit 新的并发上限
+   */
+  public void setMaxLimit(int maxLimit) {
+    lock.lock();
+    try {
+      this.maxLimit = Math.max(minLimit, maxLimit);
+      limit = Math.min(limit, this.maxLimit);
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return 当前并发上限
+   */
+  public int getLimit() {
+    lock.lock();
+    try {
+      return (int) limit;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick多模式字符串匹配自动机
+ *
+ * <p>一次扫描文本即可找出所有出现过的关键字，耗时与文本长度成正比，与关键字数量无关。匹配时只对ASCII字母忽略大小写，
+ * 与 {@link java.util.regex.Pattern#CASE_INSENSITIVE} 的默认行为一致。自动机不可变，可在多线程间共享。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public final class AhoCorasickAutomaton {
+
+  private static final int[] NO_OUTPUT = new int[0];
+
+  /** 每个节点的出边字符（升序） */
+  private final char[][] edgeChars;
+
+  /** 每个节点的出边目标节点，与 edgeChars 一一对应 */
+  private final int[][] edgeTargets;
+
+  /** 失配指针 */
+  private final int[] fail;
+
+  /** 到达节点时命中的关键字下标，已合并失配链上的输出 */
+  private final int[][] outputs;
+
+  private final int keywordCount;
+
+  private AhoCorasickAutomaton(
+      char[][] edgeChars, int[][] edgeTargets, int[] fail, int[][] outputs, int keywordCount) {
+    this.edgeChars = edgeChars;
+    this.edgeTargets = edgeTargets;
+    this.fail = fail;
+    this.outputs = outputs;
+    this.keywordCount = keywordCount;
+  }
+
+  /**
+   * 构建自动机，关键字下标即其在列表中的位置，空关键字永远不会命中
+   *
+   * @param keywords 关键字列表
+   * @return 自动机
+   */
+  public static AhoCorasickAutomaton of(List<String> keywords) {
+    List<Map<Character, Integer>> trie = new ArrayList<>();
+    List<List<Integer>> ownOutputs = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    ownOutputs.add(new ArrayList<>());
+
+    for (int id = 0; id < keywords.size(); id++) {
+      String keyword = keywords.get(id);
+      if (keyword == null || keyword.isEmpty()) {
+        continue;
+      }
+      int node = 0;
+      for (int i = 0; i < keyword.length(); i++) {
+        char c = toLowerAscii(keyword.charAt(i));
+        Integer next = trie.get(node).get(c);
+        if (next == null) {
+          next = trie.size();
+          trie.add(new TreeMap<>());
+          ownOutputs.add(new ArrayList<>());
+          trie.get(node).put(c, next);
+        }
+        node = next;
+      }
+      ownOutputs.get(node).add(id);
+    }
+
+    int nodeCount = trie.size();
+    char[][] edgeChars = new char[nodeCount][];
+    int[][] edgeTargets = new int[nodeCount][];
+    for (int node = 0; node < nodeCount; node++) {
+      Map<Character, Integer> edges = trie.get(node);
+      edgeChars[node] = new char[edges.size()];
+      edgeTargets[node] = new int[edges.size()];
+      int index = 0;
+      for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+        edgeChars[node][index] = edge.getKey();
+        edgeTargets[node][index] = edge.getValue();
+        index++;
+      }
+    }
+
+    // 按层序计算失配指针，并把失配节点的输出合并到当前节点
+    int[] fail = new int[nodeCount];
+    int[][] outputs = new int[nodeCount][];
+    outputs[0] = toArray(ownOutputs.get(0), NO_OUTPUT);
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int child : edgeTargets[0]) {
+      fail[child] = 0;
+      outputs[child] = toArray(ownOutputs.get(child), NO_OUTPUT);
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      for (int i = 0; i < edgeChars[node].length; i++) {
+        char c = edgeChars[node][i];
+        int child = edgeTargets[node][i];
+        int state = fail[node];
+        int target = transition(edgeChars, edgeTargets, state, c);
+        while (target < 0 && state != 0) {
+          state = fail[state];
+          target = transition(edgeChars, edgeTargets, state, c);
+        }
+        fail[child] = target < 0 ? 0 : target;
+        outputs[child] = toArray(ownOutputs.get(child), outputs[fail[child]]);
+        queue.add(child);
+      }
+    }
+
+    return new AhoCorasickAutomaton(edgeChars, edgeTargets, fail, outputs, keywords.size());
+  }
+
+  /**
+   * @return 关键字数量
+   */
+  public int getKeywordCount() {
+    return keywordCount;
+  }
+
+  /**
+   * 扫描文本，返回每个关键字是否出现
+   *
+   * @param text 文本
+   * @return 按关键字下标索引的命中标记
+   */
+  public boolean[] findAll(CharSequence text) {
+    boolean[] found = new boolean[keywordCount];
+    if (text == null) {
+      return found;
+    }
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = toLowerAscii(text.charAt(i));
+      int target = transition(edgeChars, edgeTargets, state, c);
+      while (target < 0 && state != 0) {
+        state = fail[state];
+        target = transition(edgeChars, edgeTargets, state, c);
+      }
+      state = target < 0 ? 0 : target;
+      for (int id : outputs[state]) {
+        found[id] = true;
+      }
+    }
+    return found;
+  }
+
+  private static int transition(char[][] edgeChars, int[][] edgeTargets, int node, char c) {
+    int index = Arrays.binarySearch(edgeChars[node], c);
+    return index < 0 ? -1 : edgeTargets[node][index];
+  }
+
+  private static int[] toArray(List<Integer> own, int[] inherited) {
+    if (own.isEmpty()) {
+      return inherited;
+    }
+    int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+    for (int i = 0; i < own.size(); i++) {
+      result[inherited.length + i] = own.get(i);
+    }
+    return result;
+  }
+
+  static char toLowerAscii(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+}
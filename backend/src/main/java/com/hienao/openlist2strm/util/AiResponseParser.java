@@ -0,0 +1,256 @@
+package com.hienao.openlist2strm.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * AI 识别响应解析工具类 解析单文件和批量识别的 JSON 响应，兼容 Markdown 代码块包裹和新旧两种结果格式
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+public class AiResponseParser {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private AiResponseParser() {}
+
+  /**
+   * 解析 AI 的 JSON 响应
+   *
+   * @param rawResponse AI 的原始响应
+   * @return 解析后的AiRecognitionResult对象，如果失败则返回 null
+   */
+  public static AiRecognitionResult parseJsonResponse(String rawResponse) {
+    if (rawResponse == null || rawResponse.trim().isEmpty()) {
+      log.warn("AI 响应为空");
+      return null;
+    }
+
+    String response = rawResponse.trim();
+
+    try {
+      // 尝试提取 JSON 部分
+      String jsonContent = extractJsonFromResponse(response);
+      if (jsonContent == null) {
+        log.warn("无法从响应中提取 JSON，跳过处理: {}", response);
+        return null;
+      }
+
+      // 解析 JSON
+      return parseResultNode(OBJECT_MAPPER.readTree(jsonContent));
+
+    } catch (Exception e) {
+      log.warn("解析 JSON 响应失败，跳过处理: {}, 错误: {}", response, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * 解析批量识别响应，按 index 字段（缺失时按数组位置）对应到输入文件
+   *
+   * @param rawResponse AI 的原始响应
+   * @param size 输入文件数
+   * @return 与输入文件一一对应的识别结果，缺失或无法解析的条目为 null
+   */
+  public static List<AiRecognitionResult> parseBatchResponse(String rawResponse, int size) {
+    List<AiRecognitionResult> results = new ArrayList<>(Collections.nCopies(size, null));
+    if (rawResponse == null || rawResponse.trim().isEmpty()) {
+      log.warn("AI 批量响应为空");
+      return results;
+    }
+
+    JsonNode items;
+    try {
+      JsonNode root = readBatchJson(rawResponse.trim());
+      items = root != null && root.isArray() ? root : root != null ? root.get("results") : null;
+    } catch (Exception e) {
+      log.warn("解析 AI 批量响应失败: {}, 错误: {}", rawResponse, e.getMessage());
+      return results;
+    }
+    if (items == null || !items.isArray()) {
+      log.warn("AI 批量响应缺少 results 数组: {}", rawResponse);
+      return results;
+    }
+
+    for (int position = 0; position < items.size(); position++) {
+      JsonNode item = items.get(position);
+      JsonNode indexNode = item.get("index");
+      int index = indexNode != null && indexNode.canConvertToInt() ? indexNode.asInt() : position;
+      if (index < 0 || index >= size || results.get(index) != null) {
+        continue;
+      }
+      results.set(index, parseResultNode(item));
+    }
+    return results;
+  }
+
+  /** 读取批量响应 JSON，兼容模型直接返回数组的情况（数组在第一个对象之前开始时按数组解析） */
+  private static JsonNode readBatchJson(String response) throws Exception {
+    int arrayStart = response.indexOf('[');
+    int arrayEnd = response.lastIndexOf(']');
+    int objectStart = response.indexOf('{');
+    boolean isArray =
+        arrayStart != -1 && arrayEnd > arrayStart && (objectStart == -1 || arrayStart < objectStart);
+    if (!isArray) {
+      String jsonContent = extractJsonFromResponse(response);
+      return jsonContent != null ? OBJECT_MAPPER.readTree(jsonContent) : null;
+    }
+    return OBJECT_MAPPER.readTree(response.substring(arrayStart, arrayEnd + 1));
+  }
+
+  /**
+   * 解析单个文件的识别结果 JSON 节点
+   *
+   * @param jsonNode 识别结果节点
+   * @return 解析后的AiRecognitionResult对象，如果缺少必要字段则返回 null
+   */
+  private static AiRecognitionResult parseResultNode(JsonNode jsonNode) {
+    String jsonContent = jsonNode.toString();
+    try {
+      // 检查是否成功
+      JsonNode successNode = jsonNode.get("success");
+      if (successNode == null) {
+        log.warn("JSON 响应缺少 success 字段，跳过处理: {}", jsonContent);
+        return null;
+      }
+
+      boolean success = successNode.asBoolean();
+      AiRecognitionResult result = new AiRecognitionResult().setSuccess(success);
+
+      // 提取type字段
+      JsonNode typeNode = jsonNode.get("type");
+      if (typeNode != null && !typeNode.isNull()) {
+        result.setType(typeNode.asText());
+      }
+
+      if (success) {
+        // 成功情况，检查是新格式还是旧格式
+        JsonNode titleNode = jsonNode.get("title");
+        if (titleNode != null && !titleNode.isNull() && !titleNode.asText().trim().isEmpty()) {
+          // 新格式：分离字段
+          result.setTitle(titleNode.asText().trim());
+
+          JsonNode yearNode = jsonNode.get("year");
+          if (yearNode != null && !yearNode.isNull()) {
+            result.setYear(yearNode.asText().trim());
+          }
+
+          JsonNode seasonNode = jsonNode.get("season");
+          if (seasonNode != null && !seasonNode.isNull()) {
+            result.setSeason(seasonNode.asInt());
+          }
+
+          JsonNode episodeNode = jsonNode.get("episode");
+          if (episodeNode != null && !episodeNode.isNull()) {
+            result.setEpisode(episodeNode.asInt());
+          }
+
+          log.debug("成功解析 JSON 响应（新格式）: {}", result);
+          return result;
+        } else {
+          // 旧格式：filename字段
+          JsonNode filenameNode = jsonNode.get("filename");
+          if (filenameNode != null && !filenameNode.isNull()) {
+            String filename = filenameNode.asText().trim();
+            if (!filename.isEmpty()) {
+              result.setFilename(filename);
+              log.debug("成功解析 JSON 响应（旧格式）: {}", result);
+              return result;
+            }
+          }
+          log.warn("JSON 响应标记成功但缺少有效的title或filename字段，跳过处理: {}", jsonContent);
+          return null;
+        }
+      } else {
+        // 失败情况，提取失败原因
+        JsonNode reasonNode = jsonNode.get("reason");
+        String reason = reasonNode != null ? reasonNode.asText() : "未知原因";
+        result.setReason(reason);
+        log.info("AI 无法解析文件名: {}", reason);
+        return result;
+      }
+
+    } catch (Exception e) {
+      log.warn("解析 JSON 响应失败，跳过处理: {}, 错误: {}", jsonContent, e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * 从响应中提取 JSON 内容
+   *
+   * @param response 原始响应
+   * @return JSON 字符串，如果未找到则返回 null
+   */
+  public static String extractJsonFromResponse(String response) {
+    if (response == null || response.trim().isEmpty()) {
+      return null;
+    }
+
+    String content = response.trim();
+
+    // 处理 Markdown 代码块格式 ```json ... ``` 或 ``` ... ```
+    if (content.contains("```")) {
+      // 查找第一个代码块开始
+      int codeBlockStart = content.indexOf("```");
+      if (codeBlockStart != -1) {
+        // 确定内容开始位置
+        int contentStart;
+        String afterTicks = content.substring(codeBlockStart + 3);
+
+        // 检查是否是 ```json 格式
+        if (afterTicks.startsWith("json")) {
+          // 跳过 "json" 和可能的换行符
+          contentStart = codeBlockStart + 7;
+          if (contentStart < content.length() && content.charAt(contentStart) == '\n') {
+            contentStart++;
+          } else if (contentStart < content.length() && content.charAt(contentStart) == '\r') {
+            contentStart++;
+            if (contentStart < content.length() && content.charAt(contentStart) == '\n') {
+              contentStart++;
+            }
+          }
+        } else {
+          // 普通的 ``` 格式，查找换行符
+          int newlinePos = content.indexOf('\n', codeBlockStart + 3);
+          if (newlinePos != -1) {
+            contentStart = newlinePos + 1;
+          } else {
+            contentStart = codeBlockStart + 3;
+          }
+        }
+
+        // 查找代码块结束
+        int codeBlockEnd = content.indexOf("```", contentStart);
+        if (codeBlockEnd != -1) {
+          content = content.substring(contentStart, codeBlockEnd).trim();
+        } else {
+          // 如果没有找到结束标记，取到字符串末尾
+          content = content.substring(contentStart).trim();
+        }
+
+        log.debug("从 Markdown 代码块中提取内容: {}", content);
+      }
+    }
+
+    // 查找 JSON 开始和结束位置
+    int jsonStart = content.indexOf('{');
+    int jsonEnd = content.lastIndexOf('}');
+
+    if (jsonStart == -1 || jsonEnd == -1 || jsonStart >= jsonEnd) {
+      return null;
+    }
+
+    String jsonContent = content.substring(jsonStart, jsonEnd + 1);
+    log.debug("提取的 JSON 内容: {}", jsonContent);
+
+    return jsonContent;
+  }
+}
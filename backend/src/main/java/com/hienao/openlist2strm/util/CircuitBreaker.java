@@ -0,0 +1,105 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 熔断器
+ *
+ * <p>连续失败达到阈值后打开，打开期间请求直接失败；冷却时间过后进入半开状态，只放行一个试探请求，
+ * 成功则关闭，失败则重新打开。不反映后端健康状况的结果（如目录不存在）通过 {@link #onIgnore()} 上报，
+ * 只释放试探许可，不改变状态和连续失败计数。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class CircuitBreaker {
+
+  /** 熔断器状态 */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtNanos;
+  private boolean trialInFlight;
+
+  /**
+   * @param failureThreshold 连续失败次数阈值
+   * @param openMillis 打开后的冷却时间（毫秒）
+   */
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+  }
+
+  /**
+   * 判断是否允许发起请求
+   *
+   * @return 允许时返回true，之后必须调用 {@link #onSuccess()}、{@link #onFailure()} 或 {@link #onIgnore()}
+   */
+  public synchronized boolean tryAcquire() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (System.nanoTime() - openedAtNanos < openNanos) {
+          return false;
+        }
+        state = State.HALF_OPEN;
+        trialInFlight = true;
+        return true;
+      default:
+        if (trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+  }
+
+  /** 请求成功（或后端正常响应），关闭熔断器 */
+  public synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    trialInFlight = false;
+    state = State.CLOSED;
+  }
+
+  /** 请求失败，达到阈值或试探失败时打开熔断器 */
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAtNanos = System.nanoTime();
+      trialInFlight = false;
+    }
+  }
+
+  /** 请求结束但结果不反映后端健康状况，释放试探许可，状态和连续失败计数保持不变 */
+  public synchronized void onIgnore() {
+    trialInFlight = false;
+  }
+
+  /**
+   * @return 距离进入半开状态的剩余时间（毫秒），未打开时为0
+   */
+  public synchronized long getRemainingOpenMillis() {
+    if (state != State.OPEN) {
+      return 0;
+    }
+    long remaining = openNanos - (System.nanoTime() - openedAtNanos);
+    return remaining > 0 ? TimeUnit.NANOSECONDS.toMillis(remaining) + 1 : 0;
+  }
+
+  /**
+   * @return 当前状态
+   */
+  public synchronized State getState() {
+    return state;
+  }
+}
@@ -0,0 +1,273 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 预编译的刮削正则规则集
+ *
+ * <p>按优先级排序并编译好电影、电视剧目录和电视剧文件三组正则，同时记录每条正则声明的命名捕获组。
+ * 规则集不可变，随配置快照一起构建，配置变化时重新构建，可在多线程间安全共享。无效的正则在构建时跳过并记录警告。
+ *
+ * <p>每组规则还会提取各正则的必需字面量并构建一个Aho-Corasick自动机。匹配时先对文本扫描一遍找出出现过的字面量，
+ * 只有全部必需字面量都出现的规则才执行完整的正则，其余规则直接跳过，结果与逐条匹配完全一致。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+public final class CompiledScrapingRules {
+
+  /** 空规则集 */
+  public static final CompiledScrapingRules EMPTY =
+      new CompiledScrapingRules(RuleSet.EMPTY, RuleSet.EMPTY, RuleSet.EMPTY);
+
+  private static final Pattern NAMED_GROUP_PATTERN =
+      Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+
+  private final RuleSet movieRules;
+
+  private final RuleSet tvDirRules;
+
+  private final RuleSet tvFileRules;
+
+  private CompiledScrapingRules(RuleSet movieRules, RuleSet tvDirRules, RuleSet tvFileRules) {
+    this.movieRules = movieRules;
+    this.tvDirRules = tvDirRules;
+    this.tvFileRules = tvFileRules;
+  }
+
+  /**
+   * 根据刮削正则配置构建规则集
+   *
+   * @param scrapingRegexConfig 刮削正则配置，包含 movieRegexps、tvDirRegexps、tvFileRegexps
+   * @return 规则集
+   */
+  public static CompiledScrapingRules of(Map<String, Object> scrapingRegexConfig) {
+    if (scrapingRegexConfig == null || scrapingRegexConfig.isEmpty()) {
+      return EMPTY;
+    }
+    return of(
+        toStringList(scrapingRegexConfig.get("movieRegexps")),
+        toStringList(scrapingRegexConfig.get("tvDirRegexps")),
+        toStringList(scrapingRegexConfig.get("tvFileRegexps")));
+  }
+
+  /**
+   * 根据正则列表构建规则集
+   *
+   * @param movieRegexps 电影正则表达式列表
+   * @param tvDirRegexps 电视剧目录正则表达式列表
+   * @param tvFileRegexps 电视剧文件正则表达式列表
+   * @return 规则集
+   */
+  public static CompiledScrapingRules of(
+      List<String> movieRegexps, List<String> tvDirRegexps, List<String> tvFileRegexps) {
+    List<String> priorityConfig = EnhancedRegexPatterns.getRegexPriorityConfig();
+    return new CompiledScrapingRules(
+        compile(movieRegexps, priorityConfig, "电影"),
+        compile(tvDirRegexps, priorityConfig, "电视剧目录"),
+        compile(tvFileRegexps, priorityConfig, "电视剧文件"));
+  }
+
+  /**
+   * @return 按优先级排序的电影规则
+   */
+  public RuleSet getMovieRules() {
+    return movieRules;
+  }
+
+  /**
+   * @return 按优先级排序的电视剧目录规则
+   */
+  public RuleSet getTvDirRules() {
+    return tvDirRules;
+  }
+
+  /**
+   * @return 按优先级排序的电视剧文件规则
+   */
+  public RuleSet getTvFileRules() {
+    return tvFileRules;
+  }
+
+  private static RuleSet compile(
+      List<String> regexps, List<String> priorityConfig, String category) {
+    if (regexps == null || regexps.isEmpty()) {
+      return RuleSet.EMPTY;
+    }
+    List<Rule> rules = new ArrayList<>(regexps.size());
+    for (String regex : EnhancedRegexPatterns.prioritizeRegexes(regexps, priorityConfig)) {
+      if (regex == null || regex.isEmpty()) {
+        continue;
+      }
+      try {
+        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        rules.add(
+            new Rule(
+                regex, pattern, parseGroupNames(regex), RegexLiteralExtractor.extract(regex)));
+      } catch (PatternSyntaxException e) {
+        log.warn("无效的{}正则表达式: '{}', 错误: {}", category, regex, e.getMessage());
+      }
+    }
+    return new RuleSet(rules);
+  }
+
+  private static Set<String> parseGroupNames(String regex) {
+    Set<String> groupNames = new LinkedHashSet<>();
+    Matcher matcher = NAMED_GROUP_PATTERN.matcher(regex);
+    while (matcher.find()) {
+      // 跳过被转义的左括号
+      int backslashes = 0;
+      for (int i = matcher.start() - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+        backslashes++;
+      }
+      if (backslashes % 2 == 0) {
+        groupNames.add(matcher.group(1));
+      }
+    }
+    return Collections.unmodifiableSet(groupNames);
+  }
+
+  private static List<String> toStringList(Object value) {
+    if (!(value instanceof List<?> list)) {
+      return List.of();
+    }
+    List<String> result = new ArrayList<>(list.size());
+    for (Object element : list) {
+      if (element != null) {
+        result.add(element.toString());
+      }
+    }
+    return result;
+  }
+
+  /** 按优先级排序的一组规则，附带必需字面量的多模式预筛选 */
+  public static final class RuleSet {
+
+    static final RuleSet EMPTY = new RuleSet(List.of());
+
+    private final List<Rule> rules;
+
+    private final AhoCorasickAutomaton literalAutomaton;
+
+    /** 每条规则的必需字面量在自动机中的下标 */
+    private final int[][] ruleLiteralIds;
+
+    private RuleSet(List<Rule> rules) {
+      this.rules = Collections.unmodifiableList(rules);
+      Map<String, Integer> literalIds = new LinkedHashMap<>();
+      this.ruleLiteralIds = new int[rules.size()][];
+      for (int i = 0; i < rules.size(); i++) {
+        List<String> literals = rules.get(i).requiredLiterals();
+        ruleLiteralIds[i] = new int[literals.size()];
+        for (int j = 0; j < literals.size(); j++) {
+          Integer id = literalIds.get(literals.get(j));
+          if (id == null) {
+            id = literalIds.size();
+            literalIds.put(literals.get(j), id);
+          }
+          ruleLiteralIds[i][j] = id;
+        }
+      }
+      this.literalAutomaton = AhoCorasickAutomaton.of(new ArrayList<>(literalIds.keySet()));
+    }
+
+    /**
+     * @return 按优先级排序的规则
+     */
+    public List<Rule> rules() {
+      return rules;
+    }
+
+    /**
+     * 按优先级找出第一条能在文本中匹配的规则，先用必需字面量排除不可能匹配的规则
+     *
+     * @param text 文本
+     * @return 匹配结果，没有规则匹配时为null
+     */
+    public RuleMatch find(String text) {
+      if (text == null || rules.isEmpty()) {
+        return null;
+      }
+      boolean[] found =
+          literalAutomaton.getKeywordCount() > 0 ? literalAutomaton.findAll(text) : null;
+      for (int i = 0; i < rules.size(); i++) {
+        if (found != null && !containsAll(found, ruleLiteralIds[i])) {
+          continue;
+        }
+        Rule rule = rules.get(i);
+        Matcher matcher = rule.pattern().matcher(text);
+        if (matcher.find()) {
+          return new RuleMatch(rule, matcher);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * 不做预筛选，逐条执行正则，作为 {@link #find(String)} 的对照基准
+     *
+     * @param text 文本
+     * @return 匹配结果，没有规则匹配时为null
+     */
+    public RuleMatch findSequential(String text) {
+      if (text == null) {
+        return null;
+      }
+      for (Rule rule : rules) {
+        Matcher matcher = rule.pattern().matcher(text);
+        if (matcher.find()) {
+          return new RuleMatch(rule, matcher);
+        }
+      }
+      return null;
+    }
+
+    private static boolean containsAll(boolean[] found, int[] literalIds) {
+      for (int id : literalIds) {
+        if (!found[id]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * 规则匹配结果
+   *
+   * @param rule 匹配的规则
+   * @param matcher 已执行过find的Matcher
+   */
+  public record RuleMatch(Rule rule, Matcher matcher) {}
+
+  /**
+   * 单条预编译的正则规则
+   *
+   * @param regex 原始正则表达式
+   * @param pattern 编译后的正则（忽略大小写）
+   * @param groupNames 正则声明的命名捕获组
+   * @param requiredLiterals 任何匹配都必然包含的字面量（ASCII小写）
+   */
+  public record Rule(
+      String regex, Pattern pattern, Set<String> groupNames, List<String> requiredLiterals) {
+
+    /**
+     * @param groupName 命名捕获组
+     * @return 正则是否声明了该捕获组
+     */
+    public boolean hasGroup(String groupName) {
+      return groupNames.contains(groupName);
+    }
+  }
+}
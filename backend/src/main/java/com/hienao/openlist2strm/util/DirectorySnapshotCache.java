@@ -0,0 +1,219 @@
+package com.hienao.openlist2strm.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单次任务执行使用的本地目录快照缓存
+ *
+ * <p>每个目录第一次被查询时读取一次（一次readdir），把其中的文件名保存为集合，之后同一目录下的存在性检查都从集合中得出，
+ * 不再逐个stat。本次执行写入或删除文件时调用 {@link #recordWritten}、{@link #recordDeleted} 更新快照，
+ * 删除整个目录时调用 {@link #invalidateTree}。读取目录失败（不存在除外）时把该目录记为状态未知，本次执行内不再重复读取，
+ * 其下的检查退化为直接stat。
+ * 所有方法都可在多个线程上调用，readdir和stat次数作为本次执行的统计数据。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class DirectorySnapshotCache {
+
+  /** 不存在的目录 */
+  private static final Set<String> MISSING = Collections.emptySet();
+
+  /** 读取失败、状态未知的目录，与 {@link #MISSING} 是不同的实例 */
+  private static final Set<String> UNKNOWN = Collections.unmodifiableSet(new HashSet<>());
+
+  /** 目录路径到其中文件名集合的映射，目录不存在时为 {@link #MISSING}，读取失败时为 {@link #UNKNOWN} */
+  private final Map<Path, Set<String>> snapshots = new ConcurrentHashMap<>();
+
+  private final AtomicLong readdirCount = new AtomicLong();
+  private final AtomicLong statCount = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+
+  /**
+   * 检查文件或目录是否存在
+   *
+   * @param path 路径
+   * @return 是否存在
+   */
+  public boolean exists(Path path) {
+    Path normalized = normalize(path);
+    Path parent = normalized.getParent();
+    Set<String> names = parent != null ? snapshot(parent) : null;
+    if (names == null) {
+      statCount.incrementAndGet();
+      return Files.exists(normalized);
+    }
+    return names.contains(normalized.getFileName().toString());
+  }
+
+  /**
+   * 检查目录是否存在
+   *
+   * @param directory 目录路径
+   * @return 目录存在时返回true
+   */
+  public boolean isDirectory(Path directory) {
+    Path normalized = normalize(directory);
+    Set<String> names = snapshot(normalized);
+    if (names == null) {
+      statCount.incrementAndGet();
+      return Files.isDirectory(normalized);
+    }
+    return names != MISSING;
+  }
+
+  /**
+   * 列出目录中的文件名
+   *
+   * @param directory 目录路径
+   * @return 文件名集合（只读），目录不存在时为空集合
+   */
+  public Set<String> list(Path directory) {
+    Path normalized = normalize(directory);
+    Set<String> names = snapshot(normalized);
+    return names == null ? Set.of() : Collections.unmodifiableSet(names);
+  }
+
+  /**
+   * 检查目录中是否存在指定后缀的文件（不区分大小写）
+   *
+   * @param directory 目录路径
+   * @param suffix 后缀，如 ".nfo"
+   * @return 是否存在
+   */
+  public boolean containsSuffix(Path directory, String suffix) {
+    String lowerSuffix = suffix.toLowerCase(Locale.ROOT);
+    for (String name : list(directory)) {
+      if (name.toLowerCase(Locale.ROOT).endsWith(lowerSuffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 记录本次执行写入了文件或创建了目录，已缓存的上级目录快照随之更新
+   *
+   * @param path 写入的文件或创建的目录
+   */
+  public void recordWritten(Path path) {
+    Path current = normalize(path);
+    for (Path parent = current.getParent(); parent != null; parent = parent.getParent()) {
+      Set<String> names = snapshots.get(parent);
+      if (names == null || names == UNKNOWN) {
+        return;
+      }
+      if (names != MISSING) {
+        names.add(current.getFileName().toString());
+        return;
+      }
+      // 上级目录原先不存在，写入文件时已被创建
+      Set<String> created = ConcurrentHashMap.newKeySet();
+      created.add(current.getFileName().toString());
+      snapshots.put(parent, created);
+      current = parent;
+    }
+  }
+
+  /**
+   * 记录本次执行创建了目录（目录为空），之后该目录下的存在性检查无需再读取
+   *
+   * @param directory 创建的目录
+   */
+  public void recordDirectoryCreated(Path directory) {
+    Path normalized = normalize(directory);
+    snapshots.compute(
+        normalized,
+        (key, names) -> names == null || names == MISSING ? ConcurrentHashMap.newKeySet() : names);
+    recordWritten(normalized);
+  }
+
+  /**
+   * 记录本次执行删除了文件
+   *
+   * @param path 删除的文件
+   */
+  public void recordDeleted(Path path) {
+    Path normalized = normalize(path);
+    Path parent = normalized.getParent();
+    if (parent != null) {
+      Set<String> names = snapshots.get(parent);
+      if (names != null && names != MISSING && names != UNKNOWN) {
+        names.remove(normalized.getFileName().toString());
+      }
+    }
+  }
+
+  /**
+   * 作废目录及其所有子目录的快照，用于整个目录被删除或清空后
+   *
+   * @param directory 目录路径
+   */
+  public void invalidateTree(Path directory) {
+    Path normalized = normalize(directory);
+    snapshots.keySet().removeIf(path -> path.startsWith(normalized));
+    recordDeleted(normalized);
+  }
+
+  public long getReaddirCount() {
+    return readdirCount.get();
+  }
+
+  public long getStatCount() {
+    return statCount.get();
+  }
+
+  /**
+   * @return 从快照中得出结果、无需访问文件系统的查询次数
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** 返回目录快照，首次查询时读取目录；目录状态未知（读取失败）时返回null */
+  private Set<String> snapshot(Path directory) {
+    Set<String> names = snapshots.get(directory);
+    if (names != null) {
+      if (names == UNKNOWN) {
+        return null;
+      }
+      hitCount.incrementAndGet();
+      return names;
+    }
+    names = readNames(directory);
+    Set<String> existing = snapshots.putIfAbsent(directory, names);
+    names = existing != null ? existing : names;
+    return names == UNKNOWN ? null : names;
+  }
+
+  private Set<String> readNames(Path directory) {
+    readdirCount.incrementAndGet();
+    Set<String> names = ConcurrentHashMap.newKeySet();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path entry : stream) {
+        names.add(entry.getFileName().toString());
+      }
+      return names;
+    } catch (NoSuchFileException | NotDirectoryException e) {
+      return MISSING;
+    } catch (IOException e) {
+      return UNKNOWN;
+    }
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+}
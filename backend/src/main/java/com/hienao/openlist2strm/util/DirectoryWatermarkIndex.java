@@ -0,0 +1,271 @@
+package com.hienao.openlist2strm.util;
+
+import com.hienao.openlist2strm.entity.DirectoryWatermark;
+import com.hienao.openlist2strm.service.OpenlistApiService.OpenlistFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单次任务执行使用的目录水位索引
+ *
+ * <p>遍历线程在父目录列表中发现子目录时调用 {@link #shouldDescend}：子目录的修改时间和大小与上次记录一致时跳过整棵子树。
+ * 这依赖存储在子树变化时更新子目录的修改时间或大小，不满足时由定期完整遍历兜底（见 CrawlProperties）。
+ * 调用线程处理每个已列出的目录时调用 {@link #recordListing} 记录条目数和子项摘要，
+ * 它们要列出目录后才能得到，不参与是否进入的判断，只用于统计变化的目录数。遍历结束后，
+ * 已列出的目录生成新水位；获取失败的目录及其所有上级目录的水位作废，保证下次执行重新进入；
+ * 上次记录而本次既未列出、也不在跳过或失败子树下的目录已被删除，其水位一并移除。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class DirectoryWatermarkIndex {
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private final Long taskId;
+  private final String configHash;
+  private final boolean pruningEnabled;
+
+  /** 上次记录的水位，按目录路径索引 */
+  private final Map<String, DirectoryWatermark> previousWatermarks;
+
+  /** 本次在父目录列表中看到的子目录修改时间和大小，由遍历线程写入 */
+  private final Map<String, FolderStamp> folderStamps = new ConcurrentHashMap<>();
+
+  /** 本次列出的目录的条目数和子项摘要 */
+  private final Map<String, ListingStamp> listings = new ConcurrentHashMap<>();
+
+  /** 本次跳过的子目录 */
+  private final Set<String> skippedDirectories = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param taskId 任务配置ID
+   * @param configHash 当前任务和OpenList配置的摘要
+   * @param pruningEnabled 是否跳过未变化的子目录，为false时只记录水位
+   * @param previousWatermarks 上次记录的水位
+   */
+  public DirectoryWatermarkIndex(
+      Long taskId,
+      String configHash,
+      boolean pruningEnabled,
+      Collection<DirectoryWatermark> previousWatermarks) {
+    this.taskId = taskId;
+    this.configHash = configHash;
+    this.pruningEnabled = pruningEnabled;
+    this.previousWatermarks = new HashMap<>();
+    for (DirectoryWatermark watermark : previousWatermarks) {
+      this.previousWatermarks.put(watermark.getPath(), watermark);
+    }
+  }
+
+  /**
+   * 计算字符串的摘要
+   *
+   * @param value 字符串
+   * @return SHA-256摘要的前16字节（十六进制）
+   */
+  public static String hash(String value) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HEX.formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)), 0, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256不可用", e);
+    }
+  }
+
+  /**
+   * 计算目录子项名称、大小和修改时间的摘要，与列表返回顺序无关
+   *
+   * @param files 目录下的文件和子目录
+   * @return 子项摘要
+   */
+  public static String hashChildren(List<OpenlistFile> files) {
+    List<OpenlistFile> sorted = new ArrayList<>(files);
+    sorted.sort(Comparator.comparing(OpenlistFile::getName));
+    StringBuilder builder = new StringBuilder(sorted.size() * 48);
+    for (OpenlistFile file : sorted) {
+      builder
+          .append(file.getName())
+          .append('\0')
+          .append(file.getSize())
+          .append('\0')
+          .append(file.getModified())
+          .append('\n');
+    }
+    return hash(builder.toString());
+  }
+
+  /**
+   * 判断是否需要进入子目录，在遍历线程上调用
+   *
+   * @param folder 父目录列表中的子目录
+   * @return 子目录修改时间和大小与上次记录一致时返回false
+   */
+  public boolean shouldDescend(OpenlistFile folder) {
+    String path = folder.getPath();
+    folderStamps.put(path, new FolderStamp(folder.getModified(), folder.getSize()));
+    if (!pruningEnabled || folder.getModified() <= 0) {
+      return true;
+    }
+
+    DirectoryWatermark previous = previousWatermarks.get(path);
+    if (previous == null
+        || !Objects.equals(previous.getModifiedTime(), folder.getModified())
+        || !Objects.equals(previous.getFileSize(), folder.getSize())) {
+      return true;
+    }
+    skippedDirectories.add(path);
+    return false;
+  }
+
+  /**
+   * 记录一个已列出的目录
+   *
+   * @param path 目录路径
+   * @param files 目录下的文件和子目录
+   */
+  public void recordListing(String path, List<OpenlistFile> files) {
+    listings.put(path, new ListingStamp(files.size(), hashChildren(files)));
+  }
+
+  /**
+   * @return 本次跳过的子目录
+   */
+  public Set<String> getSkippedDirectories() {
+    return Set.copyOf(skippedDirectories);
+  }
+
+  /**
+   * @return 本次列出的目录中，条目数或子项摘要与上次记录不同的目录数
+   */
+  public int getChangedDirectoryCount() {
+    int changed = 0;
+    for (Map.Entry<String, ListingStamp> entry : listings.entrySet()) {
+      DirectoryWatermark previous = previousWatermarks.get(entry.getKey());
+      if (previous == null
+          || !Objects.equals(previous.getEntryCount(), entry.getValue().entryCount())
+          || !entry.getValue().childrenHash().equals(previous.getChildrenHash())) {
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * 生成本次列出的目录的新水位，获取失败的目录及其上级目录除外
+   *
+   * @param failedDirectories 获取失败的目录
+   * @param verifiedAt 列出时间（毫秒时间戳）
+   * @return 需要写入的水位
+   */
+  public List<DirectoryWatermark> buildUpdatedWatermarks(
+      Collection<String> failedDirectories, long verifiedAt) {
+    Set<String> invalidated = withAncestors(failedDirectories);
+    List<DirectoryWatermark> watermarks = new ArrayList<>(listings.size());
+    for (Map.Entry<String, ListingStamp> entry : listings.entrySet()) {
+      String path = entry.getKey();
+      if (invalidated.contains(path)) {
+        continue;
+      }
+      FolderStamp stamp = folderStamps.getOrDefault(path, FolderStamp.UNKNOWN);
+      watermarks.add(
+          new DirectoryWatermark()
+              .setTaskId(taskId)
+              .setPath(path)
+              .setModifiedTime(stamp.modified())
+              .setFileSize(stamp.size())
+              .setEntryCount(entry.getValue().entryCount())
+              .setChildrenHash(entry.getValue().childrenHash())
+              .setConfigHash(configHash)
+              .setVerifiedAt(verifiedAt));
+    }
+    return watermarks;
+  }
+
+  /**
+   * 找出需要删除的水位：获取失败的目录及其上级目录，以及已不存在的目录
+   *
+   * @param failedDirectories 获取失败的目录
+   * @return 需要删除的目录路径
+   */
+  public List<String> getRemovedPaths(Collection<String> failedDirectories) {
+    Set<String> invalidated = withAncestors(failedDirectories);
+    Set<String> failed = new HashSet<>(failedDirectories);
+    List<String> removed = new ArrayList<>();
+    for (String path : previousWatermarks.keySet()) {
+      if (invalidated.contains(path)) {
+        removed.add(path);
+      } else if (!listings.containsKey(path)
+          && !isUnder(path, skippedDirectories)
+          && !isUnder(path, failed)) {
+        removed.add(path);
+      }
+    }
+    return removed;
+  }
+
+  public Long getTaskId() {
+    return taskId;
+  }
+
+  /**
+   * 判断路径是否等于集合中的某个目录或位于其下
+   *
+   * @param path 路径
+   * @param directories 目录集合
+   * @return 是否位于集合中的目录下
+   */
+  public static boolean isUnder(String path, Set<String> directories) {
+    if (directories.isEmpty()) {
+      return false;
+    }
+    for (String current = path; current != null; current = parentOf(current)) {
+      if (directories.contains(current)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> withAncestors(Collection<String> paths) {
+    Set<String> result = new HashSet<>();
+    for (String path : paths) {
+      for (String current = path; current != null; current = parentOf(current)) {
+        if (!result.add(current)) {
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static String parentOf(String path) {
+    String trimmed =
+        path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    int lastSlash = trimmed.lastIndexOf('/');
+    if (lastSlash < 0 || trimmed.length() <= 1) {
+      return null;
+    }
+    return lastSlash == 0 ? "/" : trimmed.substring(0, lastSlash);
+  }
+
+  /** 父目录列表中看到的子目录属性 */
+  private record FolderStamp(long modified, long size) {
+    private static final FolderStamp UNKNOWN = new FolderStamp(0, 0);
+  }
+
+  /** 列出目录时得到的条目数和子项摘要 */
+  private record ListingStamp(int entryCount, String childrenHash) {}
+}
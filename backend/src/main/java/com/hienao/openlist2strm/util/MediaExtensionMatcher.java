@@ -0,0 +1,131 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 预编译的文件后缀匹配器
+ *
+ * <p>单段后缀（如 .mkv）存入开放寻址哈希表，匹配时对文件名最后一个点之后的部分按忽略大小写的方式计算哈希并查表，
+ * 不创建任何临时字符串。多段后缀（如 .iso.mkv）或不以点开头的后缀数量很少，按忽略大小写的endsWith逐个比较。
+ * 匹配器不可变，配置变化时重新构建。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public final class MediaExtensionMatcher {
+
+  /** 默认视频文件后缀 */
+  public static final MediaExtensionMatcher DEFAULT_VIDEO =
+      of(List.of(".mp4", ".avi", ".mkv", ".rmvb"));
+
+  /** 单段后缀哈希表，元素为不含点的小写后缀 */
+  private final String[] table;
+
+  private final int mask;
+
+  /** 需要逐个比较的后缀（小写） */
+  private final String[] suffixes;
+
+  private final boolean empty;
+
+  private MediaExtensionMatcher(List<String> simpleExtensions, List<String> suffixes) {
+    int capacity = Integer.highestOneBit(Math.max(4, simpleExtensions.size() * 2 - 1)) << 1;
+    this.table = new String[capacity];
+    this.mask = capacity - 1;
+    for (String extension : simpleExtensions) {
+      int index = hash(extension, 0, extension.length()) & mask;
+      while (table[index] != null) {
+        index = (index + 1) & mask;
+      }
+      table[index] = extension;
+    }
+    this.suffixes = suffixes.toArray(new String[0]);
+    this.empty = simpleExtensions.isEmpty() && suffixes.isEmpty();
+  }
+
+  /**
+   * 根据后缀列表构建匹配器，忽略空值和重复项
+   *
+   * @param extensions 后缀列表，如 .mkv
+   * @return 匹配器
+   */
+  public static MediaExtensionMatcher of(Collection<String> extensions) {
+    Set<String> simpleExtensions = new LinkedHashSet<>();
+    Set<String> suffixes = new LinkedHashSet<>();
+    if (extensions != null) {
+      for (String extension : extensions) {
+        if (extension == null || extension.isBlank()) {
+          continue;
+        }
+        String lower = toLowerCase(extension.trim());
+        if (lower.length() > 1 && lower.lastIndexOf('.') == 0) {
+          simpleExtensions.add(lower.substring(1));
+        } else {
+          suffixes.add(lower);
+        }
+      }
+    }
+    return new MediaExtensionMatcher(new ArrayList<>(simpleExtensions), new ArrayList<>(suffixes));
+  }
+
+  /**
+   * 判断文件名是否以任一后缀结尾（忽略大小写）
+   *
+   * @param fileName 文件名
+   * @return 是否匹配
+   */
+  public boolean matches(String fileName) {
+    if (fileName == null || empty) {
+      return false;
+    }
+
+    int dot = fileName.lastIndexOf('.');
+    int length = fileName.length() - dot - 1;
+    if (dot >= 0 && length > 0) {
+      for (int index = hash(fileName, dot + 1, fileName.length()) & mask;
+          table[index] != null;
+          index = (index + 1) & mask) {
+        String extension = table[index];
+        if (extension.length() == length
+            && fileName.regionMatches(true, dot + 1, extension, 0, length)) {
+          return true;
+        }
+      }
+    }
+
+    for (String suffix : suffixes) {
+      if (fileName.regionMatches(
+          true, fileName.length() - suffix.length(), suffix, 0, suffix.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return 是否未配置任何后缀
+   */
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  private static int hash(String value, int from, int to) {
+    int h = 0;
+    for (int i = from; i < to; i++) {
+      h = 31 * h + Character.toLowerCase(value.charAt(i));
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static String toLowerCase(String value) {
+    char[] chars = value.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(chars[i]);
+    }
+    return new String(chars);
+  }
+}
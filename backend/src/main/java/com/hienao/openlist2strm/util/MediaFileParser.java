@@ -29,9 +29,19 @@ public class MediaFileParser {
   // 分隔符模式
   private static final Pattern SEPARATOR_PATTERN = Pattern.compile("[._\\- \\[\\]()]+");
 
+  /** 视频文件后缀匹配器 */
+  private static final MediaExtensionMatcher VIDEO_EXTENSION_MATCHER =
+      MediaExtensionMatcher.of(
+          List.of(
+              ".mp4", ".avi", ".mkv", ".mov", ".wmv", ".flv", ".webm", ".m4v", ".rmvb", ".ts",
+              ".vob", ".3gp"));
+
   /**
    * 解析媒体文件名（新版，支持优先级机制）
    *
+   * <p>每次调用都会排序并编译正则，批量解析时应使用 {@link #parse(String, String,
+   * CompiledScrapingRules)}。
+   *
    * @param fileName 文件名
    * @param directoryPath 文件所在的目录路径
    * @param movieRegexps 电影正则表达式列表
@@ -66,23 +76,28 @@ public class MediaFileParser {
       List<String> tvDirRegexps,
       List<String> tvFileRegexps) {
 
+    return parse(
+        fileName,
+        directoryPath,
+        CompiledScrapingRules.of(movieRegexps, tvDirRegexps, tvFileRegexps));
+  }
+
+  /**
+   * 使用预编译的规则集解析媒体文件名
+   *
+   * @param fileName 文件名
+   * @param directoryPath 文件所在的目录路径
+   * @param rules 按优先级排序并预编译的刮削正则
+   * @return 媒体信息
+   */
+  public static MediaInfo parse(
+      String fileName, String directoryPath, CompiledScrapingRules rules) {
     if (fileName == null || fileName.trim().isEmpty()) {
       return createUnknownMedia(fileName);
     }
 
     log.debug("开始解析（优先级模式）: 文件='{}', 目录='{}'", fileName, directoryPath);
 
-    // 按优先级排序正则表达式
-    List<String> prioritizedMovieRegexps =
-        EnhancedRegexPatterns.prioritizeRegexes(
-            movieRegexps, EnhancedRegexPatterns.getRegexPriorityConfig());
-    List<String> prioritizedTvDirRegexps =
-        EnhancedRegexPatterns.prioritizeRegexes(
-            tvDirRegexps, EnhancedRegexPatterns.getRegexPriorityConfig());
-    List<String> prioritizedTvFileRegexps =
-        EnhancedRegexPatterns.prioritizeRegexes(
-            tvFileRegexps, EnhancedRegexPatterns.getRegexPriorityConfig());
-
     MediaInfo mediaInfo = new MediaInfo().setOriginalFileName(fileName).setConfidence(0);
     String nameWithoutExt = removeFileExtension(fileName);
 
@@ -92,12 +107,12 @@ public class MediaFileParser {
             mediaInfo,
             nameWithoutExt,
             directoryPath,
-            prioritizedTvDirRegexps,
-            prioritizedTvFileRegexps);
+            rules.getTvDirRules(),
+            rules.getTvFileRules());
 
     // 如果不是电视剧，则尝试作为电影解析
     if (!isTv) {
-      parseAsMovie(mediaInfo, nameWithoutExt, prioritizedMovieRegexps);
+      parseAsMovie(mediaInfo, nameWithoutExt, rules.getMovieRules());
     }
 
     // 计算最终置信度
@@ -112,40 +127,20 @@ public class MediaFileParser {
       MediaInfo mediaInfo,
       String nameWithoutExt,
       String directoryPath,
-      List<String> tvDirRegexps,
-      List<String> tvFileRegexps) {
+      CompiledScrapingRules.RuleSet tvDirRules,
+      CompiledScrapingRules.RuleSet tvFileRules) {
 
-    // 1. 解析目录
+    // 1. 解析目录，找到第一个匹配的目录正则即可
     if (directoryPath != null && !directoryPath.isEmpty()) {
-      for (String regex : tvDirRegexps) {
-        try {
-          Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-          Matcher matcher = pattern.matcher(directoryPath);
-          if (matcher.find()) {
-            extractNamedGroups(matcher, mediaInfo);
-            log.debug("电视剧目录正则 '{}' 匹配成功: {}", regex, directoryPath);
-            break; // 找到第一个匹配的目录正则即可
-          }
-        } catch (Exception e) {
-          log.warn("无效的电视剧目录正则表达式: '{}', 错误: {}", regex, e.getMessage());
-        }
+      CompiledScrapingRules.RuleMatch match = tvDirRules.find(directoryPath);
+      if (match != null) {
+        extractNamedGroups(match, mediaInfo);
+        log.debug("电视剧目录正则 '{}' 匹配成功: {}", match.rule().regex(), directoryPath);
       }
     }
 
     // 2. 解析文件名以获取季集信息
-    for (String regex : tvFileRegexps) {
-      try {
-        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(nameWithoutExt);
-        if (matcher.find()) {
-          extractNamedGroups(matcher, mediaInfo);
-          log.debug("电视剧文件正则 '{}' 匹配成功: {}", regex, nameWithoutExt);
-          break; // 找到第一个匹配的文件正则即可
-        }
-      } catch (Exception e) {
-        log.warn("无效的电视剧文件正则表达式: '{}', 错误: {}", regex, e.getMessage());
-      }
-    }
+    extractSeasonEpisode(tvFileRules, nameWithoutExt, mediaInfo);
 
     // 3. 如果同时获取到了剧名和季/集信息，则认为是电视剧
     if (mediaInfo.getTitle() != null && mediaInfo.getSeason() != null) {
@@ -163,72 +158,93 @@ public class MediaFileParser {
     return false;
   }
 
+  /**
+   * 使用电视剧文件正则从文件名中提取信息，取第一个匹配的正则
+   *
+   * @param tvFileRules 电视剧文件正则
+   * @param nameWithoutExt 不含扩展名的文件名
+   * @param mediaInfo 媒体信息
+   * @return 是否有正则匹配
+   */
+  public static boolean extractSeasonEpisode(
+      CompiledScrapingRules.RuleSet tvFileRules, String nameWithoutExt, MediaInfo mediaInfo) {
+    CompiledScrapingRules.RuleMatch match = tvFileRules.find(nameWithoutExt);
+    if (match == null) {
+      return false;
+    }
+    extractNamedGroups(match, mediaInfo);
+    log.debug("电视剧文件正则 '{}' 匹配成功: {}", match.rule().regex(), nameWithoutExt);
+    return true;
+  }
+
   /** 尝试将文件解析为电影 */
   private static void parseAsMovie(
-      MediaInfo mediaInfo, String nameWithoutExt, List<String> movieRegexps) {
-    for (String regex : movieRegexps) {
-      try {
-        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(nameWithoutExt);
-        if (matcher.find()) {
-          extractNamedGroups(matcher, mediaInfo);
-          log.debug("电影正则 '{}' 匹配成功: {}", regex, nameWithoutExt);
-          mediaInfo.setType(MediaInfo.MediaType.MOVIE);
-          cleanupTitle(mediaInfo);
-          return; // 找到第一个匹配的即可
-        }
-      } catch (Exception e) {
-        log.warn("无效的电影正则表达式: '{}', 错误: {}", regex, e.getMessage());
-      }
+      MediaInfo mediaInfo, String nameWithoutExt, CompiledScrapingRules.RuleSet movieRules) {
+    CompiledScrapingRules.RuleMatch match = movieRules.find(nameWithoutExt);
+    if (match != null) {
+      extractNamedGroups(match, mediaInfo);
+      log.debug("电影正则 '{}' 匹配成功: {}", match.rule().regex(), nameWithoutExt);
+      mediaInfo.setType(MediaInfo.MediaType.MOVIE);
+      cleanupTitle(mediaInfo);
+      return; // 找到第一个匹配的即可
     }
     // 如果所有电影正则都匹配失败，则认为是未知类型
     mediaInfo.setType(MediaInfo.MediaType.UNKNOWN);
     mediaInfo.setTitle(nameWithoutExt); // 使用原始文件名作为标题
   }
 
-  /** 从Matcher的命名捕获组中提取信息 */
-  public static void extractNamedGroups(Matcher matcher, MediaInfo mediaInfo) {
+  /** 从Matcher的命名捕获组中提取信息，只读取规则声明过的捕获组 */
+  private static void extractNamedGroups(
+      CompiledScrapingRules.RuleMatch match, MediaInfo mediaInfo) {
+    CompiledScrapingRules.Rule rule = match.rule();
+    Matcher matcher = match.matcher();
     // 提取标题
-    try {
-      String title = matcher.group("title");
-      if (title != null && !title.trim().isEmpty()) {
-        mediaInfo.setTitle(title.trim());
-      }
-    } catch (IllegalArgumentException e) {
-      /* 忽略，说明正则中没有这个组 */
+    String title = group(rule, matcher, "title");
+    if (title != null && !title.trim().isEmpty()) {
+      mediaInfo.setTitle(title.trim());
     }
 
     // 提取年份
-    try {
-      String year = matcher.group("year");
-      if (year != null && !year.trim().isEmpty()) {
-        mediaInfo.setYear(year);
-        mediaInfo.setHasYear(true);
-      }
-    } catch (IllegalArgumentException e) {
-      /* 忽略 */
+    String year = group(rule, matcher, "year");
+    if (year != null && !year.trim().isEmpty()) {
+      mediaInfo.setYear(year);
+      mediaInfo.setHasYear(true);
     }
 
     // 提取季
-    try {
-      String season = matcher.group("season");
-      if (season != null && !season.trim().isEmpty()) {
-        mediaInfo.setSeason(Integer.parseInt(season));
-        mediaInfo.setHasSeasonEpisode(true);
-      }
-    } catch (Exception e) {
-      /* 忽略 */
+    Integer season = parseNumber(group(rule, matcher, "season"));
+    if (season != null) {
+      mediaInfo.setSeason(season);
+      mediaInfo.setHasSeasonEpisode(true);
     }
 
     // 提取集
+    Integer episode = parseNumber(group(rule, matcher, "episode"));
+    if (episode != null) {
+      mediaInfo.setEpisode(episode);
+      mediaInfo.setHasSeasonEpisode(true);
+    }
+  }
+
+  private static String group(CompiledScrapingRules.Rule rule, Matcher matcher, String name) {
+    if (!rule.hasGroup(name)) {
+      return null;
+    }
     try {
-      String episode = matcher.group("episode");
-      if (episode != null && !episode.trim().isEmpty()) {
-        mediaInfo.setEpisode(Integer.parseInt(episode));
-        mediaInfo.setHasSeasonEpisode(true);
-      }
-    } catch (Exception e) {
-      /* 忽略 */
+      return matcher.group(name);
+    } catch (IllegalArgumentException e) {
+      return null; // 正则中没有这个组
+    }
+  }
+
+  private static Integer parseNumber(String value) {
+    if (value == null || value.trim().isEmpty()) {
+      return null;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return null;
     }
   }
 
@@ -292,22 +308,6 @@ public class MediaFileParser {
 
   /** 判断是否为视频文件 */
   public static boolean isVideoFile(String fileName) {
-    if (fileName == null || fileName.trim().isEmpty()) {
-      return false;
-    }
-    String lowerName = fileName.toLowerCase();
-    // 可以后续从系统配置中读取支持的后缀列表
-    return lowerName.endsWith(".mp4")
-        || lowerName.endsWith(".avi")
-        || lowerName.endsWith(".mkv")
-        || lowerName.endsWith(".mov")
-        || lowerName.endsWith(".wmv")
-        || lowerName.endsWith(".flv")
-        || lowerName.endsWith(".webm")
-        || lowerName.endsWith(".m4v")
-        || lowerName.endsWith(".rmvb")
-        || lowerName.endsWith(".ts")
-        || lowerName.endsWith(".vob")
-        || lowerName.endsWith(".3gp");
+    return VIDEO_EXTENSION_MATCHER.matches(fileName);
   }
 }
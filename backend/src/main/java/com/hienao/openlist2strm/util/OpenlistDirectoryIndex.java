@@ -0,0 +1,262 @@
+package com.hienao.openlist2strm.util;
+
+import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvDetail;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvSeasonDetail;
+import com.hienao.openlist2strm.service.OpenlistApiService.OpenlistFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 单个OpenList目录的文件索引
+ *
+ * <p>每个目录在遍历时只构建一次，刮削时查找同目录的字幕、NFO和图片文件直接查询索引，
+ * 不再为每个视频文件对目录文件列表重复线性扫描。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public final class OpenlistDirectoryIndex {
+
+  /** 支持的字幕文件后缀 */
+  private static final String[] SUBTITLE_EXTENSIONS = {
+    ".srt", ".ass", ".vtt", ".ssa", ".sub", ".idx"
+  };
+
+  /** 刮削图片文件后缀 */
+  private static final String[] IMAGE_EXTENSIONS = {
+    ".jpg", ".jpeg", ".png", ".webp", ".bmp", ".tiff"
+  };
+
+  private final String path;
+  private final List<OpenlistFile> files;
+  private final Map<String, OpenlistFile> filesByName;
+  private final NavigableMap<String, OpenlistFile> subtitlesByLowerName;
+  private final List<OpenlistFile> nfoFiles;
+  private final List<OpenlistFile> imageFiles;
+
+  /** NFO和图片文件的同步结果，键为STRM保存目录，同目录的多个视频只同步一次 */
+  private final Map<String, CompletableFuture<Boolean>> sidecarSyncs = new ConcurrentHashMap<>();
+
+  /** 本目录已解析的电视剧，键为剧集标识，未匹配到的剧集同样记录，同一剧集的多个分集只解析一次 */
+  private final Map<String, CompletableFuture<Optional<TmdbTvDetail>>> resolvedTvShows =
+      new ConcurrentHashMap<>();
+
+  /** 本目录已获取的季详情，键为电视剧ID和季号，同一季的多个分集只请求一次 */
+  private final Map<String, CompletableFuture<Optional<TmdbTvSeasonDetail>>> resolvedTvSeasons =
+      new ConcurrentHashMap<>();
+
+  /** 本目录预先批量发起的AI文件名识别，键为文件名 */
+  private final Map<String, CompletableFuture<AiRecognitionResult>> aiRecognitions =
+      new ConcurrentHashMap<>();
+
+  private OpenlistDirectoryIndex(String path, List<OpenlistFile> files) {
+    this.path = path;
+    this.files = Collections.unmodifiableList(files);
+    this.filesByName = new HashMap<>(Math.max(16, files.size() * 4 / 3 + 1));
+    this.subtitlesByLowerName = new TreeMap<>();
+    List<OpenlistFile> nfos = new ArrayList<>();
+    List<OpenlistFile> images = new ArrayList<>();
+
+    for (OpenlistFile file : files) {
+      filesByName.put(file.getName(), file);
+      if (!file.isFile()) {
+        continue;
+      }
+      String lowerName = file.getName().toLowerCase(Locale.ROOT);
+      if (lowerName.endsWith(".nfo")) {
+        nfos.add(file);
+      } else if (endsWithAny(lowerName, IMAGE_EXTENSIONS)) {
+        images.add(file);
+      } else if (endsWithAny(lowerName, SUBTITLE_EXTENSIONS)) {
+        subtitlesByLowerName.put(lowerName, file);
+      }
+    }
+
+    this.nfoFiles = Collections.unmodifiableList(nfos);
+    this.imageFiles = Collections.unmodifiableList(images);
+  }
+
+  /**
+   * 为目录构建索引
+   *
+   * @param path 目录路径
+   * @param files 目录下的文件和子目录
+   * @return 目录索引
+   */
+  public static OpenlistDirectoryIndex build(String path, List<OpenlistFile> files) {
+    return new OpenlistDirectoryIndex(path, files);
+  }
+
+  /**
+   * @return 目录路径
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return 目录下的全部文件和子目录
+   */
+  public List<OpenlistFile> getFiles() {
+    return files;
+  }
+
+  /**
+   * 按文件名精确查找
+   *
+   * @param name 文件名
+   * @return 文件，不存在时返回null
+   */
+  public OpenlistFile getByName(String name) {
+    return filesByName.get(name);
+  }
+
+  /**
+   * 查找与媒体文件匹配的字幕文件：文件名（忽略大小写）以媒体文件基础名开头
+   *
+   * @param baseFileName 媒体文件基础名（不含扩展名）
+   * @return 匹配的字幕文件
+   */
+  public List<OpenlistFile> findSubtitles(String baseFileName) {
+    String prefix = baseFileName.toLowerCase(Locale.ROOT);
+    return new ArrayList<>(
+        subtitlesByLowerName.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+  }
+
+  /**
+   * @return 目录中的NFO文件
+   */
+  public List<OpenlistFile> getNfoFiles() {
+    return nfoFiles;
+  }
+
+  /**
+   * @return 目录中的图片文件
+   */
+  public List<OpenlistFile> getImageFiles() {
+    return imageFiles;
+  }
+
+  /**
+   * 将本目录的NFO和图片文件同步到保存目录，每个保存目录只执行一次，并发调用时等待首次同步完成
+   *
+   * <p>同步操作在首个调用线程上执行，不持有映射的锁。同步操作抛出异常时不记录结果，异常同样抛给等待中的调用方，
+   * 后续调用会重新同步。
+   *
+   * @param saveDirectory STRM保存目录
+   * @param sync 同步操作，返回保存目录中是否存在刮削信息，失败时抛出异常
+   * @return 保存目录中是否存在刮削信息
+   */
+  public boolean syncSidecarsOnce(String saveDirectory, BooleanSupplier sync) {
+    return computeOnce(sidecarSyncs, saveDirectory, sync::getAsBoolean);
+  }
+
+  /**
+   * 获取本目录中剧集对应的TMDB电视剧详情，同一剧集只调用一次解析器，并发调用时等待首次解析完成
+   *
+   * <p>解析器在首个调用线程上执行，不持有映射的锁。解析器返回null表示未找到匹配，结果同样缓存；
+   * 解析器抛出异常时不缓存，后续分集会重新尝试。解析成功时在首个调用线程上回调 onFirstResolved，
+   * 用于只写入一次剧集级的NFO和图片，回调完成后等待中的调用方才会返回。
+   *
+   * @param showKey 剧集标识
+   * @param resolver 剧集解析器
+   * @param onFirstResolved 首次解析成功时的回调
+   * @return 电视剧详情，未匹配时返回null
+   */
+  public TmdbTvDetail resolveTvShow(
+      String showKey, Supplier<TmdbTvDetail> resolver, Consumer<TmdbTvDetail> onFirstResolved) {
+    return computeOnce(
+            resolvedTvShows,
+            showKey,
+            () -> {
+              TmdbTvDetail tvDetail = resolver.get();
+              if (tvDetail != null) {
+                onFirstResolved.accept(tvDetail);
+              }
+              return Optional.ofNullable(tvDetail);
+            })
+        .orElse(null);
+  }
+
+  /**
+   * 获取本目录中分集所属季的详情，同一季只调用一次加载器，并发调用时等待首次加载完成
+   *
+   * <p>加载器返回null时同样缓存，抛出异常时不缓存，后续分集会重新尝试。
+   *
+   * @param seasonKey 季标识
+   * @param loader 季详情加载器
+   * @return 季详情，不存在时返回null
+   */
+  public TmdbTvSeasonDetail resolveTvSeason(String seasonKey, Supplier<TmdbTvSeasonDetail> loader) {
+    return computeOnce(resolvedTvSeasons, seasonKey, () -> Optional.ofNullable(loader.get()))
+        .orElse(null);
+  }
+
+  /**
+   * 记录预先批量发起的AI文件名识别
+   *
+   * @param recognitions 文件名到识别结果的映射
+   */
+  public void putAiRecognitions(Map<String, CompletableFuture<AiRecognitionResult>> recognitions) {
+    aiRecognitions.putAll(recognitions);
+  }
+
+  /**
+   * 获取预先发起的AI文件名识别
+   *
+   * @param fileName 文件名
+   * @return 识别结果，未预先识别时返回null
+   */
+  public CompletableFuture<AiRecognitionResult> getAiRecognition(String fileName) {
+    return aiRecognitions.get(fileName);
+  }
+
+  /**
+   * 每个键只执行一次加载：首个调用方登记future后在自己的线程上加载，其余调用方等待同一个future；
+   * 加载失败时移除future，使后续调用重新加载
+   */
+  private static <T> T computeOnce(
+      Map<String, CompletableFuture<T>> results, String key, Supplier<T> loader) {
+    CompletableFuture<T> loading = new CompletableFuture<>();
+    CompletableFuture<T> existing = results.putIfAbsent(key, loading);
+    if (existing != null) {
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+    }
+    try {
+      T value = loader.get();
+      loading.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      results.remove(key, loading);
+      loading.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private static boolean endsWithAny(String lowerName, String[] extensions) {
+    for (String ext : extensions) {
+      if (lowerName.endsWith(ext)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
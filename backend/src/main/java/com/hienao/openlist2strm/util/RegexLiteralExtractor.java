@@ -0,0 +1,244 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 正则必需字面量提取器
+ *
+ * <p>从正则中找出任何一次成功匹配都必然包含的字面量片段（已转为ASCII小写），用于在执行正则前快速排除不可能匹配的规则。
+ * 只分析不可省略、不在分支内的部分：带分支的序列、可选量词修饰的元素、环视都不贡献字面量。
+ * 遇到内联标志、反向引用、\Q...\E等无法可靠分析的语法时放弃提取，返回空列表，该规则将始终参与匹配。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+final class RegexLiteralExtractor {
+
+  /** 不消耗字面量的字符类转义 */
+  private static final String CLASS_ESCAPES = "dDsSwWhHvVRXbBAzZGtnrfea";
+
+  private final String regex;
+
+  private int pos;
+
+  private RegexLiteralExtractor(String regex) {
+    this.regex = regex;
+  }
+
+  /**
+   * 提取正则的必需字面量
+   *
+   * @param regex 已能成功编译的正则表达式
+   * @return 必需字面量（ASCII小写，去重），无法分析时为空列表
+   */
+  static List<String> extract(String regex) {
+    if (regex == null || regex.isEmpty()) {
+      return List.of();
+    }
+    try {
+      RegexLiteralExtractor extractor = new RegexLiteralExtractor(regex);
+      List<String> literals = extractor.parseSequence();
+      if (extractor.pos != regex.length()) {
+        return List.of();
+      }
+      Set<String> distinct = new LinkedHashSet<>();
+      for (String literal : literals) {
+        StringBuilder lower = new StringBuilder(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+          lower.append(AhoCorasickAutomaton.toLowerAscii(literal.charAt(i)));
+        }
+        distinct.add(lower.toString());
+      }
+      return List.copyOf(distinct);
+    } catch (UnsupportedSyntaxException e) {
+      return List.of();
+    }
+  }
+
+  /** 解析到右括号或结尾为止的序列，不消耗右括号 */
+  private List<String> parseSequence() {
+    List<String> literals = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    boolean alternation = false;
+
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      if (c == ')') {
+        break;
+      }
+      if (c == '|') {
+        alternation = true;
+        pos++;
+        flush(run, literals);
+        continue;
+      }
+
+      String atomLiteral = null;
+      List<String> atomLiterals = List.of();
+      switch (c) {
+        case '(' -> {
+          pos++;
+          atomLiterals = parseGroup();
+        }
+        case '[' -> skipCharacterClass();
+        case '\\' -> atomLiteral = parseEscape();
+        case '.', '^', '$' -> pos++;
+        case '*', '+', '?', '{' -> throw new UnsupportedSyntaxException();
+        default -> {
+          atomLiteral = String.valueOf(c);
+          pos++;
+        }
+      }
+
+      int minOccurrences = parseQuantifier();
+      if (atomLiteral != null && minOccurrences > 0) {
+        run.append(atomLiteral);
+        if (minOccurrences == Integer.MAX_VALUE) {
+          continue;
+        }
+      }
+      // 非字面量元素或带量词的字面量会打断连续片段
+      flush(run, literals);
+      if (minOccurrences > 0) {
+        literals.addAll(atomLiterals);
+      }
+    }
+
+    flush(run, literals);
+    return alternation ? List.of() : literals;
+  }
+
+  /** 解析左括号之后的分组内容并消耗右括号 */
+  private List<String> parseGroup() {
+    boolean lookaround = false;
+    if (peek(0) == '?') {
+      char kind = peek(1);
+      if (kind == ':' || kind == '>') {
+        pos += 2;
+      } else if (kind == '=' || kind == '!') {
+        pos += 2;
+        lookaround = true;
+      } else if (kind == '<' && (peek(2) == '=' || peek(2) == '!')) {
+        pos += 3;
+        lookaround = true;
+      } else if (kind == '<' && Character.isLetter(peek(2))) {
+        int end = regex.indexOf('>', pos);
+        if (end < 0) {
+          throw new UnsupportedSyntaxException();
+        }
+        pos = end + 1;
+      } else {
+        // 内联标志等会改变匹配语义的语法
+        throw new UnsupportedSyntaxException();
+      }
+    }
+
+    List<String> literals = parseSequence();
+    if (peek(0) != ')') {
+      throw new UnsupportedSyntaxException();
+    }
+    pos++;
+    return lookaround ? List.of() : literals;
+  }
+
+  /** 解析转义，字面量转义返回对应字符，其余返回null */
+  private String parseEscape() {
+    char escaped = peek(1);
+    if (escaped == 0) {
+      throw new UnsupportedSyntaxException();
+    }
+    pos += 2;
+    if (Character.isLetterOrDigit(escaped)) {
+      if (CLASS_ESCAPES.indexOf(escaped) >= 0) {
+        return null;
+      }
+      // 带参数的转义、反向引用、\Q...\E 等
+      throw new UnsupportedSyntaxException();
+    }
+    return String.valueOf(escaped);
+  }
+
+  private void skipCharacterClass() {
+    pos++;
+    if (peek(0) == '^') {
+      pos++;
+    }
+    if (peek(0) == ']') {
+      throw new UnsupportedSyntaxException();
+    }
+    int depth = 1;
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      if (c == '\\') {
+        if (peek(1) == 'Q') {
+          throw new UnsupportedSyntaxException();
+        }
+        pos += 2;
+        continue;
+      }
+      pos++;
+      if (c == '[') {
+        depth++;
+      } else if (c == ']' && --depth == 0) {
+        return;
+      }
+    }
+    throw new UnsupportedSyntaxException();
+  }
+
+  /**
+   * 解析量词
+   *
+   * @return 最少出现次数；没有量词时返回 {@link Integer#MAX_VALUE} 表示恰好一次且不打断字面量片段
+   */
+  private int parseQuantifier() {
+    char c = peek(0);
+    int min;
+    if (c == '?' || c == '*') {
+      pos++;
+      min = 0;
+    } else if (c == '+') {
+      pos++;
+      min = 1;
+    } else if (c == '{') {
+      int close = regex.indexOf('}', pos);
+      if (close < 0 || !regex.substring(pos + 1, close).matches("\\d+(,\\d*)?")) {
+        throw new UnsupportedSyntaxException();
+      }
+      String bounds = regex.substring(pos + 1, close);
+      int comma = bounds.indexOf(',');
+      min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+      pos = close + 1;
+    } else {
+      return Integer.MAX_VALUE;
+    }
+    // 懒惰或占有量词后缀
+    if (peek(0) == '?' || peek(0) == '+') {
+      pos++;
+    }
+    return min;
+  }
+
+  private char peek(int offset) {
+    int index = pos + offset;
+    return index < regex.length() ? regex.charAt(index) : 0;
+  }
+
+  private static void flush(StringBuilder run, List<String> literals) {
+    if (!run.isEmpty()) {
+      literals.add(run.toString());
+      run.setLength(0);
+    }
+  }
+
+  /** 无法可靠分析的正则语法 */
+  private static final class UnsupportedSyntaxException extends RuntimeException {
+
+    UnsupportedSyntaxException() {
+      super(null, null, false, false);
+    }
+  }
+}
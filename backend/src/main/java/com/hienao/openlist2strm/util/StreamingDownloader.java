@@ -0,0 +1,208 @@
+package com.hienao.openlist2strm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * 流式文件下载工具
+ *
+ * <p>响应体直接写入目标目录下的临时文件，完成后原子替换目标文件，下载过程中不会把整个文件读入内存，
+ * 也不会留下写了一半的目标文件。本地文件大小与源文件一致时按本地文件修改时间发起条件请求，服务端返回304时不传输内容。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public final class StreamingDownloader {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** 超过该时长未修改的临时文件视为进程中断后残留 */
+  private static final Duration STALE_TEMP_FILE_AGE = Duration.ofHours(1);
+
+  /** 临时文件权限与普通新建文件一致，避免替换后媒体服务器无法读取 */
+  private static final FileAttribute<?>[] TEMP_FILE_ATTRIBUTES =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+          ? new FileAttribute<?>[] {
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-r--r--"))
+          }
+          : new FileAttribute<?>[0];
+
+  private StreamingDownloader() {}
+
+  /** 下载结果状态 */
+  public enum Status {
+    /** 已下载并替换目标文件 */
+    DOWNLOADED,
+    /** 服务端确认内容未变化，目标文件保持不变 */
+    NOT_MODIFIED,
+    /** 响应内容为空，目标文件保持不变 */
+    EMPTY,
+    /** 响应状态码不是2xx或304 */
+    FAILED
+  }
+
+  /**
+   * 下载结果
+   *
+   * @param status 状态
+   * @param bytes 写入的字节数
+   * @param statusCode HTTP状态码
+   */
+  public record Result(Status status, long bytes, int statusCode) {
+
+    /**
+     * @return 目标文件是否为最新内容（本次下载或未变化）
+     */
+    public boolean isAvailable() {
+      return status == Status.DOWNLOADED || status == Status.NOT_MODIFIED;
+    }
+  }
+
+  /**
+   * 目标文件已存在且大小与源文件一致时添加 If-Modified-Since 请求头
+   *
+   * <p>大小不同说明本地文件与源文件不是同一内容（如本地生成或手动编辑的文件），此时本地修改时间可能晚于源文件，
+   * 发起条件请求会得到304而保留不同的文件，因此改为无条件请求
+   *
+   * @param headers 请求头
+   * @param target 目标文件
+   * @param remoteSize 源文件大小，未知时（小于等于0）不添加
+   */
+  public static void applyConditionalHeaders(HttpHeaders headers, Path target, long remoteSize) {
+    if (remoteSize <= 0) {
+      return;
+    }
+    try {
+      if (Files.isRegularFile(target) && Files.size(target) == remoteSize) {
+        headers.setIfModifiedSince(Files.getLastModifiedTime(target).toMillis());
+      }
+    } catch (IOException e) {
+      // 读取本地文件属性失败时按无条件请求处理
+    }
+  }
+
+  /**
+   * 将响应写入目标文件
+   *
+   * <p>响应带有 Last-Modified 时，目标文件的修改时间设为该值，便于下次发起条件请求
+   *
+   * @param response HTTP响应
+   * @param target 目标文件
+   * @param maxBytes 允许的最大字节数
+   * @return 下载结果
+   * @throws IOException 读写失败或超过大小限制
+   */
+  public static Result writeTo(ClientHttpResponse response, Path target, long maxBytes)
+      throws IOException {
+    int statusCode = response.getStatusCode().value();
+    if (statusCode == HttpStatus.NOT_MODIFIED.value()) {
+      return new Result(Status.NOT_MODIFIED, 0, statusCode);
+    }
+    if (!response.getStatusCode().is2xxSuccessful()) {
+      return new Result(Status.FAILED, 0, statusCode);
+    }
+
+    HttpHeaders headers = response.getHeaders();
+    long contentLength = headers.getContentLength();
+    if (contentLength > maxBytes) {
+      throw new IOException("文件大小 " + contentLength + " 超过限制 " + maxBytes);
+    }
+
+    Path directory = target.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path tempFile = createTempSibling(target.toAbsolutePath());
+    try {
+      long written = copy(response.getBody(), tempFile, maxBytes);
+      if (written == 0) {
+        return new Result(Status.EMPTY, 0, statusCode);
+      }
+      long lastModified = headers.getLastModified();
+      if (lastModified > 0) {
+        Files.setLastModifiedTime(tempFile, FileTime.fromMillis(lastModified));
+      }
+      moveReplacing(tempFile, target);
+      return new Result(Status.DOWNLOADED, written, statusCode);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  /**
+   * 在目标文件所在目录创建唯一命名的隐藏临时文件，名称形如 {@code .<文件名>.<随机数>.tmp}
+   *
+   * <p>并发写入同一目标时各自使用不同的临时文件，不会互相覆盖或删除
+   *
+   * @param target 目标文件，所在目录必须已存在
+   * @return 临时文件路径
+   * @throws IOException 创建失败
+   */
+  public static Path createTempSibling(Path target) throws IOException {
+    return Files.createTempFile(
+        target.getParent(), "." + target.getFileName() + ".", ".tmp", TEMP_FILE_ATTRIBUTES);
+  }
+
+  /**
+   * 判断是否为写入中断（如进程崩溃）后残留的临时文件
+   *
+   * <p>只匹配隐藏的 .tmp 文件，且修改时间早于一小时前，避免删除其他任务正在写入的临时文件
+   *
+   * @param file 文件路径
+   * @param attrs 文件属性
+   * @param nowMillis 当前时间
+   * @return 是否为可删除的残留临时文件
+   */
+  public static boolean isStaleTempFile(Path file, BasicFileAttributes attrs, long nowMillis) {
+    String name = file.getFileName().toString();
+    return attrs.isRegularFile()
+        && name.startsWith(".")
+        && name.endsWith(".tmp")
+        && attrs.lastModifiedTime().toMillis() < nowMillis - STALE_TEMP_FILE_AGE.toMillis();
+  }
+
+  /**
+   * 原子替换目标文件，文件系统不支持原子移动时退化为普通替换
+   *
+   * @param source 源文件
+   * @param target 目标文件
+   * @throws IOException 移动失败
+   */
+  public static void moveReplacing(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static long copy(InputStream body, Path tempFile, long maxBytes) throws IOException {
+    long written = 0;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = body;
+        OutputStream out = Files.newOutputStream(tempFile)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        written += read;
+        if (written > maxBytes) {
+          throw new IOException("文件大小超过限制 " + maxBytes);
+        }
+        out.write(buffer, 0, read);
+      }
+    }
+    return written;
+  }
+}
@@ -0,0 +1,47 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 有界字符串驻留池
+ *
+ * <p>用于合并目录列表中大量重复的文件名（如 poster.jpg、tvshow.nfo、Season 1），
+ * 池满后不再收录新字符串，避免无限增长。由调用方按单次遍历创建，遍历结束后随之释放，不跨任务常驻。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StringInterner {
+
+  private final Map<String, String> pool = new ConcurrentHashMap<>();
+  private final int maxSize;
+
+  /**
+   * @param maxSize 最多收录的字符串数量
+   */
+  public StringInterner(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * 返回与参数相等的池内实例，池中不存在且未满时收录参数本身
+   *
+   * @param value 字符串
+   * @return 池内实例或参数本身
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String existing = pool.get(value);
+    if (existing != null) {
+      return existing;
+    }
+    if (pool.size() >= maxSize) {
+      return value;
+    }
+    existing = pool.putIfAbsent(value, value);
+    return existing != null ? existing : value;
+  }
+}
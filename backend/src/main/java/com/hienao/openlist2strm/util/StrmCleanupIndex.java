@@ -0,0 +1,76 @@
+package com.hienao.openlist2strm.util;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 增量任务孤立STRM文件清理索引
+ *
+ * <p>在遍历OpenList时顺带记录本次应当存在的STRM文件和已成功列出的目录，清理时只需遍历一次本地STRM目录，
+ * 逐个文件做哈希查找，不再为每个STRM目录重新请求OpenList。获取失败的目录及其子目录视为状态未知，清理时整体保留。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StrmCleanupIndex {
+
+  private final String strmBasePath;
+  private final String taskPath;
+  private final String renameRegex;
+
+  /** 源文件仍存在的STRM文件路径 */
+  private final Set<Path> expectedStrmFiles = new HashSet<>();
+
+  /** 在OpenList中成功列出的目录对应的STRM目录 */
+  private final Set<Path> listedDirectories = new HashSet<>();
+
+  /** 获取失败的目录对应的STRM目录，其下所有内容不做清理 */
+  private final Set<Path> protectedDirectories = new HashSet<>();
+
+  public StrmCleanupIndex(String strmBasePath, String taskPath, String renameRegex) {
+    this.strmBasePath = strmBasePath;
+    this.taskPath = taskPath;
+    this.renameRegex = renameRegex;
+  }
+
+  public String getStrmBasePath() {
+    return strmBasePath;
+  }
+
+  public String getTaskPath() {
+    return taskPath;
+  }
+
+  public String getRenameRegex() {
+    return renameRegex;
+  }
+
+  public void addExpectedStrmFile(Path strmFile) {
+    expectedStrmFiles.add(strmFile);
+  }
+
+  public void addListedDirectory(Path strmDirectory) {
+    listedDirectories.add(strmDirectory);
+  }
+
+  public void addProtectedDirectory(Path strmDirectory) {
+    protectedDirectories.add(strmDirectory);
+  }
+
+  public boolean isExpectedStrmFile(Path strmFile) {
+    return expectedStrmFiles.contains(strmFile);
+  }
+
+  public boolean isListedDirectory(Path strmDirectory) {
+    return listedDirectories.contains(strmDirectory);
+  }
+
+  public boolean isProtectedDirectory(Path strmDirectory) {
+    return protectedDirectories.contains(strmDirectory);
+  }
+
+  public int getExpectedStrmFileCount() {
+    return expectedStrmFiles.size();
+  }
+}
@@ -0,0 +1,293 @@
+package com.hienao.openlist2strm.util;
+
+import com.hienao.openlist2strm.entity.StrmManifest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单次任务执行使用的STRM同步清单索引
+ *
+ * <p>加载上次执行记录的清单条目，遍历时记录本次遇到的源文件：STRM路径和URL摘要都未变化时无需重写STRM文件，
+ * 源文件大小和修改时间未变化时沿用上次的刮削状态。上次存在而本次未遇到的条目即为孤立条目；
+ * STRM路径发生变化（如修改了重命名规则）的条目，其上次的STRM路径同样作为孤立条目清理。
+ * 只有新增或变化的条目会被写回数据库。刮削状态和写入失败可能由刮削线程和写入线程更新，其余方法只在遍历的调用线程上调用。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StrmManifestIndex {
+
+  private static final HexFormat HEX = HexFormat.of();
+
+  private final Long taskId;
+
+  /** 上次执行记录的条目，按源文件路径索引 */
+  private final Map<String, StrmManifest> previousEntries;
+
+  /** 本次执行遇到的条目，按源文件路径索引 */
+  private final Map<String, StrmManifest> currentEntries = new ConcurrentHashMap<>();
+
+  /** STRM路径与上次不同的条目，值为上次记录的条目，按源文件路径索引 */
+  private final Map<String, StrmManifest> supersededEntries = new ConcurrentHashMap<>();
+
+  /** 需要写回数据库的源文件路径 */
+  private final Set<String> dirtyPaths = ConcurrentHashMap.newKeySet();
+
+  public StrmManifestIndex(Long taskId, Collection<StrmManifest> previousEntries) {
+    this.taskId = taskId;
+    this.previousEntries = new HashMap<>(Math.max(16, previousEntries.size() * 4 / 3 + 1));
+    for (StrmManifest entry : previousEntries) {
+      this.previousEntries.put(entry.getSourcePath(), entry);
+    }
+  }
+
+  /**
+   * 计算STRM文件内容的摘要
+   *
+   * @param content STRM文件内容
+   * @return SHA-256摘要的前16字节（十六进制）
+   */
+  public static String hashUrl(String content) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+      return HEX.formatHex(hash, 0, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256不可用", e);
+    }
+  }
+
+  public Long getTaskId() {
+    return taskId;
+  }
+
+  /**
+   * @return 是否存在上次执行记录的条目
+   */
+  public boolean hasPreviousEntries() {
+    return !previousEntries.isEmpty();
+  }
+
+  /**
+   * 检查上次生成的STRM文件是否仍是最新内容
+   *
+   * @param sourcePath 源文件路径
+   * @param strmPath 本次应生成的STRM文件路径
+   * @param urlHash 本次应写入的URL的摘要
+   * @return STRM路径和URL摘要都与上次一致时返回true
+   */
+  public boolean isStrmUpToDate(String sourcePath, String strmPath, String urlHash) {
+    StrmManifest previous = previousEntries.get(sourcePath);
+    return previous != null
+        && strmPath.equals(previous.getStrmPath())
+        && urlHash.equals(previous.getUrlHash());
+  }
+
+  /**
+   * 检查上次生成的STRM文件是否仍是最新内容，并且仍存在于本地（可能已被用户或媒体服务器删除）
+   *
+   * @param sourcePath 源文件路径
+   * @param strmPath 本次应生成的STRM文件路径
+   * @param urlHash 本次应写入的URL的摘要
+   * @param snapshot 本次执行的目录快照
+   * @return STRM路径和URL摘要都与上次一致且文件存在时返回true
+   */
+  public boolean isStrmUpToDate(
+      String sourcePath, Path strmPath, String urlHash, DirectorySnapshotCache snapshot) {
+    return isStrmUpToDate(sourcePath, strmPath.toString(), urlHash) && snapshot.exists(strmPath);
+  }
+
+  /**
+   * 记录本次遇到的源文件，源文件大小、修改时间和STRM路径都未变化时沿用上次的刮削状态；
+   * STRM路径变化时记下上次的路径，供孤立文件清理删除旧的STRM文件及其刮削文件
+   *
+   * @param sourcePath 源文件路径
+   * @param fileSize 源文件大小
+   * @param modifiedTime 源文件修改时间（毫秒时间戳）
+   * @param strmPath STRM文件路径
+   * @param urlHash URL摘要
+   */
+  public void record(
+      String sourcePath, long fileSize, long modifiedTime, String strmPath, String urlHash) {
+    StrmManifest previous = previousEntries.get(sourcePath);
+    boolean sourceUnchanged =
+        previous != null
+            && Objects.equals(previous.getFileSize(), fileSize)
+            && Objects.equals(previous.getModifiedTime(), modifiedTime);
+    boolean strmMoved =
+        previous != null
+            && previous.getStrmPath() != null
+            && !previous.getStrmPath().equals(strmPath);
+    if (strmMoved) {
+      supersededEntries.put(sourcePath, previous);
+    }
+
+    StrmManifest entry =
+        new StrmManifest()
+            .setTaskId(taskId)
+            .setSourcePath(sourcePath)
+            .setFileSize(fileSize)
+            .setModifiedTime(modifiedTime)
+            .setStrmPath(strmPath)
+            .setUrlHash(urlHash)
+            .setScraped(
+                sourceUnchanged && !strmMoved && Boolean.TRUE.equals(previous.getScraped()));
+    currentEntries.put(sourcePath, entry);
+
+    if (!sourceUnchanged || !isStrmUpToDate(sourcePath, strmPath, urlHash)) {
+      dirtyPaths.add(sourcePath);
+    }
+  }
+
+  /**
+   * 保留上次记录的条目（本次处理失败或状态未知），避免被当作孤立条目
+   *
+   * @param sourcePath 源文件路径
+   */
+  public void retain(String sourcePath) {
+    StrmManifest previous = previousEntries.get(sourcePath);
+    if (previous != null) {
+      currentEntries.putIfAbsent(sourcePath, previous);
+    }
+  }
+
+  /**
+   * 保留位于指定目录下的上次记录的条目（本次遍历跳过的目录）
+   *
+   * @param directories 目录路径
+   */
+  public void retainDirectories(Set<String> directories) {
+    if (directories.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<String, StrmManifest> entry : previousEntries.entrySet()) {
+      if (!currentEntries.containsKey(entry.getKey())
+          && DirectoryWatermarkIndex.isUnder(entry.getKey(), directories)) {
+        currentEntries.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @param sourcePath 源文件路径
+   * @return 本次记录的条目是否已确认刮削完成
+   */
+  public boolean isScraped(String sourcePath) {
+    StrmManifest entry = currentEntries.get(sourcePath);
+    return entry != null && Boolean.TRUE.equals(entry.getScraped());
+  }
+
+  /**
+   * 标记源文件已刮削完成，可在刮削线程上调用
+   *
+   * @param sourcePath 源文件路径
+   */
+  public void markScraped(String sourcePath) {
+    currentEntries.computeIfPresent(
+        sourcePath,
+        (path, entry) -> {
+          if (!Boolean.TRUE.equals(entry.getScraped())) {
+            dirtyPaths.add(path);
+            return copyOf(entry).setScraped(true);
+          }
+          return entry;
+        });
+  }
+
+  /**
+   * 标记STRM文件写入失败，清除URL摘要使下次执行重新写入，可在写入线程上调用
+   *
+   * @param sourcePath 源文件路径
+   */
+  public void invalidateStrm(String sourcePath) {
+    currentEntries.computeIfPresent(
+        sourcePath,
+        (path, entry) -> {
+          dirtyPaths.add(path);
+          return copyOf(entry).setUrlHash("");
+        });
+  }
+
+  /**
+   * @return 新增或变化、需要写回数据库的条目
+   */
+  public List<StrmManifest> getDirtyEntries() {
+    List<StrmManifest> entries = new ArrayList<>(dirtyPaths.size());
+    for (String path : dirtyPaths) {
+      StrmManifest entry = currentEntries.get(path);
+      if (entry != null) {
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * 孤立条目包括上次存在而本次未遇到的条目，以及STRM路径已变化的条目的上次记录。
+   * 后者的旧STRM路径若是本次某个条目的STRM路径（不区分大小写，兼容大小写不敏感的文件系统）则不返回，避免删除仍在使用的文件
+   *
+   * @return 孤立条目
+   */
+  public List<StrmManifest> getOrphanedEntries() {
+    List<StrmManifest> orphans = new ArrayList<>();
+    for (Map.Entry<String, StrmManifest> entry : previousEntries.entrySet()) {
+      if (!currentEntries.containsKey(entry.getKey())) {
+        orphans.add(entry.getValue());
+      }
+    }
+    if (supersededEntries.isEmpty()) {
+      return orphans;
+    }
+
+    Set<String> currentStrmPaths = new HashSet<>(currentEntries.size() * 4 / 3 + 1);
+    for (StrmManifest entry : currentEntries.values()) {
+      if (entry.getStrmPath() != null) {
+        currentStrmPaths.add(entry.getStrmPath().toLowerCase(Locale.ROOT));
+      }
+    }
+    for (StrmManifest previous : supersededEntries.values()) {
+      if (!currentStrmPaths.contains(previous.getStrmPath().toLowerCase(Locale.ROOT))) {
+        orphans.add(previous);
+      }
+    }
+    return orphans;
+  }
+
+  /**
+   * 判断源文件本次是否仍有条目，清理STRM路径已变化的旧文件后不应从数据库删除该源文件的条目
+   *
+   * @param sourcePath 源文件路径
+   * @return 本次记录或保留了该源文件时返回true
+   */
+  public boolean isCurrent(String sourcePath) {
+    return currentEntries.containsKey(sourcePath);
+  }
+
+  public int getCurrentEntryCount() {
+    return currentEntries.size();
+  }
+
+  private static StrmManifest copyOf(StrmManifest entry) {
+    return new StrmManifest()
+        .setTaskId(entry.getTaskId())
+        .setSourcePath(entry.getSourcePath())
+        .setFileSize(entry.getFileSize())
+        .setModifiedTime(entry.getModifiedTime())
+        .setStrmPath(entry.getStrmPath())
+        .setUrlHash(entry.getUrlHash())
+        .setScraped(entry.getScraped());
+  }
+}
@@ -0,0 +1,213 @@
+package com.hienao.openlist2strm.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单次任务执行使用的STRM文件写入器
+ *
+ * <p>任务线程每处理完一个目录，把其中需要写入的STRM文件作为一个批次提交，由写入线程按所在目录分组写出。
+ * 目录是否存在、文件是否存在都从本次执行的目录快照中得出，同一目录只读取或创建一次；已有文件内容完全一致时不写入，
+ * 否则先写同目录下唯一命名的临时文件再原子替换，不会留下写了一半的STRM文件；
+ * 进程中断时残留的临时文件由全量清理删除。
+ * 写入失败时在写入线程上回调失败监听器，传入对应条目的标识。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+@Slf4j
+public class StrmWriter {
+
+  private final Executor executor;
+  private final DirectorySnapshotCache snapshot;
+  private final Consumer<String> failureListener;
+
+  private final AtomicInteger writtenCount = new AtomicInteger();
+  private final AtomicInteger unchangedCount = new AtomicInteger();
+  private final AtomicInteger failedCount = new AtomicInteger();
+
+  /** 已提交但尚未完成的批次数，由本对象的锁保护 */
+  private int pendingBatchCount;
+
+  /**
+   * 待写入的STRM文件
+   *
+   * @param key 条目标识，写入失败时传给失败监听器
+   * @param path STRM文件路径
+   * @param content STRM文件内容
+   */
+  public record Write(String key, Path path, String content) {}
+
+  /**
+   * @param executor 写入线程池
+   * @param snapshot 本次执行的目录快照
+   * @param failureListener 写入失败监听器，在写入线程上调用
+   */
+  public StrmWriter(
+      Executor executor, DirectorySnapshotCache snapshot, Consumer<String> failureListener) {
+    this.executor = executor;
+    this.snapshot = snapshot;
+    this.failureListener = failureListener;
+  }
+
+  /**
+   * 提交一个目录的待写入文件，写入线程池队列已满时在调用线程上直接写入
+   *
+   * @param writes 待写入的文件
+   */
+  public void submit(List<Write> writes) {
+    if (writes.isEmpty()) {
+      return;
+    }
+    List<Write> batch = List.copyOf(writes);
+    synchronized (this) {
+      pendingBatchCount++;
+    }
+    executor.execute(
+        () -> {
+          try {
+            writeBatch(batch);
+          } finally {
+            batchFinished();
+          }
+        });
+  }
+
+  /** 等待已提交的批次全部写完 */
+  public synchronized void await() throws InterruptedException {
+    while (pendingBatchCount > 0) {
+      wait();
+    }
+  }
+
+  public int getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public int getUnchangedCount() {
+    return unchangedCount.get();
+  }
+
+  public int getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * 写入STRM文件，已有文件内容完全一致时跳过
+   *
+   * @param target STRM文件路径，所在目录必须已存在
+   * @param content 文件内容
+   * @return 实际写入时返回true，内容未变化时返回false
+   * @throws IOException 读写失败
+   */
+  public static boolean writeIfChanged(Path target, byte[] content) throws IOException {
+    if (hasContent(target, content)) {
+      return false;
+    }
+    replace(target, content);
+    return true;
+  }
+
+  /** 先写同目录下唯一命名的临时文件再原子替换目标文件 */
+  private static void replace(Path target, byte[] content) throws IOException {
+    Path tempFile = StreamingDownloader.createTempSibling(target);
+    try {
+      Files.write(tempFile, content, StandardOpenOption.TRUNCATE_EXISTING);
+      StreamingDownloader.moveReplacing(tempFile, target);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private void writeBatch(List<Write> batch) {
+    Map<Path, List<Write>> byDirectory = new LinkedHashMap<>();
+    for (Write write : batch) {
+      byDirectory
+          .computeIfAbsent(write.path().getParent(), directory -> new ArrayList<>())
+          .add(write);
+    }
+
+    for (Map.Entry<Path, List<Write>> entry : byDirectory.entrySet()) {
+      try {
+        ensureDirectory(entry.getKey());
+      } catch (IOException e) {
+        log.error("创建目录失败: {}, 错误: {}", entry.getKey(), e.getMessage());
+        for (Write write : entry.getValue()) {
+          fail(write);
+        }
+        continue;
+      }
+      for (Write write : entry.getValue()) {
+        try {
+          // 快照中不存在的文件直接写入，无需先打开比较
+          byte[] content = write.content().getBytes(StandardCharsets.UTF_8);
+          if (snapshot.exists(write.path()) && hasContent(write.path(), content)) {
+            unchangedCount.incrementAndGet();
+          } else {
+            replace(write.path(), content);
+            snapshot.recordWritten(write.path());
+            writtenCount.incrementAndGet();
+            log.debug("生成STRM文件成功: {}", write.path());
+          }
+        } catch (IOException e) {
+          log.error("写入STRM文件失败: {}, 错误: {}", write.path(), e.getMessage());
+          fail(write);
+        }
+      }
+    }
+  }
+
+  private void ensureDirectory(Path directory) throws IOException {
+    if (directory == null || snapshot.isDirectory(directory)) {
+      return;
+    }
+    Files.createDirectories(directory);
+    snapshot.recordDirectoryCreated(directory);
+  }
+
+  private void fail(Write write) {
+    failedCount.incrementAndGet();
+    try {
+      failureListener.accept(write.key());
+    } catch (RuntimeException e) {
+      log.warn("处理STRM写入失败回调出错: {}, 错误: {}", write.key(), e.getMessage());
+    }
+  }
+
+  private synchronized void batchFinished() {
+    if (--pendingBatchCount == 0) {
+      notifyAll();
+    }
+  }
+
+  /** 只在长度一致时读取已有文件比较内容，文件不存在时返回false */
+  private static boolean hasContent(Path target, byte[] content) throws IOException {
+    try (SeekableByteChannel channel = Files.newByteChannel(target)) {
+      if (channel.size() != content.length) {
+        return false;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(content.length);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // 读满或到达文件末尾为止
+      }
+      return !buffer.hasRemaining() && Arrays.equals(buffer.array(), content);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+}
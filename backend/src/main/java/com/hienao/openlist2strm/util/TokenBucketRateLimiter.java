@@ -0,0 +1,99 @@
+package com.hienao.openlist2strm.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 非阻塞令牌桶限流器（GCRA算法实现）
+ *
+ * <p>只记录下一个令牌的理论到达时间，不维护计数器和时间窗口。调用 {@link #reserve()} 预约一个许可并得到需要延迟的时间，
+ * 由调用方自行调度，限流器本身从不阻塞线程。服务端返回限流时可通过 {@link #pause(long)} 暂停发放许可，
+ * 暂停结束后按固定间隔恢复，不会瞬间放出整桶令牌。
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class TokenBucketRateLimiter {
+
+  private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  private final LongSupplier nanoClock;
+
+  /** 每个许可的发放间隔 */
+  private long emissionIntervalNanos;
+
+  /** 允许提前发放的时长，即桶容量减一个间隔 */
+  private long burstToleranceNanos;
+
+  /** 下一个许可的理论到达时间 */
+  private long theoreticalArrivalNanos;
+
+  /** 暂停发放许可的截止时间 */
+  private long pausedUntilNanos;
+
+  /**
+   * @param permitsPerMinute 每分钟许可数
+   * @param burst 桶容量，即空闲后允许连续发放的许可数
+   */
+  public TokenBucketRateLimiter(int permitsPerMinute, int burst) {
+    this(permitsPerMinute, burst, System::nanoTime);
+  }
+
+  TokenBucketRateLimiter(int permitsPerMinute, int burst, LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    long now = nanoClock.getAsLong();
+    this.theoreticalArrivalNanos = now;
+    this.pausedUntilNanos = now;
+    setRate(permitsPerMinute, burst);
+  }
+
+  /**
+   * 调整速率和桶容量，已预约的许可不受影响
+   *
+   * @param permitsPerMinute 每分钟许可数
+   * @param burst 桶容量
+   */
+  public synchronized void setRate(int permitsPerMinute, int burst) {
+    this.emissionIntervalNanos = NANOS_PER_MINUTE / Math.max(1, permitsPerMinute);
+    this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+  }
+
+  /**
+   * 预约一个许可
+   *
+   * @return 距离许可生效还需等待的纳秒数，小于等于0表示可立即执行
+   */
+  public synchronized long reserve() {
+    long now = nanoClock.getAsLong();
+    long earliest = pausedUntilNanos - now > 0 ? pausedUntilNanos : now;
+    long arrival = theoreticalArrivalNanos - earliest > 0 ? theoreticalArrivalNanos : earliest;
+    long allowAt =
+        arrival - burstToleranceNanos - earliest > 0 ? arrival - burstToleranceNanos : earliest;
+    theoreticalArrivalNanos = arrival + emissionIntervalNanos;
+    return allowAt - now;
+  }
+
+  /**
+   * 暂停发放许可，多次调用取最晚的截止时间
+   *
+   * @param pauseNanos 暂停时长（纳秒）
+   */
+  public synchronized void pause(long pauseNanos) {
+    long pauseUntil = nanoClock.getAsLong() + Math.max(0, pauseNanos);
+    if (pauseUntil - pausedUntilNanos > 0) {
+      pausedUntilNanos = pauseUntil;
+    }
+    // 暂停结束后从空桶开始按间隔发放
+    long resumeArrival = pausedUntilNanos + burstToleranceNanos;
+    if (resumeArrival - theoreticalArrivalNanos > 0) {
+      theoreticalArrivalNanos = resumeArrival;
+    }
+  }
+
+  /**
+   * @return 剩余暂停时间（纳秒），未暂停时为0
+   */
+  public synchronized long getPauseRemainingNanos() {
+    return Math.max(0, pausedUntilNanos - nanoClock.getAsLong());
+  }
+}
@@ -0,0 +1,16 @@
+-- 创建TMDB响应缓存表（二级缓存，重启后仍然有效）
+CREATE TABLE tmdb_cache
+(
+    cache_key VARCHAR(1000) PRIMARY KEY,
+    response_body TEXT NOT NULL,
+    expires_at INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 创建索引，用于清理过期缓存
+CREATE INDEX idx_tmdb_cache_expires_at ON tmdb_cache(expires_at);
+
+-- 字段说明
+-- cache_key: 接口+查询参数+语言组成的缓存键，如 search/tv|zh-CN|绝命毒师|2008、tv/1396|zh-CN
+-- response_body: TMDB接口返回的原始JSON
+-- expires_at: 过期时间（毫秒时间戳）
@@ -0,0 +1,18 @@
+-- 创建AI文件名识别结果缓存表，识别成功和无法识别的结论都会缓存
+CREATE TABLE ai_recognition_cache
+(
+    cache_key VARCHAR(1000) PRIMARY KEY,
+    success INTEGER NOT NULL,
+    result_json TEXT NOT NULL,
+    expires_at INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 创建索引，用于清理过期缓存
+CREATE INDEX idx_ai_recognition_cache_expires_at ON ai_recognition_cache(expires_at);
+
+-- 字段说明
+-- cache_key: 提示词版本+规范化目录路径+规范化文件名，如 3f2a9c01b7de|/movies/欧美|the.matrix.1999.1080p.mkv
+-- success: AI是否识别成功（1成功，0无法识别）
+-- result_json: AiRecognitionResult的JSON
+-- expires_at: 过期时间（毫秒时间戳），无法识别的结论有效期较短
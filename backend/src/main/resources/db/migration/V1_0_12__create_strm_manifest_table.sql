@@ -0,0 +1,22 @@
+-- 创建STRM同步清单表，记录每个任务的源文件与生成的STRM文件的对应关系
+CREATE TABLE strm_manifest
+(
+    task_id INTEGER NOT NULL,
+    source_path VARCHAR(2000) NOT NULL,
+    file_size INTEGER NOT NULL,
+    modified_time INTEGER NOT NULL,
+    strm_path VARCHAR(2000) NOT NULL,
+    url_hash VARCHAR(64) NOT NULL,
+    scraped INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (task_id, source_path)
+);
+
+-- 字段说明
+-- task_id: 任务配置ID
+-- source_path: OpenList中的源文件完整路径，如 /movies/欧美/The.Matrix.1999.1080p.mkv
+-- file_size: 源文件大小（字节）
+-- modified_time: 源文件修改时间（毫秒时间戳），未知时为0
+-- strm_path: 生成的STRM文件本地路径
+-- url_hash: 写入STRM文件的URL的摘要，URL变化时才重新写入
+-- scraped: 是否已确认刮削完成（1已刮削，0未刮削），源文件变化后重置
@@ -0,0 +1,23 @@
+-- 创建目录水位表，增量遍历时据此跳过未变化的子目录
+CREATE TABLE directory_watermark
+(
+    task_id INTEGER NOT NULL,
+    path VARCHAR(2000) NOT NULL,
+    modified_time INTEGER NOT NULL,
+    file_size INTEGER NOT NULL,
+    entry_count INTEGER NOT NULL,
+    children_hash VARCHAR(64) NOT NULL,
+    config_hash VARCHAR(64) NOT NULL,
+    verified_at INTEGER NOT NULL,
+    PRIMARY KEY (task_id, path)
+);
+
+-- 字段说明
+-- task_id: 任务配置ID
+-- path: OpenList目录路径
+-- modified_time: 父目录列表中该目录的修改时间（毫秒时间戳），未知时为0
+-- file_size: 父目录列表中该目录的大小
+-- entry_count: 上次列出该目录时的条目数
+-- children_hash: 上次列出该目录时子项名称、大小和修改时间的摘要
+-- config_hash: 记录水位时任务和OpenList配置的摘要，配置变化后全部水位失效
+-- verified_at: 上次实际列出该目录的时间（毫秒时间戳）
@@ -0,0 +1,6 @@
+-- 添加crawl_concurrency字段用于控制目录遍历并发数
+ALTER TABLE openlist_config ADD COLUMN crawl_concurrency INTEGER DEFAULT 4;
+
+-- 添加注释说明字段用途
+-- crawl_concurrency: 同时向OpenList发起的 api/fs/list 请求数量上限，默认为4
+-- 1: 与旧版本一致，逐个目录串行遍历
@@ -0,0 +1,7 @@
+-- 添加list_page_size字段用于控制目录列表分页
+ALTER TABLE openlist_config ADD COLUMN list_page_size INTEGER DEFAULT 0;
+
+-- 添加注释说明字段用途
+-- list_page_size: 调用 api/fs/list 时每页请求的条目数量，默认为0
+-- 0: 不分页，一次性获取目录下全部条目（保持向后兼容）
+-- 大于0: 按 page/per_page 逐页获取，适用于单个目录条目数量很大的场景
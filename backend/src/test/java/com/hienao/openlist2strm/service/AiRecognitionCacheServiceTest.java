@@ -0,0 +1,108 @@
+package com.hienao.openlist2strm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hienao.openlist2strm.config.AiRecognitionCacheProperties;
+import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
+import com.hienao.openlist2strm.entity.AiRecognitionCache;
+import com.hienao.openlist2strm.mapper.AiRecognitionCacheMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * AI文件名识别结果缓存服务测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class AiRecognitionCacheServiceTest {
+
+  private static final String MODEL = "gpt-4o-mini";
+  private static final String PROMPT = "识别文件名中的标题和年份";
+
+  @Mock private AiRecognitionCacheMapper aiRecognitionCacheMapper;
+
+  private AiRecognitionCacheProperties properties;
+  private AiRecognitionCacheService aiRecognitionCacheService;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+    properties = new AiRecognitionCacheProperties();
+    aiRecognitionCacheService =
+        new AiRecognitionCacheService(
+            aiRecognitionCacheMapper, properties, new ObjectMapper(), new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testNfkcEquivalentNamesShareCacheKey() {
+    // 全角字母、数字和空格在NFKC规范化后与半角相同，大小写和连续空白也不影响缓存键
+    String halfWidth =
+        aiRecognitionCacheService.buildCacheKey(
+            "The Wandering Earth 2019.mkv", "/电影/科幻", MODEL, PROMPT);
+    String fullWidth =
+        aiRecognitionCacheService.buildCacheKey(
+            "Ｔｈｅ　Ｗａｎｄｅｒｉｎｇ  ＥＡＲＴＨ　２０１９.mkv", "/电影/科幻/", MODEL, PROMPT);
+    String withFileName =
+        aiRecognitionCacheService.buildCacheKey(
+            "The Wandering Earth 2019.mkv",
+            "/电影/科幻/The Wandering Earth 2019.mkv",
+            MODEL,
+            PROMPT);
+
+    assertEquals(halfWidth, fullWidth);
+    assertEquals(halfWidth, withFileName);
+    assertNotEquals(
+        halfWidth,
+        aiRecognitionCacheService.buildCacheKey(
+            "The Wandering Earth 2019.mkv", "/电影/动画", MODEL, PROMPT));
+  }
+
+  @Test
+  public void testPromptOrModelChangeProducesNewKey() {
+    String key = aiRecognitionCacheService.buildCacheKey("movie.mkv", "/电影", MODEL, PROMPT);
+
+    assertEquals(key, aiRecognitionCacheService.buildCacheKey("movie.mkv", "/电影", MODEL, PROMPT));
+    assertNotEquals(
+        key, aiRecognitionCacheService.buildCacheKey("movie.mkv", "/电影", MODEL, PROMPT + "。"));
+    assertNotEquals(
+        key, aiRecognitionCacheService.buildCacheKey("movie.mkv", "/电影", "deepseek-chat", PROMPT));
+  }
+
+  @Test
+  public void testHitAndMissCounted() throws Exception {
+    AiRecognitionResult result = new AiRecognitionResult().setSuccess(true).setTitle("流浪地球");
+    when(aiRecognitionCacheMapper.selectValid(eq("hit"), anyLong()))
+        .thenReturn(
+            new AiRecognitionCache()
+                .setCacheKey("hit")
+                .setResultJson(new ObjectMapper().writeValueAsString(result)));
+    when(aiRecognitionCacheMapper.selectValid(eq("broken"), anyLong()))
+        .thenThrow(new IllegalStateException("数据库不可用"));
+
+    assertEquals("流浪地球", aiRecognitionCacheService.get("hit").getTitle());
+    assertNull(aiRecognitionCacheService.get("miss"));
+    // 读取失败按未命中处理
+    assertNull(aiRecognitionCacheService.get("broken"));
+
+    assertEquals(1, aiRecognitionCacheService.getHitCount());
+    assertEquals(2, aiRecognitionCacheService.getMissCount());
+  }
+
+  @Test
+  public void testDisabledCacheNeitherQueriesNorCounts() {
+    properties.setEnabled(false);
+
+    assertNull(aiRecognitionCacheService.get("hit"));
+    aiRecognitionCacheService.put("hit", new AiRecognitionResult().setSuccess(true));
+
+    verifyNoInteractions(aiRecognitionCacheMapper);
+    assertEquals(0, aiRecognitionCacheService.getHitCount());
+    assertEquals(0, aiRecognitionCacheService.getMissCount());
+  }
+}
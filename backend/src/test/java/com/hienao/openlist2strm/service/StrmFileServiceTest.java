@@ -0,0 +1,119 @@
+package com.hienao.openlist2strm.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.hienao.openlist2strm.util.StrmCleanupIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * STRM文件服务测试类，覆盖全量执行结束时的标记清除
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StrmFileServiceTest {
+
+  private static final String BASE_URL = "http://openlist";
+
+  @TempDir Path strmRoot;
+
+  private StrmFileService strmFileService;
+
+  @BeforeEach
+  void setUp() {
+    strmFileService =
+        new StrmFileService(
+            mock(SystemConfigService.class),
+            Runnable::run,
+            new DirectorySnapshotService(new SimpleMeterRegistry()));
+  }
+
+  @Test
+  public void testSweepKeepsScrapedFilesOfExistingSources() throws IOException {
+    Path movies = Files.createDirectories(strmRoot.resolve("Movies"));
+    Path strm = write(movies.resolve("Keep (2020).strm"));
+    Path nfo = write(movies.resolve("Keep (2020).nfo"));
+    Path poster = write(movies.resolve("Keep (2020)-poster.jpg"));
+    Path fanart = write(movies.resolve("Keep (2020)-fanart.jpg"));
+
+    StrmCleanupIndex index = newIndex();
+    listDirectory(index, "/media", folder("/media", "Movies"));
+    listDirectory(index, "/media/Movies", file("/media/Movies", "Keep (2020).mkv"));
+
+    assertEquals(0, strmFileService.cleanOrphanedStrmFiles(index));
+    assertTrue(Files.exists(strm));
+    assertTrue(Files.exists(nfo));
+    assertTrue(Files.exists(poster));
+    assertTrue(Files.exists(fanart));
+  }
+
+  @Test
+  public void testSweepRemovesStrmFilesOfRemovedSources() throws IOException {
+    Path movies = Files.createDirectories(strmRoot.resolve("Movies"));
+    Path kept = write(movies.resolve("Keep (2020).strm"));
+    Path removed = write(movies.resolve("Removed (2019).strm"));
+    Path removedNfo = write(movies.resolve("Removed (2019).nfo"));
+    Path removedPoster = write(movies.resolve("Removed (2019)-poster.jpg"));
+    Path goneDirectory = Files.createDirectories(strmRoot.resolve("Gone"));
+    write(goneDirectory.resolve("Gone (2018).strm"));
+
+    StrmCleanupIndex index = newIndex();
+    listDirectory(index, "/media", folder("/media", "Movies"));
+    listDirectory(index, "/media/Movies", file("/media/Movies", "Keep (2020).mkv"));
+
+    assertEquals(2, strmFileService.cleanOrphanedStrmFiles(index));
+    assertTrue(Files.exists(kept));
+    assertFalse(Files.exists(removed));
+    assertFalse(Files.exists(removedNfo));
+    assertFalse(Files.exists(removedPoster));
+    assertFalse(Files.exists(goneDirectory));
+  }
+
+  @Test
+  public void testSweepKeepsEverythingUnderFailedDirectory() throws IOException {
+    Path season = Files.createDirectories(strmRoot.resolve("TV/Show/Season 1"));
+    Path episode = write(season.resolve("Show S01E01.strm"));
+    Path episodeNfo = write(season.resolve("Show S01E01.nfo"));
+    Path showNfo = write(strmRoot.resolve("TV/Show/tvshow.nfo"));
+
+    StrmCleanupIndex index = newIndex();
+    listDirectory(index, "/media", folder("/media", "TV"));
+    strmFileService.recordFailedDirectory(index, "/media/TV");
+
+    assertEquals(0, strmFileService.cleanOrphanedStrmFiles(index));
+    assertTrue(Files.exists(episode));
+    assertTrue(Files.exists(episodeNfo));
+    assertTrue(Files.exists(showNfo));
+  }
+
+  private StrmCleanupIndex newIndex() {
+    return new StrmCleanupIndex(strmRoot.toString(), "/media", null);
+  }
+
+  private void listDirectory(
+      StrmCleanupIndex index, String path, OpenlistApiService.OpenlistFile... files) {
+    strmFileService.recordListedDirectory(index, path, List.of(files));
+  }
+
+  private static OpenlistApiService.OpenlistFile file(String directory, String name) {
+    return new OpenlistApiService.OpenlistFile(
+        new OpenlistApiService.DirectoryNode(BASE_URL, directory), name, 1024, 0, null, false);
+  }
+
+  private static OpenlistApiService.OpenlistFile folder(String directory, String name) {
+    return new OpenlistApiService.OpenlistFile(
+        new OpenlistApiService.DirectoryNode(BASE_URL, directory), name, 0, 0, null, true);
+  }
+
+  private static Path write(Path file) throws IOException {
+    return Files.writeString(file, file.getFileName().toString());
+  }
+}
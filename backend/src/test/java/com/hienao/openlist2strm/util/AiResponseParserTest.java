@@ -0,0 +1,84 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.hienao.openlist2strm.dto.media.AiRecognitionResult;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * AI 识别响应解析测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class AiResponseParserTest {
+
+  @Test
+  public void testBatchResultsMatchedByIndexOutOfOrder() {
+    String response =
+        "{\"results\": ["
+            + "{\"index\": 2, \"success\": true, \"title\": \"C\"},"
+            + "{\"index\": 0, \"success\": true, \"title\": \"A\"},"
+            + "{\"index\": 1, \"success\": true, \"title\": \"B\"}]}";
+
+    List<AiRecognitionResult> results = AiResponseParser.parseBatchResponse(response, 3);
+
+    assertEquals("A", results.get(0).getTitle());
+    assertEquals("B", results.get(1).getTitle());
+    assertEquals("C", results.get(2).getTitle());
+  }
+
+  @Test
+  public void testMissingAndInvalidIndicesLeftForFallback() {
+    String response =
+        "```json\n{\"results\": ["
+            + "{\"index\": 2, \"success\": true, \"title\": \"C\"},"
+            + "{\"index\": 2, \"success\": true, \"title\": \"Duplicate\"},"
+            + "{\"index\": 7, \"success\": true, \"title\": \"OutOfRange\"},"
+            + "{\"index\": 0, \"title\": \"NoSuccessField\"}]}\n```";
+
+    List<AiRecognitionResult> results = AiResponseParser.parseBatchResponse(response, 3);
+
+    assertEquals(3, results.size());
+    assertNull(results.get(0));
+    assertNull(results.get(1));
+    assertEquals("C", results.get(2).getTitle());
+  }
+
+  @Test
+  public void testItemsWithoutIndexUsePosition() {
+    String response =
+        "[{\"success\": true, \"title\": \"A\", \"season\": 1, \"episode\": 2},"
+            + "{\"success\": false, \"reason\": \"无法识别\"}]";
+
+    List<AiRecognitionResult> results = AiResponseParser.parseBatchResponse(response, 3);
+
+    assertEquals("A", results.get(0).getTitle());
+    assertEquals(2, results.get(0).getEpisode());
+    assertFalse(results.get(1).isSuccess());
+    assertEquals("无法识别", results.get(1).getReason());
+    assertNull(results.get(2));
+  }
+
+  @Test
+  public void testUnparseableBatchResponseFallsBackEntirely() {
+    List<AiRecognitionResult> results = AiResponseParser.parseBatchResponse("抱歉，无法识别", 2);
+
+    assertEquals(2, results.size());
+    assertNull(results.get(0));
+    assertNull(results.get(1));
+    assertTrue(AiResponseParser.parseBatchResponse(null, 1).stream().allMatch(r -> r == null));
+  }
+
+  @Test
+  public void testParseSingleResponseInCodeBlock() {
+    AiRecognitionResult result =
+        AiResponseParser.parseJsonResponse(
+            "```json\n{\"success\": true, \"title\": \"流浪地球\", \"year\": \"2019\"}\n```");
+
+    assertTrue(result.isSuccess());
+    assertEquals("流浪地球", result.getTitle());
+    assertEquals("2019", result.getYear());
+  }
+}
@@ -0,0 +1,74 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 熔断器测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = new CircuitBreaker(3, 60_000);
+
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess();
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertTrue(breaker.getRemainingOpenMillis() > 0);
+  }
+
+  @Test
+  public void testHalfOpenTrialClosesOrReopens() {
+    CircuitBreaker breaker = new CircuitBreaker(1, 0);
+
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    // 冷却结束后只放行一个试探请求
+    assertTrue(breaker.tryAcquire());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    assertTrue(breaker.tryAcquire());
+    breaker.onSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getRemainingOpenMillis());
+  }
+
+  @Test
+  public void testIgnoreKeepsStateAndFailureCount() {
+    CircuitBreaker breaker = new CircuitBreaker(2, 0);
+
+    // 关闭状态下忽略的结果不清零连续失败计数
+    breaker.onFailure();
+    breaker.onIgnore();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    // 半开状态下忽略的试探不关闭熔断器，只释放试探许可
+    assertTrue(breaker.tryAcquire());
+    breaker.onIgnore();
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+}
@@ -0,0 +1,116 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.hienao.openlist2strm.dto.media.MediaInfo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 预编译刮削正则规则集测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class CompiledScrapingRulesTest {
+
+  @Test
+  public void testPrioritizedAndGroupNames() {
+    String plain = "^(?<title>.+?)[. _]S(?<season>\\d{1,2})E(?<episode>\\d{1,3})";
+    String prioritized = "[._ ]EP(?<episode>\\d{1,3})";
+    CompiledScrapingRules rules =
+        CompiledScrapingRules.of(List.of(), List.of(), List.of(plain, prioritized));
+
+    List<CompiledScrapingRules.Rule> tvFileRules = rules.getTvFileRules().rules();
+    assertEquals(2, tvFileRules.size());
+    assertEquals(prioritized, tvFileRules.get(0).regex());
+    assertEquals(
+        List.of("title", "season", "episode"), List.copyOf(tvFileRules.get(1).groupNames()));
+    assertFalse(tvFileRules.get(0).hasGroup("title"));
+  }
+
+  @Test
+  public void testInvalidAndEscapedPatterns() {
+    CompiledScrapingRules rules =
+        CompiledScrapingRules.of(
+            Map.of("movieRegexps", List.of("(?<title>[", "\\(?<x>\\)(?<year>\\d{4})")));
+
+    List<CompiledScrapingRules.Rule> movieRules = rules.getMovieRules().rules();
+    assertEquals(1, movieRules.size());
+    assertEquals(List.of("year"), List.copyOf(movieRules.get(0).groupNames()));
+    assertTrue(CompiledScrapingRules.of(Map.of()).getTvDirRules().rules().isEmpty());
+  }
+
+  @Test
+  public void testParseWithCompiledRules() {
+    CompiledScrapingRules rules =
+        CompiledScrapingRules.of(
+            List.of("^(?<title>.+?)[. _](?<year>(?:19|20)\\d{2})"),
+            List.of(),
+            List.of("^(?<title>.+?)[. _]S(?<season>\\d{1,2})E(?<episode>\\d{1,3})"));
+
+    MediaInfo tv = MediaFileParser.parse("Friends.s01e02.1080p.mkv", "/tv/Friends", rules);
+    assertEquals(MediaInfo.MediaType.TV_SHOW, tv.getType());
+    assertEquals(1, tv.getSeason());
+    assertEquals(2, tv.getEpisode());
+
+    MediaInfo movie = MediaFileParser.parse("Inception.2010.1080p.mkv", "/movies", rules);
+    assertEquals(MediaInfo.MediaType.MOVIE, movie.getType());
+    assertEquals("Inception", movie.getTitle());
+    assertEquals("2010", movie.getYear());
+  }
+
+  @Test
+  public void testRequiredLiterals() {
+    assertEquals(
+        List.of("第", "集"), RegexLiteralExtractor.extract("[._ ]第[一二三四五六七八九十]+集"));
+    assertEquals(
+        List.of("season", "episode"),
+        RegexLiteralExtractor.extract(
+            "[._ ]Season[._ ](?<season>\\d{1,2})[._ ]Episode[._ ](?<episode>\\d{1,3})"));
+    assertEquals(
+        List.of("s", "ep"),
+        RegexLiteralExtractor.extract("[._ ]S(?<season>\\d+)[._ ]EP+(?<e>\\d+)X?"));
+    assertEquals(List.of(), RegexLiteralExtractor.extract("(?:1080p|720p)"));
+    assertEquals(List.of(), RegexLiteralExtractor.extract("(?i)Season"));
+    assertEquals(List.of(), RegexLiteralExtractor.extract("(?<t>a)\\k<t>"));
+  }
+
+  @Test
+  public void testPrefilterMatchesSequential() {
+    CompiledScrapingRules rules =
+        CompiledScrapingRules.of(
+            EnhancedRegexPatterns.getEnhancedMovieRegexps(),
+            EnhancedRegexPatterns.getEnhancedTvDirRegexps(),
+            EnhancedRegexPatterns.getEnhancedTvFileRegexps());
+    List<String> names =
+        List.of(
+            "Friends.S01E02.1080p",
+            "Friends s01.ep03",
+            "流浪地球.2019.4K",
+            "庆余年 第一季 第二集",
+            "Breaking.Bad.Season.2.Episode.5",
+            "[Movie].2001",
+            "The.Office.2x07",
+            "Disc 1 04",
+            "random_name");
+
+    List<CompiledScrapingRules.RuleSet> ruleSets = new ArrayList<>();
+    ruleSets.add(rules.getMovieRules());
+    ruleSets.add(rules.getTvDirRules());
+    ruleSets.add(rules.getTvFileRules());
+    for (CompiledScrapingRules.RuleSet ruleSet : ruleSets) {
+      for (String name : names) {
+        CompiledScrapingRules.RuleMatch expected = ruleSet.findSequential(name);
+        CompiledScrapingRules.RuleMatch actual = ruleSet.find(name);
+        assertEquals(expected == null, actual == null, name);
+        if (expected != null) {
+          assertSame(expected.rule(), actual.rule(), name);
+          assertEquals(expected.matcher().group(), actual.matcher().group(), name);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 本地目录快照缓存测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class DirectorySnapshotCacheTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void testReadsEachDirectoryOnce() throws IOException {
+    Path show = Files.createDirectories(tempDir.resolve("show"));
+    Files.writeString(show.resolve("e01.strm"), "a");
+    Files.writeString(show.resolve("e01.NFO"), "b");
+
+    DirectorySnapshotCache cache = new DirectorySnapshotCache();
+    assertTrue(cache.isDirectory(show));
+    assertTrue(cache.exists(show.resolve("e01.strm")));
+    assertFalse(cache.exists(show.resolve("e02.strm")));
+    assertTrue(cache.containsSuffix(show, ".nfo"));
+
+    assertEquals(1, cache.getReaddirCount());
+    assertEquals(0, cache.getStatCount());
+    assertEquals(3, cache.getHitCount());
+  }
+
+  @Test
+  public void testTracksWritesAndDeletes() throws IOException {
+    Path season = tempDir.resolve("show/Season 1");
+    DirectorySnapshotCache cache = new DirectorySnapshotCache();
+    assertFalse(cache.isDirectory(season));
+    assertFalse(cache.exists(season.resolve("e01.strm")));
+
+    Files.createDirectories(season);
+    cache.recordDirectoryCreated(season);
+    cache.recordWritten(season.resolve("e01.strm"));
+    assertTrue(cache.isDirectory(season));
+    assertTrue(cache.exists(season.resolve("e01.strm")));
+
+    cache.recordDeleted(season.resolve("e01.strm"));
+    assertFalse(cache.exists(season.resolve("e01.strm")));
+
+    cache.invalidateTree(tempDir.resolve("show"));
+    Files.writeString(season.resolve("e02.strm"), "c");
+    assertTrue(cache.exists(season.resolve("e02.strm")));
+  }
+
+  @Test
+  public void testUnreadableDirectoryReadOnceAndFallsBackToStat() throws IOException {
+    // 指向自身的符号链接读取时报错（不是不存在），目录状态未知
+    Path loop = tempDir.resolve("loop");
+    Files.createSymbolicLink(loop, loop);
+
+    DirectorySnapshotCache cache = new DirectorySnapshotCache();
+    assertFalse(cache.isDirectory(loop));
+    assertFalse(cache.exists(loop.resolve("e01.strm")));
+    assertTrue(cache.list(loop).isEmpty());
+    cache.recordWritten(loop.resolve("e01.strm"));
+    assertFalse(cache.exists(loop.resolve("e01.strm")));
+
+    assertEquals(1, cache.getReaddirCount());
+    assertEquals(3, cache.getStatCount());
+    assertEquals(0, cache.getHitCount());
+  }
+}
@@ -0,0 +1,104 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.hienao.openlist2strm.entity.DirectoryWatermark;
+import com.hienao.openlist2strm.service.OpenlistApiService.DirectoryNode;
+import com.hienao.openlist2strm.service.OpenlistApiService.OpenlistFile;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 目录水位索引测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class DirectoryWatermarkIndexTest {
+
+  private static final DirectoryNode ROOT = new DirectoryNode("http://openlist", "/media");
+
+  private static OpenlistFile folder(String name, long modified) {
+    return new OpenlistFile(ROOT, name, 0, modified, null, true);
+  }
+
+  private static DirectoryWatermark watermark(String path, long modified) {
+    return new DirectoryWatermark()
+        .setTaskId(1L)
+        .setPath(path)
+        .setModifiedTime(modified)
+        .setFileSize(0L)
+        .setEntryCount(1)
+        .setChildrenHash("x")
+        .setConfigHash("c")
+        .setVerifiedAt(0L);
+  }
+
+  @Test
+  public void testSkipsUnchangedFolders() {
+    DirectoryWatermarkIndex index =
+        new DirectoryWatermarkIndex(
+            1L,
+            "c",
+            true,
+            List.of(watermark("/media/a", 100), watermark("/media/b", 100)));
+
+    assertFalse(index.shouldDescend(folder("a", 100)));
+    assertTrue(index.shouldDescend(folder("b", 200)));
+    assertTrue(index.shouldDescend(folder("c", 100)));
+    assertTrue(index.shouldDescend(folder("d", 0)));
+    assertEquals(Set.of("/media/a"), index.getSkippedDirectories());
+  }
+
+  @Test
+  public void testRecordsOnlyWhenPruningDisabled() {
+    DirectoryWatermarkIndex index =
+        new DirectoryWatermarkIndex(1L, "c", false, List.of(watermark("/media/a", 100)));
+
+    assertTrue(index.shouldDescend(folder("a", 100)));
+    index.recordListing("/media/a", List.of(folder("x", 1)));
+
+    List<DirectoryWatermark> updated = index.buildUpdatedWatermarks(List.of(), 42L);
+    assertEquals(1, updated.size());
+    assertEquals(100L, updated.get(0).getModifiedTime());
+    assertEquals(42L, updated.get(0).getVerifiedAt());
+  }
+
+  @Test
+  public void testFailedDirectoriesInvalidateAncestors() {
+    DirectoryWatermarkIndex index =
+        new DirectoryWatermarkIndex(
+            1L,
+            "c",
+            true,
+            List.of(
+                watermark("/media", 0),
+                watermark("/media/a", 100),
+                watermark("/media/a/s1", 100),
+                watermark("/media/gone", 100),
+                watermark("/media/kept", 100),
+                watermark("/media/kept/inner", 100)));
+
+    assertFalse(index.shouldDescend(folder("kept", 100)));
+    index.recordListing("/media", List.of(folder("a", 150), folder("kept", 100)));
+    index.recordListing("/media/a", List.of());
+
+    List<String> failed = List.of("/media/a/s1");
+    assertEquals(
+        Set.of("/media", "/media/a", "/media/a/s1", "/media/gone"),
+        Set.copyOf(index.getRemovedPaths(failed)));
+    assertTrue(index.buildUpdatedWatermarks(failed, 1L).isEmpty());
+  }
+
+  @Test
+  public void testChildrenHashIgnoresListingOrder() {
+    List<OpenlistFile> files = List.of(folder("a", 1), folder("b", 2));
+    assertEquals(
+        DirectoryWatermarkIndex.hashChildren(files),
+        DirectoryWatermarkIndex.hashChildren(List.of(files.get(1), files.get(0))));
+    assertNotEquals(
+        DirectoryWatermarkIndex.hashChildren(files),
+        DirectoryWatermarkIndex.hashChildren(List.of(folder("a", 1), folder("b", 3))));
+  }
+}
@@ -0,0 +1,47 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 文件后缀匹配器测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class MediaExtensionMatcherTest {
+
+  @Test
+  public void testMatchesIgnoreCase() {
+    MediaExtensionMatcher matcher = MediaExtensionMatcher.of(List.of(".mkv", ".MP4", ".ts"));
+
+    assertTrue(matcher.matches("Inception.2010.mkv"));
+    assertTrue(matcher.matches("Inception.2010.MKV"));
+    assertTrue(matcher.matches("流浪地球.mp4"));
+    assertTrue(matcher.matches("S01E01.Ts"));
+    assertFalse(matcher.matches("Inception.2010.nfo"));
+    assertFalse(matcher.matches("shorts"));
+    assertFalse(matcher.matches("Inception."));
+    assertFalse(matcher.matches(null));
+  }
+
+  @Test
+  public void testMultiDotExtension() {
+    MediaExtensionMatcher matcher = MediaExtensionMatcher.of(List.of(".iso.mkv", ".avi"));
+
+    assertTrue(matcher.matches("movie.ISO.mkv"));
+    assertFalse(matcher.matches("movie.mkv"));
+    assertTrue(matcher.matches("movie.avi"));
+  }
+
+  @Test
+  public void testEmptyConfiguration() {
+    MediaExtensionMatcher matcher = MediaExtensionMatcher.of(Arrays.asList(null, " "));
+
+    assertTrue(matcher.isEmpty());
+    assertFalse(matcher.matches("movie.mkv"));
+  }
+}
@@ -0,0 +1,160 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvDetail;
+import com.hienao.openlist2strm.dto.tmdb.TmdbTvSeasonDetail;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 目录文件索引测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class OpenlistDirectoryIndexTest {
+
+  @Test
+  public void testSidecarsSyncedOncePerDirectory() throws Exception {
+    OpenlistDirectoryIndex index = OpenlistDirectoryIndex.build("/tv/show", List.of());
+    AtomicInteger syncCount = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    index.syncSidecarsOnce(
+                        "/strm/tv/show",
+                        () -> {
+                          syncCount.incrementAndGet();
+                          started.countDown();
+                          await(release);
+                          return true;
+                        })));
+      }
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      release.countDown();
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, syncCount.get());
+    assertTrue(index.syncSidecarsOnce("/strm/tv/show", () -> fail("不应再次同步")));
+    assertFalse(index.syncSidecarsOnce("/strm/tv/other", () -> false));
+  }
+
+  @Test
+  public void testFailedSyncIsRetried() {
+    OpenlistDirectoryIndex index = OpenlistDirectoryIndex.build("/tv/show", List.of());
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            index.syncSidecarsOnce(
+                "/strm/tv/show",
+                () -> {
+                  throw new IllegalStateException("下载失败");
+                }));
+
+    assertTrue(index.syncSidecarsOnce("/strm/tv/show", () -> true));
+    assertTrue(index.syncSidecarsOnce("/strm/tv/show", () -> fail("不应再次同步")));
+  }
+
+  @Test
+  public void testTvShowResolvedOnceAndArtifactsWrittenOnce() {
+    OpenlistDirectoryIndex index = OpenlistDirectoryIndex.build("/tv/show", List.of());
+    TmdbTvDetail show = new TmdbTvDetail();
+    show.setName("权力的游戏");
+    AtomicInteger resolveCount = new AtomicInteger();
+    List<TmdbTvDetail> written = new ArrayList<>();
+
+    for (int episode = 0; episode < 3; episode++) {
+      TmdbTvDetail resolved =
+          index.resolveTvShow(
+              "search|权力的游戏|2011",
+              () -> {
+                resolveCount.incrementAndGet();
+                return show;
+              },
+              written::add);
+      assertSame(show, resolved);
+    }
+    assertEquals(1, resolveCount.get());
+    assertEquals(List.of(show), written);
+
+    // 未匹配同样缓存，且不写入剧集信息
+    assertNull(index.resolveTvShow("search|unknown|", () -> null, written::add));
+    assertNull(index.resolveTvShow("search|unknown|", () -> show, written::add));
+    assertEquals(1, written.size());
+  }
+
+  @Test
+  public void testFailedTvShowResolutionIsRetried() {
+    OpenlistDirectoryIndex index = OpenlistDirectoryIndex.build("/tv/show", List.of());
+    TmdbTvDetail show = new TmdbTvDetail();
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            index.resolveTvShow(
+                "tmdb|1399",
+                () -> {
+                  throw new IllegalStateException("TMDB请求失败");
+                },
+                detail -> fail("解析失败时不应写入")));
+
+    assertSame(show, index.resolveTvShow("tmdb|1399", () -> show, detail -> {}));
+  }
+
+  @Test
+  public void testTvSeasonFetchedOncePerSeason() {
+    OpenlistDirectoryIndex index = OpenlistDirectoryIndex.build("/tv/show", List.of());
+    TmdbTvSeasonDetail.Episode second = new TmdbTvSeasonDetail.Episode();
+    second.setEpisodeNumber(2);
+    second.setName("第二集");
+    TmdbTvSeasonDetail season = new TmdbTvSeasonDetail();
+    season.setEpisodes(List.of(second));
+    AtomicInteger fetchCount = new AtomicInteger();
+
+    for (int episode = 1; episode <= 3; episode++) {
+      TmdbTvSeasonDetail resolved =
+          index.resolveTvSeason(
+              "1399|1",
+              () -> {
+                fetchCount.incrementAndGet();
+                return season;
+              });
+      assertSame(season, resolved);
+    }
+    assertEquals(1, fetchCount.get());
+    assertSame(second, season.findEpisode(2));
+    assertNull(season.findEpisode(3));
+
+    // 其他季单独请求
+    assertNull(index.resolveTvSeason("1399|2", () -> null));
+    assertNull(index.resolveTvSeason("1399|2", () -> fail("不应再次请求")));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+/**
+ * 流式文件下载工具测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StreamingDownloaderTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void testWritesAndReplacesTarget() throws IOException {
+    Path target = tempDir.resolve("poster.jpg");
+    Files.writeString(target, "old");
+    MockClientHttpResponse response =
+        new MockClientHttpResponse("new-content".getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+    response.getHeaders().setLastModified(1_700_000_000_000L);
+
+    StreamingDownloader.Result result = StreamingDownloader.writeTo(response, target, 1024);
+
+    assertEquals(StreamingDownloader.Status.DOWNLOADED, result.status());
+    assertEquals(11, result.bytes());
+    assertEquals("new-content", Files.readString(target));
+    assertEquals(1_700_000_000_000L, Files.getLastModifiedTime(target).toMillis());
+    try (var files = Files.list(tempDir)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void testNotModifiedAndEmptyKeepTarget() throws IOException {
+    Path target = tempDir.resolve("movie.nfo");
+    Files.writeString(target, "old");
+
+    StreamingDownloader.Result notModified =
+        StreamingDownloader.writeTo(
+            new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED), target, 1024);
+    StreamingDownloader.Result empty =
+        StreamingDownloader.writeTo(
+            new MockClientHttpResponse(new byte[0], HttpStatus.OK), target, 1024);
+
+    assertTrue(notModified.isAvailable());
+    assertEquals(StreamingDownloader.Status.EMPTY, empty.status());
+    assertEquals("old", Files.readString(target));
+  }
+
+  @Test
+  public void testRejectsOversizedBody() throws IOException {
+    Path target = tempDir.resolve("fanart.jpg");
+    MockClientHttpResponse response = new MockClientHttpResponse(new byte[2048], HttpStatus.OK);
+
+    assertThrows(IOException.class, () -> StreamingDownloader.writeTo(response, target, 1024));
+    assertFalse(Files.exists(target));
+    try (var files = Files.list(tempDir)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void testConditionalHeadersOnlyWhenSizeMatches() throws IOException {
+    Path target = tempDir.resolve("movie.nfo");
+    Files.writeString(target, "local");
+
+    HttpHeaders sameSize = new HttpHeaders();
+    StreamingDownloader.applyConditionalHeaders(sameSize, target, 5);
+    HttpHeaders differentSize = new HttpHeaders();
+    StreamingDownloader.applyConditionalHeaders(differentSize, target, 6);
+    HttpHeaders unknownSize = new HttpHeaders();
+    StreamingDownloader.applyConditionalHeaders(unknownSize, target, 0);
+
+    assertEquals(
+        Files.getLastModifiedTime(target).toMillis() / 1000, sameSize.getIfModifiedSince() / 1000);
+    assertEquals(-1, differentSize.getIfModifiedSince());
+    assertEquals(-1, unknownSize.getIfModifiedSince());
+  }
+
+  @Test
+  public void testStaleTempFileDetection() throws IOException {
+    Path tempFile = StreamingDownloader.createTempSibling(tempDir.resolve("movie.strm"));
+    Path regular = Files.writeString(tempDir.resolve("movie.tmp"), "x");
+    long now = System.currentTimeMillis();
+
+    assertTrue(tempFile.getFileName().toString().startsWith(".movie.strm."));
+    // 刚创建的临时文件可能仍在写入，不视为残留
+    assertFalse(StreamingDownloader.isStaleTempFile(tempFile, attributes(tempFile), now));
+    assertTrue(
+        StreamingDownloader.isStaleTempFile(tempFile, attributes(tempFile), now + 7_200_000));
+    assertFalse(StreamingDownloader.isStaleTempFile(regular, attributes(regular), now + 7_200_000));
+  }
+
+  private static BasicFileAttributes attributes(Path file) throws IOException {
+    return Files.readAttributes(file, BasicFileAttributes.class);
+  }
+}
@@ -0,0 +1,123 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.hienao.openlist2strm.entity.StrmManifest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * STRM同步清单索引测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StrmManifestIndexTest {
+
+  private static final String HASH = StrmManifestIndex.hashUrl("http://host/d/movie.mkv?sign=a");
+
+  @TempDir Path tempDir;
+
+  private static StrmManifest entry(String sourcePath, long size, boolean scraped) {
+    return new StrmManifest()
+        .setTaskId(1L)
+        .setSourcePath(sourcePath)
+        .setFileSize(size)
+        .setModifiedTime(1000L)
+        .setStrmPath("/strm" + sourcePath + ".strm")
+        .setUrlHash(HASH)
+        .setScraped(scraped);
+  }
+
+  @Test
+  public void testUnchangedFileIsNotDirty() {
+    StrmManifestIndex index = new StrmManifestIndex(1L, List.of(entry("/a", 10, true)));
+
+    assertTrue(index.isStrmUpToDate("/a", "/strm/a.strm", HASH));
+    index.record("/a", 10, 1000L, "/strm/a.strm", HASH);
+
+    assertTrue(index.isScraped("/a"));
+    assertTrue(index.getDirtyEntries().isEmpty());
+    assertTrue(index.getOrphanedEntries().isEmpty());
+  }
+
+  @Test
+  public void testChangedUrlAndSourceResetState() {
+    StrmManifestIndex index =
+        new StrmManifestIndex(1L, List.of(entry("/a", 10, true), entry("/b", 20, true)));
+    String newHash = StrmManifestIndex.hashUrl("http://other/d/movie.mkv?sign=a");
+
+    assertFalse(index.isStrmUpToDate("/a", "/strm/a.strm", newHash));
+    index.record("/a", 10, 1000L, "/strm/a.strm", newHash);
+    index.record("/b", 21, 1000L, "/strm/b.strm", HASH);
+
+    assertTrue(index.isScraped("/a"));
+    assertFalse(index.isScraped("/b"));
+    assertEquals(2, index.getDirtyEntries().size());
+
+    index.markScraped("/b");
+    assertTrue(index.isScraped("/b"));
+  }
+
+  @Test
+  public void testOrphansAreSetDifference() {
+    StrmManifestIndex index =
+        new StrmManifestIndex(
+            1L, List.of(entry("/a", 10, false), entry("/b", 20, false), entry("/c", 30, false)));
+
+    index.record("/a", 10, 1000L, "/strm/a.strm", HASH);
+    index.retain("/b");
+    index.record("/d", 40, 1000L, "/strm/d.strm", HASH);
+
+    List<StrmManifest> orphans = index.getOrphanedEntries();
+    assertEquals(1, orphans.size());
+    assertEquals("/c", orphans.get(0).getSourcePath());
+    assertEquals(1, index.getDirtyEntries().size());
+    assertEquals("/d", index.getDirtyEntries().get(0).getSourcePath());
+  }
+
+  @Test
+  public void testMovedStrmPathIsOrphaned() {
+    StrmManifestIndex index =
+        new StrmManifestIndex(
+            1L, List.of(entry("/a", 10, true), entry("/b", 20, true), entry("/c", 30, true)));
+
+    // 重命名规则修改后STRM路径变化，上次的STRM文件需要清理，刮削状态重置
+    index.record("/a", 10, 1000L, "/strm/renamed.strm", HASH);
+    // 仅大小写变化时新旧路径在大小写不敏感的文件系统上是同一个文件
+    index.record("/b", 20, 1000L, "/strm/B.strm", HASH);
+    // 旧路径被其他源文件占用时不能删除
+    index.record("/c", 30, 1000L, "/strm/c-new.strm", HASH);
+    index.record("/c-new", 40, 1000L, "/strm/c.strm", HASH);
+
+    List<StrmManifest> orphans = index.getOrphanedEntries();
+    assertEquals(1, orphans.size());
+    assertEquals("/a", orphans.get(0).getSourcePath());
+    assertEquals("/strm/a.strm", orphans.get(0).getStrmPath());
+    assertTrue(index.isCurrent("/a"));
+    assertFalse(index.isScraped("/a"));
+    assertEquals(4, index.getDirtyEntries().size());
+  }
+
+  @Test
+  public void testDeletedStrmIsRestored() throws IOException {
+    Path kept = tempDir.resolve("kept.strm");
+    Path deleted = tempDir.resolve("deleted.strm");
+    Files.writeString(kept, "http://host/d/movie.mkv?sign=a");
+    StrmManifestIndex index =
+        new StrmManifestIndex(
+            1L,
+            List.of(
+                entry("/kept", 10, true).setStrmPath(kept.toString()),
+                entry("/deleted", 10, true).setStrmPath(deleted.toString())));
+    DirectorySnapshotCache snapshot = new DirectorySnapshotCache();
+
+    assertTrue(index.isStrmUpToDate("/kept", kept, HASH, snapshot));
+    assertTrue(index.isStrmUpToDate("/deleted", deleted.toString(), HASH));
+    assertFalse(index.isStrmUpToDate("/deleted", deleted, HASH, snapshot));
+  }
+}
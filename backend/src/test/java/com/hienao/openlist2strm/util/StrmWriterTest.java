@@ -0,0 +1,74 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * STRM文件写入器测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class StrmWriterTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void testWritesOnlyChangedFiles() throws Exception {
+    Path movie = tempDir.resolve("movies/a/movie.strm");
+    Path episode = tempDir.resolve("tv/show/e01.strm");
+    Files.createDirectories(episode.getParent());
+    Files.writeString(episode, "http://host/d/e01.mkv");
+
+    StrmWriter writer =
+        new StrmWriter(
+            Runnable::run, new DirectorySnapshotCache(), key -> fail("写入不应失败: " + key));
+    writer.submit(
+        List.of(
+            new StrmWriter.Write("/movie.mkv", movie, "http://host/d/movie.mkv"),
+            new StrmWriter.Write("/e01.mkv", episode, "http://host/d/e01.mkv")));
+    writer.await();
+
+    assertEquals("http://host/d/movie.mkv", Files.readString(movie));
+    assertEquals(1, writer.getWrittenCount());
+    assertEquals(1, writer.getUnchangedCount());
+    try (var files = Files.list(movie.getParent())) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void testWriteIfChangedReplacesDifferentContent() throws IOException {
+    Path target = tempDir.resolve("movie.strm");
+    Files.writeString(target, "http://old/d/movie.mkv");
+
+    assertTrue(StrmWriter.writeIfChanged(target, "http://new/d/movie.mkv".getBytes()));
+    assertFalse(StrmWriter.writeIfChanged(target, "http://new/d/movie.mkv".getBytes()));
+    assertEquals("http://new/d/movie.mkv", Files.readString(target));
+    try (var files = Files.list(tempDir)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void testReportsFailedWrites() throws Exception {
+    Path blocked = tempDir.resolve("blocked.strm");
+    Files.createDirectories(blocked);
+    Files.writeString(blocked.resolve("keep"), "x");
+    List<String> failed = new ArrayList<>();
+
+    StrmWriter writer = new StrmWriter(Runnable::run, new DirectorySnapshotCache(), failed::add);
+    writer.submit(List.of(new StrmWriter.Write("/blocked.mkv", blocked, "http://host")));
+    writer.await();
+
+    assertEquals(List.of("/blocked.mkv"), failed);
+    assertEquals(1, writer.getFailedCount());
+  }
+}
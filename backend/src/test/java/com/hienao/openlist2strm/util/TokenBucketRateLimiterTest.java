@@ -0,0 +1,59 @@
+package com.hienao.openlist2strm.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 令牌桶限流器测试类
+ *
+ * @author hienao
+ * @since 2024-01-01
+ */
+public class TokenBucketRateLimiterTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testBurstThenEvenSpacing() {
+    AtomicLong clock = new AtomicLong(1_000 * SECOND);
+    TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 3, clock::get);
+
+    assertTrue(limiter.reserve() <= 0);
+    assertTrue(limiter.reserve() <= 0);
+    assertTrue(limiter.reserve() <= 0);
+    assertEquals(SECOND, limiter.reserve());
+    assertEquals(2 * SECOND, limiter.reserve());
+
+    clock.addAndGet(10 * SECOND);
+    assertTrue(limiter.reserve() <= 0);
+  }
+
+  @Test
+  public void testPauseDelaysAndDrainsBucket() {
+    AtomicLong clock = new AtomicLong(0);
+    TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 3, clock::get);
+
+    limiter.pause(5 * SECOND);
+
+    assertEquals(5 * SECOND, limiter.getPauseRemainingNanos());
+    assertEquals(5 * SECOND, limiter.reserve());
+    assertEquals(6 * SECOND, limiter.reserve());
+
+    clock.addAndGet(20 * SECOND);
+    assertEquals(0, limiter.getPauseRemainingNanos());
+  }
+
+  @Test
+  public void testSetRate() {
+    AtomicLong clock = new AtomicLong(0);
+    TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 1, clock::get);
+
+    assertTrue(limiter.reserve() <= 0);
+    limiter.setRate(120, 1);
+    assertEquals(SECOND, limiter.reserve());
+    assertEquals(SECOND + SECOND / 2, limiter.reserve());
+  }
+}